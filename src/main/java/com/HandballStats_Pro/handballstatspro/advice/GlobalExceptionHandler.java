@@ -7,6 +7,7 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.context.request.WebRequest;
 
+import com.HandballStats_Pro.handballstatspro.config.TrazaValidacion;
 import com.HandballStats_Pro.handballstatspro.dto.ErrorResponse;
 import com.HandballStats_Pro.handballstatspro.exceptions.ApiException;
 import com.HandballStats_Pro.handballstatspro.exceptions.DuplicateResourceException;
@@ -17,13 +18,14 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler(ApiException.class)
     public ResponseEntity<ErrorResponse> handleApiException(ApiException ex, WebRequest request) {
-        return ResponseEntity.status(ex.getStatus())
-                .body(new ErrorResponse(
-                        ex.getStatus(),
-                        ex.getErrorCode(),
-                        ex.getMessage(),
-                        request.getDescription(false).replace("uri=", "")
-                ));
+        ErrorResponse body = new ErrorResponse(
+                ex.getStatus(),
+                ex.getErrorCode(),
+                ex.getMessage(),
+                request.getDescription(false).replace("uri=", "")
+        );
+        body.setTraza(TrazaValidacion.pasos());
+        return ResponseEntity.status(ex.getStatus()).body(body);
     }
 
     @ExceptionHandler(MethodArgumentNotValidException.class)
@@ -0,0 +1,64 @@
+package com.HandballStats_Pro.handballstatspro.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Alinea la tabla accion_seq (generador pooled-lo de Accion) con los id_accion
+ * ya existentes, que se crearon con AUTO_INCREMENT. Sin esto el primer bloque
+ * reservado colisionaría con filas antiguas.
+ *
+ * También numera la columna secuencia de las acciones registradas antes de que
+ * existiera, respetando el orden de id_accion dentro de cada partido, y les da
+ * su revisión inicial (igual a la secuencia) para la sincronización incremental.
+ */
+@Component
+public class AccionSecuenciaInitializer {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Depender del EntityManagerFactory garantiza que ddl-auto ya creó accion_seq
+    public AccionSecuenciaInitializer(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void inicializar() {
+        sincronizarSecuencia();
+        numerarAccionesExistentes();
+        asignarRevisionesExistentes();
+    }
+
+    private void sincronizarSecuencia() {
+        Integer filas = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM accion_seq", Integer.class);
+        if (filas == null || filas == 0) {
+            jdbcTemplate.update("INSERT INTO accion_seq (next_val) SELECT COALESCE(MAX(id_accion), 0) + 1 FROM accion");
+        } else {
+            jdbcTemplate.update("UPDATE accion_seq SET next_val = GREATEST(next_val, " +
+                    "(SELECT COALESCE(MAX(id_accion), 0) + 1 FROM accion))");
+        }
+    }
+
+    private void numerarAccionesExistentes() {
+        Integer sinNumerar = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM accion WHERE secuencia IS NULL", Integer.class);
+        if (sinNumerar == null || sinNumerar == 0) {
+            return;
+        }
+        jdbcTemplate.update("UPDATE accion a JOIN (" +
+                "SELECT id_accion, ROW_NUMBER() OVER (PARTITION BY id_partido ORDER BY id_accion) AS n FROM accion" +
+                ") r ON r.id_accion = a.id_accion SET a.secuencia = r.n WHERE a.secuencia IS NULL");
+    }
+
+    private void asignarRevisionesExistentes() {
+        Integer sinRevision = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM accion WHERE revision IS NULL", Integer.class);
+        if (sinRevision == null || sinRevision == 0) {
+            return;
+        }
+        jdbcTemplate.update("UPDATE accion SET revision = secuencia WHERE revision IS NULL");
+        jdbcTemplate.update("UPDATE partido p JOIN (" +
+                "SELECT id_partido, MAX(revision) AS r FROM accion GROUP BY id_partido" +
+                ") a ON a.id_partido = p.id_partido SET p.revision_acciones = GREATEST(p.revision_acciones, a.r)");
+    }
+}
@@ -0,0 +1,131 @@
+package com.HandballStats_Pro.handballstatspro.config;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.HandballStats_Pro.handballstatspro.entities.Partido;
+import com.HandballStats_Pro.handballstatspro.repositories.PartidoRepository;
+import com.HandballStats_Pro.handballstatspro.services.JwtService;
+import com.HandballStats_Pro.handballstatspro.services.PartidoService;
+import com.HandballStats_Pro.handballstatspro.services.UserDetailsServiceImpl;
+
+import io.jsonwebtoken.JwtException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+// Autentica el token y comprueba los permisos sobre el partido una sola vez, al abrir la sesión WebSocket
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AnotadorHandshakeInterceptor implements HandshakeInterceptor {
+
+    public static final String ATRIBUTO_PARTIDO = "idPartido";
+    public static final String ATRIBUTO_EXPIRACION = "expiracionToken";
+
+    private static final Pattern RUTA_PARTIDO = Pattern.compile("/partidos/(\\d+)/acciones$");
+    private static final Set<String> ROLES_ANOTADOR = Set.of("ROLE_Admin", "ROLE_GestorClub", "ROLE_Entrenador");
+
+    private final JwtService jwtService;
+    private final UserDetailsServiceImpl userDetailsService;
+    private final PartidoRepository partidoRepository;
+    private final PartidoService partidoService;
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        Matcher ruta = RUTA_PARTIDO.matcher(request.getURI().getPath());
+        if (!ruta.find()) {
+            response.setStatusCode(HttpStatus.NOT_FOUND);
+            return false;
+        }
+        Integer idPartido = Integer.valueOf(ruta.group(1));
+
+        // Los navegadores no permiten cabeceras en el handshake: se acepta también ?token=
+        String token = extraerToken(request);
+        if (token == null) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+
+        UserDetails userDetails;
+        Date expiracion;
+        try {
+            userDetails = userDetailsService.loadUserByUsername(jwtService.getEmailFromToken(token));
+            if (!jwtService.validateToken(token, userDetails)) {
+                response.setStatusCode(HttpStatus.UNAUTHORIZED);
+                return false;
+            }
+            expiracion = jwtService.getExpirationFromToken(token);
+        } catch (JwtException | IllegalArgumentException | UsernameNotFoundException e) {
+            log.debug("Handshake WebSocket rechazado: {}", e.getMessage());
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+
+        boolean rolAnotador = userDetails.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .anyMatch(ROLES_ANOTADOR::contains);
+        if (!rolAnotador) {
+            response.setStatusCode(HttpStatus.FORBIDDEN);
+            return false;
+        }
+
+        Partido partido = partidoRepository.findById(idPartido).orElse(null);
+        if (partido == null) {
+            response.setStatusCode(HttpStatus.NOT_FOUND);
+            return false;
+        }
+
+        // puedeAccederPartido lee el usuario del contexto de seguridad
+        Authentication autenticacion = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+        SecurityContext anterior = SecurityContextHolder.getContext();
+        SecurityContext contexto = SecurityContextHolder.createEmptyContext();
+        contexto.setAuthentication(autenticacion);
+        SecurityContextHolder.setContext(contexto);
+        try {
+            if (!partidoService.puedeAccederPartido(partido)) {
+                response.setStatusCode(HttpStatus.FORBIDDEN);
+                return false;
+            }
+        } finally {
+            SecurityContextHolder.setContext(anterior);
+        }
+
+        attributes.put(ATRIBUTO_PARTIDO, idPartido);
+        attributes.put(ATRIBUTO_EXPIRACION, expiracion);
+        log.debug("Sesión de anotador abierta por {} para el partido {}", userDetails.getUsername(), idPartido);
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    private String extraerToken(ServerHttpRequest request) {
+        String authHeader = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            return authHeader.substring(7);
+        }
+        return UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst("token");
+    }
+}
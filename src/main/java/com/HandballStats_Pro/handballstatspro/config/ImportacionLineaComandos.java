@@ -0,0 +1,89 @@
+package com.HandballStats_Pro.handballstatspro.config;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import com.HandballStats_Pro.handballstatspro.dto.InformeImportacionDTO;
+import com.HandballStats_Pro.handballstatspro.enums.FormatoImportacion;
+import com.HandballStats_Pro.handballstatspro.services.ImportacionService;
+import com.HandballStats_Pro.handballstatspro.services.UserDetailsServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Modo línea de comandos de la importación masiva. Se activa al arrancar con:
+ *
+ *   --importar.fichero=temporada.csv --importar.usuario=email@club.es
+ *   [--importar.formato=CSV|JSON] [--importar.informe=informe.json] [--spring.main.web-application-type=none]
+ *
+ * Importa como el usuario indicado (sus permisos sobre equipos se aplican igual que en la API),
+ * escribe el informe y termina con código 0 si no hubo filas con error o 1 en caso contrario.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "importar.fichero")
+public class ImportacionLineaComandos implements ApplicationRunner {
+
+    private final ImportacionService importacionService;
+    private final UserDetailsServiceImpl userDetailsService;
+    private final ObjectMapper objectMapper;
+    private final ConfigurableApplicationContext contexto;
+    private final String fichero;
+    private final String usuario;
+    private final FormatoImportacion formato;
+    private final String rutaInforme;
+
+    public ImportacionLineaComandos(ImportacionService importacionService, UserDetailsServiceImpl userDetailsService,
+                                    ObjectMapper objectMapper, ConfigurableApplicationContext contexto,
+                                    @Value("${importar.fichero}") String fichero,
+                                    @Value("${importar.usuario}") String usuario,
+                                    @Value("${importar.formato:#{null}}") FormatoImportacion formato,
+                                    @Value("${importar.informe:#{null}}") String rutaInforme) {
+        this.importacionService = importacionService;
+        this.userDetailsService = userDetailsService;
+        this.objectMapper = objectMapper;
+        this.contexto = contexto;
+        this.fichero = fichero;
+        this.usuario = usuario;
+        this.formato = formato;
+        this.rutaInforme = rutaInforme;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        UserDetails userDetails = userDetailsService.loadUserByUsername(usuario);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities()));
+
+        InformeImportacionDTO informe;
+        try (InputStream entrada = Files.newInputStream(Path.of(fichero))) {
+            informe = importacionService.importar(entrada, formato != null ? formato : importacionService.formatoDe(fichero));
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+
+        if (rutaInforme != null) {
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(Path.of(rutaInforme).toFile(), informe);
+            log.info("Informe de importación escrito en {}", rutaInforme);
+        } else {
+            informe.getErrores().forEach(error -> log.warn("Fila {} ({}): {} {}",
+                    error.getFila(), error.getClavePartido(), error.getCodigo(), error.getMensaje()));
+        }
+
+        int codigo = informe.getFilasConError() == 0 ? 0 : 1;
+        System.exit(SpringApplication.exit(contexto, () -> codigo));
+    }
+}
@@ -22,6 +22,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final JwtService jwtService;
     private final UserDetailsServiceImpl userDetailsService;
 
+    // El canal WebSocket del anotador autentica el token en su handshake (AnotadorHandshakeInterceptor)
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getServletPath().startsWith("/ws/");
+    }
+
     @Override
     protected void doFilterInternal(
         HttpServletRequest request,
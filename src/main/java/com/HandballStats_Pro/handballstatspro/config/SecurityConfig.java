@@ -2,6 +2,8 @@ package com.HandballStats_Pro.handballstatspro.config;
 
 import java.util.List;
 
+import jakarta.servlet.DispatcherType;
+
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
@@ -31,6 +33,8 @@ import com.HandballStats_Pro.handballstatspro.services.UserDetailsServiceImpl;
 @EnableMethodSecurity
 public class SecurityConfig {
 
+    public static final List<String> ORIGENES_PERMITIDOS = List.of("http://localhost:5173", "https://handballstatsprofront-production.up.railway.app");
+
     private final JwtAuthenticationFilter jwtAuthFilter;
     private final UserDetailsServiceImpl userDetailsService;
 
@@ -66,6 +70,10 @@ public class SecurityConfig {
             )
             .authorizeHttpRequests(auth -> auth
             .requestMatchers("/api/auth/login", "/api/auth/registro").permitAll()
+            // El canal WebSocket del anotador autentica el token en su propio handshake (AnotadorHandshakeInterceptor)
+            .requestMatchers("/ws/**").permitAll()
+            // Respuestas asíncronas (SSE, exportaciones): la petición original ya pasó la autorización
+            .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
             .anyRequest().authenticated()
             )        
             .exceptionHandling(exceptions -> exceptions
@@ -79,9 +87,9 @@ public class SecurityConfig {
     @Bean
     public CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration config = new CorsConfiguration();
-        config.setAllowedOrigins(List.of("http://localhost:5173", "https://handballstatsprofront-production.up.railway.app"));
+        config.setAllowedOrigins(ORIGENES_PERMITIDOS);
         config.setAllowedMethods(List.of("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
-        config.setAllowedHeaders(List.of("Authorization", "Cache-Control", "Content-Type"));
+        config.setAllowedHeaders(List.of("Authorization", "Cache-Control", "Content-Type", TrazaValidacion.CABECERA));
         config.setExposedHeaders(List.of("Authorization"));
         config.setAllowCredentials(true);
         config.setMaxAge(3600L);
@@ -0,0 +1,44 @@
+package com.HandballStats_Pro.handballstatspro.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Traza de validación opcional por petición. Solo se activa cuando el cliente
+ * envía la cabecera X-Traza-Validacion: true; en el resto de peticiones registrar
+ * un paso no cuesta más que leer un ThreadLocal vacío.
+ */
+public final class TrazaValidacion {
+
+    public static final String CABECERA = "X-Traza-Validacion";
+
+    private static final ThreadLocal<List<String>> PASOS = new ThreadLocal<>();
+
+    private TrazaValidacion() {
+    }
+
+    static void activar() {
+        PASOS.set(new ArrayList<>());
+    }
+
+    static void limpiar() {
+        PASOS.remove();
+    }
+
+    public static boolean activa() {
+        return PASOS.get() != null;
+    }
+
+    public static void registrar(String paso) {
+        List<String> pasos = PASOS.get();
+        if (pasos != null) {
+            pasos.add(paso);
+        }
+    }
+
+    // Devuelve null si la traza no está activa, para omitir el campo en la respuesta
+    public static List<String> pasos() {
+        List<String> pasos = PASOS.get();
+        return pasos == null ? null : List.copyOf(pasos);
+    }
+}
@@ -0,0 +1,34 @@
+package com.HandballStats_Pro.handballstatspro.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import java.io.IOException;
+
+@Component
+public class TrazaValidacionFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(
+        HttpServletRequest request,
+        HttpServletResponse response,
+        FilterChain filterChain
+    ) throws ServletException, IOException {
+        if (!"true".equalsIgnoreCase(request.getHeader(TrazaValidacion.CABECERA))) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        TrazaValidacion.activar();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            // Los hilos del contenedor se reutilizan: la traza no debe filtrarse a otra petición
+            TrazaValidacion.limpiar();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.HandballStats_Pro.handballstatspro.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+import com.HandballStats_Pro.handballstatspro.controllers.AnotadorWebSocketHandler;
+
+import lombok.RequiredArgsConstructor;
+
+@Configuration
+@EnableWebSocket
+@RequiredArgsConstructor
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final AnotadorWebSocketHandler anotadorWebSocketHandler;
+    private final AnotadorHandshakeInterceptor anotadorHandshakeInterceptor;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(anotadorWebSocketHandler, "/ws/partidos/*/acciones")
+                .addInterceptors(anotadorHandshakeInterceptor)
+                .setAllowedOrigins(SecurityConfig.ORIGENES_PERMITIDOS.toArray(String[]::new));
+    }
+}
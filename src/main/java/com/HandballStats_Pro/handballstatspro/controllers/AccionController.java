@@ -1,15 +1,27 @@
 package com.HandballStats_Pro.handballstatspro.controllers;
 
 import com.HandballStats_Pro.handballstatspro.dto.AccionDTO;
+import com.HandballStats_Pro.handballstatspro.dto.AccionLoteDTO;
 import com.HandballStats_Pro.handballstatspro.dto.AccionResponseDTO;
+import com.HandballStats_Pro.handballstatspro.dto.AccionSyncDTO;
 import com.HandballStats_Pro.handballstatspro.dto.AccionUpdateDTO;
+import com.HandballStats_Pro.handballstatspro.dto.CambiosAccionesDTO;
+import com.HandballStats_Pro.handballstatspro.dto.ConsultaAnalisisDTO;
+import com.HandballStats_Pro.handballstatspro.dto.ResultadoAnalisisDTO;
+import com.HandballStats_Pro.handballstatspro.dto.ResultadoSyncDTO;
+import com.HandballStats_Pro.handballstatspro.enums.FormatoExportacion;
 import com.HandballStats_Pro.handballstatspro.services.AccionService;
+import com.HandballStats_Pro.handballstatspro.services.AnalisisService;
+import com.HandballStats_Pro.handballstatspro.services.ExportacionService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -19,6 +31,8 @@ import java.util.List;
 public class AccionController {
     
     private final AccionService accionService;
+    private final ExportacionService exportacionService;
+    private final AnalisisService analisisService;
     
     @PostMapping
     @PreAuthorize("hasAnyRole('Admin', 'GestorClub', 'Entrenador')")
@@ -26,6 +40,18 @@ public class AccionController {
         return ResponseEntity.status(HttpStatus.CREATED).body(accionService.crearAccion(accionDTO));
     }
     
+    @PostMapping("/batch")
+    @PreAuthorize("hasAnyRole('Admin', 'GestorClub', 'Entrenador')")
+    public ResponseEntity<List<AccionResponseDTO>> crearAccionesLote(@Valid @RequestBody AccionLoteDTO accionLoteDTO) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(accionService.crearAccionesLote(accionLoteDTO.getAcciones()));
+    }
+    
+    @PostMapping("/sync")
+    @PreAuthorize("hasAnyRole('Admin', 'GestorClub', 'Entrenador')")
+    public ResponseEntity<List<ResultadoSyncDTO>> sincronizarAcciones(@Valid @RequestBody AccionSyncDTO accionSyncDTO) {
+        return ResponseEntity.ok(accionService.sincronizarAcciones(accionSyncDTO.getAcciones()));
+    }
+    
     @GetMapping("/{id}")
     @PreAuthorize("hasAnyRole('Admin', 'GestorClub', 'Entrenador')")
     public ResponseEntity<AccionResponseDTO> obtenerAccion(@PathVariable Integer id) {
@@ -38,6 +64,34 @@ public class AccionController {
         return ResponseEntity.ok(accionService.listarAccionesPorPartido(idPartido));
     }
     
+    // Sincronización incremental: since es la "revision" devuelta por la página anterior (0 = desde el principio)
+    @GetMapping("/partido/{idPartido}/cambios")
+    @PreAuthorize("hasAnyRole('Admin', 'GestorClub', 'Entrenador')")
+    public ResponseEntity<CambiosAccionesDTO> obtenerCambiosPorPartido(@PathVariable Integer idPartido,
+                                                                        @RequestParam(defaultValue = "0") long since,
+                                                                        @RequestParam(defaultValue = "500") int limite) {
+        return ResponseEntity.ok(accionService.obtenerCambiosPorPartido(idPartido, since, limite));
+    }
+    
+    // Exportación de las acciones de los partidos accesibles, filtrada por temporada y/o competición
+    @GetMapping("/exportar")
+    @PreAuthorize("hasAnyRole('Admin', 'GestorClub', 'Entrenador')")
+    public ResponseEntity<StreamingResponseBody> exportarAcciones(@RequestParam(required = false) String temporada,
+                                                                  @RequestParam(required = false) String competicion,
+                                                                  @RequestParam(defaultValue = "NDJSON") FormatoExportacion formato) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(formato.getTipoContenido()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"acciones." + formato.getExtension() + "\"")
+                .body(exportacionService.exportar(temporada, competicion, formato));
+    }
+    
+    // Recuento de acciones filtrado y agrupado por cualquier combinación de dimensiones
+    @PostMapping("/analisis")
+    @PreAuthorize("hasAnyRole('Admin', 'GestorClub', 'Entrenador')")
+    public ResponseEntity<ResultadoAnalisisDTO> analizarAcciones(@Valid @RequestBody ConsultaAnalisisDTO consulta) {
+        return ResponseEntity.ok(analisisService.consultar(consulta));
+    }
+    
     @PatchMapping("/{id}")
     @PreAuthorize("hasAnyRole('Admin', 'GestorClub', 'Entrenador')")
     public ResponseEntity<AccionResponseDTO> actualizarAccion(@PathVariable Integer id, 
@@ -51,4 +105,10 @@ public class AccionController {
         accionService.eliminarAccion(id);
         return ResponseEntity.noContent().build();
     }
+    
+    @DeleteMapping("/partido/{idPartido}/ultima")
+    @PreAuthorize("hasAnyRole('Admin', 'GestorClub', 'Entrenador')")
+    public ResponseEntity<AccionResponseDTO> deshacerUltimaAccion(@PathVariable Integer idPartido) {
+        return ResponseEntity.ok(accionService.deshacerUltimaAccion(idPartido));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,99 @@
+package com.HandballStats_Pro.handballstatspro.controllers;
+
+import com.HandballStats_Pro.handballstatspro.config.AnotadorHandshakeInterceptor;
+import com.HandballStats_Pro.handballstatspro.dto.AccionDTO;
+import com.HandballStats_Pro.handballstatspro.dto.MensajeAnotadorDTO;
+import com.HandballStats_Pro.handballstatspro.dto.RespuestaAnotadorDTO;
+import com.HandballStats_Pro.handballstatspro.exceptions.ApiException;
+import com.HandballStats_Pro.handballstatspro.services.AccionService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.Set;
+
+/**
+ * Canal del anotador: /ws/partidos/{idPartido}/acciones
+ *
+ * Cada trama de texto es un MensajeAnotadorDTO y recibe una RespuestaAnotadorDTO con el mismo "ref".
+ * Las acciones pasan por las mismas reglas que POST /acciones; solo se evita repetir por cada una
+ * la autenticación y la comprobación de permisos, hechas en el handshake.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AnotadorWebSocketHandler extends TextWebSocketHandler {
+    
+    private final AccionService accionService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws IOException {
+        Integer idPartido = (Integer) session.getAttributes().get(AnotadorHandshakeInterceptor.ATRIBUTO_PARTIDO);
+        Date expiracion = (Date) session.getAttributes().get(AnotadorHandshakeInterceptor.ATRIBUTO_EXPIRACION);
+        if (expiracion.before(new Date())) {
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Token expirado"));
+            return;
+        }
+        
+        MensajeAnotadorDTO mensaje;
+        try {
+            mensaje = objectMapper.readValue(message.getPayload(), MensajeAnotadorDTO.class);
+        } catch (JsonProcessingException e) {
+            responder(session, RespuestaAnotadorDTO.error(null, "invalid_message", "Mensaje no válido"));
+            return;
+        }
+        
+        String ref = mensaje.getRef();
+        AccionDTO accion = mensaje.getAccion();
+        if (accion == null) {
+            responder(session, RespuestaAnotadorDTO.error(ref, "validation_error", "accion: es obligatoria"));
+            return;
+        }
+        
+        // La sesión está ligada a un partido: se toma de la ruta y no se admite otro
+        if (accion.getIdPartido() == null) {
+            accion.setIdPartido(idPartido);
+        } else if (!accion.getIdPartido().equals(idPartido)) {
+            responder(session, RespuestaAnotadorDTO.error(ref, "MATCH_MISMATCH", "La acción no pertenece al partido de esta sesión"));
+            return;
+        }
+        
+        Set<ConstraintViolation<AccionDTO>> errores = validator.validate(accion);
+        if (!errores.isEmpty()) {
+            ConstraintViolation<AccionDTO> error = errores.iterator().next();
+            responder(session, RespuestaAnotadorDTO.error(ref, "validation_error", error.getPropertyPath() + ": " + error.getMessage()));
+            return;
+        }
+        
+        try {
+            responder(session, RespuestaAnotadorDTO.confirmada(ref, accionService.crearAccionAutorizada(accion)));
+        } catch (ApiException e) {
+            responder(session, RespuestaAnotadorDTO.error(ref, e.getErrorCode(), e.getMessage()));
+        } catch (RuntimeException e) {
+            log.error("Error registrando la acción {} del partido {}", ref, idPartido, e);
+            responder(session, RespuestaAnotadorDTO.error(ref, "internal_error", "Ocurrió un error inesperado"));
+        }
+    }
+    
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        log.debug("Sesión de anotador {} cerrada: {}", session.getId(), status);
+    }
+    
+    // El contenedor entrega las tramas de una sesión de una en una, así que no hay envíos concurrentes
+    private void responder(WebSocketSession session, RespuestaAnotadorDTO respuesta) throws IOException {
+        session.sendMessage(new TextMessage(objectMapper.writeValueAsString(respuesta)));
+    }
+}
@@ -3,10 +3,12 @@ package com.HandballStats_Pro.handballstatspro.controllers;
 import com.HandballStats_Pro.handballstatspro.dto.ClubDTO;
 import com.HandballStats_Pro.handballstatspro.dto.ClubResponseDTO;
 import com.HandballStats_Pro.handballstatspro.dto.ClubUpdateDTO;
+import com.HandballStats_Pro.handballstatspro.dto.EstadisticasTemporadaDTO;
 import com.HandballStats_Pro.handballstatspro.dto.UsuarioClubDTO;
 import com.HandballStats_Pro.handballstatspro.exceptions.PermissionDeniedException;
 import com.HandballStats_Pro.handballstatspro.exceptions.ResourceNotFoundException;
 import com.HandballStats_Pro.handballstatspro.services.ClubService;
+import com.HandballStats_Pro.handballstatspro.services.EstadisticasTemporadaService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -22,6 +24,7 @@ import java.util.List;
 public class ClubController {
 
     private final ClubService clubService;
+    private final EstadisticasTemporadaService estadisticasTemporadaService;
 
     @PostMapping
     @PreAuthorize("hasAnyRole('Admin','GestorClub')")
@@ -93,4 +96,12 @@ public class ClubController {
         return ResponseEntity.noContent().build();
     }
 
-}
\ No newline at end of file
+    // Acumulados de los equipos del club en una temporada, uno por categoría (o solo la indicada)
+    @GetMapping("/{id}/estadisticas")
+    @PreAuthorize("hasAnyRole('Admin','GestorClub')")
+    public ResponseEntity<List<EstadisticasTemporadaDTO>> obtenerEstadisticasTemporada(@PathVariable Long id,
+                                                                                      @RequestParam String temporada,
+                                                                                      @RequestParam(required = false) String categoria) {
+        return ResponseEntity.ok(estadisticasTemporadaService.obtenerPorClub(id, temporada, categoria));
+    }
+}
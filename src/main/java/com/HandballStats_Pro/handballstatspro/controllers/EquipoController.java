@@ -1,7 +1,15 @@
 package com.HandballStats_Pro.handballstatspro.controllers;
 
 import com.HandballStats_Pro.handballstatspro.dto.*;
+import com.HandballStats_Pro.handballstatspro.services.ClasificacionService;
+import com.HandballStats_Pro.handballstatspro.services.EnfrentamientosService;
 import com.HandballStats_Pro.handballstatspro.services.EquipoService;
+import com.HandballStats_Pro.handballstatspro.enums.DetalleFinalizacion;
+import com.HandballStats_Pro.handballstatspro.enums.TipoAtaque;
+import com.HandballStats_Pro.handballstatspro.enums.ZonaLanzamiento;
+import com.HandballStats_Pro.handballstatspro.services.EstadisticasTemporadaService;
+import com.HandballStats_Pro.handballstatspro.services.LanzamientosService;
+import com.HandballStats_Pro.handballstatspro.services.TransicionesService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -15,6 +23,11 @@ import java.util.List;
 public class EquipoController {
 
     private final EquipoService equipoService;
+    private final EstadisticasTemporadaService estadisticasTemporadaService;
+    private final LanzamientosService lanzamientosService;
+    private final EnfrentamientosService enfrentamientosService;
+    private final TransicionesService transicionesService;
+    private final ClasificacionService clasificacionService;
 
     @PostMapping
     public ResponseEntity<EquipoResponseDTO> crearEquipo(@Valid @RequestBody EquipoDTO dto) {
@@ -31,6 +44,42 @@ public class EquipoController {
         return ResponseEntity.ok(equipoService.obtenerEquipoPorId(id));
     }
 
+    // Acumulado de la temporada del equipo (propias y de sus rivales)
+    @GetMapping("/{id}/estadisticas")
+    public ResponseEntity<EstadisticasTemporadaDTO> obtenerEstadisticasTemporada(@PathVariable Long id) {
+        return ResponseEntity.ok(estadisticasTemporadaService.obtenerPorEquipo(id));
+    }
+
+    // Corte del mapa de lanzamientos de la temporada (recibidos=true: los de sus rivales)
+    @GetMapping("/{id}/lanzamientos")
+    public ResponseEntity<CuboLanzamientosDTO> obtenerLanzamientos(@PathVariable Long id,
+                                                                   @RequestParam(defaultValue = "false") boolean recibidos,
+                                                                   @RequestParam(required = false) ZonaLanzamiento zona,
+                                                                   @RequestParam(required = false) DetalleFinalizacion finalizacion,
+                                                                   @RequestParam(required = false) TipoAtaque tipoAtaque) {
+        return ResponseEntity.ok(lanzamientosService.obtenerPorEquipo(id, recibidos, zona, finalizacion, tipoAtaque));
+    }
+
+    // Probabilidades de lo que sigue a cada acción en los partidos de la temporada
+    @GetMapping("/{id}/transiciones")
+    public ResponseEntity<TransicionesDTO> obtenerTransiciones(@PathVariable Long id) {
+        return ResponseEntity.ok(transicionesService.obtenerPorEquipo(id));
+    }
+
+    // Partidos anteriores contra otro equipo asociado y estadísticas acumuladas de ambos
+    @GetMapping("/{id}/enfrentamientos/{idRival}")
+    public ResponseEntity<EnfrentamientoDTO> obtenerEnfrentamientos(@PathVariable Long id, @PathVariable Long idRival) {
+        return ResponseEntity.ok(enfrentamientosService.obtenerEnfrentamiento(id, idRival));
+    }
+
+    // Percentil del equipo en cada criterio dentro de su competición (por defecto, en su temporada)
+    @GetMapping("/{id}/percentiles")
+    public ResponseEntity<PercentilesDTO> obtenerPercentiles(@PathVariable Long id,
+                                                             @RequestParam String competicion,
+                                                             @RequestParam(required = false) String temporada) {
+        return ResponseEntity.ok(clasificacionService.obtenerPercentiles(id, competicion, temporada));
+    }
+
     @PatchMapping("/{id}")
     public ResponseEntity<EquipoResponseDTO> actualizarEquipo(@PathVariable Long id, @RequestBody EquipoUpdateDTO dto) {
         return ResponseEntity.ok(equipoService.actualizarEquipo(id, dto));
@@ -4,15 +4,46 @@ import com.HandballStats_Pro.handballstatspro.dto.PartidoDTO;
 import com.HandballStats_Pro.handballstatspro.dto.PartidoResponseDTO;
 import com.HandballStats_Pro.handballstatspro.dto.PartidoUpdateDTO;
 import com.HandballStats_Pro.handballstatspro.dto.EquipoResponseDTO;
+import com.HandballStats_Pro.handballstatspro.dto.InformeImportacionDTO;
+import com.HandballStats_Pro.handballstatspro.dto.EficienciaPosesionesDTO;
+import com.HandballStats_Pro.handballstatspro.dto.EstadisticasPartidoDTO;
+import com.HandballStats_Pro.handballstatspro.dto.PosesionResponseDTO;
+import com.HandballStats_Pro.handballstatspro.dto.CuboLanzamientosDTO;
+import com.HandballStats_Pro.handballstatspro.dto.ClasificacionDTO;
+import com.HandballStats_Pro.handballstatspro.dto.RecalculoDTO;
+import com.HandballStats_Pro.handballstatspro.dto.ProgresionMarcadorDTO;
+import com.HandballStats_Pro.handballstatspro.dto.TransicionesDTO;
+import com.HandballStats_Pro.handballstatspro.enums.CriterioClasificacion;
+import com.HandballStats_Pro.handballstatspro.enums.DetalleFinalizacion;
+import com.HandballStats_Pro.handballstatspro.enums.FormatoImportacion;
+import com.HandballStats_Pro.handballstatspro.enums.TipoAtaque;
+import com.HandballStats_Pro.handballstatspro.enums.ZonaLanzamiento;
+import com.HandballStats_Pro.handballstatspro.services.ClasificacionService;
+import com.HandballStats_Pro.handballstatspro.services.DirectoPartidos;
+import com.HandballStats_Pro.handballstatspro.services.EstadisticasService;
+import com.HandballStats_Pro.handballstatspro.services.EstadisticasTemporadaService;
+import com.HandballStats_Pro.handballstatspro.services.ImportacionService;
+import com.HandballStats_Pro.handballstatspro.services.LanzamientosService;
+import com.HandballStats_Pro.handballstatspro.services.MarcadorService;
 import com.HandballStats_Pro.handballstatspro.services.PartidoService;
+import com.HandballStats_Pro.handballstatspro.services.PosesionService;
+import com.HandballStats_Pro.handballstatspro.services.RecalculoService;
+import com.HandballStats_Pro.handballstatspro.services.TransicionesService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.time.LocalDate;
 
 @RestController
@@ -21,6 +52,16 @@ import java.time.LocalDate;
 public class PartidoController {
 
     private final PartidoService partidoService;
+    private final DirectoPartidos directoPartidos;
+    private final ImportacionService importacionService;
+    private final PosesionService posesionService;
+    private final EstadisticasService estadisticasService;
+    private final EstadisticasTemporadaService estadisticasTemporadaService;
+    private final LanzamientosService lanzamientosService;
+    private final ClasificacionService clasificacionService;
+    private final RecalculoService recalculoService;
+    private final MarcadorService marcadorService;
+    private final TransicionesService transicionesService;
 
     @PostMapping
     @PreAuthorize("hasAnyRole('Admin', 'GestorClub', 'Entrenador')")
@@ -28,6 +69,17 @@ public class PartidoController {
         return ResponseEntity.status(HttpStatus.CREATED).body(partidoService.crearPartido(partidoDTO));
     }
 
+    // Importación masiva de partidos con sus acciones; devuelve el informe con las filas rechazadas
+    @PostMapping(value = "/importar", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasAnyRole('Admin', 'GestorClub', 'Entrenador')")
+    public ResponseEntity<InformeImportacionDTO> importarPartidos(@RequestParam("fichero") MultipartFile fichero,
+                                                                 @RequestParam(required = false) FormatoImportacion formato) throws IOException {
+        FormatoImportacion formatoFichero = formato != null ? formato : importacionService.formatoDe(fichero.getOriginalFilename());
+        try (InputStream entrada = fichero.getInputStream()) {
+            return ResponseEntity.ok(importacionService.importar(entrada, formatoFichero));
+        }
+    }
+
     @GetMapping
     @PreAuthorize("hasAnyRole('Admin', 'GestorClub', 'Entrenador')")
     public ResponseEntity<List<PartidoResponseDTO>> listarPartidos() {
@@ -53,6 +105,103 @@ public class PartidoController {
         return ResponseEntity.noContent().build();
     }
 
+    @GetMapping(value = "/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyRole('Admin', 'GestorClub', 'Entrenador')")
+    public SseEmitter streamPartido(@PathVariable Integer id,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) Long ultimoEventoVisto) {
+        return directoPartidos.suscribir(id, ultimoEventoVisto);
+    }
+
+    @GetMapping("/{id}/estadisticas")
+    @PreAuthorize("hasAnyRole('Admin', 'GestorClub', 'Entrenador')")
+    public ResponseEntity<EstadisticasPartidoDTO> obtenerEstadisticas(@PathVariable Integer id) {
+        return ResponseEntity.ok(estadisticasService.obtenerEstadisticas(id));
+    }
+
+    // Recalcula desde las acciones las estadísticas materializadas (repara desvíos de los deltas)
+    @PostMapping("/{id}/estadisticas/reconstruir")
+    @PreAuthorize("hasRole('Admin')")
+    public ResponseEntity<EstadisticasPartidoDTO> reconstruirEstadisticas(@PathVariable Integer id) {
+        return ResponseEntity.ok(estadisticasService.reconstruirPartido(id));
+    }
+
+    // Todos los partidos y después los acumulados de temporada de equipos y clubes
+    @PostMapping("/estadisticas/reconstruir")
+    @PreAuthorize("hasRole('Admin')")
+    public ResponseEntity<Map<String, Integer>> reconstruirTodasLasEstadisticas() {
+        Map<String, Integer> reconstruidas = new LinkedHashMap<>();
+        reconstruidas.put("partidos", estadisticasService.reconstruirTodos());
+        reconstruidas.putAll(estadisticasTemporadaService.reconstruirTodos());
+        return ResponseEntity.ok(reconstruidas);
+    }
+
+    // Lo mismo en segundo plano y en paralelo, con progreso y cancelación
+    @PostMapping("/estadisticas/recalculo")
+    @PreAuthorize("hasRole('Admin')")
+    public ResponseEntity<RecalculoDTO> iniciarRecalculo() {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(recalculoService.iniciar());
+    }
+
+    @GetMapping("/estadisticas/recalculo")
+    @PreAuthorize("hasRole('Admin')")
+    public ResponseEntity<RecalculoDTO> obtenerRecalculo() {
+        return ResponseEntity.ok(recalculoService.obtener());
+    }
+
+    @DeleteMapping("/estadisticas/recalculo")
+    @PreAuthorize("hasRole('Admin')")
+    public ResponseEntity<RecalculoDTO> cancelarRecalculo() {
+        return ResponseEntity.ok(recalculoService.cancelar());
+    }
+
+    // Clasificación de los equipos asociados de una competición por el criterio pedido
+    @GetMapping("/clasificacion")
+    @PreAuthorize("hasAnyRole('Admin', 'GestorClub', 'Entrenador')")
+    public ResponseEntity<ClasificacionDTO> obtenerClasificacion(@RequestParam String competicion,
+                                                                 @RequestParam(required = false) String temporada,
+                                                                 @RequestParam(defaultValue = "GOLES_POR_POSESION") CriterioClasificacion criterio) {
+        return ResponseEntity.ok(clasificacionService.obtenerClasificacion(competicion, temporada, criterio));
+    }
+
+    // Corte del mapa de lanzamientos de un rival de scouting en los partidos accesibles
+    @GetMapping("/rivales/lanzamientos")
+    @PreAuthorize("hasAnyRole('Admin', 'GestorClub', 'Entrenador')")
+    public ResponseEntity<CuboLanzamientosDTO> obtenerLanzamientosRival(@RequestParam String nombre,
+                                                                        @RequestParam(required = false) String temporada,
+                                                                        @RequestParam(defaultValue = "false") boolean recibidos,
+                                                                        @RequestParam(required = false) ZonaLanzamiento zona,
+                                                                        @RequestParam(required = false) DetalleFinalizacion finalizacion,
+                                                                        @RequestParam(required = false) TipoAtaque tipoAtaque) {
+        return ResponseEntity.ok(lanzamientosService.obtenerPorRival(nombre, temporada, recibidos, zona, finalizacion, tipoAtaque));
+    }
+
+    // Marcador derivado de las acciones de Gol y su progresión gol a gol
+    @GetMapping("/{id}/marcador")
+    @PreAuthorize("hasAnyRole('Admin', 'GestorClub', 'Entrenador')")
+    public ResponseEntity<ProgresionMarcadorDTO> obtenerMarcador(@PathVariable Integer id) {
+        return ResponseEntity.ok(marcadorService.obtenerProgresion(id));
+    }
+
+    // Probabilidades de lo que sigue a cada acción (origen, evento y detalle) en el partido
+    @GetMapping("/{id}/transiciones")
+    @PreAuthorize("hasAnyRole('Admin', 'GestorClub', 'Entrenador')")
+    public ResponseEntity<TransicionesDTO> obtenerTransiciones(@PathVariable Integer id) {
+        return ResponseEntity.ok(transicionesService.obtenerPorPartido(id));
+    }
+
+    // Posesiones reconstruidas por el servidor a partir de la secuencia de acciones
+    @GetMapping("/{id}/posesiones")
+    @PreAuthorize("hasAnyRole('Admin', 'GestorClub', 'Entrenador')")
+    public ResponseEntity<List<PosesionResponseDTO>> listarPosesiones(@PathVariable Integer id) {
+        return ResponseEntity.ok(posesionService.listarPosesiones(id));
+    }
+
+    @GetMapping("/{id}/posesiones/eficiencia")
+    @PreAuthorize("hasAnyRole('Admin', 'GestorClub', 'Entrenador')")
+    public ResponseEntity<List<EficienciaPosesionesDTO>> obtenerEficienciaPosesiones(@PathVariable Integer id) {
+        return ResponseEntity.ok(posesionService.obtenerEficiencia(id));
+    }
+
     @GetMapping("/equipo/{idEquipo}")
     @PreAuthorize("hasAnyRole('Admin', 'GestorClub', 'Entrenador')")
     public ResponseEntity<List<PartidoResponseDTO>> obtenerPartidosPorEquipo(@PathVariable Long idEquipo) {
@@ -2,6 +2,7 @@ package com.HandballStats_Pro.handballstatspro.dto;
 
 import com.HandballStats_Pro.handballstatspro.enums.*;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.Data;
 
 @Data
@@ -33,4 +34,8 @@ public class AccionDTO {
     
     @NotNull(message = "El cambio de posesión es obligatorio")
     private Boolean cambioPosesion;
+    
+    // Clave de idempotencia generada en el dispositivo (p. ej. un UUID); los reenvíos con la misma clave no duplican la acción
+    @Size(max = 64, message = "La clave de cliente no puede superar los 64 caracteres")
+    private String claveCliente;
 }
\ No newline at end of file
@@ -0,0 +1,17 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class AccionLoteDTO {
+
+    // Acciones en el orden en que ocurrieron; la regla 5 se encadena entre ellas
+    @NotEmpty(message = "El lote debe contener al menos una acción")
+    @Size(max = 500, message = "El lote no puede superar las 500 acciones")
+    private List<@Valid AccionDTO> acciones;
+}
@@ -8,6 +8,7 @@ public class AccionResponseDTO {
     
     private Integer idAccion;
     private Integer idPartido;
+    private Integer secuencia;
     private Integer idPosesion;
     private EquipoAccion equipoAccion;
     private TipoAtaque tipoAtaque;
@@ -17,6 +18,8 @@ public class AccionResponseDTO {
     private ZonaLanzamiento zonaLanzamiento;
     private DetalleEvento detalleEvento;
     private Boolean cambioPosesion;
+    private String claveCliente;
+    private Long revision;
     
     // Información del partido asociado
     private String nombreEquipoLocal;
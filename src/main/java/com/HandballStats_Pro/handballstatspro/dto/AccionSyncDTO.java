@@ -0,0 +1,17 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class AccionSyncDTO {
+
+    // Cola pendiente del dispositivo, en el orden en que se registraron las acciones
+    @NotEmpty(message = "La sincronización debe contener al menos una acción")
+    @Size(max = 500, message = "La sincronización no puede superar las 500 acciones")
+    private List<@Valid AccionDTO> acciones;
+}
@@ -0,0 +1,23 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Página de cambios de las acciones de un partido a partir de una revisión
+@Data
+public class CambiosAccionesDTO {
+    
+    // Acciones creadas o editadas: el cliente las inserta o reemplaza por idAccion
+    private List<AccionResponseDTO> acciones = new ArrayList<>();
+    
+    // Ids de las acciones borradas
+    private List<Integer> eliminadas = new ArrayList<>();
+    
+    // Revisión del último cambio incluido: es el "since" de la siguiente petición
+    private Long revision;
+    
+    // Quedan más cambios tras esta página
+    private boolean hayMas;
+}
@@ -0,0 +1,16 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import com.HandballStats_Pro.handballstatspro.enums.CriterioClasificacion;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Clasificación de los equipos asociados de una competición (y temporada, si se indica)
+@Data
+public class ClasificacionDTO {
+    private String competicion;
+    private String temporada;
+    private CriterioClasificacion criterio;
+    private List<FilaClasificacionDTO> equipos = new ArrayList<>();
+}
@@ -0,0 +1,29 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import com.HandballStats_Pro.handballstatspro.enums.*;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Consulta de análisis: cada lista vacía es "todos los valores"; entre listas se exige que se cumplan todas
+@Data
+public class ConsultaAnalisisDTO {
+    private List<EquipoAccion> equipoAccion = new ArrayList<>();
+    private List<TipoAtaque> tipoAtaque = new ArrayList<>();
+    private List<OrigenAccion> origenAccion = new ArrayList<>();
+    private List<Evento> evento = new ArrayList<>();
+    private List<DetalleFinalizacion> detalleFinalizacion = new ArrayList<>();
+    private List<ZonaLanzamiento> zonaLanzamiento = new ArrayList<>();
+    private List<DetalleEvento> detalleEvento = new ArrayList<>();
+    private List<String> competicion = new ArrayList<>();
+    private List<String> temporada = new ArrayList<>();
+    private List<Integer> partidos = new ArrayList<>();
+    private LocalDate desde;
+    private LocalDate hasta;
+
+    @Size(max = 3, message = "Se puede agrupar como mucho por 3 dimensiones")
+    private List<DimensionAccion> agruparPor = new ArrayList<>();
+}
@@ -0,0 +1,17 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Contadores de un equipo en el directo; en los deltas son diferencias respecto al evento anterior
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContadoresDirectoDTO {
+    private int goles;
+    private int lanzamientos;
+    private int paradas;
+    private int fuera;
+    private int perdidas;
+}
@@ -0,0 +1,15 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import lombok.Data;
+
+// Contadores de un equipo en un grupo de acciones (zona, finalización, tipo de ataque...)
+@Data
+public class ContadoresLanzamientoDTO {
+    private int lanzamientos;
+    private int goles;
+    private int paradas;
+    private int fuera;
+    private int perdidas;
+    // Goles por lanzamiento (0 si no hay lanzamientos)
+    private double eficiencia;
+}
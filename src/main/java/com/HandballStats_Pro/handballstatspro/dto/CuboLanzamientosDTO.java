@@ -0,0 +1,25 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import com.HandballStats_Pro.handballstatspro.enums.DetalleFinalizacion;
+import com.HandballStats_Pro.handballstatspro.enums.TipoAtaque;
+import com.HandballStats_Pro.handballstatspro.enums.ZonaLanzamiento;
+import lombok.Data;
+
+import java.util.Map;
+
+// Corte del cubo de lanzamientos de un equipo propio (idEquipo) o de un rival de scouting (rival)
+@Data
+public class CuboLanzamientosDTO {
+    private Long idEquipo;
+    private String rival;
+    private String temporada;
+    // true si son los lanzamientos recibidos (los de sus rivales) en lugar de los propios
+    private boolean recibidos;
+    private int partidos;
+    // Filtros aplicados; null es todas
+    private ZonaLanzamiento zona;
+    private DetalleFinalizacion finalizacion;
+    private TipoAtaque tipoAtaque;
+    private ResultadosLanzamientoDTO total;
+    private Map<ZonaLanzamiento, ResultadosLanzamientoDTO> porZona;
+}
@@ -0,0 +1,19 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import com.HandballStats_Pro.handballstatspro.enums.TipoCambioAccion;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeltaDirectoDTO {
+    private TipoCambioAccion tipo;
+    // Acción tal y como queda (la eliminada, en el caso de ELIMINADA)
+    private AccionResponseDTO accion;
+    // Marcador tras aplicar el cambio
+    private MarcadorDTO marcador;
+    // Variación de los contadores de cada equipo provocada por este cambio
+    private EstadisticasDirectoDTO delta;
+}
@@ -0,0 +1,19 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import com.HandballStats_Pro.handballstatspro.enums.EquipoAccion;
+import com.HandballStats_Pro.handballstatspro.enums.TipoAtaque;
+import lombok.Data;
+
+// Eficiencia de un equipo en sus posesiones; tipoAtaque null es el total del equipo
+@Data
+public class EficienciaPosesionesDTO {
+    
+    private EquipoAccion equipo;
+    private TipoAtaque tipoAtaque;
+    private long posesiones;
+    private long acciones;
+    private long lanzamientos;
+    private long goles;
+    private double golesPorPosesion;
+    private double accionesPorPosesion;
+}
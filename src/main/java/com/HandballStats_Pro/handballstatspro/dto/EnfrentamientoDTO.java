@@ -0,0 +1,21 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Historial entre dos equipos asociados, visto desde idEquipo, con sus estadísticas acumuladas enfrentadas
+@Data
+public class EnfrentamientoDTO {
+    private Long idEquipo;
+    private String nombreEquipo;
+    private Long idRival;
+    private String nombreRival;
+    private int victorias;
+    private int empates;
+    private int derrotas;
+    private List<PartidoEnfrentamientoDTO> partidos = new ArrayList<>();
+    private EstadisticasEquipoDTO equipo;
+    private EstadisticasEquipoDTO rival;
+}
@@ -0,0 +1,20 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ErrorImportacionDTO {
+    
+    // Número de fila de datos (la primera es 1; en CSV no cuenta la cabecera)
+    private long fila;
+    
+    private String clavePartido;
+    
+    private String codigo;
+    
+    private String mensaje;
+}
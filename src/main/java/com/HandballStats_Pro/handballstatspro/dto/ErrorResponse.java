@@ -1,7 +1,9 @@
 package com.HandballStats_Pro.handballstatspro.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import java.time.LocalDateTime;
+import java.util.List;
 
 import org.springframework.http.HttpStatus;
 
@@ -13,6 +15,9 @@ public class ErrorResponse {
     private String code;
     private String message;
     private String path;
+    // Pasos de validación recorridos; solo se envía si la petición pidió la traza
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<String> traza;
 
     public ErrorResponse(HttpStatus status, String code, String message, String path) {
         this.timestamp = LocalDateTime.now();
@@ -0,0 +1,21 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import com.HandballStats_Pro.handballstatspro.enums.DetalleEvento;
+import com.HandballStats_Pro.handballstatspro.enums.DetalleFinalizacion;
+import com.HandballStats_Pro.handballstatspro.enums.TipoAtaque;
+import com.HandballStats_Pro.handballstatspro.enums.ZonaLanzamiento;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+public class EstadisticasEquipoDTO {
+    private ContadoresLanzamientoDTO total;
+    private ContadoresLanzamientoDTO sieteMetros;
+    private Map<ZonaLanzamiento, ContadoresLanzamientoDTO> porZona;
+    // Incluye las oleadas de contraataque (Contragol, 1ª, 2ª y 3ª oleada)
+    private Map<DetalleFinalizacion, ContadoresLanzamientoDTO> porFinalizacion;
+    private Map<TipoAtaque, ContadoresLanzamientoDTO> porTipoAtaque;
+    // Paradas, lanzamientos fuera y pérdidas según su detalle
+    private Map<DetalleEvento, Integer> porDetalleEvento;
+}
@@ -0,0 +1,15 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EstadisticasPartidoDTO {
+    private Integer idPartido;
+    private int acciones;
+    private EstadisticasEquipoDTO local;
+    private EstadisticasEquipoDTO visitante;
+}
@@ -0,0 +1,16 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import lombok.Data;
+
+// Acumulado de temporada de un equipo (idEquipo) o de los equipos de un club en una categoría (idClub)
+@Data
+public class EstadisticasTemporadaDTO {
+    private Long idEquipo;
+    private Long idClub;
+    private String temporada;
+    private String categoria;
+    private int partidos;
+    private int acciones;
+    private EstadisticasEquipoDTO propias;
+    private EstadisticasEquipoDTO rivales;
+}
@@ -0,0 +1,20 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import com.HandballStats_Pro.handballstatspro.enums.DetalleEvento;
+import com.HandballStats_Pro.handballstatspro.enums.EquipoAccion;
+import com.HandballStats_Pro.handballstatspro.enums.Evento;
+import com.HandballStats_Pro.handballstatspro.enums.OrigenAccion;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Estado de una acción en la matriz de transiciones; en la de un equipo, LOCAL es el propio equipo y VISITANTE sus rivales
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EstadoAccionDTO {
+    private EquipoAccion equipo;
+    private OrigenAccion origenAccion;
+    private Evento evento;
+    private DetalleEvento detalleEvento;
+}
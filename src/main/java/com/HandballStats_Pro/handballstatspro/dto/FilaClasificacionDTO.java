@@ -0,0 +1,19 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import lombok.Data;
+
+// Un equipo en la clasificación de una competición, con sus totales y ratios
+@Data
+public class FilaClasificacionDTO {
+    private int posicion;
+    private Long idEquipo;
+    private String nombre;
+    private int partidos;
+    private int posesiones;
+    private int lanzamientos;
+    private int goles;
+    private int perdidas;
+    private double golesPorPosesion;
+    private double porcentajeLanzamiento;
+    private double perdidasPorPosesion;
+}
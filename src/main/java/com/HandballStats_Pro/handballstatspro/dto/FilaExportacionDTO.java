@@ -0,0 +1,34 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+// Una acción exportada junto con los datos de su partido (una línea NDJSON o una fila CSV)
+@Data
+@JsonPropertyOrder({"idPartido", "fecha", "competicion", "temporada", "nombreEquipoLocal", "nombreEquipoVisitante",
+        "idAccion", "secuencia", "idPosesion", "equipoAccion", "tipoAtaque", "origenAccion", "evento",
+        "detalleFinalizacion", "zonaLanzamiento", "detalleEvento", "cambioPosesion"})
+public class FilaExportacionDTO {
+    
+    private Integer idPartido;
+    private LocalDate fecha;
+    private String competicion;
+    private String temporada;
+    private String nombreEquipoLocal;
+    private String nombreEquipoVisitante;
+    
+    private Integer idAccion;
+    private Integer secuencia;
+    private Integer idPosesion;
+    // Los enums se copian tal cual vienen de la base de datos
+    private String equipoAccion;
+    private String tipoAtaque;
+    private String origenAccion;
+    private String evento;
+    private String detalleFinalizacion;
+    private String zonaLanzamiento;
+    private String detalleEvento;
+    private Boolean cambioPosesion;
+}
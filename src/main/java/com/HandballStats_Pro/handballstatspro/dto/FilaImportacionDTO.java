@@ -0,0 +1,38 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import com.HandballStats_Pro.handballstatspro.enums.*;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * Una fila del fichero de importación: una acción con los datos de su partido repetidos.
+ * Las filas con la misma clavePartido forman un partido y sus acciones se registran en el orden del fichero.
+ * En CSV las cabeceras son estos mismos nombres de campo.
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class FilaImportacionDTO {
+    
+    // Datos del partido (se toman de su primera fila)
+    private String clavePartido;
+    private String nombreEquipoLocal;
+    private String nombreEquipoVisitante;
+    private Long idEquipoLocalAsociado;
+    private Long idEquipoVisitanteAsociado;
+    private LocalDate fecha;
+    private String resultado;
+    private String competicion;
+    
+    // Datos de la acción
+    private Integer idPosesion;
+    private EquipoAccion equipoAccion;
+    private TipoAtaque tipoAtaque;
+    private OrigenAccion origenAccion;
+    private Evento evento;
+    private DetalleFinalizacion detalleFinalizacion;
+    private ZonaLanzamiento zonaLanzamiento;
+    private DetalleEvento detalleEvento;
+    private Boolean cambioPosesion;
+}
@@ -0,0 +1,17 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Lo que sigue a un estado, de más a menos probable
+@Data
+public class FilaTransicionesDTO {
+
+    private EstadoAccionDTO desde;
+
+    private int total;
+
+    private List<TransicionDTO> siguientes = new ArrayList<>();
+}
@@ -0,0 +1,19 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import com.HandballStats_Pro.handballstatspro.enums.EquipoAccion;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Un gol de la progresión del marcador y cómo queda el marcador tras él
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GolMarcadorDTO {
+    private Integer secuencia;
+    // Número de la posesión (reconstruida en el servidor) en que se marcó
+    private Integer numeroPosesion;
+    private EquipoAccion equipo;
+    private int golesLocal;
+    private int golesVisitante;
+}
@@ -0,0 +1,17 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import com.HandballStats_Pro.handballstatspro.enums.DimensionAccion;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+// Una combinación de valores de las dimensiones agrupadas y sus acciones
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GrupoAnalisisDTO {
+    private Map<DimensionAccion, String> valores;
+    private int acciones;
+}
@@ -0,0 +1,21 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class InformeImportacionDTO {
+    
+    private long filasLeidas;
+    
+    private int partidosCreados;
+    
+    private long accionesCreadas;
+    
+    private long filasConError;
+    
+    // Detalle de las primeras filas con error; el resto solo se cuenta en filasConError
+    private List<ErrorImportacionDTO> errores = new ArrayList<>();
+}
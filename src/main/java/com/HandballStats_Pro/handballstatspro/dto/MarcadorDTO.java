@@ -0,0 +1,13 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MarcadorDTO {
+    private int golesLocal;
+    private int golesVisitante;
+}
@@ -0,0 +1,12 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import lombok.Data;
+
+// Trama que envía el anotador por el canal WebSocket; "ref" la elige el cliente y vuelve en la respuesta
+@Data
+public class MensajeAnotadorDTO {
+    
+    private String ref;
+    
+    private AccionDTO accion;
+}
@@ -0,0 +1,21 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+// Un partido del historial entre dos equipos, con los goles de cada uno según sus acciones
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PartidoEnfrentamientoDTO {
+    private Integer idPartido;
+    private LocalDate fecha;
+    private String competicion;
+    // true si el equipo consultado jugó de local
+    private boolean local;
+    private int golesEquipo;
+    private int golesRival;
+}
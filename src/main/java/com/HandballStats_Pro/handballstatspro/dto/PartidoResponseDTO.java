@@ -16,6 +16,8 @@ public class PartidoResponseDTO {
     private LocalDate fecha;
     @Pattern(regexp = "^$|\\d+-\\d+$", message = "El formato del resultado debe ser 'numero-numero' o estar vacío")
     private String resultado;
+    // Derivado de las acciones de Gol (null si el partido todavía no se ha derivado)
+    private MarcadorDTO marcador;
     private String competicion;
     private LocalDateTime fechaRegistro;
     private Long idUsuarioRegistro;
@@ -0,0 +1,18 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import com.HandballStats_Pro.handballstatspro.enums.CriterioClasificacion;
+import lombok.Data;
+
+// Valor del equipo en un criterio, su percentil en la competición y el resumen de la distribución
+@Data
+public class PercentilDTO {
+    private CriterioClasificacion criterio;
+    private double valor;
+    // Equipos a los que mejora más la mitad de los que iguala (él incluido), en %; en las pérdidas mejora quien tiene menos
+    private double percentil;
+    private double p10;
+    private double p25;
+    private double mediana;
+    private double p75;
+    private double p90;
+}
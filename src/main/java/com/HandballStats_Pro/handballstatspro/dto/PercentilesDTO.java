@@ -0,0 +1,21 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class PercentilesDTO {
+
+    private Long idEquipo;
+
+    private String competicion;
+
+    private String temporada;
+
+    // Equipos de la competición que forman la distribución
+    private int equipos;
+
+    private List<PercentilDTO> criterios = new ArrayList<>();
+}
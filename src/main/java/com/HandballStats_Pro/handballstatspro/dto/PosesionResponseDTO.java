@@ -0,0 +1,21 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import com.HandballStats_Pro.handballstatspro.enums.EquipoAccion;
+import com.HandballStats_Pro.handballstatspro.enums.Evento;
+import com.HandballStats_Pro.handballstatspro.enums.TipoAtaque;
+import lombok.Data;
+
+@Data
+public class PosesionResponseDTO {
+    
+    private Integer numero;
+    private EquipoAccion equipo;
+    private TipoAtaque tipoAtaque;
+    private Integer secuenciaInicio;
+    private Integer secuenciaFin;
+    private int numeroAcciones;
+    private int lanzamientos;
+    private int goles;
+    private Evento resultado;
+    private boolean cerrada;
+}
@@ -0,0 +1,16 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class ProgresionMarcadorDTO {
+
+    private Integer idPartido;
+
+    private MarcadorDTO marcador;
+
+    private List<GolMarcadorDTO> goles = new ArrayList<>();
+}
@@ -0,0 +1,29 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import com.HandballStats_Pro.handballstatspro.enums.EstadoRecalculo;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class RecalculoDTO {
+
+    private long id;
+
+    private EstadoRecalculo estado;
+
+    private int partidosTotales;
+
+    private int partidosProcesados;
+
+    // Partidos que no se pudieron recalcular; sus equipos se reconstruyen uno a uno al final
+    private int errores;
+
+    private int equipos;
+
+    private int clubes;
+
+    private LocalDateTime inicio;
+
+    private LocalDateTime fin;
+}
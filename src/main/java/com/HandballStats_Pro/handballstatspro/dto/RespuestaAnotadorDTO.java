@@ -0,0 +1,30 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Confirmación (ok + acción creada) o error de validación para una trama del anotador
+@Data
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RespuestaAnotadorDTO {
+    
+    private String ref;
+    
+    private boolean ok;
+    
+    private AccionResponseDTO accion;
+    
+    private String codigo;
+    
+    private String mensaje;
+    
+    public static RespuestaAnotadorDTO confirmada(String ref, AccionResponseDTO accion) {
+        return new RespuestaAnotadorDTO(ref, true, accion, null, null);
+    }
+    
+    public static RespuestaAnotadorDTO error(String ref, String codigo, String mensaje) {
+        return new RespuestaAnotadorDTO(ref, false, null, codigo, mensaje);
+    }
+}
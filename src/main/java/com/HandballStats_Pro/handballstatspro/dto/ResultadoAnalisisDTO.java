@@ -0,0 +1,14 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Acciones que cumplen los filtros y, si se pidió agrupar, su reparto (solo grupos con acciones)
+@Data
+public class ResultadoAnalisisDTO {
+    private int partidos;
+    private int acciones;
+    private List<GrupoAnalisisDTO> grupos = new ArrayList<>();
+}
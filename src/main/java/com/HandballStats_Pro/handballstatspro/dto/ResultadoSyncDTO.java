@@ -0,0 +1,24 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import com.HandballStats_Pro.handballstatspro.enums.EstadoSincronizacion;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ResultadoSyncDTO {
+
+    private String claveCliente;
+    private EstadoSincronizacion estado;
+
+    // Acción creada o la que ya existía con esa clave (CREADA / DUPLICADA)
+    private AccionResponseDTO accion;
+
+    // Motivo del rechazo (RECHAZADA)
+    private String codigo;
+    private String mensaje;
+}
@@ -0,0 +1,16 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import lombok.Data;
+
+// Lanzamientos de una celda o corte del cubo, por resultado
+@Data
+public class ResultadosLanzamientoDTO {
+    private int lanzamientos;
+    private int goles;
+    private int paradasPortero;
+    private int bloqueos;
+    private int palos;
+    private int fueraDirecto;
+    // Goles por lanzamiento (0 si no hay lanzamientos)
+    private double eficiencia;
+}
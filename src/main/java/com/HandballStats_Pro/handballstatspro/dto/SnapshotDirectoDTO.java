@@ -0,0 +1,20 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Primer mensaje del stream: estado completo del partido; después solo llegan deltas
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SnapshotDirectoDTO {
+    private Integer idPartido;
+    private String nombreEquipoLocal;
+    private String nombreEquipoVisitante;
+    private MarcadorDTO marcador;
+    private EstadisticasDirectoDTO estadisticas;
+    private List<AccionResponseDTO> acciones;
+}
@@ -0,0 +1,15 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransicionDTO {
+    private EstadoAccionDTO hacia;
+    private int veces;
+    // veces / total de la fila
+    private double probabilidad;
+}
@@ -0,0 +1,22 @@
+package com.HandballStats_Pro.handballstatspro.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class TransicionesDTO {
+
+    private Integer idPartido;
+
+    private Long idEquipo;
+
+    private String temporada;
+
+    private int partidos;
+
+    private int transiciones;
+
+    private List<FilaTransicionesDTO> filas = new ArrayList<>();
+}
@@ -7,20 +7,34 @@ import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 
 @Entity
-@Table(name = "accion")
+@Table(name = "accion", indexes = {
+    @Index(name = "idx_accion_partido", columnList = "id_partido, id_accion"),
+    @Index(name = "idx_accion_partido_revision", columnList = "id_partido, revision")
+}, uniqueConstraints = {
+    @UniqueConstraint(name = "uk_accion_clave_cliente", columnNames = "clave_cliente"),
+    @UniqueConstraint(name = "uk_accion_partido_secuencia", columnNames = {"id_partido", "secuencia"})
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Accion {
+
+    public static final int TAMANO_BLOQUE_IDS = 50;
     
+    // Identificadores reservados en bloques (pooled-lo) para que Hibernate pueda agrupar los INSERT en lotes JDBC
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "accion_seq")
+    @SequenceGenerator(name = "accion_seq", sequenceName = "accion_seq", allocationSize = Accion.TAMANO_BLOQUE_IDS)
     @Column(name = "id_accion")
     private Integer idAccion;
     
     @Column(name = "id_partido", nullable = false)
     private Integer idPartido;
     
+    // Orden de la acción dentro de su partido (1, 2, 3...), asignado por el servidor al registrarla
+    @Column(name = "secuencia")
+    private Integer secuencia;
+    
     @Column(name = "id_posesion", nullable = false)
     private Integer idPosesion;
     
@@ -55,6 +69,14 @@ public class Accion {
     @Column(name = "cambio_posesion", nullable = false)
     private Boolean cambioPosesion;
     
+    // Clave de idempotencia generada por el dispositivo que registró la acción (opcional)
+    @Column(name = "clave_cliente", length = 64)
+    private String claveCliente;
+    
+    // Revisión del partido en la que se creó o editó por última vez (cursor de la sincronización incremental)
+    @Column(name = "revision")
+    private Long revision;
+    
     // Relación con Partido
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "id_partido", insertable = false, updatable = false)
@@ -0,0 +1,28 @@
+package com.HandballStats_Pro.handballstatspro.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Marca de borrado de una acción: permite a la sincronización incremental avisar de las acciones eliminadas
+@Entity
+@Table(name = "accion_eliminada", indexes = {
+    @Index(name = "idx_accion_eliminada_partido_revision", columnList = "id_partido, revision")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccionEliminada {
+    
+    @Id
+    @Column(name = "id_accion")
+    private Integer idAccion;
+    
+    @Column(name = "id_partido", nullable = false)
+    private Integer idPartido;
+    
+    // Revisión del partido en la que se borró la acción
+    @Column(name = "revision", nullable = false)
+    private Long revision;
+}
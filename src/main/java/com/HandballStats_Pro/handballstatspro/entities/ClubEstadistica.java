@@ -0,0 +1,28 @@
+package com.HandballStats_Pro.handballstatspro.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Acumulado de los equipos de un club en una temporada y categoría (suma de sus EquipoEstadistica)
+@Entity
+@Table(name = "club_estadistica")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClubEstadistica {
+    
+    @EmbeddedId
+    private ClubEstadisticaId id;
+    
+    @Column(name = "partidos", nullable = false)
+    private int partidos;
+    
+    @Column(name = "acciones", nullable = false)
+    private int acciones;
+    
+    @Lob
+    @Column(name = "contadores", nullable = false, columnDefinition = "BLOB")
+    private byte[] contadores;
+}
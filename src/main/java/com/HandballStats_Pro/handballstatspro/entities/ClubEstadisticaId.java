@@ -0,0 +1,21 @@
+package com.HandballStats_Pro.handballstatspro.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import java.io.Serializable;
+import lombok.*;
+
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClubEstadisticaId implements Serializable {
+    @Column(name = "id_club")
+    private Long idClub;
+    
+    @Column(name = "temporada", length = 10)
+    private String temporada;
+    
+    @Column(name = "categoria")
+    private String categoria;
+}
@@ -0,0 +1,30 @@
+package com.HandballStats_Pro.handballstatspro.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Acumulado de temporada de un equipo: la parte LOCAL de los contadores es el propio equipo y la
+// VISITANTE sus rivales, jugara de local o de visitante (ver EstadisticasTemporadaService)
+@Entity
+@Table(name = "equipo_estadistica")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EquipoEstadistica {
+    
+    @Id
+    @Column(name = "id_equipo")
+    private Long idEquipo;
+    
+    @Column(name = "partidos", nullable = false)
+    private int partidos;
+    
+    @Column(name = "acciones", nullable = false)
+    private int acciones;
+    
+    @Lob
+    @Column(name = "contadores", nullable = false, columnDefinition = "BLOB")
+    private byte[] contadores;
+}
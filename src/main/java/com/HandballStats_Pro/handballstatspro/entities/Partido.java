@@ -6,7 +6,13 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "partido")
+// El índice (local, visitante) resuelve los enfrentamientos entre dos equipos en cualquier orden; el de
+// visitante cubre las búsquedas por equipo que solo miran ese lado
+@Table(name = "partido", indexes = {
+    @Index(name = "idx_partido_local_visitante", columnList = "id_equipo_local_asociado, id_equipo_visitante_asociado"),
+    @Index(name = "idx_partido_visitante_local", columnList = "id_equipo_visitante_asociado, id_equipo_local_asociado"),
+    @Index(name = "idx_partido_competicion", columnList = "competicion")
+})
 @Data
 public class Partido {
     @Id
@@ -40,4 +46,17 @@ public class Partido {
 
     @Column(name = "competicion", length = 100)
     private String competicion;
+
+    // Marcador derivado de las acciones de Gol. Solo lo escribe MarcadorService con UPDATE; null en los
+    // partidos anteriores hasta que se derivan al arrancar. resultado sigue siendo el texto que introduce el usuario
+    @Column(name = "goles_local", updatable = false)
+    private Integer golesLocal;
+
+    @Column(name = "goles_visitante", updatable = false)
+    private Integer golesVisitante;
+
+    // Contador de cambios en las acciones del partido (altas, ediciones y borrados). Solo lo avanza
+    // AccionService con un UPDATE atómico; la entidad nunca lo escribe
+    @Column(name = "revision_acciones", insertable = false, updatable = false, columnDefinition = "bigint not null default 0")
+    private Long revisionAcciones;
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package com.HandballStats_Pro.handballstatspro.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Estadísticas materializadas de un partido: los contadores de EstadisticasPartido en binario (ver EstadisticasService)
+@Entity
+@Table(name = "partido_estadistica")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PartidoEstadistica {
+    
+    @Id
+    @Column(name = "id_partido")
+    private Integer idPartido;
+    
+    @Column(name = "acciones", nullable = false)
+    private int acciones;
+    
+    @Lob
+    @Column(name = "contadores", nullable = false, columnDefinition = "BLOB")
+    private byte[] contadores;
+}
@@ -0,0 +1,64 @@
+package com.HandballStats_Pro.handballstatspro.entities;
+
+import com.HandballStats_Pro.handballstatspro.enums.EquipoAccion;
+import com.HandballStats_Pro.handballstatspro.enums.Evento;
+import com.HandballStats_Pro.handballstatspro.enums.TipoAtaque;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Posesión reconstruida por el servidor a partir de la secuencia de acciones del partido (ver PosesionService)
+@Entity
+@Table(name = "posesion", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_posesion_partido_numero", columnNames = {"id_partido", "numero"})
+})
+@Data
+@NoArgsConstructor
+public class Posesion {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id_posesion")
+    private Long idPosesion;
+    
+    @Column(name = "id_partido", nullable = false)
+    private Integer idPartido;
+    
+    // Orden de la posesión dentro del partido (1, 2, 3...)
+    @Column(name = "numero", nullable = false)
+    private Integer numero;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "equipo", nullable = false)
+    private EquipoAccion equipo;
+    
+    // Tipo de ataque con el que terminó (el de su última acción)
+    @Enumerated(EnumType.STRING)
+    @Column(name = "tipo_ataque", nullable = false)
+    private TipoAtaque tipoAtaque;
+    
+    // Secuencias de su primera y última acción
+    @Column(name = "secuencia_inicio", nullable = false)
+    private Integer secuenciaInicio;
+    
+    @Column(name = "secuencia_fin", nullable = false)
+    private Integer secuenciaFin;
+    
+    @Column(name = "numero_acciones", nullable = false)
+    private int numeroAcciones;
+    
+    @Column(name = "lanzamientos", nullable = false)
+    private int lanzamientos;
+    
+    @Column(name = "goles", nullable = false)
+    private int goles;
+    
+    // Evento de su última acción
+    @Enumerated(EnumType.STRING)
+    @Column(name = "resultado", nullable = false)
+    private Evento resultado;
+    
+    // false mientras la última acción no haya cambiado la posesión (posesión en curso)
+    @Column(name = "cerrada", nullable = false)
+    private boolean cerrada;
+}
@@ -0,0 +1,23 @@
+package com.HandballStats_Pro.handballstatspro.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Goles del partido en orden de secuencia, en binario (ver MarcadorService)
+@Entity
+@Table(name = "progresion_marcador")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProgresionMarcador {
+
+    @Id
+    @Column(name = "id_partido")
+    private Integer idPartido;
+
+    @Lob
+    @Column(name = "goles", nullable = false, columnDefinition = "BLOB")
+    private byte[] goles;
+}
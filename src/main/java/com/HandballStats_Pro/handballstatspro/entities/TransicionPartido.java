@@ -0,0 +1,32 @@
+package com.HandballStats_Pro.handballstatspro.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Transiciones entre acciones consecutivas de un partido: la matriz de MatrizTransiciones en binario
+// y la última acción, para encadenar la siguiente sin releer el partido (ver TransicionesService)
+@Entity
+@Table(name = "transicion_partido")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransicionPartido {
+
+    @Id
+    @Column(name = "id_partido")
+    private Integer idPartido;
+
+    // 0 si el partido aún no tiene acciones
+    @Column(name = "ultima_secuencia", nullable = false)
+    private int ultimaSecuencia;
+
+    // Lado * ESTADOS + estado de la última acción; -1 si no hay
+    @Column(name = "ultimo_estado", nullable = false)
+    private int ultimoEstado;
+
+    @Lob
+    @Column(name = "transiciones", nullable = false, columnDefinition = "BLOB")
+    private byte[] transiciones;
+}
@@ -0,0 +1,18 @@
+package com.HandballStats_Pro.handballstatspro.enums;
+
+// Criterio de orden de la clasificación de una competición; en las pérdidas, menos es mejor
+public enum CriterioClasificacion {
+    GOLES_POR_POSESION(false),
+    PORCENTAJE_LANZAMIENTO(false),
+    PERDIDAS_POR_POSESION(true);
+
+    private final boolean ascendente;
+
+    CriterioClasificacion(boolean ascendente) {
+        this.ascendente = ascendente;
+    }
+
+    public boolean isAscendente() {
+        return ascendente;
+    }
+}
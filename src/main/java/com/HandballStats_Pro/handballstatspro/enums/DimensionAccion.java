@@ -0,0 +1,30 @@
+package com.HandballStats_Pro.handballstatspro.enums;
+
+// Dimensiones por las que se filtran y agrupan acciones en el análisis: las de la acción tienen
+// un enum de valores; las del partido (competición, temporada, partido) toman los valores del partido
+public enum DimensionAccion {
+    EQUIPO(EquipoAccion.class),
+    TIPO_ATAQUE(TipoAtaque.class),
+    ORIGEN(OrigenAccion.class),
+    EVENTO(Evento.class),
+    FINALIZACION(DetalleFinalizacion.class),
+    ZONA(ZonaLanzamiento.class),
+    DETALLE_EVENTO(DetalleEvento.class),
+    COMPETICION(null),
+    TEMPORADA(null),
+    PARTIDO(null);
+
+    private final Class<? extends Enum<?>> tipo;
+
+    DimensionAccion(Class<? extends Enum<?>> tipo) {
+        this.tipo = tipo;
+    }
+
+    public boolean esDeAccion() {
+        return tipo != null;
+    }
+
+    public Enum<?>[] getValores() {
+        return tipo.getEnumConstants();
+    }
+}
@@ -0,0 +1,8 @@
+package com.HandballStats_Pro.handballstatspro.enums;
+
+public enum EstadoRecalculo {
+    EN_CURSO,
+    COMPLETADO,
+    CANCELADO,
+    FALLIDO
+}
@@ -0,0 +1,22 @@
+package com.HandballStats_Pro.handballstatspro.enums;
+
+public enum FormatoExportacion {
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv", "csv");
+
+    private final String tipoContenido;
+    private final String extension;
+
+    FormatoExportacion(String tipoContenido, String extension) {
+        this.tipoContenido = tipoContenido;
+        this.extension = extension;
+    }
+
+    public String getTipoContenido() {
+        return tipoContenido;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
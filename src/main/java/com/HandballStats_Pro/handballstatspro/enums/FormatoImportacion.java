@@ -0,0 +1,6 @@
+package com.HandballStats_Pro.handballstatspro.enums;
+
+public enum FormatoImportacion {
+    CSV,
+    JSON
+}
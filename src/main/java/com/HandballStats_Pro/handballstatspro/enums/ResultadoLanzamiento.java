@@ -0,0 +1,10 @@
+package com.HandballStats_Pro.handballstatspro.enums;
+
+// Resultado de un lanzamiento: el evento y, si no es gol, su detalle
+public enum ResultadoLanzamiento {
+    Gol,
+    Parada_Portero,
+    Bloqueo_Defensor,
+    Palo,
+    Fuera_Directo
+}
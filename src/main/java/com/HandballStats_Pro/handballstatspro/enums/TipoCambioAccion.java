@@ -0,0 +1,7 @@
+package com.HandballStats_Pro.handballstatspro.enums;
+
+public enum TipoCambioAccion {
+    CREADA,
+    ACTUALIZADA,
+    ELIMINADA
+}
@@ -0,0 +1,15 @@
+package com.HandballStats_Pro.handballstatspro.repositories;
+
+import com.HandballStats_Pro.handballstatspro.entities.AccionEliminada;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface AccionEliminadaRepository extends JpaRepository<AccionEliminada, Integer> {
+    
+    // Borrados posteriores a una revisión (índice id_partido, revision)
+    List<AccionEliminada> findByIdPartidoAndRevisionGreaterThanOrderByRevisionAsc(Integer idPartido, Long revision, Limit limit);
+}
@@ -1,11 +1,14 @@
 package com.HandballStats_Pro.handballstatspro.repositories;
 
 import com.HandballStats_Pro.handballstatspro.entities.Accion;
+import com.HandballStats_Pro.handballstatspro.enums.Evento;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.query.Param;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,16 +18,61 @@ public interface AccionRepository extends JpaRepository<Accion, Integer> {
     // Buscar acciones por partido
     List<Accion> findByIdPartidoOrderByIdAccionAsc(Integer idPartido);
     
+    // Acciones del partido en el orden en que se registraron
+    List<Accion> findByIdPartidoOrderBySecuenciaAsc(Integer idPartido);
+    
+    // Goles del partido en orden (reconstrucción del marcador)
+    List<Accion> findByIdPartidoAndEventoOrderBySecuenciaAsc(Integer idPartido, Evento evento);
+    
+    // Tramos de la secuencia del partido (reconstrucción de posesiones)
+    List<Accion> findByIdPartidoAndSecuenciaGreaterThanEqualOrderBySecuenciaAsc(Integer idPartido, Integer secuencia);
+    
+    List<Accion> findByIdPartidoAndSecuenciaLessThanOrderBySecuenciaAsc(Integer idPartido, Integer secuencia);
+    
     // Buscar acciones por partido y posesión
     List<Accion> findByIdPartidoAndIdPosesionOrderByIdAccionAsc(Integer idPartido, Integer idPosesion);
     
+    // Consultas top-1 sobre el índice (id_partido, id_accion)
+    Optional<Accion> findFirstByIdPartidoAndIdAccionLessThanOrderByIdAccionDesc(Integer idPartido, Integer idAccion);
+    
+    Optional<Accion> findFirstByIdPartidoOrderByIdAccionDesc(Integer idPartido);
+    
+    // Consultas top-1 sobre el índice (id_partido, secuencia): vecinas de una acción en el orden del partido
+    Optional<Accion> findFirstByIdPartidoAndSecuenciaLessThanOrderBySecuenciaDesc(Integer idPartido, Integer secuencia);
+    
+    Optional<Accion> findFirstByIdPartidoAndSecuenciaGreaterThanOrderBySecuenciaAsc(Integer idPartido, Integer secuencia);
+    
+    // Lectura con bloqueo (SELECT ... FOR UPDATE): devuelve la última versión confirmada
+    // aunque la transacción ya tenga una instantánea anterior al commit de otro anotador
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<Accion> findFirstByIdPartidoOrderBySecuenciaDesc(Integer idPartido);
+    
     // Buscar la acción inmediatamente anterior en el mismo partido
-    @Query("SELECT a FROM Accion a WHERE a.idPartido = :idPartido AND a.idAccion < :idAccion ORDER BY a.idAccion DESC")
-    Optional<Accion> findPreviousActionInMatch(@Param("idPartido") Integer idPartido, @Param("idAccion") Integer idAccion);
+    default Optional<Accion> findPreviousActionInMatch(Integer idPartido, Integer idAccion) {
+        return findFirstByIdPartidoAndIdAccionLessThanOrderByIdAccionDesc(idPartido, idAccion);
+    }
+    
+    // Acciones anterior y siguiente en la secuencia del partido (revalidación de ediciones y borrados)
+    default Optional<Accion> findPreviousInSequence(Integer idPartido, Integer secuencia) {
+        return findFirstByIdPartidoAndSecuenciaLessThanOrderBySecuenciaDesc(idPartido, secuencia);
+    }
+    
+    default Optional<Accion> findNextInSequence(Integer idPartido, Integer secuencia) {
+        return findFirstByIdPartidoAndSecuenciaGreaterThanOrderBySecuenciaAsc(idPartido, secuencia);
+    }
     
     // Buscar la última acción en un partido (útil para validaciones secuenciales)
-    @Query("SELECT a FROM Accion a WHERE a.idPartido = :idPartido ORDER BY a.idAccion DESC")
-    Optional<Accion> findLastActionInMatch(@Param("idPartido") Integer idPartido);
+    default Optional<Accion> findLastActionInMatch(Integer idPartido) {
+        return findFirstByIdPartidoOrderBySecuenciaDesc(idPartido);
+    }
+    
+    // Sincronización incremental: acciones creadas o editadas después de una revisión (índice id_partido, revision)
+    List<Accion> findByIdPartidoAndRevisionGreaterThanOrderByRevisionAsc(Integer idPartido, Long revision, Limit limit);
+    
+    // Búsquedas por clave de idempotencia (índice único uk_accion_clave_cliente)
+    Optional<Accion> findByClaveCliente(String claveCliente);
+    
+    List<Accion> findByClaveClienteIn(Collection<String> clavesCliente);
     
     // Contar acciones por partido
     long countByIdPartido(Integer idPartido);
@@ -0,0 +1,27 @@
+package com.HandballStats_Pro.handballstatspro.repositories;
+
+import com.HandballStats_Pro.handballstatspro.entities.ClubEstadistica;
+import com.HandballStats_Pro.handballstatspro.entities.ClubEstadisticaId;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ClubEstadisticaRepository extends JpaRepository<ClubEstadistica, ClubEstadisticaId> {
+    
+    // Lectura con bloqueo (SELECT ... FOR UPDATE) para aplicar un delta sobre la última versión confirmada
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<ClubEstadistica> findParaActualizarById(ClubEstadisticaId id);
+
+    // Fila vacía si aún no existe (sin error si otra transacción la creó antes), para poder bloquearla
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO club_estadistica (id_club, temporada, categoria, partidos, acciones, contadores) " +
+                   "VALUES (:idClub, :temporada, :categoria, 0, 0, '')", nativeQuery = true)
+    int crearSiFalta(@Param("idClub") Long idClub, @Param("temporada") String temporada, @Param("categoria") String categoria);
+}
@@ -0,0 +1,26 @@
+package com.HandballStats_Pro.handballstatspro.repositories;
+
+import com.HandballStats_Pro.handballstatspro.entities.EquipoEstadistica;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface EquipoEstadisticaRepository extends JpaRepository<EquipoEstadistica, Long> {
+    
+    // Lectura con bloqueo (SELECT ... FOR UPDATE) para aplicar un delta sobre la última versión confirmada
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<EquipoEstadistica> findParaActualizarByIdEquipo(Long idEquipo);
+
+    // Fila vacía si aún no existe (sin error si otra transacción la creó antes), para poder bloquearla
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO equipo_estadistica (id_equipo, partidos, acciones, contadores) " +
+                   "VALUES (:idEquipo, 0, 0, '')", nativeQuery = true)
+    int crearSiFalta(@Param("idEquipo") Long idEquipo);
+}
@@ -0,0 +1,18 @@
+package com.HandballStats_Pro.handballstatspro.repositories;
+
+import com.HandballStats_Pro.handballstatspro.entities.PartidoEstadistica;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface PartidoEstadisticaRepository extends JpaRepository<PartidoEstadistica, Integer> {
+    
+    // Lectura con bloqueo (SELECT ... FOR UPDATE): ve la última versión confirmada aunque la
+    // transacción que aplica el delta empezara antes de que otra reconstruyera la fila
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<PartidoEstadistica> findParaActualizarByIdPartido(Integer idPartido);
+}
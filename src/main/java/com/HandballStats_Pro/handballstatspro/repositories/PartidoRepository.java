@@ -14,12 +14,34 @@ import java.util.List;
 @Repository
 public interface PartidoRepository extends JpaRepository<Partido, Integer> {
 
+    // Equipos asociados de un partido, sin cargar la entidad
+    interface EquiposPartido {
+        Integer getIdPartido();
+        Long getIdEquipoLocalAsociado();
+        Long getIdEquipoVisitanteAsociado();
+    }
+
     List<Partido> findByFecha(LocalDate fecha);
 
+    // Partidos de una competición (índice idx_partido_competicion)
+    List<Partido> findByCompeticion(String competicion);
+
+    @Query("SELECT p.idPartido FROM Partido p ORDER BY p.idPartido")
+    List<Integer> findAllIds();
+
+    @Query("SELECT p.idPartido AS idPartido, p.idEquipoLocalAsociado AS idEquipoLocalAsociado, " +
+           "p.idEquipoVisitanteAsociado AS idEquipoVisitanteAsociado FROM Partido p ORDER BY p.idPartido")
+    List<EquiposPartido> findEquiposAsociados();
+
     // NUEVA consulta para obtener partidos donde el usuario gestiona AL MENOS UNO de los equipos
     @Query("SELECT p FROM Partido p WHERE p.idEquipoLocalAsociado IN :equipoIds OR p.idEquipoVisitanteAsociado IN :equipoIds")
     List<Partido> findPartidosByEquiposAsociados(@Param("equipoIds") List<Long> equipoIds);
 
+    // Partidos entre dos equipos asociados, en cualquier orden (índice idx_partido_local_visitante)
+    @Query("SELECT p FROM Partido p WHERE (p.idEquipoLocalAsociado = :idEquipo AND p.idEquipoVisitanteAsociado = :idRival) " +
+           "OR (p.idEquipoLocalAsociado = :idRival AND p.idEquipoVisitanteAsociado = :idEquipo) ORDER BY p.fecha, p.idPartido")
+    List<Partido> findEnfrentamientos(@Param("idEquipo") Long idEquipo, @Param("idRival") Long idRival);
+
     // Consulta para obtener partidos de equipos vinculados a un gestor (por club)
     @Query("SELECT p FROM Partido p WHERE p.idEquipoLocalAsociado IN " +
            "(SELECT e.idEquipo FROM Equipo e WHERE e.club.idClub IN " +
@@ -67,4 +89,26 @@ public interface PartidoRepository extends JpaRepository<Partido, Integer> {
        */
        @Query("SELECT p FROM Partido p WHERE p.idUsuarioRegistro = :idUsuario AND p.idEquipoLocalAsociado IS NULL AND p.idEquipoVisitanteAsociado IS NULL")
        List<Partido> findScoutingPartidosByRegistrador(@Param("idUsuario") Long idUsuario);
+
+    // Contador de revisiones de las acciones del partido: el UPDATE bloquea la fila hasta el commit
+    @Modifying
+    @Query(value = "UPDATE partido SET revision_acciones = revision_acciones + :n WHERE id_partido = :idPartido", nativeQuery = true)
+    int avanzarRevisionAcciones(@Param("idPartido") Integer idPartido, @Param("n") int n);
+
+    @Query(value = "SELECT revision_acciones FROM partido WHERE id_partido = :idPartido", nativeQuery = true)
+    long findRevisionAcciones(@Param("idPartido") Integer idPartido);
+
+    // Marcador derivado (ver MarcadorService)
+    @Modifying
+    @Query(value = "UPDATE partido SET goles_local = goles_local + :local, goles_visitante = goles_visitante + :visitante " +
+                   "WHERE id_partido = :idPartido", nativeQuery = true)
+    int sumarGoles(@Param("idPartido") Integer idPartido, @Param("local") int local, @Param("visitante") int visitante);
+
+    @Modifying
+    @Query(value = "UPDATE partido SET goles_local = :local, goles_visitante = :visitante WHERE id_partido = :idPartido",
+           nativeQuery = true)
+    int fijarGoles(@Param("idPartido") Integer idPartido, @Param("local") int local, @Param("visitante") int visitante);
+
+    @Query(value = "SELECT id_partido FROM partido WHERE goles_local IS NULL OR goles_visitante IS NULL", nativeQuery = true)
+    List<Integer> findIdsSinMarcador();
 }
\ No newline at end of file
@@ -0,0 +1,43 @@
+package com.HandballStats_Pro.handballstatspro.repositories;
+
+import com.HandballStats_Pro.handballstatspro.entities.Posesion;
+import com.HandballStats_Pro.handballstatspro.enums.EquipoAccion;
+import com.HandballStats_Pro.handballstatspro.enums.TipoAtaque;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PosesionRepository extends JpaRepository<Posesion, Long> {
+    
+    // Totales de un grupo de posesiones (equipo y tipo de ataque)
+    interface ResumenPosesiones {
+        EquipoAccion getEquipo();
+        TipoAtaque getTipoAtaque();
+        long getPosesiones();
+        long getAcciones();
+        long getLanzamientos();
+        long getGoles();
+    }
+    
+    List<Posesion> findByIdPartidoOrderByNumeroAsc(Integer idPartido);
+    
+    // Última posesión del partido: la que puede alargar una acción nueva
+    Optional<Posesion> findFirstByIdPartidoOrderByNumeroDesc(Integer idPartido);
+    
+    // Posesión que contiene una secuencia (la última que empieza en ella o antes)
+    Optional<Posesion> findFirstByIdPartidoAndSecuenciaInicioLessThanEqualOrderByNumeroDesc(Integer idPartido, Integer secuencia);
+    
+    List<Posesion> findByIdPartidoAndNumeroGreaterThanEqualOrderByNumeroAsc(Integer idPartido, Integer numero);
+    
+    long countByIdPartido(Integer idPartido);
+    
+    @Query("SELECT p.equipo AS equipo, p.tipoAtaque AS tipoAtaque, COUNT(p) AS posesiones, " +
+           "SUM(p.numeroAcciones) AS acciones, SUM(p.lanzamientos) AS lanzamientos, SUM(p.goles) AS goles " +
+           "FROM Posesion p WHERE p.idPartido = :idPartido GROUP BY p.equipo, p.tipoAtaque")
+    List<ResumenPosesiones> resumirPorPartido(@Param("idPartido") Integer idPartido);
+}
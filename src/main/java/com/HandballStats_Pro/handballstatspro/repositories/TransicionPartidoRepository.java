@@ -0,0 +1,17 @@
+package com.HandballStats_Pro.handballstatspro.repositories;
+
+import com.HandballStats_Pro.handballstatspro.entities.TransicionPartido;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface TransicionPartidoRepository extends JpaRepository<TransicionPartido, Integer> {
+    
+    // Lectura con bloqueo (SELECT ... FOR UPDATE), como en PartidoEstadisticaRepository
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<TransicionPartido> findParaActualizarByIdPartido(Integer idPartido);
+}
@@ -0,0 +1,25 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.dto.AccionResponseDTO;
+import com.HandballStats_Pro.handballstatspro.enums.TipoCambioAccion;
+
+/**
+ * Evento de aplicación que publica AccionService cada vez que cambian las acciones de
+ * un partido. Lleva una copia de la acción antes y después del cambio (null cuando no
+ * aplica), de modo que los oyentes pueden restar lo antiguo y sumar lo nuevo sin
+ * volver a consultar la base de datos.
+ */
+public record AccionEvento(TipoCambioAccion tipo, Integer idPartido, AccionResponseDTO antes, AccionResponseDTO despues) {
+
+    public static AccionEvento creada(AccionResponseDTO accion) {
+        return new AccionEvento(TipoCambioAccion.CREADA, accion.getIdPartido(), null, accion);
+    }
+
+    public static AccionEvento actualizada(AccionResponseDTO antes, AccionResponseDTO despues) {
+        return new AccionEvento(TipoCambioAccion.ACTUALIZADA, despues.getIdPartido(), antes, despues);
+    }
+
+    public static AccionEvento eliminada(AccionResponseDTO accion) {
+        return new AccionEvento(TipoCambioAccion.ELIMINADA, accion.getIdPartido(), accion, null);
+    }
+}
@@ -1,92 +1,269 @@
 package com.HandballStats_Pro.handballstatspro.services;
 
+import com.HandballStats_Pro.handballstatspro.config.TrazaValidacion;
 import com.HandballStats_Pro.handballstatspro.dto.AccionDTO;
 import com.HandballStats_Pro.handballstatspro.dto.AccionResponseDTO;
 import com.HandballStats_Pro.handballstatspro.dto.AccionUpdateDTO;
+import com.HandballStats_Pro.handballstatspro.dto.CambiosAccionesDTO;
+import com.HandballStats_Pro.handballstatspro.dto.ResultadoSyncDTO;
 import com.HandballStats_Pro.handballstatspro.entities.Accion;
+import com.HandballStats_Pro.handballstatspro.entities.AccionEliminada;
 import com.HandballStats_Pro.handballstatspro.entities.Partido;
 import com.HandballStats_Pro.handballstatspro.entities.Usuario;
 import com.HandballStats_Pro.handballstatspro.enums.*;
 import com.HandballStats_Pro.handballstatspro.exceptions.PermissionDeniedException;
 import com.HandballStats_Pro.handballstatspro.exceptions.ResourceNotFoundException;
 import com.HandballStats_Pro.handballstatspro.exceptions.ApiException;
+import com.HandballStats_Pro.handballstatspro.repositories.AccionEliminadaRepository;
 import com.HandballStats_Pro.handballstatspro.repositories.AccionRepository;
 import com.HandballStats_Pro.handballstatspro.repositories.PartidoRepository;
 import com.HandballStats_Pro.handballstatspro.repositories.UsuarioRepository;
+import com.HandballStats_Pro.handballstatspro.services.UltimaAccionCache.EstadoCola;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.http.HttpStatus;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import jakarta.transaction.Transactional;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 public class AccionService {
     
     private final AccionRepository accionRepository;
+    private final AccionEliminadaRepository accionEliminadaRepository;
     private final PartidoRepository partidoRepository;
     private final UsuarioRepository usuarioRepository;
     private final PartidoService partidoService;
+    private final UltimaAccionCache ultimaAccionCache;
+    private final TablaReglasAccion tablaReglasAccion;
+    private final ClavesClienteRecientes clavesClienteRecientes;
+    private final BloqueoPartidos bloqueoPartidos;
+    private final DiarioAcciones diarioAcciones;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transaccion;
     
-    public AccionService(AccionRepository accionRepository, PartidoRepository partidoRepository, 
-                        UsuarioRepository usuarioRepository, PartidoService partidoService) {
+    private static final int LIMITE_MAXIMO_CAMBIOS = 1000;
+    
+    public AccionService(AccionRepository accionRepository, AccionEliminadaRepository accionEliminadaRepository,
+                        PartidoRepository partidoRepository, 
+                        UsuarioRepository usuarioRepository, PartidoService partidoService,
+                        UltimaAccionCache ultimaAccionCache, TablaReglasAccion tablaReglasAccion,
+                        ClavesClienteRecientes clavesClienteRecientes, BloqueoPartidos bloqueoPartidos,
+                        DiarioAcciones diarioAcciones, ApplicationEventPublisher eventPublisher,
+                        PlatformTransactionManager transactionManager) {
         this.accionRepository = accionRepository;
+        this.accionEliminadaRepository = accionEliminadaRepository;
         this.partidoRepository = partidoRepository;
         this.usuarioRepository = usuarioRepository;
         this.partidoService = partidoService;
+        this.ultimaAccionCache = ultimaAccionCache;
+        this.tablaReglasAccion = tablaReglasAccion;
+        this.clavesClienteRecientes = clavesClienteRecientes;
+        this.bloqueoPartidos = bloqueoPartidos;
+        this.diarioAcciones = diarioAcciones;
+        this.eventPublisher = eventPublisher;
+        // La sincronización se repite en una transacción nueva si choca con una clave guardada por otra petición
+        this.transaccion = new TransactionTemplate(transactionManager);
     }
     
     @Transactional
     public AccionResponseDTO crearAccion(AccionDTO accionDTO) {
-        System.out.println("🔥 ==> INICIO CREACIÓN DE ACCIÓN <== 🔥");
-        System.out.println("📊 Datos recibidos: " + accionDTO);
+        log.debug("Creando acción: {}", accionDTO);
         
         // Verificar que el partido existe
-        System.out.println("🔍 Verificando existencia del partido ID: " + accionDTO.getIdPartido());
         Partido partido = partidoRepository.findById(accionDTO.getIdPartido())
-                .orElseThrow(() -> {
-                    System.out.println("❌ ERROR: Partido no encontrado con ID: " + accionDTO.getIdPartido());
-                    return new ResourceNotFoundException("Partido", "id", String.valueOf(accionDTO.getIdPartido()));
-                });
-        System.out.println("✅ Partido encontrado: " + partido.getNombreEquipoLocal() + " vs " + partido.getNombreEquipoVisitante());
+                .orElseThrow(() -> new ResourceNotFoundException("Partido", "id", String.valueOf(accionDTO.getIdPartido())));
         
         // Verificar permisos sobre el partido
-        System.out.println("🔐 Verificando permisos de acceso al partido...");
         if (!partidoService.puedeAccederPartido(partido)) {
-            System.out.println("❌ ERROR: Permisos denegados para acceder al partido");
+            log.debug("Permiso denegado para crear acciones en el partido {}", partido.getIdPartido());
             throw new PermissionDeniedException();
         }
-        System.out.println("✅ Permisos verificados correctamente");
+        
+        return registrarAccion(partido, accionDTO);
+    }
+    
+    // Para el canal WebSocket del anotador: los permisos sobre el partido se comprobaron una vez al abrir la sesión
+    @Transactional
+    public AccionResponseDTO crearAccionAutorizada(AccionDTO accionDTO) {
+        Partido partido = partidoRepository.findById(accionDTO.getIdPartido())
+                .orElseThrow(() -> new ResourceNotFoundException("Partido", "id", String.valueOf(accionDTO.getIdPartido())));
+        return registrarAccion(partido, accionDTO);
+    }
+    
+    private AccionResponseDTO registrarAccion(Partido partido, AccionDTO accionDTO) {
+        // Un solo anotador a la vez añade acciones a este partido
+        bloqueoPartidos.bloquearHastaFinTransaccion(partido.getIdPartido());
+        
+        // Reenvío de una acción ya registrada: se devuelve la existente sin volver a validarla
+        if (accionDTO.getClaveCliente() != null) {
+            Optional<Accion> existente = buscarPorClaveCliente(accionDTO.getClaveCliente());
+            if (existente.isPresent()) {
+                comprobarMismoPartido(existente.get(), accionDTO);
+                log.debug("Acción con clave {} ya registrada como {}", accionDTO.getClaveCliente(), existente.get().getIdAccion());
+                return mapToResponseDTO(existente.get(), partido);
+            }
+        }
         
         // Aplicar todas las reglas de validación
-        System.out.println("📋 Iniciando proceso de validación de reglas...");
-        validarAccion(accionDTO);
-        System.out.println("✅ Todas las reglas de validación pasaron correctamente");
+        EstadoCola anterior = obtenerUltimaAccion(accionDTO.getIdPartido());
+        validarReglasIndividuales(accionDTO);
+        validarRegla5_LogicaSecuencial(accionDTO, anterior);
         
         // Crear la acción
-        System.out.println("💾 Creando nueva acción en la base de datos...");
-        Accion accion = new Accion();
-        accion.setIdPartido(accionDTO.getIdPartido());
-        accion.setIdPosesion(accionDTO.getIdPosesion());
-        accion.setEquipoAccion(accionDTO.getEquipoAccion());
-        accion.setTipoAtaque(accionDTO.getTipoAtaque());
-        accion.setOrigenAccion(accionDTO.getOrigenAccion());
-        accion.setEvento(accionDTO.getEvento());
-        accion.setDetalleFinalizacion(accionDTO.getDetalleFinalizacion());
-        accion.setZonaLanzamiento(accionDTO.getZonaLanzamiento());
-        accion.setDetalleEvento(accionDTO.getDetalleEvento());
-        accion.setCambioPosesion(accionDTO.getCambioPosesion());
+        Accion accion = construirAccion(accionDTO);
+        accion.setSecuencia(anterior.siguienteSecuencia());
+        
+        Accion nuevaAccion = guardarNueva(accion);
+        log.debug("Acción {} creada en el partido {}", nuevaAccion.getIdAccion(), nuevaAccion.getIdPartido());
+        
+        return mapToResponseDTO(nuevaAccion, partido);
+    }
+    
+    @Transactional
+    public List<AccionResponseDTO> crearAccionesLote(List<AccionDTO> acciones) {
+        Integer idPartido = acciones.get(0).getIdPartido();
+        boolean mismoPartido = acciones.stream().allMatch(a -> idPartido.equals(a.getIdPartido()));
+        if (!mismoPartido) {
+            throw new ApiException(HttpStatus.BAD_REQUEST, "BATCH_MIXED_MATCHES", "Todas las acciones del lote deben pertenecer al mismo partido");
+        }
+        
+        // Una sola búsqueda del partido y una sola comprobación de permisos para todo el lote
+        Partido partido = partidoRepository.findById(idPartido)
+                .orElseThrow(() -> new ResourceNotFoundException("Partido", "id", String.valueOf(idPartido)));
+        if (!partidoService.puedeAccederPartido(partido)) {
+            throw new PermissionDeniedException();
+        }
+        bloqueoPartidos.bloquearHastaFinTransaccion(idPartido);
+        
+        // La regla 5 y la secuencia parten de la última acción del partido y después se encadenan en memoria
+        EstadoCola anterior = obtenerUltimaAccion(idPartido);
+        List<Accion> nuevas = new ArrayList<>(acciones.size());
+        for (int i = 0; i < acciones.size(); i++) {
+            AccionDTO accionDTO = acciones.get(i);
+            try {
+                validarReglasIndividuales(accionDTO);
+                validarRegla5_LogicaSecuencial(accionDTO, anterior);
+            } catch (ApiException e) {
+                throw new ApiException(e.getStatus(), e.getErrorCode(), "Acción " + i + " del lote: " + e.getMessage());
+            }
+            Accion accion = construirAccion(accionDTO);
+            accion.setSecuencia(anterior.siguienteSecuencia());
+            nuevas.add(accion);
+            anterior = EstadoCola.de(accion);
+        }
+        
+        List<Accion> guardadas = guardarNuevas(nuevas);
+        return guardadas.stream()
+                .map(accion -> mapToResponseDTO(accion, partido))
+                .collect(Collectors.toList());
+    }
+    
+    // Sincroniza la cola pendiente de un dispositivo. Cada acción se resuelve por separado
+    // (creada, duplicada o rechazada) y todas las nuevas se guardan en un único lote.
+    public List<ResultadoSyncDTO> sincronizarAcciones(List<AccionDTO> acciones) {
+        try {
+            return transaccion.execute(estado -> sincronizarEnTransaccion(acciones));
+        } catch (ApiException e) {
+            if (!"DUPLICATE_CLIENT_KEY".equals(e.getErrorCode())) {
+                throw e;
+            }
+            // Una clave se guardó en otro partido entre la búsqueda y el INSERT: al repetir la
+            // sincronización la búsqueda ya la encuentra y queda como resultado de su acción
+            log.debug("Sincronización repetida tras una clave de cliente concurrente");
+            return transaccion.execute(estado -> sincronizarEnTransaccion(acciones));
+        }
+    }
+    
+    private List<ResultadoSyncDTO> sincronizarEnTransaccion(List<AccionDTO> acciones) {
+        // Se bloquean todos los partidos afectados de una vez y en orden, para que dos
+        // sincronizaciones con los mismos partidos no puedan esperarse mutuamente. Las claves
+        // se buscan después: un reenvío concurrente al mismo partido ya ha confirmado las suyas
+        acciones.stream()
+                .map(AccionDTO::getIdPartido)
+                .distinct()
+                .sorted()
+                .forEach(bloqueoPartidos::bloquearHastaFinTransaccion);
+        
+        Map<String, Accion> porClave = buscarPorClavesCliente(acciones.stream()
+                .map(AccionDTO::getClaveCliente)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet()));
+        
+        Map<Integer, Partido> autorizados = new HashMap<>();
+        Map<Integer, ApiException> denegados = new HashMap<>();
+        Map<Integer, EstadoCola> colas = new HashMap<>();
+        
+        ResultadoSyncDTO[] resultados = new ResultadoSyncDTO[acciones.size()];
+        Accion[] accionesResultado = new Accion[acciones.size()];
+        List<Accion> nuevas = new ArrayList<>();
+        
+        for (int i = 0; i < acciones.size(); i++) {
+            AccionDTO accionDTO = acciones.get(i);
+            String clave = accionDTO.getClaveCliente();
+            try {
+                if (clave == null) {
+                    throw new ApiException(HttpStatus.BAD_REQUEST, "CLIENT_KEY_REQUIRED", "Cada acción sincronizada debe incluir su clave de cliente");
+                }
+                autorizarPartido(accionDTO.getIdPartido(), autorizados, denegados);
+                
+                Accion existente = porClave.get(clave);
+                if (existente != null) {
+                    comprobarMismoPartido(existente, accionDTO);
+                    resultados[i] = new ResultadoSyncDTO(clave, EstadoSincronizacion.DUPLICADA, null, null, null);
+                    accionesResultado[i] = existente;
+                    continue;
+                }
+                
+                // La regla 5 se encadena con la última acción aceptada del mismo partido
+                validarReglasIndividuales(accionDTO);
+                EstadoCola anterior = colas.computeIfAbsent(accionDTO.getIdPartido(), this::obtenerUltimaAccion);
+                validarRegla5_LogicaSecuencial(accionDTO, anterior);
+            } catch (ApiException e) {
+                resultados[i] = new ResultadoSyncDTO(clave, EstadoSincronizacion.RECHAZADA, null, e.getErrorCode(), e.getMessage());
+                continue;
+            }
+            
+            Accion accion = construirAccion(accionDTO);
+            accion.setSecuencia(colas.get(accion.getIdPartido()).siguienteSecuencia());
+            nuevas.add(accion);
+            porClave.put(clave, accion);
+            colas.put(accion.getIdPartido(), EstadoCola.de(accion));
+            resultados[i] = new ResultadoSyncDTO(clave, EstadoSincronizacion.CREADA, null, null, null);
+            accionesResultado[i] = accion;
+        }
         
-        Accion nuevaAccion = accionRepository.save(accion);
-        System.out.println("✅ Acción guardada exitosamente con ID: " + nuevaAccion.getIdAccion());
+        if (!nuevas.isEmpty()) {
+            guardarNuevas(nuevas);
+        }
         
-        AccionResponseDTO response = mapToResponseDTO(nuevaAccion, partido);
-        System.out.println("🎉 ==> FIN CREACIÓN DE ACCIÓN EXITOSA <== 🎉");
-        return response;
+        // Las acciones nuevas ya tienen su id tras guardarse
+        for (int i = 0; i < resultados.length; i++) {
+            if (accionesResultado[i] != null) {
+                resultados[i].setAccion(mapToResponseDTO(accionesResultado[i], autorizados.get(accionesResultado[i].getIdPartido())));
+            }
+        }
+        log.debug("Sincronización de {} acciones: {} nuevas", acciones.size(), nuevas.size());
+        return Arrays.asList(resultados);
     }
     
     public List<AccionResponseDTO> listarAccionesPorPartido(Integer idPartido) {
@@ -99,11 +276,70 @@ public class AccionService {
             throw new PermissionDeniedException();
         }
         
-        return accionRepository.findByIdPartidoOrderByIdAccionAsc(idPartido).stream()
+        return accionRepository.findByIdPartidoOrderBySecuenciaAsc(idPartido).stream()
                 .map(accion -> mapToResponseDTO(accion, partido))
                 .collect(Collectors.toList());
     }
     
+    // Sincronización incremental: cambios del partido posteriores a la revisión "since" (0 = todo),
+    // paginados por revisión. Cada página cuesta dos consultas top-N sobre índices (id_partido, revision).
+    // Las dos consultas leen la misma instantánea (REPEATABLE READ): un cambio no puede quedar por
+    // detrás del cursor devuelto sin haber salido en la página
+    @org.springframework.transaction.annotation.Transactional(readOnly = true)
+    public CambiosAccionesDTO obtenerCambiosPorPartido(Integer idPartido, long since, int limite) {
+        if (limite < 1 || limite > LIMITE_MAXIMO_CAMBIOS) {
+            throw new ApiException(HttpStatus.BAD_REQUEST, "INVALID_PAGE_SIZE", "El límite debe estar entre 1 y " + LIMITE_MAXIMO_CAMBIOS);
+        }
+        
+        // Con el diario, una revisión se confirma antes de que su acción llegue a la tabla: el cursor no
+        // puede pasar de la primera pendiente. Se mira con el partido bloqueado (nadie está anotando) y
+        // antes de la primera lectura, para que la instantánea sea posterior
+        long revisionMaxima = Long.MAX_VALUE;
+        if (diarioAcciones.activo()) {
+            bloqueoPartidos.bloquearHastaFinTransaccion(idPartido);
+            Long pendiente = diarioAcciones.primeraRevisionPendiente(idPartido);
+            if (pendiente != null) {
+                revisionMaxima = pendiente;
+            }
+        }
+        
+        Partido partido = partidoRepository.findById(idPartido)
+                .orElseThrow(() -> new ResourceNotFoundException("Partido", "id", String.valueOf(idPartido)));
+        if (!partidoService.puedeAccederPartido(partido)) {
+            throw new PermissionDeniedException();
+        }
+        
+        // Un elemento de más en cada lista indica si queda otra página
+        Limit tope = Limit.of(limite + 1);
+        List<Accion> acciones = accionRepository.findByIdPartidoAndRevisionGreaterThanOrderByRevisionAsc(idPartido, since, tope);
+        List<AccionEliminada> eliminadas = accionEliminadaRepository.findByIdPartidoAndRevisionGreaterThanOrderByRevisionAsc(idPartido, since, tope);
+        
+        // Mezcla de las dos listas ordenadas por revisión hasta completar la página
+        CambiosAccionesDTO cambios = new CambiosAccionesDTO();
+        long revision = since;
+        int i = 0;
+        int j = 0;
+        while (i + j < limite && (i < acciones.size() || j < eliminadas.size())) {
+            boolean tomarAccion = j == eliminadas.size()
+                    || (i < acciones.size() && acciones.get(i).getRevision() < eliminadas.get(j).getRevision());
+            if ((tomarAccion ? acciones.get(i).getRevision() : eliminadas.get(j).getRevision()) >= revisionMaxima) {
+                break;
+            }
+            if (tomarAccion) {
+                Accion accion = acciones.get(i++);
+                cambios.getAcciones().add(mapToResponseDTO(accion, partido));
+                revision = accion.getRevision();
+            } else {
+                AccionEliminada eliminada = eliminadas.get(j++);
+                cambios.getEliminadas().add(eliminada.getIdAccion());
+                revision = eliminada.getRevision();
+            }
+        }
+        cambios.setRevision(revision);
+        cambios.setHayMas(i < acciones.size() || j < eliminadas.size());
+        return cambios;
+    }
+    
     public AccionResponseDTO obtenerAccionPorId(Integer id) {
         Accion accion = accionRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Accion", "id", String.valueOf(id)));
@@ -121,33 +357,25 @@ public class AccionService {
     
     @Transactional
     public AccionResponseDTO actualizarAccion(Integer id, AccionUpdateDTO dto) {
-        System.out.println("🔥 ==> INICIO ACTUALIZACIÓN DE ACCIÓN <== 🔥");
-        System.out.println("📊 ID de acción a actualizar: " + id);
-        System.out.println("📊 Datos de actualización: " + dto);
+        log.debug("Actualizando acción {}: {}", id, dto);
+        
+        // Las reglas se comprueban contra la base de datos: no puede quedar nada en el diario
+        diarioAcciones.volcarPendientes();
         
         Accion accion = accionRepository.findById(id)
-                .orElseThrow(() -> {
-                    System.out.println("❌ ERROR: Acción no encontrada con ID: " + id);
-                    return new ResourceNotFoundException("Accion", "id", String.valueOf(id));
-                });
-        System.out.println("✅ Acción encontrada: " + accion);
+                .orElseThrow(() -> new ResourceNotFoundException("Accion", "id", String.valueOf(id)));
         
         Partido partido = partidoRepository.findById(accion.getIdPartido())
-                .orElseThrow(() -> {
-                    System.out.println("❌ ERROR: Partido no encontrado con ID: " + accion.getIdPartido());
-                    return new ResourceNotFoundException("Partido", "id", String.valueOf(accion.getIdPartido()));
-                });
+                .orElseThrow(() -> new ResourceNotFoundException("Partido", "id", String.valueOf(accion.getIdPartido())));
         
         // Verificar permisos sobre el partido
-        System.out.println("🔐 Verificando permisos de acceso al partido...");
         if (!partidoService.puedeAccederPartido(partido)) {
-            System.out.println("❌ ERROR: Permisos denegados para actualizar la acción");
+            log.debug("Permiso denegado para actualizar la acción {}", id);
             throw new PermissionDeniedException();
         }
-        System.out.println("✅ Permisos verificados correctamente");
+        bloqueoPartidos.bloquearHastaFinTransaccion(accion.getIdPartido());
         
         // Crear DTO temporal para validación
-        System.out.println("🔄 Creando DTO temporal con valores combinados para validación...");
         AccionDTO tempDTO = new AccionDTO();
         tempDTO.setIdPartido(accion.getIdPartido());
         tempDTO.setIdPosesion(accion.getIdPosesion());
@@ -159,56 +387,53 @@ public class AccionService {
         tempDTO.setZonaLanzamiento(dto.getZonaLanzamiento() != null ? dto.getZonaLanzamiento() : accion.getZonaLanzamiento());
         tempDTO.setDetalleEvento(dto.getDetalleEvento() != null ? dto.getDetalleEvento() : accion.getDetalleEvento());
         tempDTO.setCambioPosesion(dto.getCambioPosesion() != null ? dto.getCambioPosesion() : accion.getCambioPosesion());
-        System.out.println("📊 DTO temporal creado: " + tempDTO);
         
-        // Validar los cambios
-        System.out.println("📋 Iniciando proceso de validación de actualización...");
-        validarAccion(tempDTO);
-        System.out.println("✅ Todas las reglas de validación pasaron correctamente para la actualización");
+        // Validar los cambios: reglas 1-4 sobre la propia acción y regla 5 contra sus vecinas en la secuencia
+        validarReglasIndividuales(tempDTO);
+        revalidarEdicion(accion, tempDTO);
         
-        // Actualizar campos
-        System.out.println("💾 Aplicando cambios a la acción...");
+        AccionResponseDTO antes = mapToResponseDTO(accion, partido);
+        
+        // Actualizar campos (la revisión se reserva antes de ensuciar la entidad: el UPDATE nativo vuelca el contexto)
+        accion.setRevision(reservarRevisiones(accion.getIdPartido(), 1));
         if (dto.getEquipoAccion() != null) {
-            System.out.println("🔄 Actualizando equipoAccion: " + accion.getEquipoAccion() + " -> " + dto.getEquipoAccion());
             accion.setEquipoAccion(dto.getEquipoAccion());
         }
         if (dto.getTipoAtaque() != null) {
-            System.out.println("🔄 Actualizando tipoAtaque: " + accion.getTipoAtaque() + " -> " + dto.getTipoAtaque());
             accion.setTipoAtaque(dto.getTipoAtaque());
         }
         if (dto.getOrigenAccion() != null) {
-            System.out.println("🔄 Actualizando origenAccion: " + accion.getOrigenAccion() + " -> " + dto.getOrigenAccion());
             accion.setOrigenAccion(dto.getOrigenAccion());
         }
         if (dto.getEvento() != null) {
-            System.out.println("🔄 Actualizando evento: " + accion.getEvento() + " -> " + dto.getEvento());
             accion.setEvento(dto.getEvento());
         }
         if (dto.getDetalleFinalizacion() != null) {
-            System.out.println("🔄 Actualizando detalleFinalizacion: " + accion.getDetalleFinalizacion() + " -> " + dto.getDetalleFinalizacion());
             accion.setDetalleFinalizacion(dto.getDetalleFinalizacion());
         }
         if (dto.getZonaLanzamiento() != null) {
-            System.out.println("🔄 Actualizando zonaLanzamiento: " + accion.getZonaLanzamiento() + " -> " + dto.getZonaLanzamiento());
             accion.setZonaLanzamiento(dto.getZonaLanzamiento());
         }
         if (dto.getDetalleEvento() != null) {
-            System.out.println("🔄 Actualizando detalleEvento: " + accion.getDetalleEvento() + " -> " + dto.getDetalleEvento());
             accion.setDetalleEvento(dto.getDetalleEvento());
         }
         if (dto.getCambioPosesion() != null) {
-            System.out.println("🔄 Actualizando cambioPosesion: " + accion.getCambioPosesion() + " -> " + dto.getCambioPosesion());
             accion.setCambioPosesion(dto.getCambioPosesion());
         }
         
         Accion accionActualizada = accionRepository.save(accion);
-        System.out.println("✅ Acción actualizada exitosamente");
-        System.out.println("🎉 ==> FIN ACTUALIZACIÓN DE ACCIÓN EXITOSA <== 🎉");
-        return mapToResponseDTO(accionActualizada, partido);
+        ultimaAccionCache.registrarActualizada(accionActualizada);
+        log.debug("Acción {} actualizada", id);
+        
+        AccionResponseDTO despues = mapToResponseDTO(accionActualizada, partido);
+        eventPublisher.publishEvent(AccionEvento.actualizada(antes, despues));
+        return despues;
     }
     
     @Transactional
     public void eliminarAccion(Integer id) {
+        diarioAcciones.volcarPendientes();
+        
         Accion accion = accionRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Accion", "id", String.valueOf(id)));
         
@@ -219,329 +444,347 @@ public class AccionService {
         if (!partidoService.puedeAccederPartido(partido)) {
             throw new PermissionDeniedException();
         }
+        bloqueoPartidos.bloquearHastaFinTransaccion(accion.getIdPartido());
+        
+        // Al quitar la acción, su sucesora pasa a seguir a su antecesora
+        Optional<Accion> sucesora = accionRepository.findNextInSequence(accion.getIdPartido(), accion.getSecuencia());
+        if (sucesora.isPresent()) {
+            EstadoCola antecesora = accionRepository.findPreviousInSequence(accion.getIdPartido(), accion.getSecuencia())
+                    .map(EstadoCola::de)
+                    .orElse(UltimaAccionCache.SIN_ACCIONES);
+            validarSucesora(sucesora.get(), antecesora);
+        }
         
-        accionRepository.delete(accion);
+        borrarAccion(accion, partido);
     }
     
-    // MÉTODOS DE VALIDACIÓN - IMPLEMENTACIÓN DE LAS 5 REGLAS
-    
-    private void validarAccion(AccionDTO accionDTO) {
-        System.out.println("🔍 ==> INICIANDO VALIDACIÓN COMPLETA DE ACCIÓN <== 🔍");
-        System.out.println("📊 Datos a validar: " + accionDTO);
-        
-        System.out.println("📋 [REGLA 1] Validando caso especial de 7 metros...");
-        validarRegla1_7Metros(accionDTO);
-        
-        System.out.println("📋 [REGLA 2] Validando lógica del tipo de ataque...");
-        validarRegla2_TipoAtaque(accionDTO);
+    // Deshacer la última acción del partido: es la cola de la secuencia, así que no hay nada que revalidar
+    @Transactional
+    public AccionResponseDTO deshacerUltimaAccion(Integer idPartido) {
+        diarioAcciones.volcarPendientes();
         
-        System.out.println("📋 [REGLA 3] Validando lógica del evento principal...");
-        validarRegla3_EventoPrincipal(accionDTO);
+        Partido partido = partidoRepository.findById(idPartido)
+                .orElseThrow(() -> new ResourceNotFoundException("Partido", "id", String.valueOf(idPartido)));
         
-        System.out.println("📋 [REGLA 4] Validando lógica de cambio de posesión...");
-        validarRegla4_CambioPosesion(accionDTO);
+        if (!partidoService.puedeAccederPartido(partido)) {
+            throw new PermissionDeniedException();
+        }
+        bloqueoPartidos.bloquearHastaFinTransaccion(idPartido);
         
-        System.out.println("📋 [REGLA 5] Validando lógica secuencial...");
-        validarRegla5_LogicaSecuencial(accionDTO);
+        Accion ultima = accionRepository.findLastActionInMatch(idPartido)
+                .orElseThrow(() -> new ApiException(HttpStatus.NOT_FOUND, "NO_ACTIONS_TO_UNDO", "El partido no tiene acciones que deshacer"));
+        log.debug("Deshaciendo la acción {} (secuencia {}) del partido {}", ultima.getIdAccion(), ultima.getSecuencia(), idPartido);
         
-        System.out.println("✅ ==> TODAS LAS VALIDACIONES COMPLETADAS EXITOSAMENTE <== ✅");
+        return borrarAccion(ultima, partido);
     }
     
-    // Regla 1: El Caso Especial de 7 Metros
-    private void validarRegla1_7Metros(AccionDTO accionDTO) {
-        System.out.println("🎯 [REGLA 1] Validando caso especial de 7 metros");
-        System.out.println("   📊 OrigenAccion: " + accionDTO.getOrigenAccion());
-        System.out.println("   📊 DetalleFinalizacion: " + accionDTO.getDetalleFinalizacion());
-        System.out.println("   📊 TipoAtaque: " + accionDTO.getTipoAtaque());
-        
-        if (accionDTO.getOrigenAccion() == OrigenAccion._7m) {
-            System.out.println("   🔍 Detectado origen_accion = '7m' - Aplicando validaciones específicas");
-            
-            if (accionDTO.getDetalleFinalizacion() != DetalleFinalizacion._7m) {
-                System.out.println("   ❌ ERROR: Si origen_accion es '7m', detalle_finalizacion debe ser '7m'");
-                System.out.println("   💡 Valor esperado: " + DetalleFinalizacion._7m + ", valor actual: " + accionDTO.getDetalleFinalizacion());
-                throw new ApiException(HttpStatus.BAD_REQUEST, "INVALID_7M_DETAIL", "Si el origen_accion es '7m', detalle_finalizacion debe ser '7m'");
-            }
-            System.out.println("   ✅ DetalleFinalizacion correcto para 7m");
-            
-            if (accionDTO.getTipoAtaque() != TipoAtaque.Posicional) {
-                System.out.println("   ❌ ERROR: Si origen_accion es '7m', tipo_ataque debe ser 'Posicional'");
-                System.out.println("   💡 Valor esperado: " + TipoAtaque.Posicional + ", valor actual: " + accionDTO.getTipoAtaque());
-                throw new ApiException(HttpStatus.BAD_REQUEST, "INVALID_7M_TYPE", "Si el origen_accion es '7m', tipo_ataque debe ser 'Posicional'");
-            }
-            System.out.println("   ✅ TipoAtaque correcto para 7m");
-        } else {
-            System.out.println("   ℹ️ OrigenAccion no es '7m', continuando con validación inversa");
-        }
-        
-        if (accionDTO.getDetalleFinalizacion() == DetalleFinalizacion._7m) {
-            System.out.println("   🔍 Detectado detalle_finalizacion = '7m' - Validando origen_accion");
-            
-            if (accionDTO.getOrigenAccion() != OrigenAccion._7m) {
-                System.out.println("   ❌ ERROR: Si detalle_finalizacion es '7m', origen_accion debe ser '7m'");
-                System.out.println("   💡 Valor esperado: " + OrigenAccion._7m + ", valor actual: " + accionDTO.getOrigenAccion());
-                throw new ApiException(HttpStatus.BAD_REQUEST, "INVALID_7M_ORIGIN", "Si detalle_finalizacion es '7m', origen_accion debe ser '7m'");
-            }
-            System.out.println("   ✅ OrigenAccion correcto para detalle_finalizacion '7m'");
-        }
-        
-        System.out.println("   ✅ [REGLA 1] Validación de 7 metros completada exitosamente");
+    private AccionResponseDTO borrarAccion(Accion accion, Partido partido) {
+        accionRepository.delete(accion);
+        accionEliminadaRepository.save(new AccionEliminada(accion.getIdAccion(), accion.getIdPartido(),
+                reservarRevisiones(accion.getIdPartido(), 1)));
+        ultimaAccionCache.registrarEliminada(accion);
+        clavesClienteRecientes.olvidar(accion.getClaveCliente());
+        
+        AccionResponseDTO eliminada = mapToResponseDTO(accion, partido);
+        eventPublisher.publishEvent(AccionEvento.eliminada(eliminada));
+        return eliminada;
     }
     
-    // Regla 2: Lógica del Tipo de Ataque
-    private void validarRegla2_TipoAtaque(AccionDTO accionDTO) {
-        System.out.println("⚡ [REGLA 2] Validando lógica del tipo de ataque");
-        System.out.println("   📊 TipoAtaque: " + accionDTO.getTipoAtaque());
-        System.out.println("   📊 DetalleFinalizacion: " + accionDTO.getDetalleFinalizacion());
-        
-        if (accionDTO.getTipoAtaque() == TipoAtaque.Contraataque) {
-            System.out.println("   🔍 Detectado tipo_ataque = 'Contraataque' - Validando detalles permitidos");
-            System.out.println("   💡 Detalles válidos para Contraataque: Contragol, 1ª oleada, 2ª oleada, 3ª oleada");
-            
-            if (accionDTO.getDetalleFinalizacion() != DetalleFinalizacion.Contragol && 
-                accionDTO.getDetalleFinalizacion() != DetalleFinalizacion._1a_oleada && 
-                accionDTO.getDetalleFinalizacion() != DetalleFinalizacion._2a_oleada && 
-                accionDTO.getDetalleFinalizacion() != DetalleFinalizacion._3a_oleada) {
-                System.out.println("   ❌ ERROR: Para tipo_ataque 'Contraataque', detalle_finalizacion debe ser uno de los valores específicos");
-                System.out.println("   💡 Valor actual: " + accionDTO.getDetalleFinalizacion() + " (no válido para Contraataque)");
-                throw new ApiException(HttpStatus.BAD_REQUEST, "INVALID_COUNTERATTACK_DETAIL", "Si tipo_ataque es 'Contraataque', detalle_finalizacion debe ser 'Contragol', '1ª oleada', '2ª oleada' o '3ª oleada'");
-            }
-            System.out.println("   ✅ DetalleFinalizacion válido para Contraataque: " + accionDTO.getDetalleFinalizacion());
-        }
-        
-        if (accionDTO.getTipoAtaque() == TipoAtaque.Posicional) {
-            System.out.println("   🔍 Detectado tipo_ataque = 'Posicional' - Validando detalles prohibidos");
-            System.out.println("   💡 Detalles prohibidos para Posicional: Contragol, 1ª oleada, 2ª oleada, 3ª oleada");
-            
-            if (accionDTO.getDetalleFinalizacion() == DetalleFinalizacion.Contragol || 
-                accionDTO.getDetalleFinalizacion() == DetalleFinalizacion._1a_oleada || 
-                accionDTO.getDetalleFinalizacion() == DetalleFinalizacion._2a_oleada || 
-                accionDTO.getDetalleFinalizacion() == DetalleFinalizacion._3a_oleada) {
-                System.out.println("   ❌ ERROR: Para tipo_ataque 'Posicional', detalle_finalizacion no puede ser de contraataque");
-                System.out.println("   💡 Valor actual: " + accionDTO.getDetalleFinalizacion() + " (prohibido para Posicional)");
-                throw new ApiException(HttpStatus.BAD_REQUEST, "INVALID_POSITIONAL_DETAIL", "Si tipo_ataque es 'Posicional', detalle_finalizacion no puede ser 'Contragol', '1ª oleada', '2ª oleada' o '3ª oleada'");
-            }
-            System.out.println("   ✅ DetalleFinalizacion válido para Posicional: " + accionDTO.getDetalleFinalizacion());
-        }
-        
-        System.out.println("   ✅ [REGLA 2] Validación de tipo de ataque completada exitosamente");
+    // IMPORTACIÓN MASIVA (ImportacionService): mismas reglas y misma escritura que crearAccion, pero la
+    // cola de cada partido la lleva el importador en memoria y los partidos son suyos recién creados
+    
+    Accion validarParaImportacion(AccionDTO accionDTO, EstadoCola anterior) {
+        validarReglasIndividuales(accionDTO);
+        validarRegla5_LogicaSecuencial(accionDTO, anterior);
+        Accion accion = construirAccion(accionDTO);
+        accion.setSecuencia(anterior.siguienteSecuencia());
+        return accion;
     }
     
-    // Regla 3: Lógica del Evento Principal
-    private void validarRegla3_EventoPrincipal(AccionDTO accionDTO) {
-        System.out.println("🎪 [REGLA 3] Validando lógica del evento principal");
-        System.out.println("   📊 Evento: " + accionDTO.getEvento());
-        System.out.println("   📊 DetalleFinalizacion: " + accionDTO.getDetalleFinalizacion());
-        System.out.println("   📊 ZonaLanzamiento: " + accionDTO.getZonaLanzamiento());
-        System.out.println("   📊 DetalleEvento: " + accionDTO.getDetalleEvento());
-        
-        switch (accionDTO.getEvento()) {
-            case Gol:
-                System.out.println("   ⚽ Validando evento 'Gol'");
-                if (accionDTO.getDetalleFinalizacion() == null || accionDTO.getZonaLanzamiento() == null) {
-                    System.out.println("   ❌ ERROR: Para evento 'Gol', detalle_finalizacion y zona_lanzamiento son obligatorios");
-                    System.out.println("   💡 DetalleFinalizacion: " + accionDTO.getDetalleFinalizacion() + " (debe ser no nulo)");
-                    System.out.println("   💡 ZonaLanzamiento: " + accionDTO.getZonaLanzamiento() + " (debe ser no nulo)");
-                    throw new ApiException(HttpStatus.BAD_REQUEST, "GOAL_REQUIRED_FIELDS", "Para evento 'Gol', detalle_finalizacion y zona_lanzamiento son obligatorios");
-                }
-                if (accionDTO.getDetalleEvento() != null) {
-                    System.out.println("   ❌ ERROR: Para evento 'Gol', detalle_evento debe ser nulo");
-                    System.out.println("   💡 DetalleEvento actual: " + accionDTO.getDetalleEvento() + " (debe ser nulo)");
-                    throw new ApiException(HttpStatus.BAD_REQUEST, "GOAL_INVALID_DETAIL", "Para evento 'Gol', detalle_evento debe ser nulo");
-                }
-                System.out.println("   ✅ Evento 'Gol' validado correctamente");
-                break;
-                
-            case Lanzamiento_Parado:
-                System.out.println("   🛡️ Validando evento 'Lanzamiento_Parado'");
-                if (accionDTO.getDetalleFinalizacion() == null || accionDTO.getZonaLanzamiento() == null) {
-                    System.out.println("   ❌ ERROR: Para evento 'Lanzamiento_Parado', detalle_finalizacion y zona_lanzamiento son obligatorios");
-                    System.out.println("   💡 DetalleFinalizacion: " + accionDTO.getDetalleFinalizacion() + " (debe ser no nulo)");
-                    System.out.println("   💡 ZonaLanzamiento: " + accionDTO.getZonaLanzamiento() + " (debe ser no nulo)");
-                    throw new ApiException(HttpStatus.BAD_REQUEST, "SHOT_STOPPED_REQUIRED_FIELDS", "Para evento 'Lanzamiento_Parado', detalle_finalizacion y zona_lanzamiento son obligatorios");
-                }
-                if (accionDTO.getDetalleEvento() == null) {
-                    System.out.println("   ❌ ERROR: Para evento 'Lanzamiento_Parado', detalle_evento es obligatorio");
-                    System.out.println("   💡 DetalleEvento: " + accionDTO.getDetalleEvento() + " (debe ser no nulo)");
-                    throw new ApiException(HttpStatus.BAD_REQUEST, "SHOT_STOPPED_REQUIRED_DETAIL", "Para evento 'Lanzamiento_Parado', detalle_evento es obligatorio");
-                }
-                if (accionDTO.getDetalleEvento() != DetalleEvento.Parada_Portero && 
-                    accionDTO.getDetalleEvento() != DetalleEvento.Bloqueo_Defensor) {
-                    System.out.println("   ❌ ERROR: Para evento 'Lanzamiento_Parado', detalle_evento debe ser específico");
-                    System.out.println("   💡 Valores válidos: Parada_Portero, Bloqueo_Defensor");
-                    System.out.println("   💡 Valor actual: " + accionDTO.getDetalleEvento());
-                    throw new ApiException(HttpStatus.BAD_REQUEST, "SHOT_STOPPED_INVALID_DETAIL", "Para evento 'Lanzamiento_Parado', detalle_evento debe ser 'Parada_Portero' o 'Bloqueo_Defensor'");
-                }
-                System.out.println("   ✅ Evento 'Lanzamiento_Parado' validado correctamente");
-                break;
-                
-            case Lanzamiento_Fuera:
-                System.out.println("   🎯 Validando evento 'Lanzamiento_Fuera'");
-                if (accionDTO.getDetalleFinalizacion() == null || accionDTO.getZonaLanzamiento() == null) {
-                    System.out.println("   ❌ ERROR: Para evento 'Lanzamiento_Fuera', detalle_finalizacion y zona_lanzamiento son obligatorios");
-                    System.out.println("   💡 DetalleFinalizacion: " + accionDTO.getDetalleFinalizacion() + " (debe ser no nulo)");
-                    System.out.println("   💡 ZonaLanzamiento: " + accionDTO.getZonaLanzamiento() + " (debe ser no nulo)");
-                    throw new ApiException(HttpStatus.BAD_REQUEST, "SHOT_MISSED_REQUIRED_FIELDS", "Para evento 'Lanzamiento_Fuera', detalle_finalizacion y zona_lanzamiento son obligatorios");
-                }
-                if (accionDTO.getDetalleEvento() == null) {
-                    System.out.println("   ❌ ERROR: Para evento 'Lanzamiento_Fuera', detalle_evento es obligatorio");
-                    System.out.println("   💡 DetalleEvento: " + accionDTO.getDetalleEvento() + " (debe ser no nulo)");
-                    throw new ApiException(HttpStatus.BAD_REQUEST, "SHOT_MISSED_REQUIRED_DETAIL", "Para evento 'Lanzamiento_Fuera', detalle_evento es obligatorio");
-                }
-                if (accionDTO.getDetalleEvento() != DetalleEvento.Palo && 
-                    accionDTO.getDetalleEvento() != DetalleEvento.Fuera_Directo) {
-                    System.out.println("   ❌ ERROR: Para evento 'Lanzamiento_Fuera', detalle_evento debe ser específico");
-                    System.out.println("   💡 Valores válidos: Palo, Fuera_Directo");
-                    System.out.println("   💡 Valor actual: " + accionDTO.getDetalleEvento());
-                    throw new ApiException(HttpStatus.BAD_REQUEST, "SHOT_MISSED_INVALID_DETAIL", "Para evento 'Lanzamiento_Fuera', detalle_evento debe ser 'Palo' o 'Fuera_Directo'");
-                }
-                System.out.println("   ✅ Evento 'Lanzamiento_Fuera' validado correctamente");
-                break;
-                
-            case Perdida:
-                System.out.println("   💥 Validando evento 'Perdida'");
-                if (accionDTO.getDetalleFinalizacion() != null || accionDTO.getZonaLanzamiento() != null) {
-                    System.out.println("   ❌ ERROR: Para evento 'Perdida', detalle_finalizacion y zona_lanzamiento deben ser nulos");
-                    System.out.println("   💡 DetalleFinalizacion: " + accionDTO.getDetalleFinalizacion() + " (debe ser nulo)");
-                    System.out.println("   💡 ZonaLanzamiento: " + accionDTO.getZonaLanzamiento() + " (debe ser nulo)");
-                    throw new ApiException(HttpStatus.BAD_REQUEST, "TURNOVER_INVALID_FIELDS", "Para evento 'Perdida', detalle_finalizacion y zona_lanzamiento deben ser nulos");
-                }
-                if (accionDTO.getDetalleEvento() == null) {
-                    System.out.println("   ❌ ERROR: Para evento 'Perdida', detalle_evento es obligatorio");
-                    System.out.println("   💡 DetalleEvento: " + accionDTO.getDetalleEvento() + " (debe ser no nulo)");
-                    throw new ApiException(HttpStatus.BAD_REQUEST, "TURNOVER_REQUIRED_DETAIL", "Para evento 'Perdida', detalle_evento es obligatorio");
-                }
-                if (accionDTO.getDetalleEvento() != DetalleEvento.Pasos && 
-                    accionDTO.getDetalleEvento() != DetalleEvento.Dobles && 
-                    accionDTO.getDetalleEvento() != DetalleEvento.FaltaAtaque && 
-                    accionDTO.getDetalleEvento() != DetalleEvento.Pasivo && 
-                    accionDTO.getDetalleEvento() != DetalleEvento.InvasionArea && 
-                    accionDTO.getDetalleEvento() != DetalleEvento.Robo && 
-                    accionDTO.getDetalleEvento() != DetalleEvento.Pie && 
-                    accionDTO.getDetalleEvento() != DetalleEvento.BalonFuera) {
-                    System.out.println("   ❌ ERROR: Para evento 'Perdida', detalle_evento debe ser uno de los valores específicos");
-                    System.out.println("   💡 Valores válidos: Pasos, Dobles, FaltaAtaque, Pasivo, InvasionArea, Robo, Pie, BalonFuera");
-                    System.out.println("   💡 Valor actual: " + accionDTO.getDetalleEvento());
-                    throw new ApiException(HttpStatus.BAD_REQUEST, "TURNOVER_INVALID_DETAIL", "Para evento 'Perdida', detalle_evento debe ser uno de los valores válidos para pérdida");
-                }
-                System.out.println("   ✅ Evento 'Perdida' validado correctamente");
-                break;
-        }
-        
-        System.out.println("   ✅ [REGLA 3] Validación de evento principal completada exitosamente");
+    // Guarda un bloque de acciones ya validadas dentro de la transacción del llamador
+    List<Accion> guardarImportadas(List<Accion> acciones) {
+        acciones.stream()
+                .map(Accion::getIdPartido)
+                .distinct()
+                .sorted()
+                .forEach(bloqueoPartidos::bloquearHastaFinTransaccion);
+        return guardarNuevas(acciones);
     }
     
-    // Regla 4: Lógica de Cambio de Posesión
-    private void validarRegla4_CambioPosesion(AccionDTO accionDTO) {
-        System.out.println("🔄 [REGLA 4] Validando lógica de cambio de posesión");
-        System.out.println("   📊 CambioPosesion actual: " + accionDTO.getCambioPosesion());
-        System.out.println("   📊 Evento: " + accionDTO.getEvento());
-        System.out.println("   📊 DetalleEvento: " + accionDTO.getDetalleEvento());
-        
-        boolean deberiaCambiarPosesion = true;
-        
-        // Casos donde NO cambia la posesión
-        System.out.println("   🔍 Analizando casos donde NO debería cambiar la posesión...");
-        
-        if (accionDTO.getEvento() == Evento.Lanzamiento_Parado && 
-            (accionDTO.getDetalleEvento() == DetalleEvento.Parada_Portero || 
-             accionDTO.getDetalleEvento() == DetalleEvento.Bloqueo_Defensor)) {
-            deberiaCambiarPosesion = false;
-            System.out.println("   ✅ Caso detectado: Lanzamiento_Parado con Parada_Portero/Bloqueo_Defensor -> NO cambia posesión");
-        }
-        
-        if (accionDTO.getEvento() == Evento.Lanzamiento_Fuera && 
-            accionDTO.getDetalleEvento() == DetalleEvento.Palo) {
-            deberiaCambiarPosesion = false;
-            System.out.println("   ✅ Caso detectado: Lanzamiento_Fuera con Palo -> NO cambia posesión");
-        }
-        
-        System.out.println("   💡 Cambio de posesión calculado: " + deberiaCambiarPosesion);
-        System.out.println("   💡 Cambio de posesión proporcionado: " + accionDTO.getCambioPosesion());
-        
-        if (accionDTO.getCambioPosesion() != deberiaCambiarPosesion) {
-            System.out.println("   ❌ ERROR: El valor de cambio_posesion no coincide con las reglas establecidas");
-            System.out.println("   💡 Valor esperado: " + deberiaCambiarPosesion);
-            System.out.println("   💡 Valor proporcionado: " + accionDTO.getCambioPosesion());
-            throw new ApiException(HttpStatus.BAD_REQUEST, "INVALID_POSSESSION_CHANGE", "El valor de cambio_posesion no es correcto según las reglas establecidas");
-        }
-        
-        System.out.println("   ✅ [REGLA 4] Validación de cambio de posesión completada exitosamente");
+    // MÉTODOS DE VALIDACIÓN - IMPLEMENTACIÓN DE LAS 5 REGLAS
+    
+    // Reglas 1 a 4: solo dependen de la propia acción, se resuelven con la tabla precompilada
+    private void validarReglasIndividuales(AccionDTO accionDTO) {
+        tablaReglasAccion.validar(accionDTO);
     }
     
     // Regla 5: Lógica Secuencial (Validación entre Acciones)
-    private void validarRegla5_LogicaSecuencial(AccionDTO accionDTO) {
-        System.out.println("🔗 [REGLA 5] Validando lógica secuencial entre acciones");
-        System.out.println("   📊 OrigenAccion: " + accionDTO.getOrigenAccion());
-        System.out.println("   📊 IdPartido: " + accionDTO.getIdPartido());
+    // accionAnterior es SIN_ACCIONES cuando la acción validada es la primera del partido
+    private void validarRegla5_LogicaSecuencial(AccionDTO accionDTO, EstadoCola accionAnterior) {
+        log.debug("Regla 5: origen {} tras {}", accionDTO.getOrigenAccion(), accionAnterior);
         
         // El origen_accion de '7m' no se rige por esta regla secuencial
         if (accionDTO.getOrigenAccion() == OrigenAccion._7m) {
-            System.out.println("   ℹ️ OrigenAccion es '7m' - Se omite validación secuencial según las reglas");
-            System.out.println("   ✅ [REGLA 5] Validación secuencial completada (exenta para 7m)");
+            TrazaValidacion.registrar("REGLA 5: exenta (7m)");
             return;
         }
         
-        // Buscar la última acción en el partido
-        System.out.println("   🔍 Buscando la última acción en el partido...");
-        Optional<Accion> ultimaAccion = accionRepository.findLastActionInMatch(accionDTO.getIdPartido());
-        
-        if (ultimaAccion.isPresent()) {
-            Accion accionAnterior = ultimaAccion.get();
-            System.out.println("   ✅ Acción anterior encontrada:");
-            System.out.println("       📊 ID: " + accionAnterior.getIdAccion());
-            System.out.println("       📊 OrigenAccion: " + accionAnterior.getOrigenAccion());
-            System.out.println("       📊 CambioPosesion: " + accionAnterior.getCambioPosesion());
-            System.out.println("       📊 Evento: " + accionAnterior.getEvento());
-            
+        if (accionAnterior != UltimaAccionCache.SIN_ACCIONES) {
             if (accionDTO.getOrigenAccion() == OrigenAccion.Rebote_directo || 
                 accionDTO.getOrigenAccion() == OrigenAccion.Rebote_indirecto) {
-                
-                System.out.println("   🔍 Validando secuencia para rebote (directo/indirecto)");
-                System.out.println("   💡 REGLA: Para rebotes, la acción anterior debe tener cambio_posesion = false");
-                
-                if (accionAnterior.getCambioPosesion()) {
-                    System.out.println("   ❌ ERROR: Para rebotes, la acción anterior debe tener cambio_posesion = false");
-                    System.out.println("   💡 Acción anterior cambio_posesion: " + accionAnterior.getCambioPosesion() + " (debería ser false)");
+                // Para rebotes, la acción anterior no debe haber cambiado la posesión
+                if (accionAnterior.cambioPosesion()) {
+                    TrazaValidacion.registrar("REGLA 5: INVALID_REBOUND_SEQUENCE");
                     throw new ApiException(HttpStatus.BAD_REQUEST, "INVALID_REBOUND_SEQUENCE", "Para origen_accion 'Rebote_directo' o 'Rebote_indirecto', la acción anterior debe tener cambio_posesion = false");
                 }
-                System.out.println("   ✅ Secuencia válida para rebote: acción anterior NO cambió posesión");
             }
             
             if (accionDTO.getOrigenAccion() == OrigenAccion.Juego_Continuado) {
-                System.out.println("   🔍 Validando secuencia para juego continuado");
-                System.out.println("   💡 REGLA: Para juego continuado, la acción anterior debe tener cambio_posesion = true");
-                
-                if (!accionAnterior.getCambioPosesion()) {
-                    System.out.println("   ❌ ERROR: Para juego continuado, la acción anterior debe tener cambio_posesion = true");
-                    System.out.println("   💡 Acción anterior cambio_posesion: " + accionAnterior.getCambioPosesion() + " (debería ser true)");
+                // Para juego continuado, la acción anterior sí debe haber cambiado la posesión
+                if (!accionAnterior.cambioPosesion()) {
+                    TrazaValidacion.registrar("REGLA 5: INVALID_CONTINUOUS_GAME_SEQUENCE");
                     throw new ApiException(HttpStatus.BAD_REQUEST, "INVALID_CONTINUOUS_GAME_SEQUENCE", "Para origen_accion 'Juego_Continuado', la acción anterior debe tener cambio_posesion = true");
                 }
-                System.out.println("   ✅ Secuencia válida para juego continuado: acción anterior SÍ cambió posesión");
             }
             
         } else {
             // Si no hay acción anterior, solo 'Juego_Continuado' es válido (inicio de posesión)
-            System.out.println("   ℹ️ No se encontró acción anterior - Esta es la primera acción del partido");
-            System.out.println("   💡 REGLA: Para la primera acción, origen_accion debe ser 'Juego_Continuado'");
-            
             if (accionDTO.getOrigenAccion() != OrigenAccion.Juego_Continuado) {
-                System.out.println("   ❌ ERROR: Para la primera acción del partido, origen_accion debe ser 'Juego_Continuado'");
-                System.out.println("   💡 OrigenAccion actual: " + accionDTO.getOrigenAccion() + " (debería ser Juego_Continuado)");
+                TrazaValidacion.registrar("REGLA 5: INVALID_FIRST_ACTION");
                 throw new ApiException(HttpStatus.BAD_REQUEST, "INVALID_FIRST_ACTION", "Para la primera acción del partido, origen_accion debe ser 'Juego_Continuado'");
             }
-            System.out.println("   ✅ Primera acción válida: Juego_Continuado");
         }
         
-        System.out.println("   ✅ [REGLA 5] Validación secuencial completada exitosamente");
+        TrazaValidacion.registrar("REGLA 5: OK");
+    }
+    
+    // Revalidación incremental de una edición. La regla 5 solo relaciona cada acción con la inmediatamente
+    // anterior, así que la ventana afectada es: antecesora -> acción editada -> sucesora (solo si cambia
+    // cambio_posesion, que es lo único que la sucesora mira). Más allá la cadena no cambia.
+    private void revalidarEdicion(Accion accion, AccionDTO editada) {
+        EstadoCola antecesora = accionRepository.findPreviousInSequence(accion.getIdPartido(), accion.getSecuencia())
+                .map(EstadoCola::de)
+                .orElse(UltimaAccionCache.SIN_ACCIONES);
+        validarRegla5_LogicaSecuencial(editada, antecesora);
+        
+        if (Boolean.TRUE.equals(editada.getCambioPosesion()) != Boolean.TRUE.equals(accion.getCambioPosesion())) {
+            EstadoCola editadaComoAnterior = new EstadoCola(accion.getIdAccion(), accion.getSecuencia(),
+                    editada.getOrigenAccion(), editada.getEvento(), Boolean.TRUE.equals(editada.getCambioPosesion()));
+            accionRepository.findNextInSequence(accion.getIdPartido(), accion.getSecuencia())
+                    .ifPresent(sucesora -> validarSucesora(sucesora, editadaComoAnterior));
+        }
+    }
+    
+    // Regla 5 sobre una acción ya guardada cuya antecesora va a cambiar
+    private void validarSucesora(Accion sucesora, EstadoCola nuevaAntecesora) {
+        AccionDTO sucesoraDTO = new AccionDTO();
+        sucesoraDTO.setIdPartido(sucesora.getIdPartido());
+        sucesoraDTO.setOrigenAccion(sucesora.getOrigenAccion());
+        try {
+            validarRegla5_LogicaSecuencial(sucesoraDTO, nuevaAntecesora);
+        } catch (ApiException e) {
+            throw new ApiException(e.getStatus(), e.getErrorCode(),
+                    "La acción siguiente (secuencia " + sucesora.getSecuencia() + ") dejaría de ser válida: " + e.getMessage());
+        }
     }
     
     // MÉTODOS AUXILIARES
     
+    // Punto común de escritura de acciones ya validadas: con el diario activo se anotan en él al
+    // confirmarse la transacción (y se vuelcan después en segundo plano); si no, se guardan directamente
+    private Accion guardarNueva(Accion accion) {
+        accion.setRevision(reservarRevisiones(accion.getIdPartido(), 1));
+        Accion guardada;
+        if (diarioAcciones.activo()) {
+            diarioAcciones.anotar(List.of(accion));
+            guardada = accion;
+        } else {
+            guardada = accionRepository.save(accion);
+            if (guardada.getClaveCliente() != null) {
+                volcarComprobandoClaves();
+            }
+        }
+        registrarGuardadas(List.of(guardada));
+        return guardada;
+    }
+    
+    // Igual que guardarNueva, pero en un único lote
+    private List<Accion> guardarNuevas(List<Accion> nuevas) {
+        asignarRevisiones(nuevas);
+        List<Accion> guardadas;
+        if (diarioAcciones.activo()) {
+            diarioAcciones.anotar(nuevas);
+            guardadas = nuevas;
+        } else {
+            guardadas = accionRepository.saveAll(nuevas);
+            if (guardadas.stream().anyMatch(accion -> accion.getClaveCliente() != null)) {
+                volcarComprobandoClaves();
+            }
+        }
+        registrarGuardadas(guardadas);
+        return guardadas;
+    }
+    
+    // Revisiones consecutivas de cada partido para las acciones nuevas, en el orden en que se registran
+    private void asignarRevisiones(List<Accion> nuevas) {
+        Map<Integer, List<Accion>> porPartido = nuevas.stream()
+                .collect(Collectors.groupingBy(Accion::getIdPartido, LinkedHashMap::new, Collectors.toList()));
+        for (Map.Entry<Integer, List<Accion>> entrada : porPartido.entrySet()) {
+            long revision = reservarRevisiones(entrada.getKey(), entrada.getValue().size());
+            for (Accion accion : entrada.getValue()) {
+                accion.setRevision(revision++);
+            }
+        }
+    }
+    
+    // Avanza n revisiones el contador del partido y devuelve la primera reservada.
+    // Se llama con el partido ya bloqueado, así que las revisiones se confirman en orden
+    private long reservarRevisiones(Integer idPartido, int n) {
+        partidoRepository.avanzarRevisionAcciones(idPartido, n);
+        return partidoRepository.findRevisionAcciones(idPartido) - n + 1;
+    }
+    
+    // Actualiza la última acción de cada partido y la ventana de claves recientes
+    private void registrarGuardadas(List<Accion> guardadas) {
+        Map<Integer, Accion> ultimas = new LinkedHashMap<>();
+        for (Accion accion : guardadas) {
+            ultimas.put(accion.getIdPartido(), accion);
+            // Las acciones que siguen en el diario aún no tienen id; las registra el volcado
+            if (accion.getIdAccion() != null) {
+                clavesClienteRecientes.registrar(accion.getClaveCliente(), accion.getIdAccion());
+            }
+        }
+        ultimas.values().forEach(ultimaAccionCache::registrarNueva);
+        guardadas.forEach(accion -> eventPublisher.publishEvent(AccionEvento.creada(mapToResponseDTO(accion, null))));
+    }
+    
+    // Fuerza los INSERT para que una clave duplicada por una petición concurrente
+    // se detecte aquí (índice uk_accion_clave_cliente) y no como error genérico en el commit
+    private void volcarComprobandoClaves() {
+        try {
+            accionRepository.flush();
+        } catch (DataIntegrityViolationException e) {
+            throw new ApiException(HttpStatus.CONFLICT, "DUPLICATE_CLIENT_KEY", "Otra petición ha registrado la misma clave de cliente; reintenta para obtener la acción existente");
+        }
+    }
+    
+    private Optional<Accion> buscarPorClaveCliente(String claveCliente) {
+        Accion pendiente = diarioAcciones.pendientePorClave(claveCliente);
+        if (pendiente != null) {
+            return Optional.of(pendiente);
+        }
+        Integer idAccion = clavesClienteRecientes.obtener(claveCliente);
+        if (idAccion != null) {
+            Optional<Accion> reciente = accionRepository.findById(idAccion);
+            if (reciente.isPresent()) {
+                return reciente;
+            }
+        }
+        return accionRepository.findByClaveCliente(claveCliente);
+    }
+    
+    // Resuelve un conjunto de claves con, como mucho, una consulta por clave primaria
+    // (las que están en la ventana reciente) y otra sobre el índice de claves
+    private Map<String, Accion> buscarPorClavesCliente(Set<String> claves) {
+        Map<String, Accion> encontradas = new HashMap<>();
+        if (claves.isEmpty()) {
+            return encontradas;
+        }
+        
+        List<Integer> idsRecientes = new ArrayList<>();
+        for (String clave : claves) {
+            Accion pendiente = diarioAcciones.pendientePorClave(clave);
+            if (pendiente != null) {
+                encontradas.put(clave, pendiente);
+                continue;
+            }
+            Integer idAccion = clavesClienteRecientes.obtener(clave);
+            if (idAccion != null) {
+                idsRecientes.add(idAccion);
+            }
+        }
+        if (!idsRecientes.isEmpty()) {
+            accionRepository.findAllById(idsRecientes).forEach(accion -> encontradas.put(accion.getClaveCliente(), accion));
+        }
+        
+        Set<String> pendientes = new HashSet<>(claves);
+        pendientes.removeAll(encontradas.keySet());
+        if (!pendientes.isEmpty()) {
+            accionRepository.findByClaveClienteIn(pendientes).forEach(accion -> encontradas.put(accion.getClaveCliente(), accion));
+        }
+        return encontradas;
+    }
+    
+    private void comprobarMismoPartido(Accion existente, AccionDTO accionDTO) {
+        if (!existente.getIdPartido().equals(accionDTO.getIdPartido())) {
+            throw new ApiException(HttpStatus.CONFLICT, "CLIENT_KEY_CONFLICT", "La clave de cliente ya se usó para una acción de otro partido");
+        }
+    }
+    
+    // Busca el partido y comprueba permisos una sola vez por partido durante una sincronización
+    private Partido autorizarPartido(Integer idPartido, Map<Integer, Partido> autorizados, Map<Integer, ApiException> denegados) {
+        Partido partido = autorizados.get(idPartido);
+        if (partido != null) {
+            return partido;
+        }
+        ApiException denegado = denegados.get(idPartido);
+        if (denegado != null) {
+            throw denegado;
+        }
+        
+        try {
+            partido = partidoRepository.findById(idPartido)
+                    .orElseThrow(() -> new ResourceNotFoundException("Partido", "id", String.valueOf(idPartido)));
+            if (!partidoService.puedeAccederPartido(partido)) {
+                throw new PermissionDeniedException();
+            }
+        } catch (ApiException e) {
+            denegados.put(idPartido, e);
+            throw e;
+        }
+        autorizados.put(idPartido, partido);
+        return partido;
+    }
+    
+    // Estado de la última acción del partido: primero la caché y, si falla, la consulta top-1
+    private EstadoCola obtenerUltimaAccion(Integer idPartido) {
+        // Lo anotado en el diario y aún no volcado va por delante de la base de datos
+        EstadoCola pendiente = diarioAcciones.colaPendiente(idPartido);
+        if (pendiente != null) {
+            return pendiente;
+        }
+        EstadoCola enCache = ultimaAccionCache.obtener(idPartido);
+        if (enCache != null) {
+            return enCache;
+        }
+        EstadoCola cargada = accionRepository.findLastActionInMatch(idPartido)
+                .map(EstadoCola::de)
+                .orElse(UltimaAccionCache.SIN_ACCIONES);
+        ultimaAccionCache.cargar(idPartido, cargada);
+        return cargada;
+    }
+    
+    private Accion construirAccion(AccionDTO accionDTO) {
+        Accion accion = new Accion();
+        accion.setIdPartido(accionDTO.getIdPartido());
+        accion.setIdPosesion(accionDTO.getIdPosesion());
+        accion.setEquipoAccion(accionDTO.getEquipoAccion());
+        accion.setTipoAtaque(accionDTO.getTipoAtaque());
+        accion.setOrigenAccion(accionDTO.getOrigenAccion());
+        accion.setEvento(accionDTO.getEvento());
+        accion.setDetalleFinalizacion(accionDTO.getDetalleFinalizacion());
+        accion.setZonaLanzamiento(accionDTO.getZonaLanzamiento());
+        accion.setDetalleEvento(accionDTO.getDetalleEvento());
+        accion.setCambioPosesion(accionDTO.getCambioPosesion());
+        accion.setClaveCliente(accionDTO.getClaveCliente());
+        return accion;
+    }
+    
     private AccionResponseDTO mapToResponseDTO(Accion accion, Partido partido) {
         AccionResponseDTO dto = new AccionResponseDTO();
         dto.setIdAccion(accion.getIdAccion());
         dto.setIdPartido(accion.getIdPartido());
+        dto.setSecuencia(accion.getSecuencia());
         dto.setIdPosesion(accion.getIdPosesion());
         dto.setEquipoAccion(accion.getEquipoAccion());
         dto.setTipoAtaque(accion.getTipoAtaque());
@@ -551,10 +794,14 @@ public class AccionService {
         dto.setZonaLanzamiento(accion.getZonaLanzamiento());
         dto.setDetalleEvento(accion.getDetalleEvento());
         dto.setCambioPosesion(accion.getCambioPosesion());
+        dto.setClaveCliente(accion.getClaveCliente());
+        dto.setRevision(accion.getRevision());
         
-        // Información del partido
-        dto.setNombreEquipoLocal(partido.getNombreEquipoLocal());
-        dto.setNombreEquipoVisitante(partido.getNombreEquipoVisitante());
+        // Información del partido (no se rellena en las copias que viajan en los eventos)
+        if (partido != null) {
+            dto.setNombreEquipoLocal(partido.getNombreEquipoLocal());
+            dto.setNombreEquipoVisitante(partido.getNombreEquipoVisitante());
+        }
         
         return dto;
     }
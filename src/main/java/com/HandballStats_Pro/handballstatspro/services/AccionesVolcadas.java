@@ -0,0 +1,14 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.entities.Accion;
+
+import java.util.List;
+
+/**
+ * Evento de aplicación que publica DiarioAcciones cuando un lote de acciones anotadas en el
+ * diario llega a la base de datos, ya con su idAccion. El AccionEvento de su alta se publicó
+ * al anotarlas, todavía sin id: solo lo necesitan los oyentes que indexan por idAccion; las
+ * tablas derivadas ya contaron la acción con aquel evento.
+ */
+public record AccionesVolcadas(List<Accion> acciones) {
+}
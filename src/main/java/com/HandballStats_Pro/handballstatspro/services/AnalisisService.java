@@ -0,0 +1,90 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.dto.ConsultaAnalisisDTO;
+import com.HandballStats_Pro.handballstatspro.dto.ResultadoAnalisisDTO;
+import com.HandballStats_Pro.handballstatspro.entities.Partido;
+import com.HandballStats_Pro.handballstatspro.enums.DimensionAccion;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Consultas de análisis sobre las acciones: recuento filtrado y agrupado por cualquier combinación
+ * de dimensiones.
+ *
+ * Los permisos y las dimensiones del partido (competición, temporada, fechas) se resuelven aquí, con
+ * las mismas reglas que el listado de partidos; las de la acción se resuelven en IndiceAcciones.
+ */
+@Service
+public class AnalisisService {
+
+    private final IndiceAcciones indiceAcciones;
+    private final PartidoService partidoService;
+
+    public AnalisisService(IndiceAcciones indiceAcciones, PartidoService partidoService) {
+        this.indiceAcciones = indiceAcciones;
+        this.partidoService = partidoService;
+    }
+
+    public ResultadoAnalisisDTO consultar(ConsultaAnalisisDTO consulta) {
+        List<Partido> accesibles = partidoService.listarPartidosAccesibles();
+        Map<Integer, String> temporadas = partidoService.temporadasPorPartido(accesibles);
+
+        Map<DimensionAccion, Map<Integer, String>> valoresPartido = new EnumMap<>(DimensionAccion.class);
+        valoresPartido.put(DimensionAccion.COMPETICION, new HashMap<>());
+        valoresPartido.put(DimensionAccion.TEMPORADA, new HashMap<>());
+        valoresPartido.put(DimensionAccion.PARTIDO, new HashMap<>());
+
+        List<Integer> partidos = new ArrayList<>();
+        for (Partido partido : accesibles) {
+            String temporada = temporadas.get(partido.getIdPartido());
+            if (!admite(consulta, partido, temporada)) {
+                continue;
+            }
+            partidos.add(partido.getIdPartido());
+            if (partido.getCompeticion() != null) {
+                valoresPartido.get(DimensionAccion.COMPETICION).put(partido.getIdPartido(), partido.getCompeticion());
+            }
+            if (temporada != null) {
+                valoresPartido.get(DimensionAccion.TEMPORADA).put(partido.getIdPartido(), temporada);
+            }
+            valoresPartido.get(DimensionAccion.PARTIDO).put(partido.getIdPartido(), String.valueOf(partido.getIdPartido()));
+        }
+
+        Map<DimensionAccion, Set<Integer>> filtros = new EnumMap<>(DimensionAccion.class);
+        filtros.put(DimensionAccion.EQUIPO, ordinales(consulta.getEquipoAccion()));
+        filtros.put(DimensionAccion.TIPO_ATAQUE, ordinales(consulta.getTipoAtaque()));
+        filtros.put(DimensionAccion.ORIGEN, ordinales(consulta.getOrigenAccion()));
+        filtros.put(DimensionAccion.EVENTO, ordinales(consulta.getEvento()));
+        filtros.put(DimensionAccion.FINALIZACION, ordinales(consulta.getDetalleFinalizacion()));
+        filtros.put(DimensionAccion.ZONA, ordinales(consulta.getZonaLanzamiento()));
+        filtros.put(DimensionAccion.DETALLE_EVENTO, ordinales(consulta.getDetalleEvento()));
+
+        List<DimensionAccion> agruparPor = consulta.getAgruparPor().stream().distinct().toList();
+        return indiceAcciones.consultar(partidos, filtros, agruparPor, valoresPartido);
+    }
+
+    // MÉTODOS AUXILIARES
+
+    private static boolean admite(ConsultaAnalisisDTO consulta, Partido partido, String temporada) {
+        if (!consulta.getPartidos().isEmpty() && !consulta.getPartidos().contains(partido.getIdPartido())) {
+            return false;
+        }
+        if (!consulta.getCompeticion().isEmpty() && consulta.getCompeticion().stream()
+                .noneMatch(competicion -> competicion.equalsIgnoreCase(partido.getCompeticion()))) {
+            return false;
+        }
+        if (!consulta.getTemporada().isEmpty() && !consulta.getTemporada().contains(temporada)) {
+            return false;
+        }
+        if (consulta.getDesde() != null && (partido.getFecha() == null || partido.getFecha().isBefore(consulta.getDesde()))) {
+            return false;
+        }
+        return consulta.getHasta() == null || (partido.getFecha() != null && !partido.getFecha().isAfter(consulta.getHasta()));
+    }
+
+    private static Set<Integer> ordinales(List<? extends Enum<?>> valores) {
+        return valores.stream().filter(Objects::nonNull).map(Enum::ordinal).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,81 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.exceptions.ApiException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serializa las escrituras sobre las acciones de un mismo partido.
+ *
+ * Cada partido tiene su propio cerrojo, creado al primer uso y descartado cuando nadie
+ * lo retiene, así que dos partidos distintos nunca compiten entre sí. El cerrojo se
+ * mantiene hasta que termina la transacción: quien entra después ya ve la cola (y la
+ * secuencia) que dejó el commit anterior.
+ */
+@Component
+public class BloqueoPartidos {
+
+    private static final class Cerrojo {
+        private final ReentrantLock lock = new ReentrantLock();
+        // Hilos que lo retienen o esperan; solo se modifica dentro de compute
+        private int usuarios;
+    }
+
+    private final ConcurrentHashMap<Integer, Cerrojo> cerrojos = new ConcurrentHashMap<>();
+    private final long esperaMaximaMs;
+
+    public BloqueoPartidos(@Value("${acciones.bloqueo.espera-ms:5000}") long esperaMaximaMs) {
+        this.esperaMaximaMs = esperaMaximaMs;
+    }
+
+    // Bloquea el partido hasta el final de la transacción actual. Sin transacción no hay
+    // commit que esperar y cada operación del repositorio es atómica, así que no se bloquea.
+    public void bloquearHastaFinTransaccion(Integer idPartido) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        adquirir(idPartido);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                liberar(idPartido);
+            }
+        });
+    }
+
+    private void adquirir(Integer idPartido) {
+        Cerrojo cerrojo = cerrojos.compute(idPartido, (id, actual) -> {
+            Cerrojo c = actual != null ? actual : new Cerrojo();
+            c.usuarios++;
+            return c;
+        });
+
+        boolean adquirido = false;
+        try {
+            adquirido = cerrojo.lock.tryLock(esperaMaximaMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!adquirido) {
+            soltarReferencia(idPartido);
+            throw new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "MATCH_BUSY",
+                    "El partido está recibiendo otras acciones en este momento; reintenta en unos segundos");
+        }
+    }
+
+    private void liberar(Integer idPartido) {
+        cerrojos.get(idPartido).lock.unlock();
+        soltarReferencia(idPartido);
+    }
+
+    private void soltarReferencia(Integer idPartido) {
+        cerrojos.computeIfPresent(idPartido, (id, c) -> --c.usuarios == 0 ? null : c);
+    }
+}
@@ -0,0 +1,463 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.dto.ClasificacionDTO;
+import com.HandballStats_Pro.handballstatspro.dto.ContadoresLanzamientoDTO;
+import com.HandballStats_Pro.handballstatspro.dto.FilaClasificacionDTO;
+import com.HandballStats_Pro.handballstatspro.dto.PercentilDTO;
+import com.HandballStats_Pro.handballstatspro.dto.PercentilesDTO;
+import com.HandballStats_Pro.handballstatspro.entities.Equipo;
+import com.HandballStats_Pro.handballstatspro.entities.Partido;
+import com.HandballStats_Pro.handballstatspro.enums.CriterioClasificacion;
+import com.HandballStats_Pro.handballstatspro.enums.EquipoAccion;
+import com.HandballStats_Pro.handballstatspro.exceptions.ApiException;
+import com.HandballStats_Pro.handballstatspro.exceptions.PermissionDeniedException;
+import com.HandballStats_Pro.handballstatspro.exceptions.ResourceNotFoundException;
+import com.HandballStats_Pro.handballstatspro.repositories.EquipoRepository;
+import com.HandballStats_Pro.handballstatspro.repositories.PartidoRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Clasificación de los equipos asociados de una competición (y temporada) por goles por posesión,
+ * porcentaje de lanzamiento o pérdidas por posesión.
+ *
+ * Cada clasificación se construye la primera vez que se pide, con las estadísticas materializadas y las
+ * posesiones de sus partidos, y queda en memoria con un TreeSet por criterio. Cuando cambian las acciones
+ * de uno de sus partidos solo se recalcula lo que ese partido aporta a sus dos equipos y estos se
+ * recolocan en cada ranking y en la distribución de cada criterio (HistogramaRatios), de la que sale el
+ * percentil de un equipo; leer no reordena nada. Un cambio en un partido (equipos, competición,
+ * borrado) descarta las clasificaciones afectadas, que se vuelven a construir en la siguiente lectura.
+ * Solo se guardan las últimas clasificaciones usadas, y solo las que tienen equipos: el permiso se comprueba
+ * con los equipos de la competición antes de calcular lo que aporta cada partido.
+ *
+ * Lo que aporta un partido se lee y se aplica con el partido bloqueado, así que dos recálculos del mismo
+ * partido no se cruzan; dentro del monitor de la clase nunca se espera al bloqueo de un partido.
+ */
+@Service
+public class ClasificacionService {
+
+    private final PartidoRepository partidoRepository;
+    private final EquipoRepository equipoRepository;
+    private final EstadisticasService estadisticasService;
+    private final PosesionService posesionService;
+    private final PartidoService partidoService;
+    private final BloqueoPartidos bloqueoPartidos;
+    private final TransactionTemplate transaccionPropia;
+
+    // Las menos usadas recientemente salen al pasar de la capacidad (y con ellas sus partidos)
+    private final Map<Clave, Clasificacion> clasificaciones;
+    private final Map<Integer, Set<Clave>> clasificacionesPorPartido = new HashMap<>();
+    // Construcciones en curso: los partidos que cambian mientras tanto se recalculan al instalarlas,
+    // y un cambio de partido (que avanza la generación) hace que no se instalen
+    private int construyendo;
+    private long generacion;
+    private final Set<Integer> cambiadosDuranteConstruccion = new HashSet<>();
+
+    public ClasificacionService(PartidoRepository partidoRepository, EquipoRepository equipoRepository,
+                                EstadisticasService estadisticasService, PosesionService posesionService,
+                                PartidoService partidoService, BloqueoPartidos bloqueoPartidos,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${clasificacion.cache.competiciones-max:64}") int capacidad) {
+        this.partidoRepository = partidoRepository;
+        this.equipoRepository = equipoRepository;
+        this.estadisticasService = estadisticasService;
+        this.posesionService = posesionService;
+        this.partidoService = partidoService;
+        this.bloqueoPartidos = bloqueoPartidos;
+        // Los oyentes se ejecutan tras el commit: sus lecturas necesitan una transacción nueva
+        this.transaccionPropia = new TransactionTemplate(transactionManager);
+        this.transaccionPropia.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.clasificaciones = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Clave, Clasificacion> eldest) {
+                // La quita descartar (con su índice por partido): el mapa no debe quitarla otra vez
+                if (size() > capacidad) {
+                    descartar(eldest.getKey());
+                }
+                return false;
+            }
+        };
+    }
+
+    public ClasificacionDTO obtenerClasificacion(String competicion, String temporada, CriterioClasificacion criterio) {
+        if (competicion == null || competicion.isBlank()) {
+            throw new ApiException(HttpStatus.BAD_REQUEST, "COMPETITION_REQUIRED", "Indica la competición");
+        }
+        Clave clave = Clave.de(competicion, temporada);
+        // Basta con tener acceso a uno de los equipos de la competición
+        List<FilaClasificacionDTO> filas = leer(clave, equipos -> {
+            if (equipos.stream().noneMatch(partidoService::puedeAccederEquipo)) {
+                throw new PermissionDeniedException();
+            }
+        }, clasificacion -> clasificacion.filas(criterio));
+
+        ClasificacionDTO dto = new ClasificacionDTO();
+        dto.setCompeticion(competicion.trim());
+        dto.setTemporada(clave.temporada());
+        dto.setCriterio(criterio);
+        dto.setEquipos(filas);
+        return dto;
+    }
+
+    // Percentil del equipo en cada criterio frente a los equipos de la competición (por defecto, de su temporada)
+    public PercentilesDTO obtenerPercentiles(Long idEquipo, String competicion, String temporada) {
+        if (competicion == null || competicion.isBlank()) {
+            throw new ApiException(HttpStatus.BAD_REQUEST, "COMPETITION_REQUIRED", "Indica la competición");
+        }
+        Equipo equipo = equipoRepository.findById(idEquipo)
+                .orElseThrow(() -> new ResourceNotFoundException("Equipo", "id", String.valueOf(idEquipo)));
+        if (!partidoService.puedeAccederEquipo(idEquipo)) {
+            throw new PermissionDeniedException();
+        }
+        Clave clave = Clave.de(competicion, temporada == null || temporada.isBlank() ? equipo.getTemporada() : temporada);
+        PercentilesDTO dto = leer(clave, equipos -> {
+            if (!equipos.contains(idEquipo)) {
+                throw new ApiException(HttpStatus.NOT_FOUND, "TEAM_NOT_IN_COMPETITION",
+                        "El equipo no tiene partidos en esa competición");
+            }
+        }, clasificacion -> clasificacion.percentiles(idEquipo));
+        dto.setCompeticion(competicion.trim());
+        dto.setTemporada(clave.temporada());
+        return dto;
+    }
+
+    // MANTENIMIENTO INCREMENTAL (tras el commit del cambio)
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarAccion(AccionEvento evento) {
+        synchronized (this) {
+            if (construyendo > 0) {
+                cambiadosDuranteConstruccion.add(evento.idPartido());
+            }
+            if (!clasificacionesPorPartido.containsKey(evento.idPartido())) {
+                return;
+            }
+        }
+        actualizarPartido(evento.idPartido());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarPartido(PartidoEvento evento) {
+        // El partido puede haber entrado en una competición que ya estaba en memoria (se lee fuera del monitor)
+        Optional<String> competicion = partidoRepository.findById(evento.idPartido())
+                .map(Partido::getCompeticion)
+                .map(Clave::normalizar);
+        synchronized (this) {
+            generacion++;
+            Set<Clave> afectadas = new HashSet<>(clasificacionesPorPartido.getOrDefault(evento.idPartido(), Set.of()));
+            competicion.ifPresent(nombre -> clasificaciones.keySet().stream()
+                    .filter(clave -> clave.competicion().equals(nombre))
+                    .forEach(afectadas::add));
+            afectadas.forEach(this::descartar);
+        }
+    }
+
+    // Tras un recálculo completo de las estadísticas: todas se vuelven a construir en la siguiente lectura
+    public synchronized void vaciar() {
+        generacion++;
+        new ArrayList<>(clasificaciones.keySet()).forEach(this::descartar);
+    }
+
+    // MÉTODOS AUXILIARES
+
+    // Lee la clasificación (construyéndola si no está en memoria) con el monitor tomado. Antes, y fuera del
+    // monitor, se comprueban sus equipos: si la comprobación lanza, no se construye ni se instala nada
+    private <T> T leer(Clave clave, Consumer<Set<Long>> comprobarEquipos, Function<Clasificacion, T> lectura) {
+        Clasificacion enMemoria;
+        Set<Long> equiposEnMemoria = null;
+        long generacionInicial;
+        synchronized (this) {
+            enMemoria = clasificaciones.get(clave);
+            if (enMemoria != null) {
+                equiposEnMemoria = Set.copyOf(enMemoria.filas.keySet());
+            } else {
+                construyendo++;
+            }
+            generacionInicial = generacion;
+        }
+        if (enMemoria != null) {
+            // Los equipos de una clasificación solo aumentan: los copiados siguen en ella
+            comprobarEquipos.accept(equiposEnMemoria);
+            synchronized (this) {
+                return lectura.apply(enMemoria);
+            }
+        }
+
+        Clasificacion nueva = null;
+        List<Integer> pendientes = List.of();
+        try {
+            nueva = construir(clave, comprobarEquipos);
+        } finally {
+            synchronized (this) {
+                construyendo--;
+                if (nueva != null && !nueva.filas.isEmpty() && generacion == generacionInicial
+                        && !clasificaciones.containsKey(clave)) {
+                    pendientes = instalar(clave, nueva);
+                }
+                if (construyendo == 0) {
+                    cambiadosDuranteConstruccion.clear();
+                }
+            }
+        }
+        // Los partidos que cambiaron mientras se construía se ponen al día ya con la clasificación instalada
+        pendientes.forEach(this::actualizarPartido);
+        synchronized (this) {
+            return lectura.apply(nueva);
+        }
+    }
+
+    private Clasificacion construir(Clave clave, Consumer<Set<Long>> comprobarEquipos) {
+        List<Partido> partidos = partidoRepository.findByCompeticion(clave.competicion()).stream()
+                .filter(partido -> partido.getCompeticion() != null
+                        && Clave.normalizar(partido.getCompeticion()).equals(clave.competicion()))
+                .toList();
+        List<Long> idsEquipos = partidos.stream()
+                .flatMap(p -> Stream.of(p.getIdEquipoLocalAsociado(), p.getIdEquipoVisitanteAsociado()))
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        Map<Long, Equipo> equipos = new HashMap<>();
+        for (Equipo equipo : equipoRepository.findAllById(idsEquipos)) {
+            if (clave.temporada() == null || clave.temporada().equals(equipo.getTemporada())) {
+                equipos.put(equipo.getIdEquipo(), equipo);
+            }
+        }
+        comprobarEquipos.accept(equipos.keySet());
+
+        Clasificacion clasificacion = new Clasificacion();
+        for (Partido partido : partidos) {
+            Long local = equipos.containsKey(partido.getIdEquipoLocalAsociado()) ? partido.getIdEquipoLocalAsociado() : null;
+            Long visitante = equipos.containsKey(partido.getIdEquipoVisitanteAsociado()) ? partido.getIdEquipoVisitanteAsociado() : null;
+            if (local == null && visitante == null) {
+                continue;
+            }
+            Map<EquipoAccion, Aporte> aportes = transaccionPropia.execute(estado -> leerAportes(partido.getIdPartido()));
+            clasificacion.anadirPartido(partido.getIdPartido(), local, visitante, equipos, aportes);
+        }
+        return clasificacion;
+    }
+
+    // Con el monitor tomado: la clasificación pasa a mantenerse; devuelve sus partidos cambiados mientras se construía
+    private List<Integer> instalar(Clave clave, Clasificacion clasificacion) {
+        clasificaciones.put(clave, clasificacion);
+        List<Integer> pendientes = new ArrayList<>();
+        for (Integer idPartido : clasificacion.partidos.keySet()) {
+            clasificacionesPorPartido.computeIfAbsent(idPartido, id -> new HashSet<>()).add(clave);
+            if (cambiadosDuranteConstruccion.contains(idPartido)) {
+                pendientes.add(idPartido);
+            }
+        }
+        return pendientes;
+    }
+
+    // Relee lo que aporta el partido y lo aplica a las clasificaciones que lo contienen, con el partido bloqueado
+    private void actualizarPartido(Integer idPartido) {
+        transaccionPropia.executeWithoutResult(estado -> {
+            bloqueoPartidos.bloquearHastaFinTransaccion(idPartido);
+            Map<EquipoAccion, Aporte> aportes = leerAportes(idPartido);
+            synchronized (this) {
+                for (Clave clave : clasificacionesPorPartido.getOrDefault(idPartido, Set.of())) {
+                    clasificaciones.get(clave).recalcular(idPartido, aportes);
+                }
+            }
+        });
+    }
+
+    private void descartar(Clave clave) {
+        Clasificacion clasificacion = clasificaciones.remove(clave);
+        if (clasificacion == null) {
+            return;
+        }
+        for (Integer idPartido : clasificacion.partidos.keySet()) {
+            Set<Clave> claves = clasificacionesPorPartido.get(idPartido);
+            if (claves != null) {
+                claves.remove(clave);
+                if (claves.isEmpty()) {
+                    clasificacionesPorPartido.remove(idPartido);
+                }
+            }
+        }
+    }
+
+    // Lo que suma un partido a cada lado: goles, lanzamientos y pérdidas de sus estadísticas y sus posesiones
+    private Map<EquipoAccion, Aporte> leerAportes(Integer idPartido) {
+        EstadisticasPartido estadisticas = estadisticasService.materializadas(idPartido);
+        Map<EquipoAccion, Long> posesiones = posesionService.contarPorEquipo(idPartido);
+        Map<EquipoAccion, Aporte> aportes = new EnumMap<>(EquipoAccion.class);
+        for (EquipoAccion lado : EquipoAccion.values()) {
+            ContadoresLanzamientoDTO total = estadisticas.equipoDTO(lado).getTotal();
+            aportes.put(lado, new Aporte(posesiones.getOrDefault(lado, 0L).intValue(),
+                    total.getLanzamientos(), total.getGoles(), total.getPerdidas()));
+        }
+        return aportes;
+    }
+
+    private record Clave(String competicion, String temporada) {
+
+        static Clave de(String competicion, String temporada) {
+            return new Clave(normalizar(competicion), temporada == null || temporada.isBlank() ? null : temporada.trim());
+        }
+
+        // La competición es texto libre: se compara sin mayúsculas ni espacios sobrantes
+        static String normalizar(String competicion) {
+            return competicion.trim().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private record Aporte(int posesiones, int lanzamientos, int goles, int perdidas) {
+    }
+
+    // Un equipo de la clasificación: sus totales son la suma de lo que aporta cada uno de sus partidos
+    private static final class Fila {
+        private final Long idEquipo;
+        private final String nombre;
+        private final Map<Integer, Aporte> aportes = new HashMap<>();
+        private int posesiones;
+        private int lanzamientos;
+        private int goles;
+        private int perdidas;
+
+        private Fila(Equipo equipo) {
+            this.idEquipo = equipo.getIdEquipo();
+            this.nombre = equipo.getNombre();
+        }
+
+        void cambiar(Integer idPartido, Aporte aporte) {
+            Aporte anterior = aportes.put(idPartido, aporte);
+            if (anterior != null) {
+                sumar(anterior, -1);
+            }
+            sumar(aporte, 1);
+        }
+
+        private void sumar(Aporte aporte, int signo) {
+            posesiones += signo * aporte.posesiones();
+            lanzamientos += signo * aporte.lanzamientos();
+            goles += signo * aporte.goles();
+            perdidas += signo * aporte.perdidas();
+        }
+
+        double valor(CriterioClasificacion criterio) {
+            return switch (criterio) {
+                case GOLES_POR_POSESION -> ratio(goles, posesiones);
+                case PORCENTAJE_LANZAMIENTO -> ratio(goles, lanzamientos);
+                case PERDIDAS_POR_POSESION -> ratio(perdidas, posesiones);
+            };
+        }
+
+        private static double ratio(int parte, int total) {
+            return total == 0 ? 0 : (double) parte / total;
+        }
+    }
+
+    private final class Clasificacion {
+        private final Map<Long, Fila> filas = new HashMap<>();
+        // Equipos de la clasificación en cada partido: [local, visitante], null si no cuenta
+        private final Map<Integer, Long[]> partidos = new HashMap<>();
+        private final Map<CriterioClasificacion, TreeSet<Fila>> rankings = new EnumMap<>(CriterioClasificacion.class);
+        // El valor de cada equipo en cada criterio, para los percentiles
+        private final Map<CriterioClasificacion, HistogramaRatios> distribuciones = new EnumMap<>(CriterioClasificacion.class);
+
+        Clasificacion() {
+            for (CriterioClasificacion criterio : CriterioClasificacion.values()) {
+                Comparator<Fila> porValor = Comparator.comparingDouble(fila -> fila.valor(criterio));
+                rankings.put(criterio, new TreeSet<>((criterio.isAscendente() ? porValor : porValor.reversed())
+                        .thenComparing(fila -> fila.idEquipo)));
+                distribuciones.put(criterio, new HistogramaRatios());
+            }
+        }
+
+        void anadirPartido(Integer idPartido, Long local, Long visitante, Map<Long, Equipo> equipos,
+                           Map<EquipoAccion, Aporte> aportes) {
+            partidos.put(idPartido, new Long[]{local, visitante});
+            for (Long idEquipo : new Long[]{local, visitante}) {
+                if (idEquipo != null && !filas.containsKey(idEquipo)) {
+                    Fila fila = new Fila(equipos.get(idEquipo));
+                    filas.put(idEquipo, fila);
+                    colocar(fila, 1);
+                }
+            }
+            recalcular(idPartido, aportes);
+        }
+
+        // Cambia lo que aporta el partido a sus equipos y los recoloca (fuera y dentro de cada TreeSet)
+        void recalcular(Integer idPartido, Map<EquipoAccion, Aporte> aportes) {
+            Long[] equipos = partidos.get(idPartido);
+            for (EquipoAccion lado : EquipoAccion.values()) {
+                Fila fila = equipos[lado.ordinal()] == null ? null : filas.get(equipos[lado.ordinal()]);
+                if (fila == null) {
+                    continue;
+                }
+                colocar(fila, -1);
+                fila.cambiar(idPartido, aportes.get(lado));
+                colocar(fila, 1);
+            }
+        }
+
+        // Pone (1) o quita (-1) el equipo de los rankings y de las distribuciones con sus valores actuales
+        private void colocar(Fila fila, int signo) {
+            for (CriterioClasificacion criterio : CriterioClasificacion.values()) {
+                if (signo > 0) {
+                    rankings.get(criterio).add(fila);
+                } else {
+                    rankings.get(criterio).remove(fila);
+                }
+                distribuciones.get(criterio).sumar(fila.valor(criterio), signo);
+            }
+        }
+
+        // El equipo ya se ha comprobado que está en la clasificación
+        PercentilesDTO percentiles(Long idEquipo) {
+            Fila fila = filas.get(idEquipo);
+            PercentilesDTO dto = new PercentilesDTO();
+            dto.setIdEquipo(idEquipo);
+            dto.setEquipos(filas.size());
+            for (CriterioClasificacion criterio : CriterioClasificacion.values()) {
+                HistogramaRatios distribucion = distribuciones.get(criterio);
+                double valor = fila.valor(criterio);
+                double debajo = distribucion.fraccionPorDebajo(valor);
+                PercentilDTO percentil = new PercentilDTO();
+                percentil.setCriterio(criterio);
+                percentil.setValor(valor);
+                percentil.setPercentil(100 * (criterio.isAscendente() ? 1 - debajo : debajo));
+                percentil.setP10(distribucion.cuantil(0.10));
+                percentil.setP25(distribucion.cuantil(0.25));
+                percentil.setMediana(distribucion.cuantil(0.50));
+                percentil.setP75(distribucion.cuantil(0.75));
+                percentil.setP90(distribucion.cuantil(0.90));
+                dto.getCriterios().add(percentil);
+            }
+            return dto;
+        }
+
+        List<FilaClasificacionDTO> filas(CriterioClasificacion criterio) {
+            List<FilaClasificacionDTO> resultado = new ArrayList<>(filas.size());
+            for (Fila fila : rankings.get(criterio)) {
+                FilaClasificacionDTO dto = new FilaClasificacionDTO();
+                dto.setPosicion(resultado.size() + 1);
+                dto.setIdEquipo(fila.idEquipo);
+                dto.setNombre(fila.nombre);
+                dto.setPartidos(fila.aportes.size());
+                dto.setPosesiones(fila.posesiones);
+                dto.setLanzamientos(fila.lanzamientos);
+                dto.setGoles(fila.goles);
+                dto.setPerdidas(fila.perdidas);
+                dto.setGolesPorPosesion(fila.valor(CriterioClasificacion.GOLES_POR_POSESION));
+                dto.setPorcentajeLanzamiento(fila.valor(CriterioClasificacion.PORCENTAJE_LANZAMIENTO));
+                dto.setPerdidasPorPosesion(fila.valor(CriterioClasificacion.PERDIDAS_POR_POSESION));
+                resultado.add(dto);
+            }
+            return resultado;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ventana en memoria (LRU) de las últimas claves de idempotencia aceptadas y la acción
+ * que generaron. Resuelve sin consultar la base de datos los reenvíos habituales tras
+ * una reconexión; una clave que no está aquí se comprueba contra el índice único
+ * uk_accion_clave_cliente, que es la garantía real frente a duplicados.
+ */
+@Component
+public class ClavesClienteRecientes {
+
+    private final Map<String, Integer> claves;
+
+    public ClavesClienteRecientes(@Value("${acciones.claves-recientes.max:10000}") int capacidad) {
+        this.claves = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                return size() > capacidad;
+            }
+        };
+    }
+
+    // Devuelve el id de la acción creada con esa clave, o null si no está en la ventana
+    public synchronized Integer obtener(String claveCliente) {
+        return claves.get(claveCliente);
+    }
+
+    public void registrar(String claveCliente, Integer idAccion) {
+        if (claveCliente == null) {
+            return;
+        }
+        TrasCommit.ejecutar(() -> {
+            synchronized (this) {
+                claves.put(claveCliente, idAccion);
+            }
+        });
+    }
+
+    public void olvidar(String claveCliente) {
+        if (claveCliente == null) {
+            return;
+        }
+        TrasCommit.ejecutar(() -> {
+            synchronized (this) {
+                claves.remove(claveCliente);
+            }
+        });
+    }
+}
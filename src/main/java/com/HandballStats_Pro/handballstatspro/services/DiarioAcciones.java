@@ -0,0 +1,601 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.entities.Accion;
+import com.HandballStats_Pro.handballstatspro.enums.*;
+import com.HandballStats_Pro.handballstatspro.exceptions.ApiException;
+import com.HandballStats_Pro.handballstatspro.repositories.AccionRepository;
+import com.HandballStats_Pro.handballstatspro.services.UltimaAccionCache.EstadoCola;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Diario local (write-ahead log) para registrar acciones sin esperar a MySQL.
+ *
+ * Con acciones.wal.enabled=true, una acción ya validada se escribe en un segmento
+ * mapeado en memoria ([longitud][crc32][json] por registro) y se confirma al cliente.
+ * Se escribe al confirmarse la transacción que la registra, con el partido aún bloqueado:
+ * si esa transacción se deshace, la acción no llega al diario.
+ * Un hilo en segundo plano la vuelca a AccionRepository en lotes; cuando todos los
+ * registros de un segmento cerrado están en la base de datos, el fichero se borra.
+ *
+ * Al arrancar se reproducen los segmentos que quedaron en disco y al parar se vacía
+ * el diario antes de cerrar la conexión. El volcado descarta las claves de cliente
+ * que ya existen, así que reproducir un segmento parcialmente volcado no duplica filas.
+ *
+ * Mientras una acción está pendiente no tiene id_accion: se identifica por su clave de
+ * cliente (asignada por el servidor si el dispositivo no envió una) y su secuencia. Cada
+ * lote volcado se publica como AccionesVolcadas, ya con los ids.
+ */
+@Slf4j
+@Component
+public class DiarioAcciones implements SmartLifecycle {
+
+    private static final String PREFIJO_SEGMENTO = "wal-";
+    private static final String EXTENSION_SEGMENTO = ".log";
+    private static final int CABECERA_REGISTRO = 8;
+
+    // Lo que se guarda de cada acción pendiente
+    private record Registro(Integer idPartido, Integer secuencia, Integer idPosesion, EquipoAccion equipoAccion,
+                            TipoAtaque tipoAtaque, OrigenAccion origenAccion, Evento evento,
+                            DetalleFinalizacion detalleFinalizacion, ZonaLanzamiento zonaLanzamiento,
+                            DetalleEvento detalleEvento, Boolean cambioPosesion, String claveCliente, Long revision) {
+
+        static Registro de(Accion accion) {
+            return new Registro(accion.getIdPartido(), accion.getSecuencia(), accion.getIdPosesion(),
+                    accion.getEquipoAccion(), accion.getTipoAtaque(), accion.getOrigenAccion(), accion.getEvento(),
+                    accion.getDetalleFinalizacion(), accion.getZonaLanzamiento(), accion.getDetalleEvento(),
+                    accion.getCambioPosesion(), accion.getClaveCliente(), accion.getRevision());
+        }
+
+        Accion aAccion() {
+            Accion accion = new Accion();
+            accion.setIdPartido(idPartido);
+            accion.setSecuencia(secuencia);
+            accion.setIdPosesion(idPosesion);
+            accion.setEquipoAccion(equipoAccion);
+            accion.setTipoAtaque(tipoAtaque);
+            accion.setOrigenAccion(origenAccion);
+            accion.setEvento(evento);
+            accion.setDetalleFinalizacion(detalleFinalizacion);
+            accion.setZonaLanzamiento(zonaLanzamiento);
+            accion.setDetalleEvento(detalleEvento);
+            accion.setCambioPosesion(cambioPosesion);
+            accion.setClaveCliente(claveCliente);
+            accion.setRevision(revision);
+            return accion;
+        }
+    }
+
+    // orden: posición del registro en la cola desde el arranque (1, 2, ...)
+    private record Pendiente(int segmento, long orden, Accion accion) {
+    }
+
+    private final AccionRepository accionRepository;
+    private final UltimaAccionCache ultimaAccionCache;
+    private final ClavesClienteRecientes clavesClienteRecientes;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transaccion;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final boolean habilitado;
+    private final Path directorio;
+    private final int tamanoSegmento;
+    private final int tamanoLote;
+    private final long intervaloMs;
+    private final boolean forzarDisco;
+
+    // Estado protegido por el monitor del diario
+    private final Deque<Pendiente> pendientes = new ArrayDeque<>();
+    private final Map<Integer, Integer> pendientesPorSegmento = new HashMap<>();
+    // Revisiones pendientes de cada partido, en orden (se anotan con el partido bloqueado)
+    private final Map<Integer, ArrayDeque<Long>> revisionesPendientes = new HashMap<>();
+    // Orden del último registro pendiente de cada partido
+    private final Map<Integer, Long> ultimoPendientePorPartido = new HashMap<>();
+    // Registros encolados y volcados desde el arranque: la cola es FIFO, así que un registro
+    // está en la base de datos cuando volcados alcanza su orden
+    private long encolados;
+    private long volcados;
+    private int segmentoActivo;
+    private MappedByteBuffer bufferActivo;
+    // Transacciones con acciones anotadas que aún no han terminado (la parada las espera)
+    private int anotacionesEnCurso;
+
+    // Consultas sin bloqueo desde las peticiones: cola y claves aún no volcadas
+    private final Map<Integer, EstadoCola> colasPendientes = new ConcurrentHashMap<>();
+    private final Map<String, Accion> pendientesPorClave = new ConcurrentHashMap<>();
+
+    // Un solo volcado a la vez (hilo de fondo, vaciado explícito o parada)
+    private final Object volcado = new Object();
+
+    private ScheduledExecutorService escritor;
+    private volatile boolean enMarcha;
+
+    public DiarioAcciones(AccionRepository accionRepository, UltimaAccionCache ultimaAccionCache,
+                          ClavesClienteRecientes clavesClienteRecientes, ObjectMapper objectMapper,
+                          PlatformTransactionManager transactionManager, ApplicationEventPublisher eventPublisher,
+                          @Value("${acciones.wal.enabled:false}") boolean habilitado,
+                          @Value("${acciones.wal.directorio:./wal-acciones}") String directorio,
+                          @Value("${acciones.wal.tamano-segmento:8388608}") int tamanoSegmento,
+                          @Value("${acciones.wal.lote:200}") int tamanoLote,
+                          @Value("${acciones.wal.intervalo-ms:50}") long intervaloMs,
+                          @Value("${acciones.wal.forzar-disco:false}") boolean forzarDisco) {
+        this.accionRepository = accionRepository;
+        this.ultimaAccionCache = ultimaAccionCache;
+        this.clavesClienteRecientes = clavesClienteRecientes;
+        this.objectMapper = objectMapper;
+        this.transaccion = new TransactionTemplate(transactionManager);
+        this.transaccion.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.eventPublisher = eventPublisher;
+        this.habilitado = habilitado;
+        this.directorio = Paths.get(directorio);
+        this.tamanoSegmento = tamanoSegmento;
+        this.tamanoLote = tamanoLote;
+        this.intervaloMs = intervaloMs;
+        this.forzarDisco = forzarDisco;
+    }
+
+    public boolean activo() {
+        return enMarcha;
+    }
+
+    // Escribe las acciones en el diario cuando confirma la transacción actual (en el momento si no hay
+    // ninguna) y las descarta si se deshace; tras el commit ya sobreviven a una caída del proceso
+    public void anotar(List<Accion> acciones) {
+        List<byte[]> registros = new ArrayList<>(acciones.size());
+        for (Accion accion : acciones) {
+            if (accion.getClaveCliente() == null) {
+                // La clave permite descartar la acción al reproducir un segmento ya volcado
+                accion.setClaveCliente("wal:" + UUID.randomUUID());
+            }
+            registros.add(serializar(accion));
+        }
+
+        synchronized (this) {
+            if (!enMarcha) {
+                throw new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "WAL_UNAVAILABLE",
+                        "El registro de acciones se está deteniendo; reintenta en unos segundos");
+            }
+            anotacionesEnCurso++;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            try {
+                escribirAnotadas(acciones, registros);
+            } finally {
+                terminarAnotacion();
+            }
+            return;
+        }
+        // Antes de que se libere el bloqueo del partido (afterCompletion): la siguiente acción ya ve esta
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                escribirAnotadas(acciones, registros);
+            }
+
+            @Override
+            public void afterCompletion(int estado) {
+                terminarAnotacion();
+            }
+        });
+    }
+
+    // Última acción pendiente de volcar en el partido, o null si no hay ninguna
+    public EstadoCola colaPendiente(Integer idPartido) {
+        return enMarcha ? colasPendientes.get(idPartido) : null;
+    }
+
+    public Accion pendientePorClave(String claveCliente) {
+        return pendientesPorClave.get(claveCliente);
+    }
+
+    // Revisión más antigua del partido que aún no está en la base de datos, o null si no hay ninguna
+    public synchronized Long primeraRevisionPendiente(Integer idPartido) {
+        ArrayDeque<Long> revisiones = enMarcha ? revisionesPendientes.get(idPartido) : null;
+        return revisiones == null ? null : revisiones.peekFirst();
+    }
+
+    // Vuelca ya todo lo pendiente al llamar (lo que se anota después no se espera). Lo usan las
+    // operaciones que necesitan ver en la base de datos todas las acciones confirmadas (editar o
+    // borrar); debe llamarse antes de que la transacción del llamante haga su primera lectura.
+    public void volcarPendientes() {
+        if (!enMarcha) {
+            return;
+        }
+        long objetivo;
+        synchronized (this) {
+            objetivo = encolados;
+        }
+        volcarHasta(objetivo);
+    }
+
+    // Igual, solo hasta la última acción pendiente del partido. Para las reconstrucciones que leen
+    // las acciones del partido: con el partido bloqueado y antes de la primera lectura. Nunca desde
+    // la transacción que las anotó, que retiene la fila del partido que necesita el volcado.
+    public void volcarPartido(Integer idPartido) {
+        if (!enMarcha) {
+            return;
+        }
+        Long objetivo;
+        synchronized (this) {
+            objetivo = ultimoPendientePorPartido.get(idPartido);
+        }
+        if (objetivo != null) {
+            volcarHasta(objetivo);
+        }
+    }
+
+    private void volcarHasta(long objetivo) {
+        synchronized (volcado) {
+            while (volcadosHasta() < objetivo && volcarLote()) {
+                // los lotes salen de la cabeza de la cola: el objetivo llega tras los anteriores
+            }
+        }
+        if (volcadosHasta() < objetivo) {
+            throw new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "WAL_FLUSH_FAILED",
+                    "No se han podido guardar las acciones pendientes; reintenta en unos segundos");
+        }
+    }
+
+    private synchronized long volcadosHasta() {
+        return volcados;
+    }
+
+    private synchronized void escribirAnotadas(List<Accion> acciones, List<byte[]> registros) {
+        for (int i = 0; i < acciones.size(); i++) {
+            escribir(registros.get(i));
+            encolar(segmentoActivo, acciones.get(i));
+        }
+        if (forzarDisco) {
+            bufferActivo.force();
+        }
+    }
+
+    private synchronized void terminarAnotacion() {
+        anotacionesEnCurso--;
+        notifyAll();
+    }
+
+    // CICLO DE VIDA
+
+    @Override
+    public void start() {
+        if (!habilitado) {
+            return;
+        }
+        try {
+            Files.createDirectories(directorio);
+            int ultimo = reproducirSegmentos();
+            synchronized (this) {
+                abrirSegmento(ultimo + 1);
+                enMarcha = true;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo iniciar el diario de acciones en " + directorio, e);
+        }
+
+        escritor = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "diario-acciones");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        escritor.scheduleWithFixedDelay(this::volcarEnSegundoPlano, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+        log.info("Diario de acciones activo en {}", directorio.toAbsolutePath());
+    }
+
+    @Override
+    public void stop() {
+        if (!enMarcha) {
+            return;
+        }
+        synchronized (this) {
+            enMarcha = false;
+            // Las transacciones que ya anotaron escriben al confirmar: se esperan antes del vaciado final
+            long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            try {
+                while (anotacionesEnCurso > 0 && System.nanoTime() < limite) {
+                    wait(TimeUnit.NANOSECONDS.toMillis(limite - System.nanoTime()) + 1);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        escritor.shutdown();
+        try {
+            escritor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (volcado) {
+            while (volcarLote()) {
+                // vaciado final antes de cerrar la base de datos
+            }
+        }
+        synchronized (this) {
+            if (pendientes.isEmpty()) {
+                borrarSegmento(rutaSegmento(segmentoActivo));
+                log.info("Diario de acciones vaciado");
+            } else {
+                log.warn("Quedan {} acciones en el diario; se reproducirán en el próximo arranque", pendientes.size());
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return enMarcha;
+    }
+
+    // Arranca antes que el servidor web y se detiene después de él, para no aceptar
+    // peticiones sin haber reproducido el diario ni perder las que llegan al parar
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    // VOLCADO
+
+    private void volcarEnSegundoPlano() {
+        try {
+            synchronized (volcado) {
+                while (volcarLote()) {
+                    // vacía la cola en lotes mientras haya trabajo
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Error en el volcado del diario de acciones", e);
+        }
+    }
+
+    // Vuelca un lote; devuelve false si no había nada o si falló (se reintentará después)
+    private boolean volcarLote() {
+        List<Pendiente> lote;
+        synchronized (this) {
+            if (pendientes.isEmpty()) {
+                return false;
+            }
+            lote = new ArrayList<>(Math.min(tamanoLote, pendientes.size()));
+            Iterator<Pendiente> it = pendientes.iterator();
+            while (it.hasNext() && lote.size() < tamanoLote) {
+                lote.add(it.next());
+            }
+        }
+
+        List<Accion> acciones = lote.stream().map(Pendiente::accion).collect(Collectors.toList());
+        try {
+            transaccion.executeWithoutResult(estado -> guardarSinDuplicados(acciones));
+        } catch (DataIntegrityViolationException e) {
+            // Algún registro ya no se puede guardar (p. ej. su partido se borró): se guarda uno a uno
+            log.warn("Lote del diario rechazado por la base de datos; se reintenta acción a acción", e);
+            for (Accion accion : acciones) {
+                try {
+                    transaccion.executeWithoutResult(estado -> guardarSinDuplicados(List.of(accion)));
+                } catch (DataIntegrityViolationException individual) {
+                    accion.setIdAccion(null);
+                    log.error("Se descarta la acción {} del partido {}: {}", accion.getClaveCliente(),
+                            accion.getIdPartido(), individual.getMostSpecificCause().getMessage());
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("No se pudo volcar el diario de acciones; se reintentará", e);
+            return false;
+        }
+
+        confirmarVolcado(lote);
+        // Dentro del monitor de volcado: quien espera un vaciado explícito lo ve ya publicado
+        List<Accion> volcadas = acciones.stream().filter(accion -> accion.getIdAccion() != null).toList();
+        if (!volcadas.isEmpty()) {
+            eventPublisher.publishEvent(new AccionesVolcadas(volcadas));
+        }
+        return true;
+    }
+
+    private void guardarSinDuplicados(List<Accion> acciones) {
+        // Un intento anterior fallido pudo dejarles un id reservado que nunca llegó a la base de datos
+        acciones.forEach(accion -> accion.setIdAccion(null));
+        Map<String, Integer> yaGuardadas = accionRepository.findByClaveClienteIn(acciones.stream()
+                        .map(Accion::getClaveCliente)
+                        .collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(Accion::getClaveCliente, Accion::getIdAccion));
+        List<Accion> nuevas = new ArrayList<>();
+        for (Accion accion : acciones) {
+            // Las que ya estaban se quedan con su id, para el registro de claves y AccionesVolcadas
+            Integer idAccion = yaGuardadas.get(accion.getClaveCliente());
+            if (idAccion != null) {
+                accion.setIdAccion(idAccion);
+            } else {
+                nuevas.add(accion);
+            }
+        }
+        if (!nuevas.isEmpty()) {
+            accionRepository.saveAll(nuevas);
+        }
+    }
+
+    private void confirmarVolcado(List<Pendiente> lote) {
+        Map<Integer, Accion> ultimas = new LinkedHashMap<>();
+        List<Path> borrables = new ArrayList<>();
+        synchronized (this) {
+            for (Pendiente pendiente : lote) {
+                pendientes.removeFirst();
+                volcados = pendiente.orden();
+                Accion accion = pendiente.accion();
+                ultimoPendientePorPartido.remove(accion.getIdPartido(), pendiente.orden());
+                ultimas.put(accion.getIdPartido(), accion);
+                pendientesPorClave.remove(accion.getClaveCliente(), accion);
+                if (accion.getRevision() != null) {
+                    ArrayDeque<Long> revisiones = revisionesPendientes.get(accion.getIdPartido());
+                    revisiones.pollFirst();
+                    if (revisiones.isEmpty()) {
+                        revisionesPendientes.remove(accion.getIdPartido());
+                    }
+                }
+                clavesClienteRecientes.registrar(accion.getClaveCliente(), accion.getIdAccion());
+
+                int restantes = pendientesPorSegmento.merge(pendiente.segmento(), -1, Integer::sum);
+                if (restantes == 0 && pendiente.segmento() != segmentoActivo) {
+                    pendientesPorSegmento.remove(pendiente.segmento());
+                    borrables.add(rutaSegmento(pendiente.segmento()));
+                }
+            }
+        }
+
+        for (Accion ultima : ultimas.values()) {
+            // Solo deja de estar pendiente si no se ha anotado otra detrás mientras tanto
+            colasPendientes.computeIfPresent(ultima.getIdPartido(),
+                    (id, cola) -> Objects.equals(cola.secuencia(), ultima.getSecuencia()) ? null : cola);
+            ultimaAccionCache.registrarVolcada(ultima);
+        }
+        borrables.forEach(this::borrarSegmento);
+    }
+
+    // SEGMENTOS
+
+    private void escribir(byte[] registro) {
+        if (bufferActivo.remaining() < CABECERA_REGISTRO + registro.length) {
+            if (CABECERA_REGISTRO + registro.length > tamanoSegmento) {
+                throw new IllegalStateException("Registro del diario mayor que un segmento");
+            }
+            rotarSegmento();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(registro);
+        bufferActivo.putInt(registro.length);
+        bufferActivo.putInt((int) crc.getValue());
+        bufferActivo.put(registro);
+    }
+
+    private void encolar(int segmento, Accion accion) {
+        pendientes.addLast(new Pendiente(segmento, ++encolados, accion));
+        ultimoPendientePorPartido.put(accion.getIdPartido(), encolados);
+        pendientesPorSegmento.merge(segmento, 1, Integer::sum);
+        pendientesPorClave.put(accion.getClaveCliente(), accion);
+        if (accion.getRevision() != null) {
+            revisionesPendientes.computeIfAbsent(accion.getIdPartido(), id -> new ArrayDeque<>()).addLast(accion.getRevision());
+        }
+        colasPendientes.put(accion.getIdPartido(), EstadoCola.de(accion));
+    }
+
+    private void rotarSegmento() {
+        int anterior = segmentoActivo;
+        bufferActivo.force();
+        try {
+            abrirSegmento(anterior + 1);
+        } catch (IOException e) {
+            throw new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "WAL_UNAVAILABLE",
+                    "No se pudo abrir un nuevo segmento del registro de acciones");
+        }
+        if (!pendientesPorSegmento.containsKey(anterior)) {
+            borrarSegmento(rutaSegmento(anterior));
+        }
+    }
+
+    private void abrirSegmento(int numero) throws IOException {
+        try (RandomAccessFile fichero = new RandomAccessFile(rutaSegmento(numero).toFile(), "rw")) {
+            fichero.setLength(tamanoSegmento);
+            // El mapeo sigue siendo válido después de cerrar el canal
+            bufferActivo = fichero.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, tamanoSegmento);
+        }
+        segmentoActivo = numero;
+    }
+
+    // Carga en la cola los registros de los segmentos que quedaron en disco y devuelve el último número
+    private int reproducirSegmentos() throws IOException {
+        List<Integer> numeros;
+        try (Stream<Path> ficheros = Files.list(directorio)) {
+            numeros = ficheros.map(ruta -> ruta.getFileName().toString())
+                    .filter(nombre -> nombre.startsWith(PREFIJO_SEGMENTO) && nombre.endsWith(EXTENSION_SEGMENTO))
+                    .map(nombre -> Integer.parseInt(nombre.substring(PREFIJO_SEGMENTO.length(),
+                            nombre.length() - EXTENSION_SEGMENTO.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        int reproducidas = 0;
+        for (int numero : numeros) {
+            int leidas = 0;
+            try (FileChannel canal = FileChannel.open(rutaSegmento(numero))) {
+                MappedByteBuffer buffer = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+                while (buffer.remaining() >= CABECERA_REGISTRO) {
+                    int longitud = buffer.getInt();
+                    int crcEsperado = buffer.getInt();
+                    if (longitud <= 0 || longitud > buffer.remaining()) {
+                        break;
+                    }
+                    byte[] registro = new byte[longitud];
+                    buffer.get(registro);
+                    CRC32 crc = new CRC32();
+                    crc.update(registro);
+                    if ((int) crc.getValue() != crcEsperado) {
+                        // Registro a medio escribir en el momento de la caída
+                        log.warn("Registro incompleto en el segmento {} del diario; se ignora el resto", numero);
+                        break;
+                    }
+                    synchronized (this) {
+                        encolar(numero, deserializar(registro));
+                    }
+                    leidas++;
+                }
+            }
+            if (leidas == 0) {
+                borrarSegmento(rutaSegmento(numero));
+            }
+            reproducidas += leidas;
+        }
+        if (reproducidas > 0) {
+            log.info("Reproducidas {} acciones pendientes del diario", reproducidas);
+        }
+        return numeros.isEmpty() ? 0 : numeros.get(numeros.size() - 1);
+    }
+
+    private Path rutaSegmento(int numero) {
+        return directorio.resolve(String.format("%s%06d%s", PREFIJO_SEGMENTO, numero, EXTENSION_SEGMENTO));
+    }
+
+    private void borrarSegmento(Path ruta) {
+        try {
+            Files.deleteIfExists(ruta);
+        } catch (IOException e) {
+            log.warn("No se pudo borrar el segmento {} del diario", ruta, e);
+        }
+    }
+
+    private byte[] serializar(Accion accion) {
+        try {
+            return objectMapper.writeValueAsBytes(Registro.de(accion));
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo serializar la acción para el diario", e);
+        }
+    }
+
+    private Accion deserializar(byte[] registro) throws IOException {
+        return objectMapper.readValue(registro, Registro.class).aAccion();
+    }
+}
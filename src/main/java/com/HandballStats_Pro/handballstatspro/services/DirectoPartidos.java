@@ -0,0 +1,347 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.dto.*;
+import com.HandballStats_Pro.handballstatspro.enums.EquipoAccion;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retransmisión en directo (Server-Sent Events) de las acciones de cada partido.
+ *
+ * Mientras un partido tiene espectadores se mantiene en memoria su estado (acciones,
+ * marcador y contadores) y un anillo con los últimos eventos. Cada cambio confirmado
+ * se serializa una sola vez y se reparte a los suscriptores a través de colas acotadas
+ * que vacía un pool propio; quien no consume a tiempo se desconecta y, al reconectar
+ * con Last-Event-ID, recibe lo que le falte del anillo o un snapshot nuevo. El hilo
+ * que registra la acción nunca espera a la red.
+ *
+ * Con el diario de acciones activo, el estado inicial se carga después de volcar lo pendiente del
+ * partido: las altas anteriores a la carga no se aplican como eventos y solo llegan por la base de datos.
+ */
+@Slf4j
+@Component
+public class DirectoPartidos {
+
+    private static final int LOCAL = EquipoAccion.LOCAL.ordinal();
+    private static final int VISITANTE = EquipoAccion.VISITANTE.ordinal();
+
+    // Posiciones de los contadores de cada equipo
+    private static final int GOLES = 0;
+    private static final int LANZAMIENTOS = 1;
+    private static final int PARADAS = 2;
+    private static final int FUERA = 3;
+    private static final int PERDIDAS = 4;
+    private static final int N_CONTADORES = 5;
+
+    // Evento ya serializado, compartido por todos los suscriptores del partido
+    private record EventoDirecto(long id, Set<DataWithMediaType> datos) {
+    }
+
+    private final AccionService accionService;
+    private final PartidoService partidoService;
+    private final DiarioAcciones diarioAcciones;
+    private final ObjectMapper objectMapper;
+    private final int tamanoAnillo;
+    private final int tamanoColaSuscriptor;
+    private final long timeoutMs;
+
+    private final ConcurrentHashMap<Integer, Canal> canales = new ConcurrentHashMap<>();
+    // Los ids de evento son globales: un id nunca se repite aunque el canal se recree
+    private final AtomicLong ultimoIdEvento = new AtomicLong();
+    private final ExecutorService envios;
+
+    public DirectoPartidos(AccionService accionService, PartidoService partidoService, DiarioAcciones diarioAcciones,
+                           ObjectMapper objectMapper,
+                           @Value("${directo.anillo:256}") int tamanoAnillo,
+                           @Value("${directo.cola-suscriptor:256}") int tamanoColaSuscriptor,
+                           @Value("${directo.timeout-ms:1800000}") long timeoutMs,
+                           @Value("${directo.hilos-envio:4}") int hilosEnvio) {
+        this.accionService = accionService;
+        this.partidoService = partidoService;
+        this.diarioAcciones = diarioAcciones;
+        this.objectMapper = objectMapper;
+        this.tamanoAnillo = tamanoAnillo;
+        this.tamanoColaSuscriptor = tamanoColaSuscriptor;
+        this.timeoutMs = timeoutMs;
+        this.envios = Executors.newFixedThreadPool(hilosEnvio, tarea -> {
+            Thread hilo = new Thread(tarea, "directo-partidos");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    @PreDestroy
+    public void detener() {
+        envios.shutdownNow();
+        canales.values().forEach(canal -> canal.suscriptores.forEach(s -> s.emitter.complete()));
+    }
+
+    // Da de alta un espectador. Comprueba el permiso en el hilo de la petición y encola
+    // el snapshot (o los eventos perdidos desde ultimoIdVisto) antes de cualquier delta.
+    public SseEmitter suscribir(Integer idPartido, Long ultimoIdVisto) {
+        PartidoResponseDTO partido = partidoService.obtenerPartidoPorId(idPartido);
+
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Suscriptor suscriptor = new Suscriptor(emitter);
+        while (true) {
+            Canal canal = canales.computeIfAbsent(idPartido, Canal::new);
+            synchronized (canal) {
+                if (canal.cerrado) {
+                    // El último espectador se fue mientras tanto: se vuelve a crear
+                    continue;
+                }
+                if (!canal.cargado) {
+                    // Dentro del monitor: lo que se anote después espera a la carga y se aplica como evento
+                    diarioAcciones.volcarPartido(idPartido);
+                    canal.cargar(accionService.listarAccionesPorPartido(idPartido));
+                }
+                List<EventoDirecto> perdidos = canal.eventosDesde(ultimoIdVisto);
+                if (perdidos != null) {
+                    perdidos.forEach(suscriptor::encolar);
+                } else {
+                    suscriptor.encolar(canal.snapshot(partido));
+                }
+                canal.suscriptores.add(suscriptor);
+            }
+            Runnable baja = () -> quitar(canal, suscriptor);
+            emitter.onCompletion(baja);
+            emitter.onTimeout(baja);
+            emitter.onError(error -> baja.run());
+            return emitter;
+        }
+    }
+
+    // Se ejecuta tras el commit, en el hilo que registró el cambio: solo actualiza memoria y encola
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarAccion(AccionEvento evento) {
+        Canal canal = canales.get(evento.idPartido());
+        if (canal == null) {
+            return;
+        }
+        synchronized (canal) {
+            if (canal.cerrado || !canal.cargado) {
+                return;
+            }
+            EventoDirecto directo = canal.aplicar(evento);
+            for (Suscriptor suscriptor : new ArrayList<>(canal.suscriptores)) {
+                if (!suscriptor.encolar(directo)) {
+                    log.debug("Espectador lento del partido {} desconectado", canal.idPartido);
+                    suscriptor.emitter.complete();
+                }
+            }
+        }
+    }
+
+    private void quitar(Canal canal, Suscriptor suscriptor) {
+        synchronized (canal) {
+            canal.suscriptores.remove(suscriptor);
+            if (canal.suscriptores.isEmpty()) {
+                canal.cerrado = true;
+                canales.remove(canal.idPartido, canal);
+            }
+        }
+    }
+
+    private Set<DataWithMediaType> serializar(long id, String nombre, Object contenido) {
+        try {
+            return SseEmitter.event()
+                    .id(String.valueOf(id))
+                    .name(nombre)
+                    .data(objectMapper.writeValueAsString(contenido))
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar el evento del directo", e);
+        }
+    }
+
+    // Estado en memoria de un partido con espectadores; protegido por su propio monitor
+    private final class Canal {
+        private final Integer idPartido;
+        private final TreeMap<Integer, AccionResponseDTO> acciones = new TreeMap<>();
+        private final int[][] contadores = new int[EquipoAccion.values().length][N_CONTADORES];
+        private final EventoDirecto[] anillo = new EventoDirecto[tamanoAnillo];
+        private int eventosEnAnillo;
+        private int siguienteEnAnillo;
+        private long ultimoId;
+        private boolean cargado;
+        private boolean cerrado;
+        private final List<Suscriptor> suscriptores = new ArrayList<>();
+
+        private Canal(Integer idPartido) {
+            this.idPartido = idPartido;
+        }
+
+        private void cargar(List<AccionResponseDTO> iniciales) {
+            for (AccionResponseDTO accion : iniciales) {
+                acciones.put(accion.getSecuencia(), accion);
+                contar(accion, 1);
+            }
+            // Id nuevo: un Last-Event-ID de un canal anterior nunca coincide con este estado
+            ultimoId = ultimoIdEvento.incrementAndGet();
+            cargado = true;
+        }
+
+        // Aplica el cambio de forma idempotente (por secuencia): un evento que ya estaba
+        // incluido en la carga inicial no se cuenta dos veces
+        private EventoDirecto aplicar(AccionEvento evento) {
+            int[][] previos = copiaContadores();
+            AccionResponseDTO accion = evento.despues() != null ? evento.despues() : evento.antes();
+
+            AccionResponseDTO anterior = evento.despues() != null
+                    ? acciones.put(accion.getSecuencia(), accion)
+                    : acciones.remove(accion.getSecuencia());
+            if (anterior != null) {
+                contar(anterior, -1);
+            }
+            if (evento.despues() != null) {
+                contar(evento.despues(), 1);
+            }
+
+            DeltaDirectoDTO delta = new DeltaDirectoDTO(evento.tipo(), accion, marcador(),
+                    new EstadisticasDirectoDTO(diferencia(previos, LOCAL), diferencia(previos, VISITANTE)));
+            ultimoId = ultimoIdEvento.incrementAndGet();
+            EventoDirecto directo = new EventoDirecto(ultimoId, serializar(ultimoId, "accion", delta));
+
+            anillo[siguienteEnAnillo] = directo;
+            siguienteEnAnillo = (siguienteEnAnillo + 1) % anillo.length;
+            eventosEnAnillo = Math.min(eventosEnAnillo + 1, anillo.length);
+            return directo;
+        }
+
+        private EventoDirecto snapshot(PartidoResponseDTO partido) {
+            SnapshotDirectoDTO snapshot = new SnapshotDirectoDTO(idPartido, partido.getNombreEquipoLocal(),
+                    partido.getNombreEquipoVisitante(), marcador(),
+                    new EstadisticasDirectoDTO(contadoresDTO(contadores[LOCAL]), contadoresDTO(contadores[VISITANTE])),
+                    new ArrayList<>(acciones.values()));
+            return new EventoDirecto(ultimoId, serializar(ultimoId, "snapshot", snapshot));
+        }
+
+        // Eventos posteriores a ultimoIdVisto, o null si el anillo ya no los tiene todos
+        private List<EventoDirecto> eventosDesde(Long ultimoIdVisto) {
+            if (ultimoIdVisto == null || eventosEnAnillo == 0) {
+                return null;
+            }
+            if (ultimoIdVisto == ultimoId) {
+                return List.of();
+            }
+            List<EventoDirecto> perdidos = new ArrayList<>();
+            boolean encontrado = false;
+            for (int i = 0; i < eventosEnAnillo; i++) {
+                EventoDirecto evento = anillo[(siguienteEnAnillo - eventosEnAnillo + i + anillo.length) % anillo.length];
+                if (encontrado) {
+                    perdidos.add(evento);
+                } else if (evento.id() == ultimoIdVisto) {
+                    encontrado = true;
+                }
+            }
+            return encontrado ? perdidos : null;
+        }
+
+        private void contar(AccionResponseDTO accion, int signo) {
+            int[] equipo = contadores[accion.getEquipoAccion().ordinal()];
+            switch (accion.getEvento()) {
+                case Gol:
+                    equipo[GOLES] += signo;
+                    equipo[LANZAMIENTOS] += signo;
+                    break;
+                case Lanzamiento_Parado:
+                    equipo[PARADAS] += signo;
+                    equipo[LANZAMIENTOS] += signo;
+                    break;
+                case Lanzamiento_Fuera:
+                    equipo[FUERA] += signo;
+                    equipo[LANZAMIENTOS] += signo;
+                    break;
+                case Perdida:
+                    equipo[PERDIDAS] += signo;
+                    break;
+            }
+        }
+
+        private MarcadorDTO marcador() {
+            return new MarcadorDTO(contadores[LOCAL][GOLES], contadores[VISITANTE][GOLES]);
+        }
+
+        private int[][] copiaContadores() {
+            int[][] copia = new int[contadores.length][];
+            for (int i = 0; i < contadores.length; i++) {
+                copia[i] = contadores[i].clone();
+            }
+            return copia;
+        }
+
+        private ContadoresDirectoDTO diferencia(int[][] previos, int equipo) {
+            int[] antes = previos[equipo];
+            int[] ahora = contadores[equipo];
+            return new ContadoresDirectoDTO(ahora[GOLES] - antes[GOLES], ahora[LANZAMIENTOS] - antes[LANZAMIENTOS],
+                    ahora[PARADAS] - antes[PARADAS], ahora[FUERA] - antes[FUERA], ahora[PERDIDAS] - antes[PERDIDAS]);
+        }
+
+        private ContadoresDirectoDTO contadoresDTO(int[] valores) {
+            return new ContadoresDirectoDTO(valores[GOLES], valores[LANZAMIENTOS], valores[PARADAS],
+                    valores[FUERA], valores[PERDIDAS]);
+        }
+    }
+
+    // Un espectador: cola acotada propia y, como mucho, una tarea de envío en marcha
+    private final class Suscriptor {
+        private final SseEmitter emitter;
+        private final BlockingQueue<EventoDirecto> cola = new ArrayBlockingQueue<>(tamanoColaSuscriptor);
+        private final AtomicBoolean enviando = new AtomicBoolean();
+
+        private Suscriptor(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        // No bloquea nunca; devuelve false si la cola está llena
+        private boolean encolar(EventoDirecto evento) {
+            if (!cola.offer(evento)) {
+                return false;
+            }
+            programarEnvio();
+            return true;
+        }
+
+        private void programarEnvio() {
+            if (enviando.compareAndSet(false, true)) {
+                try {
+                    envios.execute(this::vaciar);
+                } catch (RejectedExecutionException e) {
+                    enviando.set(false);
+                }
+            }
+        }
+
+        private void vaciar() {
+            try {
+                EventoDirecto evento;
+                while ((evento = cola.poll()) != null) {
+                    emitter.send(evento.datos());
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Conexión cerrada por el cliente; onError/onCompletion lo dan de baja
+                cola.clear();
+                emitter.completeWithError(e);
+                return;
+            } finally {
+                enviando.set(false);
+            }
+            if (!cola.isEmpty()) {
+                programarEnvio();
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.dto.EnfrentamientoDTO;
+import com.HandballStats_Pro.handballstatspro.dto.PartidoEnfrentamientoDTO;
+import com.HandballStats_Pro.handballstatspro.entities.Equipo;
+import com.HandballStats_Pro.handballstatspro.entities.Partido;
+import com.HandballStats_Pro.handballstatspro.entities.PartidoEstadistica;
+import com.HandballStats_Pro.handballstatspro.enums.EquipoAccion;
+import com.HandballStats_Pro.handballstatspro.exceptions.ApiException;
+import com.HandballStats_Pro.handballstatspro.exceptions.PermissionDeniedException;
+import com.HandballStats_Pro.handballstatspro.exceptions.ResourceNotFoundException;
+import com.HandballStats_Pro.handballstatspro.repositories.EquipoRepository;
+import com.HandballStats_Pro.handballstatspro.repositories.PartidoEstadisticaRepository;
+import com.HandballStats_Pro.handballstatspro.repositories.PartidoRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Historial de enfrentamientos entre dos equipos asociados, con sus estadísticas acumuladas.
+ *
+ * Cada pareja se calcula una vez sumando las filas de partido_estadistica de sus partidos (vistas
+ * desde el equipo de id menor) y se guarda en una caché acotada (LRU). Una entrada se descarta tras
+ * el commit de cualquier cambio en las acciones de uno de sus partidos o en un partido de cualquiera
+ * de los dos equipos. Los cálculos en curso anotan los partidos y equipos que cambian mientras se
+ * hacen, y el resultado solo se descarta si alguno es suyo: los cambios de otros partidos no impiden
+ * guardarlo.
+ */
+@Service
+public class EnfrentamientosService {
+
+    private final PartidoRepository partidoRepository;
+    private final PartidoEstadisticaRepository partidoEstadisticaRepository;
+    private final EquipoRepository equipoRepository;
+    private final EstadisticasService estadisticasService;
+    private final PartidoService partidoService;
+    private final Map<Pareja, Historial> historiales;
+    // Cálculos sin terminar: cada uno anota lo que cambia mientras se hace
+    private final Set<Calculo> enCurso = new HashSet<>();
+
+    public EnfrentamientosService(PartidoRepository partidoRepository, PartidoEstadisticaRepository partidoEstadisticaRepository,
+                                  EquipoRepository equipoRepository, EstadisticasService estadisticasService,
+                                  PartidoService partidoService,
+                                  @Value("${enfrentamientos.cache.parejas-max:256}") int capacidad) {
+        this.partidoRepository = partidoRepository;
+        this.partidoEstadisticaRepository = partidoEstadisticaRepository;
+        this.equipoRepository = equipoRepository;
+        this.estadisticasService = estadisticasService;
+        this.partidoService = partidoService;
+        this.historiales = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Pareja, Historial> eldest) {
+                return size() > capacidad;
+            }
+        };
+    }
+
+    public EnfrentamientoDTO obtenerEnfrentamiento(Long idEquipo, Long idRival) {
+        if (idEquipo.equals(idRival)) {
+            throw new ApiException(HttpStatus.BAD_REQUEST, "SAME_TEAM", "El equipo y el rival deben ser distintos");
+        }
+        Equipo equipo = equipoRepository.findById(idEquipo)
+                .orElseThrow(() -> new ResourceNotFoundException("Equipo", "id", String.valueOf(idEquipo)));
+        Equipo rival = equipoRepository.findById(idRival)
+                .orElseThrow(() -> new ResourceNotFoundException("Equipo", "id", String.valueOf(idRival)));
+        // Quien tiene acceso a uno de los dos equipos puede ver todos los partidos entre ambos
+        if (!partidoService.puedeAccederEquipo(idEquipo) && !partidoService.puedeAccederEquipo(idRival)) {
+            throw new PermissionDeniedException();
+        }
+
+        Pareja pareja = Pareja.de(idEquipo, idRival);
+        Historial historial = historial(pareja);
+        // El historial está visto desde el equipo de id menor
+        boolean desdeMenor = idEquipo.equals(pareja.menor());
+
+        EnfrentamientoDTO dto = new EnfrentamientoDTO();
+        dto.setIdEquipo(idEquipo);
+        dto.setNombreEquipo(equipo.getNombre());
+        dto.setIdRival(idRival);
+        dto.setNombreRival(rival.getNombre());
+        for (PartidoHistorial partido : historial.partidos()) {
+            int golesEquipo = desdeMenor ? partido.golesMenor() : partido.golesMayor();
+            int golesRival = desdeMenor ? partido.golesMayor() : partido.golesMenor();
+            dto.getPartidos().add(new PartidoEnfrentamientoDTO(partido.idPartido(), partido.fecha(), partido.competicion(),
+                    partido.menorLocal() == desdeMenor, golesEquipo, golesRival));
+            if (golesEquipo > golesRival) {
+                dto.setVictorias(dto.getVictorias() + 1);
+            } else if (golesEquipo < golesRival) {
+                dto.setDerrotas(dto.getDerrotas() + 1);
+            } else {
+                dto.setEmpates(dto.getEmpates() + 1);
+            }
+        }
+        dto.setEquipo(historial.estadisticas().equipoDTO(desdeMenor ? EquipoAccion.LOCAL : EquipoAccion.VISITANTE));
+        dto.setRival(historial.estadisticas().equipoDTO(desdeMenor ? EquipoAccion.VISITANTE : EquipoAccion.LOCAL));
+        return dto;
+    }
+
+    // INVALIDACIÓN (tras el commit del cambio)
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void alCambiarAccion(AccionEvento evento) {
+        historiales.values().removeIf(historial -> historial.idsPartidos().contains(evento.idPartido()));
+        // Aunque no haya nada en caché: un cálculo en curso puede estar leyendo ese partido
+        enCurso.forEach(calculo -> calculo.partidos.add(evento.idPartido()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void alCambiarPartido(PartidoEvento evento) {
+        Set<Long> equipos = new HashSet<>(Arrays.asList(
+                evento.localAntes(), evento.visitanteAntes(), evento.localDespues(), evento.visitanteDespues()));
+        historiales.keySet().removeIf(pareja -> equipos.contains(pareja.menor()) || equipos.contains(pareja.mayor()));
+        enCurso.forEach(calculo -> {
+            calculo.partidos.add(evento.idPartido());
+            calculo.equipos.addAll(equipos);
+        });
+    }
+
+    // Tras un recálculo completo de las estadísticas
+    public synchronized void vaciar() {
+        historiales.clear();
+        enCurso.forEach(calculo -> calculo.todo = true);
+    }
+
+    // MÉTODOS AUXILIARES
+
+    private Historial historial(Pareja pareja) {
+        Calculo calculo = new Calculo();
+        synchronized (this) {
+            Historial enCache = historiales.get(pareja);
+            if (enCache != null) {
+                return enCache;
+            }
+            enCurso.add(calculo);
+        }
+        Historial calculado = null;
+        try {
+            calculado = calcular(pareja);
+        } finally {
+            synchronized (this) {
+                enCurso.remove(calculo);
+                if (calculado != null && calculo.vigente(pareja, calculado)) {
+                    historiales.put(pareja, calculado);
+                }
+            }
+        }
+        return calculado;
+    }
+
+    private Historial calcular(Pareja pareja) {
+        List<Partido> partidos = partidoRepository.findEnfrentamientos(pareja.menor(), pareja.mayor());
+        Map<Integer, EstadisticasPartido> porPartido = new HashMap<>();
+        for (PartidoEstadistica fila : partidoEstadisticaRepository.findAllById(partidos.stream().map(Partido::getIdPartido).toList())) {
+            EstadisticasPartido estadisticas = EstadisticasPartido.deBytes(fila.getAcciones(), fila.getContadores());
+            if (estadisticas != null) {
+                porPartido.put(fila.getIdPartido(), estadisticas);
+            }
+        }
+
+        EstadisticasPartido acumulado = new EstadisticasPartido();
+        List<PartidoHistorial> historial = new ArrayList<>(partidos.size());
+        for (Partido partido : partidos) {
+            EstadisticasPartido estadisticas = porPartido.get(partido.getIdPartido());
+            if (estadisticas == null) {
+                // Sin fila materializada (o de otra disposición): se reconstruye y queda guardada
+                estadisticas = estadisticasService.reconstruir(partido.getIdPartido());
+            }
+            boolean menorLocal = pareja.menor().equals(partido.getIdEquipoLocalAsociado());
+            EquipoAccion ladoMenor = menorLocal ? EquipoAccion.LOCAL : EquipoAccion.VISITANTE;
+            EquipoAccion ladoMayor = menorLocal ? EquipoAccion.VISITANTE : EquipoAccion.LOCAL;
+            acumulado.combinarComo(estadisticas, ladoMenor, 1);
+            historial.add(new PartidoHistorial(partido.getIdPartido(), partido.getFecha(), partido.getCompeticion(), menorLocal,
+                    estadisticas.goles(ladoMenor), estadisticas.goles(ladoMayor)));
+        }
+        Set<Integer> ids = new HashSet<>();
+        historial.forEach(partido -> ids.add(partido.idPartido()));
+        return new Historial(List.copyOf(historial), Set.copyOf(ids), acumulado);
+    }
+
+    // Cambios vistos durante un cálculo; se modifica bajo el monitor del servicio
+    private static final class Calculo {
+
+        private final Set<Integer> partidos = new HashSet<>();
+        private final Set<Long> equipos = new HashSet<>();
+        private boolean todo;
+
+        boolean vigente(Pareja pareja, Historial calculado) {
+            return !todo && !equipos.contains(pareja.menor()) && !equipos.contains(pareja.mayor())
+                    && Collections.disjoint(partidos, calculado.idsPartidos());
+        }
+    }
+
+    private record Pareja(Long menor, Long mayor) {
+
+        static Pareja de(Long uno, Long otro) {
+            return uno < otro ? new Pareja(uno, otro) : new Pareja(otro, uno);
+        }
+    }
+
+    private record PartidoHistorial(Integer idPartido, LocalDate fecha, String competicion, boolean menorLocal,
+                                    int golesMenor, int golesMayor) {
+    }
+
+    // Solo se lee una vez guardado en la caché
+    private record Historial(List<PartidoHistorial> partidos, Set<Integer> idsPartidos, EstadisticasPartido estadisticas) {
+    }
+}
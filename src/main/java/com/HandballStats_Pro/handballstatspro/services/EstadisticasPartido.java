@@ -0,0 +1,234 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.dto.AccionResponseDTO;
+import com.HandballStats_Pro.handballstatspro.dto.ContadoresLanzamientoDTO;
+import com.HandballStats_Pro.handballstatspro.dto.EstadisticasEquipoDTO;
+import com.HandballStats_Pro.handballstatspro.enums.*;
+
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Motor de estadísticas de acciones: todos los contadores viven en un único int[] indexado por los
+ * ordinales de los enums, así que sumar una acción son unas pocas sumas sin reservar memoria.
+ *
+ * Por cada equipo hay bloques de cinco contadores (lanzamientos, goles, paradas, fuera, pérdidas):
+ * uno con el total y uno por zona, por detalle de finalización y por tipo de ataque; detrás va un
+ * contador por detalle de evento y el cubo de lanzamientos (zona x finalización x tipo de ataque x
+ * resultado), denso y de tamaño fijo, del que cualquier corte se suma en unas pocas celdas.
+ *
+ * Las acciones se pueden restar (signo -1) y dos motores se pueden combinar, de modo que sirve igual
+ * para un partido que para agregados de muchos. Los contadores se pueden guardar en binario
+ * (partido_estadistica) y recuperar tal cual.
+ */
+public final class EstadisticasPartido {
+
+    // Posiciones dentro de un bloque
+    private static final int LANZAMIENTOS = 0;
+    private static final int GOLES = 1;
+    private static final int PARADAS = 2;
+    private static final int FUERA = 3;
+    private static final int PERDIDAS = 4;
+    private static final int TAMANO_BLOQUE = 5;
+
+    private static final ZonaLanzamiento[] ZONAS = ZonaLanzamiento.values();
+    private static final DetalleFinalizacion[] FINALIZACIONES = DetalleFinalizacion.values();
+    private static final TipoAtaque[] TIPOS_ATAQUE = TipoAtaque.values();
+    private static final DetalleEvento[] DETALLES_EVENTO = DetalleEvento.values();
+    private static final ResultadoLanzamiento[] RESULTADOS = ResultadoLanzamiento.values();
+
+    // Desplazamientos dentro de la parte de un equipo
+    private static final int TOTAL = 0;
+    private static final int POR_ZONA = TOTAL + TAMANO_BLOQUE;
+    private static final int POR_FINALIZACION = POR_ZONA + ZONAS.length * TAMANO_BLOQUE;
+    private static final int POR_TIPO_ATAQUE = POR_FINALIZACION + FINALIZACIONES.length * TAMANO_BLOQUE;
+    private static final int POR_DETALLE_EVENTO = POR_TIPO_ATAQUE + TIPOS_ATAQUE.length * TAMANO_BLOQUE;
+    private static final int CUBO = POR_DETALLE_EVENTO + DETALLES_EVENTO.length;
+    static final int POR_EQUIPO = CUBO + ZONAS.length * FINALIZACIONES.length * TIPOS_ATAQUE.length * RESULTADOS.length;
+
+    static final int TAMANO = POR_EQUIPO * EquipoAccion.values().length;
+
+    private final int[] contadores;
+    private int acciones;
+
+    public EstadisticasPartido() {
+        this.contadores = new int[TAMANO];
+    }
+
+    public int getAcciones() {
+        return acciones;
+    }
+
+    public void sumar(EquipoAccion equipo, TipoAtaque tipoAtaque, Evento evento, DetalleFinalizacion detalleFinalizacion,
+                      ZonaLanzamiento zonaLanzamiento, DetalleEvento detalleEvento, int signo) {
+        int base = equipo.ordinal() * POR_EQUIPO;
+        int contador = contadorDe(evento);
+        sumarBloque(base + TOTAL, contador, signo);
+        if (zonaLanzamiento != null) {
+            sumarBloque(base + POR_ZONA + zonaLanzamiento.ordinal() * TAMANO_BLOQUE, contador, signo);
+        }
+        if (detalleFinalizacion != null) {
+            sumarBloque(base + POR_FINALIZACION + detalleFinalizacion.ordinal() * TAMANO_BLOQUE, contador, signo);
+        }
+        if (tipoAtaque != null) {
+            sumarBloque(base + POR_TIPO_ATAQUE + tipoAtaque.ordinal() * TAMANO_BLOQUE, contador, signo);
+        }
+        if (detalleEvento != null) {
+            contadores[base + POR_DETALLE_EVENTO + detalleEvento.ordinal()] += signo;
+        }
+        ResultadoLanzamiento resultado = resultadoDe(evento, detalleEvento);
+        if (resultado != null && zonaLanzamiento != null && detalleFinalizacion != null && tipoAtaque != null) {
+            contadores[base + celda(zonaLanzamiento.ordinal(), detalleFinalizacion.ordinal(), tipoAtaque.ordinal(), resultado.ordinal())] += signo;
+        }
+        acciones += signo;
+    }
+
+    public void sumar(AccionResponseDTO accion, int signo) {
+        sumar(accion.getEquipoAccion(), accion.getTipoAtaque(), accion.getEvento(), accion.getDetalleFinalizacion(),
+                accion.getZonaLanzamiento(), accion.getDetalleEvento(), signo);
+    }
+
+    public void combinar(EstadisticasPartido otro) {
+        combinarComo(otro, EquipoAccion.LOCAL, 1);
+    }
+
+    // Suma (o resta, con signo -1) otro motor visto desde uno de sus equipos: los contadores de
+    // "propio" van a la parte LOCAL de este y los de su rival a la VISITANTE. Es lo que usan los
+    // agregados por equipo, donde el equipo asociado pudo jugar de local o de visitante.
+    public void combinarComo(EstadisticasPartido otro, EquipoAccion propio, int signo) {
+        int origenPropio = propio.ordinal() * POR_EQUIPO;
+        int origenRival = (propio == EquipoAccion.LOCAL ? EquipoAccion.VISITANTE : EquipoAccion.LOCAL).ordinal() * POR_EQUIPO;
+        int destinoPropio = EquipoAccion.LOCAL.ordinal() * POR_EQUIPO;
+        int destinoRival = EquipoAccion.VISITANTE.ordinal() * POR_EQUIPO;
+        for (int i = 0; i < POR_EQUIPO; i++) {
+            contadores[destinoPropio + i] += signo * otro.contadores[origenPropio + i];
+            contadores[destinoRival + i] += signo * otro.contadores[origenRival + i];
+        }
+        acciones += signo * otro.acciones;
+    }
+
+    // Contadores en binario (int big-endian en el orden del array)
+    public byte[] aBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(TAMANO * Integer.BYTES);
+        buffer.asIntBuffer().put(contadores);
+        return buffer.array();
+    }
+
+    // Devuelve null si el binario se guardó con otra disposición (p. ej. tras añadir valores a un enum)
+    public static EstadisticasPartido deBytes(int acciones, byte[] bytes) {
+        if (bytes == null || bytes.length != TAMANO * Integer.BYTES) {
+            return null;
+        }
+        EstadisticasPartido estadisticas = new EstadisticasPartido();
+        ByteBuffer.wrap(bytes).asIntBuffer().get(estadisticas.contadores);
+        estadisticas.acciones = acciones;
+        return estadisticas;
+    }
+
+    // Corte del cubo de lanzamientos de un equipo: lanzamientos por zona y resultado [zona][resultado].
+    // Las dimensiones a null se suman enteras.
+    public int[][] corteLanzamientos(EquipoAccion equipo, DetalleFinalizacion detalleFinalizacion, TipoAtaque tipoAtaque) {
+        int base = equipo.ordinal() * POR_EQUIPO;
+        int[][] corte = new int[ZONAS.length][RESULTADOS.length];
+        for (int zona = 0; zona < ZONAS.length; zona++) {
+            for (int fin = 0; fin < FINALIZACIONES.length; fin++) {
+                if (detalleFinalizacion != null && fin != detalleFinalizacion.ordinal()) {
+                    continue;
+                }
+                for (int tipo = 0; tipo < TIPOS_ATAQUE.length; tipo++) {
+                    if (tipoAtaque != null && tipo != tipoAtaque.ordinal()) {
+                        continue;
+                    }
+                    for (int resultado = 0; resultado < RESULTADOS.length; resultado++) {
+                        corte[zona][resultado] += contadores[base + celda(zona, fin, tipo, resultado)];
+                    }
+                }
+            }
+        }
+        return corte;
+    }
+
+    public int goles(EquipoAccion equipo) {
+        return contadores[equipo.ordinal() * POR_EQUIPO + TOTAL + GOLES];
+    }
+
+    public EstadisticasEquipoDTO equipoDTO(EquipoAccion equipo) {
+        int base = equipo.ordinal() * POR_EQUIPO;
+        EstadisticasEquipoDTO dto = new EstadisticasEquipoDTO();
+        dto.setTotal(bloqueDTO(base + TOTAL));
+        dto.setSieteMetros(bloqueDTO(base + POR_FINALIZACION + DetalleFinalizacion._7m.ordinal() * TAMANO_BLOQUE));
+
+        Map<ZonaLanzamiento, ContadoresLanzamientoDTO> porZona = new EnumMap<>(ZonaLanzamiento.class);
+        for (ZonaLanzamiento zona : ZONAS) {
+            porZona.put(zona, bloqueDTO(base + POR_ZONA + zona.ordinal() * TAMANO_BLOQUE));
+        }
+        dto.setPorZona(porZona);
+
+        Map<DetalleFinalizacion, ContadoresLanzamientoDTO> porFinalizacion = new EnumMap<>(DetalleFinalizacion.class);
+        for (DetalleFinalizacion finalizacion : FINALIZACIONES) {
+            porFinalizacion.put(finalizacion, bloqueDTO(base + POR_FINALIZACION + finalizacion.ordinal() * TAMANO_BLOQUE));
+        }
+        dto.setPorFinalizacion(porFinalizacion);
+
+        Map<TipoAtaque, ContadoresLanzamientoDTO> porTipoAtaque = new EnumMap<>(TipoAtaque.class);
+        for (TipoAtaque tipo : TIPOS_ATAQUE) {
+            porTipoAtaque.put(tipo, bloqueDTO(base + POR_TIPO_ATAQUE + tipo.ordinal() * TAMANO_BLOQUE));
+        }
+        dto.setPorTipoAtaque(porTipoAtaque);
+
+        Map<DetalleEvento, Integer> porDetalleEvento = new EnumMap<>(DetalleEvento.class);
+        for (DetalleEvento detalle : DETALLES_EVENTO) {
+            porDetalleEvento.put(detalle, contadores[base + POR_DETALLE_EVENTO + detalle.ordinal()]);
+        }
+        dto.setPorDetalleEvento(porDetalleEvento);
+        return dto;
+    }
+
+    private void sumarBloque(int bloque, int contador, int signo) {
+        contadores[bloque + contador] += signo;
+        if (contador != PERDIDAS) {
+            contadores[bloque + LANZAMIENTOS] += signo;
+        }
+    }
+
+    private static int celda(int zona, int finalizacion, int tipoAtaque, int resultado) {
+        return CUBO + ((zona * FINALIZACIONES.length + finalizacion) * TIPOS_ATAQUE.length + tipoAtaque) * RESULTADOS.length + resultado;
+    }
+
+    private static ResultadoLanzamiento resultadoDe(Evento evento, DetalleEvento detalleEvento) {
+        if (evento == Evento.Gol) {
+            return ResultadoLanzamiento.Gol;
+        }
+        if (evento == Evento.Perdida || detalleEvento == null) {
+            return null;
+        }
+        return switch (detalleEvento) {
+            case Parada_Portero -> ResultadoLanzamiento.Parada_Portero;
+            case Bloqueo_Defensor -> ResultadoLanzamiento.Bloqueo_Defensor;
+            case Palo -> ResultadoLanzamiento.Palo;
+            case Fuera_Directo -> ResultadoLanzamiento.Fuera_Directo;
+            default -> null;
+        };
+    }
+
+    private static int contadorDe(Evento evento) {
+        return switch (evento) {
+            case Gol -> GOLES;
+            case Lanzamiento_Parado -> PARADAS;
+            case Lanzamiento_Fuera -> FUERA;
+            case Perdida -> PERDIDAS;
+        };
+    }
+
+    private ContadoresLanzamientoDTO bloqueDTO(int bloque) {
+        ContadoresLanzamientoDTO dto = new ContadoresLanzamientoDTO();
+        dto.setLanzamientos(contadores[bloque + LANZAMIENTOS]);
+        dto.setGoles(contadores[bloque + GOLES]);
+        dto.setParadas(contadores[bloque + PARADAS]);
+        dto.setFuera(contadores[bloque + FUERA]);
+        dto.setPerdidas(contadores[bloque + PERDIDAS]);
+        dto.setEficiencia(dto.getLanzamientos() == 0 ? 0 : (double) dto.getGoles() / dto.getLanzamientos());
+        return dto;
+    }
+}
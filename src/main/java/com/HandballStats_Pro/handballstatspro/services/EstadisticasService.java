@@ -0,0 +1,162 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.dto.EstadisticasPartidoDTO;
+import com.HandballStats_Pro.handballstatspro.entities.Partido;
+import com.HandballStats_Pro.handballstatspro.entities.PartidoEstadistica;
+import com.HandballStats_Pro.handballstatspro.enums.*;
+import com.HandballStats_Pro.handballstatspro.exceptions.PermissionDeniedException;
+import com.HandballStats_Pro.handballstatspro.exceptions.ResourceNotFoundException;
+import com.HandballStats_Pro.handballstatspro.repositories.PartidoEstadisticaRepository;
+import com.HandballStats_Pro.handballstatspro.repositories.PartidoRepository;
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Optional;
+
+/**
+ * Estadísticas de los partidos, materializadas en partido_estadistica.
+ *
+ * Leer las de un partido es una búsqueda por clave primaria. Cada alta, edición o borrado de una
+ * acción aplica su diferencia a la fila dentro de la misma transacción (resta la versión anterior
+ * y suma la nueva), así que no se vuelve a recorrer el partido. Si la fila no existe o se guardó con
+ * otra disposición, se reconstruye con una pasada sobre las acciones, leídas por JDBC directamente
+ * al motor (EstadisticasPartido) sin crear entidades.
+ */
+@Slf4j
+@Service
+public class EstadisticasService {
+
+    private static final String CONSULTA_ACCIONES =
+            "SELECT equipo_accion, tipo_ataque, evento, detalle_finalizacion, zona_lanzamiento, detalle_evento "
+            + "FROM accion WHERE id_partido = ?";
+
+    private final PartidoRepository partidoRepository;
+    private final PartidoEstadisticaRepository partidoEstadisticaRepository;
+    private final PartidoService partidoService;
+    private final BloqueoPartidos bloqueoPartidos;
+    private final JdbcTemplate jdbcTemplate;
+    private final DiarioAcciones diarioAcciones;
+    private final TransactionTemplate transaccionPropia;
+
+    public EstadisticasService(PartidoRepository partidoRepository, PartidoEstadisticaRepository partidoEstadisticaRepository,
+                               PartidoService partidoService, BloqueoPartidos bloqueoPartidos, JdbcTemplate jdbcTemplate,
+                               DiarioAcciones diarioAcciones, PlatformTransactionManager transactionManager) {
+        this.partidoRepository = partidoRepository;
+        this.partidoEstadisticaRepository = partidoEstadisticaRepository;
+        this.partidoService = partidoService;
+        this.bloqueoPartidos = bloqueoPartidos;
+        this.jdbcTemplate = jdbcTemplate;
+        this.diarioAcciones = diarioAcciones;
+        // Cada reconstrucción en su propia transacción, empezada después de bloquear el partido
+        this.transaccionPropia = new TransactionTemplate(transactionManager);
+        this.transaccionPropia.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public EstadisticasPartidoDTO obtenerEstadisticas(Integer idPartido) {
+        Partido partido = partidoRepository.findById(idPartido)
+                .orElseThrow(() -> new ResourceNotFoundException("Partido", "id", String.valueOf(idPartido)));
+        if (!partidoService.puedeAccederPartido(partido)) {
+            throw new PermissionDeniedException();
+        }
+        return aDTO(idPartido, materializadas(idPartido));
+    }
+
+    // Fila del partido, reconstruida si falta o se guardó con otra disposición (sin comprobar permisos)
+    public EstadisticasPartido materializadas(Integer idPartido) {
+        return partidoEstadisticaRepository.findById(idPartido)
+                .map(fila -> EstadisticasPartido.deBytes(fila.getAcciones(), fila.getContadores()))
+                .orElseGet(() -> reconstruir(idPartido));
+    }
+
+    // Síncrono, dentro de la transacción que cambia la acción (que ya tiene el partido bloqueado)
+    @EventListener
+    @Transactional
+    public void alCambiarAccion(AccionEvento evento) {
+        Optional<PartidoEstadistica> fila = partidoEstadisticaRepository.findParaActualizarByIdPartido(evento.idPartido());
+        if (fila.isEmpty()) {
+            // Se calculará entera en la primera lectura
+            return;
+        }
+        PartidoEstadistica partidoEstadistica = fila.get();
+        EstadisticasPartido estadisticas = EstadisticasPartido.deBytes(partidoEstadistica.getAcciones(), partidoEstadistica.getContadores());
+        if (estadisticas == null) {
+            partidoEstadisticaRepository.delete(partidoEstadistica);
+            return;
+        }
+        if (evento.antes() != null) {
+            estadisticas.sumar(evento.antes(), -1);
+        }
+        if (evento.despues() != null) {
+            estadisticas.sumar(evento.despues(), 1);
+        }
+        partidoEstadistica.setAcciones(estadisticas.getAcciones());
+        partidoEstadistica.setContadores(estadisticas.aBytes());
+    }
+
+    // Recalcula la fila desde las acciones; repara cualquier desvío de los deltas. Las acciones del
+    // partido que sigan en el diario se vuelcan antes de leer, o la fila nacería sin ellas.
+    public EstadisticasPartido reconstruir(Integer idPartido) {
+        return transaccionPropia.execute(estado -> {
+            bloqueoPartidos.bloquearHastaFinTransaccion(idPartido);
+            diarioAcciones.volcarPartido(idPartido);
+            EstadisticasPartido estadisticas = calcular(idPartido);
+            partidoEstadisticaRepository.save(new PartidoEstadistica(idPartido, estadisticas.getAcciones(), estadisticas.aBytes()));
+            return estadisticas;
+        });
+    }
+
+    public EstadisticasPartidoDTO reconstruirPartido(Integer idPartido) {
+        if (!partidoRepository.existsById(idPartido)) {
+            throw new ResourceNotFoundException("Partido", "id", String.valueOf(idPartido));
+        }
+        return aDTO(idPartido, reconstruir(idPartido));
+    }
+
+    // Reconstruye todos los partidos, uno por transacción; devuelve cuántos
+    public int reconstruirTodos() {
+        int partidos = 0;
+        for (Integer idPartido : partidoRepository.findAllIds()) {
+            reconstruir(idPartido);
+            partidos++;
+        }
+        log.info("Estadísticas reconstruidas para {} partidos", partidos);
+        return partidos;
+    }
+
+    // Recorre las acciones del partido una vez
+    public EstadisticasPartido calcular(Integer idPartido) {
+        EstadisticasPartido estadisticas = new EstadisticasPartido();
+        jdbcTemplate.query(CONSULTA_ACCIONES, (RowCallbackHandler) rs -> sumarFila(estadisticas, rs), idPartido);
+        return estadisticas;
+    }
+
+    public static EstadisticasPartidoDTO aDTO(Integer idPartido, EstadisticasPartido estadisticas) {
+        return new EstadisticasPartidoDTO(idPartido, estadisticas.getAcciones(),
+                estadisticas.equipoDTO(EquipoAccion.LOCAL), estadisticas.equipoDTO(EquipoAccion.VISITANTE));
+    }
+
+    // Los enums se guardan por nombre; valueOf es una búsqueda en un mapa que ya existe
+    private static void sumarFila(EstadisticasPartido estadisticas, ResultSet rs) throws SQLException {
+        estadisticas.sumar(
+                EquipoAccion.valueOf(rs.getString(1)),
+                TipoAtaque.valueOf(rs.getString(2)),
+                Evento.valueOf(rs.getString(3)),
+                valor(DetalleFinalizacion.class, rs.getString(4)),
+                valor(ZonaLanzamiento.class, rs.getString(5)),
+                valor(DetalleEvento.class, rs.getString(6)),
+                1);
+    }
+
+    private static <E extends Enum<E>> E valor(Class<E> tipo, String nombre) {
+        return nombre == null ? null : Enum.valueOf(tipo, nombre);
+    }
+}
@@ -0,0 +1,329 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.dto.EstadisticasTemporadaDTO;
+import com.HandballStats_Pro.handballstatspro.entities.*;
+import com.HandballStats_Pro.handballstatspro.enums.EquipoAccion;
+import com.HandballStats_Pro.handballstatspro.exceptions.PermissionDeniedException;
+import com.HandballStats_Pro.handballstatspro.exceptions.ResourceNotFoundException;
+import com.HandballStats_Pro.handballstatspro.repositories.*;
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+/**
+ * Acumulados de temporada en tres niveles: partido (partido_estadistica) -> equipo (equipo_estadistica;
+ * el equipo ya es de una temporada) -> club + temporada + categoría (club_estadistica).
+ *
+ * En los niveles de equipo y club los contadores se guardan desde el punto de vista del equipo: la parte
+ * LOCAL es el propio equipo y la VISITANTE sus rivales, tanto si jugó de local como de visitante.
+ * Cada cambio de una acción o de los equipos asociados a un partido se aplica como delta a las filas
+ * existentes en la misma transacción; una fila que falta se construye al leerla sumando el nivel
+ * inferior, y el comando de reconstrucción repara cualquier desvío.
+ */
+@Slf4j
+@Service
+public class EstadisticasTemporadaService {
+
+    private final EquipoEstadisticaRepository equipoEstadisticaRepository;
+    private final ClubEstadisticaRepository clubEstadisticaRepository;
+    private final PartidoEstadisticaRepository partidoEstadisticaRepository;
+    private final PartidoRepository partidoRepository;
+    private final EquipoRepository equipoRepository;
+    private final EstadisticasService estadisticasService;
+    private final PartidoService partidoService;
+    private final TransactionTemplate transaccionPropia;
+
+    public EstadisticasTemporadaService(EquipoEstadisticaRepository equipoEstadisticaRepository,
+                                        ClubEstadisticaRepository clubEstadisticaRepository,
+                                        PartidoEstadisticaRepository partidoEstadisticaRepository,
+                                        PartidoRepository partidoRepository, EquipoRepository equipoRepository,
+                                        EstadisticasService estadisticasService, PartidoService partidoService,
+                                        PlatformTransactionManager transactionManager) {
+        this.equipoEstadisticaRepository = equipoEstadisticaRepository;
+        this.clubEstadisticaRepository = clubEstadisticaRepository;
+        this.partidoEstadisticaRepository = partidoEstadisticaRepository;
+        this.partidoRepository = partidoRepository;
+        this.equipoRepository = equipoRepository;
+        this.estadisticasService = estadisticasService;
+        this.partidoService = partidoService;
+        this.transaccionPropia = new TransactionTemplate(transactionManager);
+        this.transaccionPropia.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // LECTURA
+
+    public EstadisticasTemporadaDTO obtenerPorEquipo(Long idEquipo) {
+        Equipo equipo = equipoRepository.findById(idEquipo)
+                .orElseThrow(() -> new ResourceNotFoundException("Equipo", "id", String.valueOf(idEquipo)));
+        if (!partidoService.puedeAccederEquipo(idEquipo)) {
+            throw new PermissionDeniedException();
+        }
+        EquipoEstadistica fila = acumuladoEquipo(idEquipo);
+
+        EstadisticasTemporadaDTO dto = aDTO(fila.getPartidos(), fila.getAcciones(), fila.getContadores());
+        dto.setIdEquipo(idEquipo);
+        dto.setIdClub(equipo.getClub() != null ? equipo.getClub().getIdClub() : null);
+        dto.setTemporada(equipo.getTemporada());
+        dto.setCategoria(equipo.getCategoria());
+        return dto;
+    }
+
+    // Fila del equipo, construida si falta o se guardó con otra disposición (sin comprobar permisos)
+    public EquipoEstadistica acumuladoEquipo(Long idEquipo) {
+        return equipoEstadisticaRepository.findById(idEquipo)
+                .filter(existente -> EstadisticasPartido.deBytes(existente.getAcciones(), existente.getContadores()) != null)
+                .orElseGet(() -> reconstruirEquipo(idEquipo));
+    }
+
+    // Una fila por categoría del club en la temporada (o solo la pedida)
+    public List<EstadisticasTemporadaDTO> obtenerPorClub(Long idClub, String temporada, String categoria) {
+        if (!partidoService.puedeAccederClub(idClub)) {
+            throw new PermissionDeniedException();
+        }
+        SortedSet<String> categorias = new TreeSet<>();
+        for (Equipo equipo : equiposDelClub(idClub, temporada, null)) {
+            categorias.add(equipo.getCategoria());
+        }
+        if (categoria != null && !categoria.isBlank()) {
+            categorias.retainAll(Set.of(categoria));
+        }
+
+        List<EstadisticasTemporadaDTO> resultado = new ArrayList<>();
+        for (String cat : categorias) {
+            ClubEstadisticaId id = new ClubEstadisticaId(idClub, temporada, cat);
+            ClubEstadistica fila = clubEstadisticaRepository.findById(id)
+                    .filter(existente -> EstadisticasPartido.deBytes(existente.getAcciones(), existente.getContadores()) != null)
+                    .orElseGet(() -> reconstruirClub(id));
+            EstadisticasTemporadaDTO dto = aDTO(fila.getPartidos(), fila.getAcciones(), fila.getContadores());
+            dto.setIdClub(idClub);
+            dto.setTemporada(temporada);
+            dto.setCategoria(cat);
+            resultado.add(dto);
+        }
+        return resultado;
+    }
+
+    // MANTENIMIENTO INCREMENTAL (síncrono, dentro de la transacción que hace el cambio)
+
+    @EventListener
+    @Transactional
+    public void alCambiarAccion(AccionEvento evento) {
+        Partido partido = partidoRepository.findById(evento.idPartido()).orElse(null);
+        if (partido == null || (partido.getIdEquipoLocalAsociado() == null && partido.getIdEquipoVisitanteAsociado() == null)) {
+            return;
+        }
+        EstadisticasPartido delta = new EstadisticasPartido();
+        if (evento.antes() != null) {
+            delta.sumar(evento.antes(), -1);
+        }
+        if (evento.despues() != null) {
+            delta.sumar(evento.despues(), 1);
+        }
+        aplicar(partido.getIdEquipoLocalAsociado(), EquipoAccion.LOCAL, delta, 1, 0);
+        aplicar(partido.getIdEquipoVisitanteAsociado(), EquipoAccion.VISITANTE, delta, 1, 0);
+    }
+
+    // El partido sale de los acumulados de los equipos que deja y entra en los de los nuevos
+    @EventListener
+    @Transactional
+    public void alCambiarPartido(PartidoEvento evento) {
+        if (Objects.equals(evento.localAntes(), evento.localDespues())
+                && Objects.equals(evento.visitanteAntes(), evento.visitanteDespues())) {
+            return;
+        }
+        EstadisticasPartido partido = partidoEstadisticaRepository.findById(evento.idPartido())
+                .map(fila -> EstadisticasPartido.deBytes(fila.getAcciones(), fila.getContadores()))
+                .orElse(null);
+        if (partido == null) {
+            // Sin fila materializada no se puede calcular aquí: las acciones que siguen en el diario solo
+            // se vuelcan con la fila del partido libre, y esta transacción la retiene. Se descartan los
+            // acumulados afectados y se reconstruyen al leerlos
+            if (!Objects.equals(evento.localAntes(), evento.localDespues())) {
+                descartar(evento.localAntes());
+                descartar(evento.localDespues());
+            }
+            if (!Objects.equals(evento.visitanteAntes(), evento.visitanteDespues())) {
+                descartar(evento.visitanteAntes());
+                descartar(evento.visitanteDespues());
+            }
+            return;
+        }
+        if (!Objects.equals(evento.localAntes(), evento.localDespues())) {
+            aplicar(evento.localAntes(), EquipoAccion.LOCAL, partido, -1, -1);
+            aplicar(evento.localDespues(), EquipoAccion.LOCAL, partido, 1, 1);
+        }
+        if (!Objects.equals(evento.visitanteAntes(), evento.visitanteDespues())) {
+            aplicar(evento.visitanteAntes(), EquipoAccion.VISITANTE, partido, -1, -1);
+            aplicar(evento.visitanteDespues(), EquipoAccion.VISITANTE, partido, 1, 1);
+        }
+    }
+
+    // Aplica los contadores vistos desde "lado" al equipo y a su club; las filas que no existen se construirán al leerlas
+    private void aplicar(Long idEquipo, EquipoAccion lado, EstadisticasPartido cambio, int signo, int partidos) {
+        if (idEquipo == null) {
+            return;
+        }
+        equipoEstadisticaRepository.findParaActualizarByIdEquipo(idEquipo).ifPresent(fila -> {
+            EstadisticasPartido acumulado = EstadisticasPartido.deBytes(fila.getAcciones(), fila.getContadores());
+            if (acumulado == null) {
+                equipoEstadisticaRepository.delete(fila);
+                return;
+            }
+            acumulado.combinarComo(cambio, lado, signo);
+            fila.setPartidos(fila.getPartidos() + partidos);
+            fila.setAcciones(acumulado.getAcciones());
+            fila.setContadores(acumulado.aBytes());
+        });
+
+        Equipo equipo = equipoRepository.findById(idEquipo).orElse(null);
+        if (equipo == null || equipo.getClub() == null) {
+            return;
+        }
+        ClubEstadisticaId id = new ClubEstadisticaId(equipo.getClub().getIdClub(), equipo.getTemporada(), equipo.getCategoria());
+        clubEstadisticaRepository.findParaActualizarById(id).ifPresent(fila -> {
+            EstadisticasPartido acumulado = EstadisticasPartido.deBytes(fila.getAcciones(), fila.getContadores());
+            if (acumulado == null) {
+                clubEstadisticaRepository.delete(fila);
+                return;
+            }
+            acumulado.combinarComo(cambio, lado, signo);
+            fila.setPartidos(fila.getPartidos() + partidos);
+            fila.setAcciones(acumulado.getAcciones());
+            fila.setContadores(acumulado.aBytes());
+        });
+    }
+
+    // RECONSTRUCCIÓN
+
+    // Suma las estadísticas de los partidos del equipo, cada una desde el lado en que jugó.
+    // La fila se crea si falta y se bloquea antes de leer los partidos: un delta concurrente espera
+    // a este commit y se aplica encima, y los que se confirmaron antes ya están en lo que se lee.
+    public EquipoEstadistica reconstruirEquipo(Long idEquipo) {
+        // Los partidos sin fila materializada se calculan antes, cada uno en su transacción
+        List<Partido> previos = partidoRepository.findPartidosByEquiposAsociados(List.of(idEquipo));
+        Set<Integer> conFila = new HashSet<>();
+        partidoEstadisticaRepository.findAllById(previos.stream().map(Partido::getIdPartido).toList())
+                .forEach(fila -> conFila.add(fila.getIdPartido()));
+        previos.stream()
+                .map(Partido::getIdPartido)
+                .filter(idPartido -> !conFila.contains(idPartido))
+                .forEach(estadisticasService::reconstruir);
+
+        return transaccionPropia.execute(estado -> {
+            equipoEstadisticaRepository.crearSiFalta(idEquipo);
+            EquipoEstadistica fila = equipoEstadisticaRepository.findParaActualizarByIdEquipo(idEquipo).orElseThrow();
+            List<Partido> partidos = partidoRepository.findPartidosByEquiposAsociados(List.of(idEquipo));
+            EstadisticasPartido acumulado = new EstadisticasPartido();
+            for (Partido partido : partidos) {
+                EquipoAccion lado = idEquipo.equals(partido.getIdEquipoLocalAsociado()) ? EquipoAccion.LOCAL : EquipoAccion.VISITANTE;
+                acumulado.combinarComo(estadisticasPartido(partido.getIdPartido()), lado, 1);
+            }
+            fila.setPartidos(partidos.size());
+            fila.setAcciones(acumulado.getAcciones());
+            fila.setContadores(acumulado.aBytes());
+            return fila;
+        });
+    }
+
+    // Suma los acumulados de los equipos del club en esa temporada y categoría, con la fila del club
+    // creada y bloqueada antes de releerlos (como en reconstruirEquipo)
+    public ClubEstadistica reconstruirClub(ClubEstadisticaId id) {
+        Map<Long, EquipoEstadistica> previos = new LinkedHashMap<>();
+        for (Equipo equipo : equiposDelClub(id.getIdClub(), id.getTemporada(), id.getCategoria())) {
+            previos.put(equipo.getIdEquipo(), acumuladoEquipo(equipo.getIdEquipo()));
+        }
+
+        return transaccionPropia.execute(estado -> {
+            clubEstadisticaRepository.crearSiFalta(id.getIdClub(), id.getTemporada(), id.getCategoria());
+            ClubEstadistica fila = clubEstadisticaRepository.findParaActualizarById(id).orElseThrow();
+            EstadisticasPartido acumulado = new EstadisticasPartido();
+            int partidos = 0;
+            for (Map.Entry<Long, EquipoEstadistica> previo : previos.entrySet()) {
+                // Ya con el bloqueo: los deltas de los equipos confirmados desde el cálculo previo
+                EquipoEstadistica equipo = equipoEstadisticaRepository.findById(previo.getKey())
+                        .filter(actual -> EstadisticasPartido.deBytes(actual.getAcciones(), actual.getContadores()) != null)
+                        .orElse(previo.getValue());
+                acumulado.combinar(EstadisticasPartido.deBytes(equipo.getAcciones(), equipo.getContadores()));
+                partidos += equipo.getPartidos();
+            }
+            fila.setPartidos(partidos);
+            fila.setAcciones(acumulado.getAcciones());
+            fila.setContadores(acumulado.aBytes());
+            return fila;
+        });
+    }
+
+    // Escritura directa de acumulados ya calculados (recálculo completo en paralelo)
+    public void guardarEquipo(Long idEquipo, int partidos, EstadisticasPartido acumulado) {
+        transaccionPropia.executeWithoutResult(estado -> equipoEstadisticaRepository.save(
+                new EquipoEstadistica(idEquipo, partidos, acumulado.getAcciones(), acumulado.aBytes())));
+    }
+
+    public void guardarClub(ClubEstadisticaId id, int partidos, EstadisticasPartido acumulado) {
+        transaccionPropia.executeWithoutResult(estado -> clubEstadisticaRepository.save(
+                new ClubEstadistica(id, partidos, acumulado.getAcciones(), acumulado.aBytes())));
+    }
+
+    // Reconstruye todos los equipos y después todos los clubes; devuelve cuántas filas de cada nivel
+    public Map<String, Integer> reconstruirTodos() {
+        List<Equipo> equipos = equipoRepository.findAll();
+        Set<ClubEstadisticaId> clubes = new LinkedHashSet<>();
+        for (Equipo equipo : equipos) {
+            reconstruirEquipo(equipo.getIdEquipo());
+            if (equipo.getClub() != null) {
+                clubes.add(new ClubEstadisticaId(equipo.getClub().getIdClub(), equipo.getTemporada(), equipo.getCategoria()));
+            }
+        }
+        clubes.forEach(this::reconstruirClub);
+        log.info("Acumulados de temporada reconstruidos: {} equipos, {} clubes", equipos.size(), clubes.size());
+        Map<String, Integer> resultado = new LinkedHashMap<>();
+        resultado.put("equipos", equipos.size());
+        resultado.put("clubes", clubes.size());
+        return resultado;
+    }
+
+    // Borra las filas del equipo y de su club (bloqueándolas, como un delta); se construirán al leerlas
+    private void descartar(Long idEquipo) {
+        if (idEquipo == null) {
+            return;
+        }
+        equipoEstadisticaRepository.findParaActualizarByIdEquipo(idEquipo).ifPresent(equipoEstadisticaRepository::delete);
+        Equipo equipo = equipoRepository.findById(idEquipo).orElse(null);
+        if (equipo == null || equipo.getClub() == null) {
+            return;
+        }
+        ClubEstadisticaId id = new ClubEstadisticaId(equipo.getClub().getIdClub(), equipo.getTemporada(), equipo.getCategoria());
+        clubEstadisticaRepository.findParaActualizarById(id).ifPresent(clubEstadisticaRepository::delete);
+    }
+
+    // MÉTODOS AUXILIARES
+
+    private EstadisticasPartido estadisticasPartido(Integer idPartido) {
+        return partidoEstadisticaRepository.findById(idPartido)
+                .map(fila -> EstadisticasPartido.deBytes(fila.getAcciones(), fila.getContadores()))
+                .orElseGet(() -> estadisticasService.calcular(idPartido));
+    }
+
+    private List<Equipo> equiposDelClub(Long idClub, String temporada, String categoria) {
+        return equipoRepository.findByClub_IdClubIn(List.of(idClub)).stream()
+                .filter(equipo -> temporada.equals(equipo.getTemporada()))
+                .filter(equipo -> categoria == null || categoria.equals(equipo.getCategoria()))
+                .toList();
+    }
+
+    private static EstadisticasTemporadaDTO aDTO(int partidos, int acciones, byte[] contadores) {
+        EstadisticasPartido estadisticas = EstadisticasPartido.deBytes(acciones, contadores);
+        EstadisticasTemporadaDTO dto = new EstadisticasTemporadaDTO();
+        dto.setPartidos(partidos);
+        dto.setAcciones(acciones);
+        dto.setPropias(estadisticas.equipoDTO(EquipoAccion.LOCAL));
+        dto.setRivales(estadisticas.equipoDTO(EquipoAccion.VISITANTE));
+        return dto;
+    }
+}
@@ -0,0 +1,170 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.dto.FilaExportacionDTO;
+import com.HandballStats_Pro.handballstatspro.entities.Partido;
+import com.HandballStats_Pro.handballstatspro.enums.FormatoExportacion;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exportación de las acciones de una temporada o competición en NDJSON o CSV.
+ *
+ * Los partidos se resuelven antes de empezar a escribir, con las mismas reglas de acceso que el listado
+ * de partidos. Las acciones se leen después con un cursor JDBC de solo avance y se escriben según llegan,
+ * así que la memoria usada no depende del número de acciones exportadas.
+ */
+@Slf4j
+@Service
+public class ExportacionService {
+
+    private static final String CONSULTA_ACCIONES =
+            "SELECT id_accion, id_partido, secuencia, id_posesion, equipo_accion, tipo_ataque, origen_accion, evento, "
+            + "detalle_finalizacion, zona_lanzamiento, detalle_evento, cambio_posesion "
+            + "FROM accion WHERE id_partido IN (%s) ORDER BY id_partido, secuencia";
+
+    // Tope de parámetros por consulta; los partidos se recorren en bloques ordenados
+    private static final int PARTIDOS_POR_CONSULTA = 500;
+
+    private final PartidoService partidoService;
+    private final JdbcTemplate cursor;
+    private final ObjectMapper objectMapper;
+    private final CsvMapper csvMapper;
+
+    public ExportacionService(PartidoService partidoService, DataSource dataSource, ObjectMapper objectMapper,
+                              @Value("${exportacion.fetch-size:-2147483648}") int fetchSize) {
+        this.partidoService = partidoService;
+        // Con MySQL, Integer.MIN_VALUE hace que el driver entregue las filas una a una en lugar de cargarlas todas
+        this.cursor = new JdbcTemplate(dataSource);
+        this.cursor.setFetchSize(fetchSize);
+        this.objectMapper = objectMapper;
+        this.csvMapper = CsvMapper.builder()
+                .addModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+    }
+
+    public StreamingResponseBody exportar(String temporada, String competicion, FormatoExportacion formato) {
+        // Se resuelve en el hilo de la petición, donde está el usuario autenticado
+        Map<Integer, FilaExportacionDTO> partidos = partidosExportables(temporada, competicion);
+        List<List<Integer>> bloques = bloques(new ArrayList<>(partidos.keySet()));
+
+        return salida -> {
+            long filas = 0;
+            try (SequenceWriter escritor = escritor(formato, salida)) {
+                for (List<Integer> ids : bloques) {
+                    String consulta = String.format(CONSULTA_ACCIONES, String.join(",", Collections.nCopies(ids.size(), "?")));
+                    long[] contador = {0};
+                    cursor.query(consulta, (RowCallbackHandler) rs -> {
+                        try {
+                            escritor.write(fila(rs, partidos.get(rs.getInt("id_partido"))));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        contador[0]++;
+                    }, ids.toArray());
+                    filas += contador[0];
+                }
+            } catch (UncheckedIOException e) {
+                // El cliente ha cortado la descarga
+                throw e.getCause();
+            }
+            log.info("Exportadas {} acciones de {} partidos en {}", filas, partidos.size(), formato);
+        };
+    }
+
+    // Datos de cada partido exportable, por id y en orden; se copian en cada fila de sus acciones
+    private Map<Integer, FilaExportacionDTO> partidosExportables(String temporada, String competicion) {
+        List<Partido> partidos = partidoService.listarPartidosAccesibles().stream()
+                .filter(p -> competicion == null || competicion.isBlank() || competicion.equalsIgnoreCase(p.getCompeticion()))
+                .sorted(Comparator.comparing(Partido::getIdPartido))
+                .toList();
+        Map<Integer, String> temporadas = partidoService.temporadasPorPartido(partidos);
+
+        Map<Integer, FilaExportacionDTO> resultado = new LinkedHashMap<>();
+        for (Partido partido : partidos) {
+            String temporadaPartido = temporadas.get(partido.getIdPartido());
+            if (temporada != null && !temporada.isBlank() && !temporada.equals(temporadaPartido)) {
+                continue;
+            }
+            FilaExportacionDTO datos = new FilaExportacionDTO();
+            datos.setIdPartido(partido.getIdPartido());
+            datos.setFecha(partido.getFecha());
+            datos.setCompeticion(partido.getCompeticion());
+            datos.setTemporada(temporadaPartido);
+            datos.setNombreEquipoLocal(partido.getNombreEquipoLocal());
+            datos.setNombreEquipoVisitante(partido.getNombreEquipoVisitante());
+            resultado.put(partido.getIdPartido(), datos);
+        }
+        return resultado;
+    }
+
+    private SequenceWriter escritor(FormatoExportacion formato, OutputStream salida) throws IOException {
+        // Sin vaciar tras cada fila (el contenedor envía por bloques) y sin cerrar la salida, que es del contenedor
+        if (formato == FormatoExportacion.CSV) {
+            return csvMapper.writerFor(FilaExportacionDTO.class)
+                    .with(csvMapper.schemaFor(FilaExportacionDTO.class).withHeader())
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                    .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .writeValues(salida);
+        }
+        return objectMapper.writerFor(FilaExportacionDTO.class)
+                .withRootValueSeparator("\n")
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .writeValues(salida);
+    }
+
+    private static FilaExportacionDTO fila(ResultSet rs, FilaExportacionDTO partido) throws SQLException {
+        FilaExportacionDTO fila = new FilaExportacionDTO();
+        fila.setIdPartido(partido.getIdPartido());
+        fila.setFecha(partido.getFecha());
+        fila.setCompeticion(partido.getCompeticion());
+        fila.setTemporada(partido.getTemporada());
+        fila.setNombreEquipoLocal(partido.getNombreEquipoLocal());
+        fila.setNombreEquipoVisitante(partido.getNombreEquipoVisitante());
+
+        fila.setIdAccion(rs.getInt("id_accion"));
+        fila.setSecuencia(rs.getObject("secuencia", Integer.class));
+        fila.setIdPosesion(rs.getInt("id_posesion"));
+        fila.setEquipoAccion(rs.getString("equipo_accion"));
+        fila.setTipoAtaque(rs.getString("tipo_ataque"));
+        fila.setOrigenAccion(rs.getString("origen_accion"));
+        fila.setEvento(rs.getString("evento"));
+        fila.setDetalleFinalizacion(rs.getString("detalle_finalizacion"));
+        fila.setZonaLanzamiento(rs.getString("zona_lanzamiento"));
+        fila.setDetalleEvento(rs.getString("detalle_evento"));
+        fila.setCambioPosesion(rs.getBoolean("cambio_posesion"));
+        return fila;
+    }
+
+    private static List<List<Integer>> bloques(List<Integer> ids) {
+        List<List<Integer>> bloques = new ArrayList<>();
+        for (int desde = 0; desde < ids.size(); desde += PARTIDOS_POR_CONSULTA) {
+            bloques.add(ids.subList(desde, Math.min(desde + PARTIDOS_POR_CONSULTA, ids.size())));
+        }
+        return bloques;
+    }
+}
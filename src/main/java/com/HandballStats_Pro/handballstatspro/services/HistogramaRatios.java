@@ -0,0 +1,60 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+/**
+ * Distribución aproximada de valores entre 0 y 1 (los criterios de la clasificación son cocientes) en
+ * un número fijo de intervalos iguales.
+ *
+ * A diferencia de un t-digest o un KLL, admite quitar un valor (signo -1), que es lo que pasa cada vez
+ * que cambia lo que aporta un partido a un equipo, y dos histogramas se suman intervalo a intervalo.
+ * Percentiles y cuantiles recorren los intervalos, así que cuestan lo mismo sea cual sea el número de
+ * valores; el error es como mucho el ancho de un intervalo. Los valores por encima de 1 van al último.
+ */
+final class HistogramaRatios {
+
+    static final int INTERVALOS = 1000;
+
+    private final int[] conteos = new int[INTERVALOS];
+    private int total;
+
+    void sumar(double valor, int signo) {
+        conteos[intervalo(valor)] += signo;
+        total += signo;
+    }
+
+    int getTotal() {
+        return total;
+    }
+
+    // Fracción de valores por debajo del dado; los de su mismo intervalo cuentan la mitad
+    double fraccionPorDebajo(double valor) {
+        if (total == 0) {
+            return 0;
+        }
+        int propio = intervalo(valor);
+        long debajo = 0;
+        for (int i = 0; i < propio; i++) {
+            debajo += conteos[i];
+        }
+        return (debajo + conteos[propio] / 2.0) / total;
+    }
+
+    // Valor (centro del intervalo) por debajo del cual queda la fracción q
+    double cuantil(double q) {
+        if (total == 0) {
+            return 0;
+        }
+        long objetivo = (long) Math.ceil(q * total);
+        long acumulado = 0;
+        for (int i = 0; i < INTERVALOS; i++) {
+            acumulado += conteos[i];
+            if (acumulado >= Math.max(1, objetivo)) {
+                return (i + 0.5) / INTERVALOS;
+            }
+        }
+        return (INTERVALOS - 0.5) / INTERVALOS;
+    }
+
+    private static int intervalo(double valor) {
+        return (int) Math.max(0, Math.min(INTERVALOS - 1, Math.floor(valor * INTERVALOS)));
+    }
+}
@@ -0,0 +1,250 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.dto.AccionDTO;
+import com.HandballStats_Pro.handballstatspro.dto.ErrorImportacionDTO;
+import com.HandballStats_Pro.handballstatspro.dto.FilaImportacionDTO;
+import com.HandballStats_Pro.handballstatspro.dto.InformeImportacionDTO;
+import com.HandballStats_Pro.handballstatspro.dto.PartidoDTO;
+import com.HandballStats_Pro.handballstatspro.entities.Accion;
+import com.HandballStats_Pro.handballstatspro.enums.FormatoImportacion;
+import com.HandballStats_Pro.handballstatspro.exceptions.ApiException;
+import com.HandballStats_Pro.handballstatspro.services.UltimaAccionCache.EstadoCola;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Importación masiva de partidos históricos desde CSV o JSON (array u objetos seguidos).
+ *
+ * El fichero se lee en streaming, fila a fila, en una sola pasada: cada partido se crea con su primera
+ * fila y cada acción pasa por las mismas reglas que POST /acciones, encadenando la regla 5 en memoria.
+ * Las acciones válidas se guardan en bloques de importacion.tamano-bloque, cada uno en su transacción.
+ * Una fila con error no para la importación: se salta y queda en el informe.
+ */
+@Slf4j
+@Service
+public class ImportacionService {
+
+    private final AccionService accionService;
+    private final PartidoService partidoService;
+    private final ObjectMapper objectMapper;
+    private final CsvMapper csvMapper;
+    private final Validator validator;
+    private final TransactionTemplate transaccion;
+    private final int tamanoBloque;
+    private final int erroresMax;
+
+    public ImportacionService(AccionService accionService, PartidoService partidoService, ObjectMapper objectMapper,
+                              Validator validator, PlatformTransactionManager transactionManager,
+                              @Value("${importacion.tamano-bloque:500}") int tamanoBloque,
+                              @Value("${importacion.errores-max:1000}") int erroresMax) {
+        this.accionService = accionService;
+        this.partidoService = partidoService;
+        this.objectMapper = objectMapper;
+        this.csvMapper = CsvMapper.builder().addModule(new JavaTimeModule()).build();
+        this.validator = validator;
+        this.transaccion = new TransactionTemplate(transactionManager);
+        this.tamanoBloque = tamanoBloque;
+        this.erroresMax = erroresMax;
+    }
+
+    public FormatoImportacion formatoDe(String nombreFichero) {
+        String nombre = nombreFichero == null ? "" : nombreFichero.toLowerCase(Locale.ROOT);
+        if (nombre.endsWith(".csv")) {
+            return FormatoImportacion.CSV;
+        }
+        if (nombre.endsWith(".json") || nombre.endsWith(".ndjson")) {
+            return FormatoImportacion.JSON;
+        }
+        throw new ApiException(HttpStatus.BAD_REQUEST, "UNKNOWN_IMPORT_FORMAT", "Indica el formato (CSV o JSON) o usa un fichero .csv o .json");
+    }
+
+    public InformeImportacionDTO importar(InputStream entrada, FormatoImportacion formato) {
+        Importacion importacion = new Importacion();
+        long numero = 0;
+        try (MappingIterator<FilaImportacionDTO> filas = lector(formato).readValues(entrada)) {
+            while (filas.hasNextValue()) {
+                numero++;
+                FilaImportacionDTO fila;
+                try {
+                    fila = filas.nextValue();
+                } catch (JsonMappingException e) {
+                    // Valor no válido (p. ej. un enum desconocido): el iterador se resincroniza en la fila siguiente
+                    importacion.error(numero, null, "INVALID_ROW", e.getOriginalMessage());
+                    continue;
+                }
+                importacion.procesar(numero, fila);
+            }
+        } catch (IOException e) {
+            // Fichero mal formado a partir de aquí: se conserva lo leído hasta ese punto
+            importacion.error(numero, null, "INVALID_FILE", e.getMessage());
+        }
+        importacion.volcar();
+
+        InformeImportacionDTO informe = importacion.informe;
+        informe.setFilasLeidas(numero);
+        log.info("Importación terminada: {} filas, {} partidos, {} acciones, {} filas con error",
+                numero, informe.getPartidosCreados(), informe.getAccionesCreadas(), informe.getFilasConError());
+        return informe;
+    }
+
+    private ObjectReader lector(FormatoImportacion formato) {
+        if (formato == FormatoImportacion.CSV) {
+            return csvMapper.readerFor(FilaImportacionDTO.class)
+                    .with(CsvSchema.emptySchema().withHeader())
+                    .with(CsvParser.Feature.EMPTY_STRING_AS_NULL);
+        }
+        return objectMapper.readerFor(FilaImportacionDTO.class);
+    }
+
+    // Estado de una importación en curso: solo guarda la cola de cada partido y el bloque pendiente
+    private class Importacion {
+
+        private final InformeImportacionDTO informe = new InformeImportacionDTO();
+        private final Map<String, PartidoImportado> partidos = new HashMap<>();
+        private final List<Pendiente> bloque = new ArrayList<>(tamanoBloque);
+
+        void procesar(long numero, FilaImportacionDTO fila) {
+            String clave = fila.getClavePartido();
+            if (clave == null || clave.isBlank()) {
+                error(numero, null, "MATCH_KEY_REQUIRED", "Cada fila debe indicar su clavePartido");
+                return;
+            }
+
+            PartidoImportado partido = partidos.get(clave);
+            if (partido == null) {
+                partido = crearPartido(fila);
+                partidos.put(clave, partido);
+            }
+            if (partido.error != null) {
+                error(numero, clave, partido.error.getErrorCode(), partido.error.getMessage());
+                return;
+            }
+
+            AccionDTO accionDTO = aAccionDTO(fila, partido.idPartido);
+            Set<ConstraintViolation<AccionDTO>> errores = validator.validate(accionDTO);
+            if (!errores.isEmpty()) {
+                error(numero, clave, "validation_error", describir(errores));
+                return;
+            }
+
+            Accion accion;
+            try {
+                accion = accionService.validarParaImportacion(accionDTO, partido.cola);
+            } catch (ApiException e) {
+                error(numero, clave, e.getErrorCode(), e.getMessage());
+                return;
+            }
+            partido.cola = EstadoCola.de(accion);
+            bloque.add(new Pendiente(numero, clave, partido, accion));
+            if (bloque.size() >= tamanoBloque) {
+                volcar();
+            }
+        }
+
+        void volcar() {
+            if (bloque.isEmpty()) {
+                return;
+            }
+            List<Accion> acciones = bloque.stream().map(Pendiente::accion).toList();
+            try {
+                transaccion.executeWithoutResult(estado -> accionService.guardarImportadas(acciones));
+                informe.setAccionesCreadas(informe.getAccionesCreadas() + acciones.size());
+            } catch (RuntimeException e) {
+                // El bloque se deshace entero: sus partidos quedan con la cola rota y no admiten más acciones
+                log.warn("No se pudo guardar un bloque de {} acciones importadas", acciones.size(), e);
+                ApiException causa = e instanceof ApiException api ? api
+                        : new ApiException(HttpStatus.INTERNAL_SERVER_ERROR, "IMPORT_CHUNK_FAILED", "No se pudo guardar el bloque de acciones de esta fila");
+                for (Pendiente pendiente : bloque) {
+                    pendiente.partido().error = causa;
+                    error(pendiente.fila(), pendiente.clavePartido(), causa.getErrorCode(), causa.getMessage());
+                }
+            }
+            bloque.clear();
+        }
+
+        void error(long numero, String clavePartido, String codigo, String mensaje) {
+            informe.setFilasConError(informe.getFilasConError() + 1);
+            if (informe.getErrores().size() < erroresMax) {
+                informe.getErrores().add(new ErrorImportacionDTO(numero, clavePartido, codigo, mensaje));
+            }
+        }
+
+        private PartidoImportado crearPartido(FilaImportacionDTO fila) {
+            PartidoDTO datos = new PartidoDTO();
+            datos.setNombreEquipoLocal(fila.getNombreEquipoLocal());
+            datos.setNombreEquipoVisitante(fila.getNombreEquipoVisitante());
+            datos.setIdEquipoLocalAsociado(fila.getIdEquipoLocalAsociado());
+            datos.setIdEquipoVisitanteAsociado(fila.getIdEquipoVisitanteAsociado());
+            datos.setFecha(fila.getFecha());
+            datos.setResultado(fila.getResultado());
+            datos.setCompeticion(fila.getCompeticion());
+
+            PartidoImportado partido = new PartidoImportado();
+            Set<ConstraintViolation<PartidoDTO>> errores = validator.validate(datos);
+            if (!errores.isEmpty()) {
+                partido.error = new ApiException(HttpStatus.BAD_REQUEST, "INVALID_MATCH", describir(errores));
+                return partido;
+            }
+            try {
+                partido.idPartido = transaccion.execute(estado -> partidoService.crearPartido(datos)).getIdPartido();
+                informe.setPartidosCreados(informe.getPartidosCreados() + 1);
+            } catch (ApiException e) {
+                partido.error = e;
+            }
+            return partido;
+        }
+    }
+
+    private static class PartidoImportado {
+        private Integer idPartido;
+        private EstadoCola cola = UltimaAccionCache.SIN_ACCIONES;
+        // Primer error del partido: sus filas siguientes se rechazan con él
+        private ApiException error;
+    }
+
+    private record Pendiente(long fila, String clavePartido, PartidoImportado partido, Accion accion) {
+    }
+
+    private static AccionDTO aAccionDTO(FilaImportacionDTO fila, Integer idPartido) {
+        AccionDTO accion = new AccionDTO();
+        accion.setIdPartido(idPartido);
+        accion.setIdPosesion(fila.getIdPosesion());
+        accion.setEquipoAccion(fila.getEquipoAccion());
+        accion.setTipoAtaque(fila.getTipoAtaque());
+        accion.setOrigenAccion(fila.getOrigenAccion());
+        accion.setEvento(fila.getEvento());
+        accion.setDetalleFinalizacion(fila.getDetalleFinalizacion());
+        accion.setZonaLanzamiento(fila.getZonaLanzamiento());
+        accion.setDetalleEvento(fila.getDetalleEvento());
+        accion.setCambioPosesion(fila.getCambioPosesion());
+        return accion;
+    }
+
+    private static String describir(Set<? extends ConstraintViolation<?>> errores) {
+        ConstraintViolation<?> error = errores.iterator().next();
+        return error.getPropertyPath() + ": " + error.getMessage();
+    }
+}
@@ -0,0 +1,307 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.dto.AccionResponseDTO;
+import com.HandballStats_Pro.handballstatspro.dto.GrupoAnalisisDTO;
+import com.HandballStats_Pro.handballstatspro.dto.ResultadoAnalisisDTO;
+import com.HandballStats_Pro.handballstatspro.entities.Accion;
+import com.HandballStats_Pro.handballstatspro.enums.DimensionAccion;
+import com.HandballStats_Pro.handballstatspro.exceptions.ApiException;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice en memoria de las acciones para el análisis: un bitmap comprimido (RoaringBitmap) por cada
+ * valor de cada dimensión de la acción y otro por partido, con un bit por idAccion. Los ids de un
+ * partido forman unos pocos tramos, así que su bitmap ocupa según sus acciones y no según el id más alto.
+ *
+ * Un filtro es la unión de los bitmaps de sus valores intersecada con la del resto de filtros, y
+ * agrupar es intersecar con los bitmaps de cada valor de las dimensiones pedidas, así que ninguna
+ * consulta vuelve a la base de datos. Se carga al arrancar con una pasada por JDBC y se mantiene con
+ * los AccionEvento confirmados. Los cambios que llegan durante la carga ganan a lo leído por ella.
+ *
+ * Con el diario de acciones activo, el alta se publica antes de que la acción tenga idAccion: el
+ * índice se salta ese evento y la añade con el AccionesVolcadas de su volcado.
+ */
+@Slf4j
+@Component
+public class IndiceAcciones {
+
+    private static final String CONSULTA_ACCIONES =
+            "SELECT id_accion, id_partido, equipo_accion, tipo_ataque, origen_accion, evento, "
+            + "detalle_finalizacion, zona_lanzamiento, detalle_evento FROM accion";
+
+    private static final DimensionAccion[] DIMENSIONES = Arrays.stream(DimensionAccion.values())
+            .filter(DimensionAccion::esDeAccion)
+            .toArray(DimensionAccion[]::new);
+    // Ordinal de cada nombre de valor, por dimensión (en el orden de DIMENSIONES)
+    private static final List<Map<String, Integer>> ORDINALES = Arrays.stream(DIMENSIONES)
+            .map(dimension -> {
+                Map<String, Integer> ordinales = new HashMap<>();
+                for (Enum<?> valor : dimension.getValores()) {
+                    ordinales.put(valor.name(), valor.ordinal());
+                }
+                return ordinales;
+            })
+            .toList();
+
+    private final JdbcTemplate cursor;
+    private final ReadWriteLock bloqueo = new ReentrantReadWriteLock();
+    private final Map<DimensionAccion, RoaringBitmap[]> porValor = new EnumMap<>(DimensionAccion.class);
+    private final Map<Integer, RoaringBitmap> porPartido = new HashMap<>();
+
+    private boolean cargado;
+    // Acciones cambiadas mientras se carga: la carga no las toca, su estado ya es el del evento
+    private Set<Integer> cambiadasDuranteCarga;
+
+    public IndiceAcciones(DataSource dataSource, @Value("${analisis.fetch-size:-2147483648}") int fetchSize) {
+        // Con MySQL, Integer.MIN_VALUE hace que el driver entregue las filas una a una en lugar de cargarlas todas
+        this.cursor = new JdbcTemplate(dataSource);
+        this.cursor.setFetchSize(fetchSize);
+        for (DimensionAccion dimension : DIMENSIONES) {
+            RoaringBitmap[] valores = new RoaringBitmap[dimension.getValores().length];
+            for (int i = 0; i < valores.length; i++) {
+                valores[i] = new RoaringBitmap();
+            }
+            porValor.put(dimension, valores);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargar() {
+        escribir(() -> cambiadasDuranteCarga = new HashSet<>());
+        long[] acciones = {0};
+        try {
+            cursor.query(CONSULTA_ACCIONES, (RowCallbackHandler) rs -> {
+                int idAccion = rs.getInt(1);
+                int idPartido = rs.getInt(2);
+                int[] ordinales = ordinales(rs);
+                escribir(() -> {
+                    if (!cambiadasDuranteCarga.contains(idAccion)) {
+                        poner(idAccion, idPartido, ordinales);
+                    }
+                });
+                acciones[0]++;
+            });
+            escribir(() -> {
+                cargado = true;
+                cambiadasDuranteCarga = null;
+            });
+            log.info("Índice de análisis cargado: {} acciones", acciones[0]);
+        } catch (RuntimeException e) {
+            log.error("No se pudo cargar el índice de análisis; las consultas no estarán disponibles", e);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarAccion(AccionEvento evento) {
+        escribir(() -> {
+            AccionResponseDTO antes = evento.antes();
+            AccionResponseDTO despues = evento.despues();
+            if (antes != null && antes.getIdAccion() != null) {
+                quitar(antes.getIdAccion(), antes.getIdPartido(), ordinales(antes));
+                anotarDuranteCarga(antes.getIdAccion());
+            }
+            if (despues != null && despues.getIdAccion() != null) {
+                poner(despues.getIdAccion(), despues.getIdPartido(), ordinales(despues));
+                anotarDuranteCarga(despues.getIdAccion());
+            }
+        });
+    }
+
+    // Acciones del diario que ya están en la base de datos, con su id
+    @EventListener
+    public void alVolcarAcciones(AccionesVolcadas evento) {
+        escribir(() -> {
+            for (Accion accion : evento.acciones()) {
+                poner(accion.getIdAccion(), accion.getIdPartido(), ordinales(accion));
+                anotarDuranteCarga(accion.getIdAccion());
+            }
+        });
+    }
+
+    /**
+     * Cuenta las acciones de los partidos dados que cumplen los filtros (ordinales admitidos por
+     * dimensión de la acción) y las reparte por las dimensiones de agruparPor. Para las dimensiones
+     * del partido, valoresPartido da el valor de cada partido (null si no tiene).
+     */
+    public ResultadoAnalisisDTO consultar(Collection<Integer> partidos, Map<DimensionAccion, Set<Integer>> filtros,
+                                          List<DimensionAccion> agruparPor,
+                                          Map<DimensionAccion, Map<Integer, String>> valoresPartido) {
+        bloqueo.readLock().lock();
+        try {
+            if (!cargado) {
+                throw new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "ANALYSIS_INDEX_LOADING",
+                        "El índice de análisis todavía se está cargando; inténtalo en unos minutos");
+            }
+            List<RoaringBitmap> deLosPartidos = new ArrayList<>(partidos.size());
+            for (Integer idPartido : partidos) {
+                RoaringBitmap delPartido = porPartido.get(idPartido);
+                if (delPartido != null) {
+                    deLosPartidos.add(delPartido);
+                }
+            }
+            RoaringBitmap seleccion = FastAggregation.or(deLosPartidos.iterator());
+            filtros.forEach((dimension, ordinales) -> {
+                if (ordinales.isEmpty()) {
+                    return;
+                }
+                RoaringBitmap admitidas = FastAggregation.or(ordinales.stream()
+                        .map(ordinal -> porValor.get(dimension)[ordinal])
+                        .iterator());
+                seleccion.and(admitidas);
+            });
+
+            ResultadoAnalisisDTO resultado = new ResultadoAnalisisDTO();
+            resultado.setPartidos(partidos.size());
+            resultado.setAcciones(seleccion.getCardinality());
+            if (!agruparPor.isEmpty()) {
+                List<List<Map.Entry<String, RoaringBitmap>>> grupos = new ArrayList<>();
+                for (DimensionAccion dimension : agruparPor) {
+                    grupos.add(dimension.esDeAccion()
+                            ? gruposDeAccion(dimension)
+                            : gruposDePartido(partidos, valoresPartido.get(dimension)));
+                }
+                agrupar(seleccion, agruparPor, grupos, 0, new EnumMap<>(DimensionAccion.class), resultado.getGrupos());
+            }
+            return resultado;
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    // MÉTODOS AUXILIARES (con el bloqueo ya tomado)
+
+    // Interseca nivel a nivel y no baja por las combinaciones que ya se han quedado vacías
+    private static void agrupar(RoaringBitmap seleccion, List<DimensionAccion> dimensiones, List<List<Map.Entry<String, RoaringBitmap>>> grupos,
+                                int nivel, Map<DimensionAccion, String> valores, List<GrupoAnalisisDTO> salida) {
+        if (nivel == dimensiones.size()) {
+            salida.add(new GrupoAnalisisDTO(new EnumMap<>(valores), seleccion.getCardinality()));
+            return;
+        }
+        for (Map.Entry<String, RoaringBitmap> grupo : grupos.get(nivel)) {
+            if (!RoaringBitmap.intersects(seleccion, grupo.getValue())) {
+                continue;
+            }
+            RoaringBitmap interseccion = RoaringBitmap.and(seleccion, grupo.getValue());
+            valores.put(dimensiones.get(nivel), grupo.getKey());
+            agrupar(interseccion, dimensiones, grupos, nivel + 1, valores, salida);
+        }
+        valores.remove(dimensiones.get(nivel));
+    }
+
+    private List<Map.Entry<String, RoaringBitmap>> gruposDeAccion(DimensionAccion dimension) {
+        Enum<?>[] valores = dimension.getValores();
+        List<Map.Entry<String, RoaringBitmap>> grupos = new ArrayList<>(valores.length);
+        for (Enum<?> valor : valores) {
+            grupos.add(Map.entry(valor.name(), porValor.get(dimension)[valor.ordinal()]));
+        }
+        return grupos;
+    }
+
+    // Une los bitmaps de los partidos que comparten valor; los partidos sin valor no forman grupo
+    private List<Map.Entry<String, RoaringBitmap>> gruposDePartido(Collection<Integer> partidos, Map<Integer, String> valores) {
+        Map<String, RoaringBitmap> grupos = new TreeMap<>();
+        for (Integer idPartido : partidos) {
+            String valor = valores.get(idPartido);
+            RoaringBitmap delPartido = porPartido.get(idPartido);
+            if (valor != null && delPartido != null) {
+                grupos.computeIfAbsent(valor, v -> new RoaringBitmap()).or(delPartido);
+            }
+        }
+        return new ArrayList<>(grupos.entrySet());
+    }
+
+    private void poner(int idAccion, int idPartido, int[] ordinales) {
+        for (int i = 0; i < DIMENSIONES.length; i++) {
+            if (ordinales[i] >= 0) {
+                porValor.get(DIMENSIONES[i])[ordinales[i]].add(idAccion);
+            }
+        }
+        porPartido.computeIfAbsent(idPartido, id -> new RoaringBitmap()).add(idAccion);
+    }
+
+    private void quitar(int idAccion, int idPartido, int[] ordinales) {
+        for (int i = 0; i < DIMENSIONES.length; i++) {
+            if (ordinales[i] >= 0) {
+                porValor.get(DIMENSIONES[i])[ordinales[i]].remove(idAccion);
+            }
+        }
+        RoaringBitmap delPartido = porPartido.get(idPartido);
+        if (delPartido != null) {
+            delPartido.remove(idAccion);
+            if (delPartido.isEmpty()) {
+                porPartido.remove(idPartido);
+            }
+        }
+    }
+
+    private void anotarDuranteCarga(int idAccion) {
+        if (cambiadasDuranteCarga != null) {
+            cambiadasDuranteCarga.add(idAccion);
+        }
+    }
+
+    private void escribir(Runnable cambio) {
+        bloqueo.writeLock().lock();
+        try {
+            cambio.run();
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+    }
+
+    // Ordinal de cada dimensión de la acción (en el orden de DIMENSIONES), -1 si no tiene valor
+    private static int[] ordinales(AccionResponseDTO accion) {
+        return new int[]{
+                ordinal(accion.getEquipoAccion()),
+                ordinal(accion.getTipoAtaque()),
+                ordinal(accion.getOrigenAccion()),
+                ordinal(accion.getEvento()),
+                ordinal(accion.getDetalleFinalizacion()),
+                ordinal(accion.getZonaLanzamiento()),
+                ordinal(accion.getDetalleEvento())
+        };
+    }
+
+    private static int[] ordinales(Accion accion) {
+        return new int[]{
+                ordinal(accion.getEquipoAccion()),
+                ordinal(accion.getTipoAtaque()),
+                ordinal(accion.getOrigenAccion()),
+                ordinal(accion.getEvento()),
+                ordinal(accion.getDetalleFinalizacion()),
+                ordinal(accion.getZonaLanzamiento()),
+                ordinal(accion.getDetalleEvento())
+        };
+    }
+
+    // Los enums se guardan por nombre, en las columnas 3 a 9 de la consulta
+    private static int[] ordinales(ResultSet rs) throws SQLException {
+        int[] ordinales = new int[DIMENSIONES.length];
+        for (int i = 0; i < DIMENSIONES.length; i++) {
+            String nombre = rs.getString(i + 3);
+            ordinales[i] = nombre == null ? -1 : ORDINALES.get(i).getOrDefault(nombre, -1);
+        }
+        return ordinales;
+    }
+
+    private static int ordinal(Enum<?> valor) {
+        return valor == null ? -1 : valor.ordinal();
+    }
+}
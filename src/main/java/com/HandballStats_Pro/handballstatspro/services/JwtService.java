@@ -42,6 +42,10 @@ public class JwtService {
         return extractClaim(token, Claims::getSubject);
     }
 
+    public Date getExpirationFromToken(String token) {
+        return extractExpiration(token);
+    }
+
     public boolean validateToken(String token, UserDetails userDetails) {
         final String email = getEmailFromToken(token);
         return (email.equals(userDetails.getUsername())) && !isTokenExpired(token);
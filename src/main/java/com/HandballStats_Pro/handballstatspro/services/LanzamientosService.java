@@ -0,0 +1,165 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.dto.CuboLanzamientosDTO;
+import com.HandballStats_Pro.handballstatspro.dto.ResultadosLanzamientoDTO;
+import com.HandballStats_Pro.handballstatspro.entities.Equipo;
+import com.HandballStats_Pro.handballstatspro.entities.EquipoEstadistica;
+import com.HandballStats_Pro.handballstatspro.entities.Partido;
+import com.HandballStats_Pro.handballstatspro.entities.PartidoEstadistica;
+import com.HandballStats_Pro.handballstatspro.enums.*;
+import com.HandballStats_Pro.handballstatspro.exceptions.ApiException;
+import com.HandballStats_Pro.handballstatspro.exceptions.PermissionDeniedException;
+import com.HandballStats_Pro.handballstatspro.exceptions.ResourceNotFoundException;
+import com.HandballStats_Pro.handballstatspro.repositories.EquipoRepository;
+import com.HandballStats_Pro.handballstatspro.repositories.PartidoEstadisticaRepository;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Mapa de lanzamientos: cubo zona x finalización x tipo de ataque x resultado.
+ *
+ * El cubo forma parte de los contadores de EstadisticasPartido, así que se mantiene y se acumula con
+ * ellos: el de un equipo propio sale de su fila de equipo_estadistica y el de un rival de scouting se
+ * suma al vuelo con las filas de partido_estadistica de los partidos en que aparece. Cada corte se
+ * resuelve recorriendo las celdas del cubo, sin volver a las acciones.
+ */
+@Service
+public class LanzamientosService {
+
+    private static final ZonaLanzamiento[] ZONAS = ZonaLanzamiento.values();
+
+    private final EstadisticasTemporadaService estadisticasTemporadaService;
+    private final EstadisticasService estadisticasService;
+    private final PartidoEstadisticaRepository partidoEstadisticaRepository;
+    private final EquipoRepository equipoRepository;
+    private final PartidoService partidoService;
+
+    public LanzamientosService(EstadisticasTemporadaService estadisticasTemporadaService, EstadisticasService estadisticasService,
+                               PartidoEstadisticaRepository partidoEstadisticaRepository, EquipoRepository equipoRepository,
+                               PartidoService partidoService) {
+        this.estadisticasTemporadaService = estadisticasTemporadaService;
+        this.estadisticasService = estadisticasService;
+        this.partidoEstadisticaRepository = partidoEstadisticaRepository;
+        this.equipoRepository = equipoRepository;
+        this.partidoService = partidoService;
+    }
+
+    // Lanzamientos del equipo en su temporada, o los recibidos de sus rivales
+    public CuboLanzamientosDTO obtenerPorEquipo(Long idEquipo, boolean recibidos, ZonaLanzamiento zona,
+                                                DetalleFinalizacion finalizacion, TipoAtaque tipoAtaque) {
+        Equipo equipo = equipoRepository.findById(idEquipo)
+                .orElseThrow(() -> new ResourceNotFoundException("Equipo", "id", String.valueOf(idEquipo)));
+        if (!partidoService.puedeAccederEquipo(idEquipo)) {
+            throw new PermissionDeniedException();
+        }
+        EquipoEstadistica fila = estadisticasTemporadaService.acumuladoEquipo(idEquipo);
+        EstadisticasPartido acumulado = EstadisticasPartido.deBytes(fila.getAcciones(), fila.getContadores());
+
+        EquipoAccion lado = recibidos ? EquipoAccion.VISITANTE : EquipoAccion.LOCAL;
+        CuboLanzamientosDTO dto = corte(acumulado, lado, zona, finalizacion, tipoAtaque);
+        dto.setIdEquipo(idEquipo);
+        dto.setTemporada(equipo.getTemporada());
+        dto.setRecibidos(recibidos);
+        dto.setPartidos(fila.getPartidos());
+        return dto;
+    }
+
+    // Lanzamientos de un rival de scouting (un lado sin equipo asociado con ese nombre) en los partidos
+    // accesibles; con temporada, solo los partidos cuyo equipo asociado es de esa temporada
+    public CuboLanzamientosDTO obtenerPorRival(String nombre, String temporada, boolean recibidos, ZonaLanzamiento zona,
+                                               DetalleFinalizacion finalizacion, TipoAtaque tipoAtaque) {
+        if (nombre == null || nombre.isBlank()) {
+            throw new ApiException(HttpStatus.BAD_REQUEST, "RIVAL_NAME_REQUIRED", "Indica el nombre del rival");
+        }
+        String rival = nombre.trim();
+
+        Map<Integer, EquipoAccion> ladosRival = new LinkedHashMap<>();
+        List<Partido> partidos = partidoService.listarPartidosAccesibles().stream()
+                .filter(partido -> ladoRival(partido, rival) != null)
+                .toList();
+        Map<Integer, String> temporadas = partidoService.temporadasPorPartido(partidos);
+        for (Partido partido : partidos) {
+            String temporadaPartido = temporadas.get(partido.getIdPartido());
+            if (temporada != null && !temporada.isBlank() && !temporada.equals(temporadaPartido)) {
+                continue;
+            }
+            ladosRival.put(partido.getIdPartido(), ladoRival(partido, rival));
+        }
+
+        // Cada partido visto desde el rival; los que no tienen fila (o es de otra disposición) se reconstruyen
+        EstadisticasPartido acumulado = new EstadisticasPartido();
+        Set<Integer> sumados = new HashSet<>();
+        for (PartidoEstadistica fila : partidoEstadisticaRepository.findAllById(ladosRival.keySet())) {
+            EstadisticasPartido estadisticas = EstadisticasPartido.deBytes(fila.getAcciones(), fila.getContadores());
+            if (estadisticas != null) {
+                acumulado.combinarComo(estadisticas, ladosRival.get(fila.getIdPartido()), 1);
+                sumados.add(fila.getIdPartido());
+            }
+        }
+        ladosRival.forEach((idPartido, lado) -> {
+            if (!sumados.contains(idPartido)) {
+                acumulado.combinarComo(estadisticasService.reconstruir(idPartido), lado, 1);
+            }
+        });
+
+        EquipoAccion lado = recibidos ? EquipoAccion.VISITANTE : EquipoAccion.LOCAL;
+        CuboLanzamientosDTO dto = corte(acumulado, lado, zona, finalizacion, tipoAtaque);
+        dto.setRival(rival);
+        dto.setTemporada(temporada != null && !temporada.isBlank() ? temporada : null);
+        dto.setRecibidos(recibidos);
+        dto.setPartidos(ladosRival.size());
+        return dto;
+    }
+
+    // MÉTODOS AUXILIARES
+
+    static CuboLanzamientosDTO corte(EstadisticasPartido estadisticas, EquipoAccion lado, ZonaLanzamiento zona,
+                                     DetalleFinalizacion finalizacion, TipoAtaque tipoAtaque) {
+        int[][] porZona = estadisticas.corteLanzamientos(lado, finalizacion, tipoAtaque);
+        int[] total = new int[ResultadoLanzamiento.values().length];
+        Map<ZonaLanzamiento, ResultadosLanzamientoDTO> zonas = new EnumMap<>(ZonaLanzamiento.class);
+        for (ZonaLanzamiento z : ZONAS) {
+            if (zona != null && zona != z) {
+                continue;
+            }
+            int[] celdas = porZona[z.ordinal()];
+            for (int resultado = 0; resultado < total.length; resultado++) {
+                total[resultado] += celdas[resultado];
+            }
+            zonas.put(z, resultados(celdas));
+        }
+
+        CuboLanzamientosDTO dto = new CuboLanzamientosDTO();
+        dto.setZona(zona);
+        dto.setFinalizacion(finalizacion);
+        dto.setTipoAtaque(tipoAtaque);
+        dto.setTotal(resultados(total));
+        dto.setPorZona(zonas);
+        return dto;
+    }
+
+    private static ResultadosLanzamientoDTO resultados(int[] celdas) {
+        ResultadosLanzamientoDTO dto = new ResultadosLanzamientoDTO();
+        dto.setGoles(celdas[ResultadoLanzamiento.Gol.ordinal()]);
+        dto.setParadasPortero(celdas[ResultadoLanzamiento.Parada_Portero.ordinal()]);
+        dto.setBloqueos(celdas[ResultadoLanzamiento.Bloqueo_Defensor.ordinal()]);
+        dto.setPalos(celdas[ResultadoLanzamiento.Palo.ordinal()]);
+        dto.setFueraDirecto(celdas[ResultadoLanzamiento.Fuera_Directo.ordinal()]);
+        dto.setLanzamientos(Arrays.stream(celdas).sum());
+        dto.setEficiencia(dto.getLanzamientos() == 0 ? 0 : (double) dto.getGoles() / dto.getLanzamientos());
+        return dto;
+    }
+
+    // Lado del rival en el partido: el que lleva su nombre y no tiene equipo asociado
+    private static EquipoAccion ladoRival(Partido partido, String rival) {
+        if (partido.getIdEquipoLocalAsociado() == null && rival.equalsIgnoreCase(partido.getNombreEquipoLocal())) {
+            return EquipoAccion.LOCAL;
+        }
+        if (partido.getIdEquipoVisitanteAsociado() == null && rival.equalsIgnoreCase(partido.getNombreEquipoVisitante())) {
+            return EquipoAccion.VISITANTE;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,249 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.dto.AccionResponseDTO;
+import com.HandballStats_Pro.handballstatspro.dto.GolMarcadorDTO;
+import com.HandballStats_Pro.handballstatspro.dto.MarcadorDTO;
+import com.HandballStats_Pro.handballstatspro.dto.ProgresionMarcadorDTO;
+import com.HandballStats_Pro.handballstatspro.entities.Accion;
+import com.HandballStats_Pro.handballstatspro.entities.Partido;
+import com.HandballStats_Pro.handballstatspro.entities.Posesion;
+import com.HandballStats_Pro.handballstatspro.entities.ProgresionMarcador;
+import com.HandballStats_Pro.handballstatspro.enums.EquipoAccion;
+import com.HandballStats_Pro.handballstatspro.enums.Evento;
+import com.HandballStats_Pro.handballstatspro.exceptions.PermissionDeniedException;
+import com.HandballStats_Pro.handballstatspro.exceptions.ResourceNotFoundException;
+import com.HandballStats_Pro.handballstatspro.repositories.AccionRepository;
+import com.HandballStats_Pro.handballstatspro.repositories.PartidoRepository;
+import com.HandballStats_Pro.handballstatspro.repositories.ProgresionMarcadorRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Marcador derivado de las acciones de Gol, en lugar del resultado que se escribe a mano.
+ *
+ * El marcador actual vive en las columnas goles_local y goles_visitante del partido (se sirve con el
+ * propio partido) y la progresión en progresion_marcador: un int por gol, secuencia << 1 | lado,
+ * ordenados por secuencia. Ambos se mantienen con cada AccionEvento dentro de la misma transacción;
+ * los partidos anteriores se derivan al arrancar y la progresión que falta se construye al leerla.
+ *
+ * La derivación al arrancar va en su propio hilo, partido a partido. Mientras un partido sigue con las
+ * columnas a NULL los goles que se le anotan no suman nada, pero no se pierden: su derivación bloquea
+ * el partido y lee las acciones después, así que los incluye. Con el diario de acciones activo, la
+ * reconstrucción vuelca antes las pendientes del partido, porque fija el marcador desde la base de datos.
+ */
+@Slf4j
+@Service
+public class MarcadorService {
+
+    private final PartidoRepository partidoRepository;
+    private final ProgresionMarcadorRepository progresionMarcadorRepository;
+    private final AccionRepository accionRepository;
+    private final PosesionService posesionService;
+    private final PartidoService partidoService;
+    private final BloqueoPartidos bloqueoPartidos;
+    private final DiarioAcciones diarioAcciones;
+    private final TransactionTemplate transaccionPropia;
+    private final ExecutorService derivacion;
+
+    public MarcadorService(PartidoRepository partidoRepository, ProgresionMarcadorRepository progresionMarcadorRepository,
+                           AccionRepository accionRepository, PosesionService posesionService, PartidoService partidoService,
+                           BloqueoPartidos bloqueoPartidos, DiarioAcciones diarioAcciones,
+                           PlatformTransactionManager transactionManager) {
+        this.partidoRepository = partidoRepository;
+        this.progresionMarcadorRepository = progresionMarcadorRepository;
+        this.accionRepository = accionRepository;
+        this.posesionService = posesionService;
+        this.partidoService = partidoService;
+        this.bloqueoPartidos = bloqueoPartidos;
+        this.diarioAcciones = diarioAcciones;
+        // Cada reconstrucción en su propia transacción, empezada después de bloquear el partido
+        this.transaccionPropia = new TransactionTemplate(transactionManager);
+        this.transaccionPropia.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.derivacion = Executors.newSingleThreadExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "derivacion-marcador");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    @PreDestroy
+    public void detener() {
+        derivacion.shutdownNow();
+    }
+
+    public ProgresionMarcadorDTO obtenerProgresion(Integer idPartido) {
+        Partido partido = partidoRepository.findById(idPartido)
+                .orElseThrow(() -> new ResourceNotFoundException("Partido", "id", String.valueOf(idPartido)));
+        if (!partidoService.puedeAccederPartido(partido)) {
+            throw new PermissionDeniedException();
+        }
+        int[] goles = progresionMarcadorRepository.findById(idPartido)
+                .map(fila -> deBytes(fila.getGoles()))
+                .orElseGet(() -> reconstruir(idPartido));
+        List<Posesion> posesiones = posesionService.posesiones(idPartido);
+
+        ProgresionMarcadorDTO dto = new ProgresionMarcadorDTO();
+        dto.setIdPartido(idPartido);
+        int local = 0;
+        int visitante = 0;
+        int posesion = 0;
+        for (int codigo : goles) {
+            int secuencia = codigo >>> 1;
+            EquipoAccion equipo = (codigo & 1) == 0 ? EquipoAccion.LOCAL : EquipoAccion.VISITANTE;
+            if (equipo == EquipoAccion.LOCAL) {
+                local++;
+            } else {
+                visitante++;
+            }
+            // Los goles y las posesiones van en orden de secuencia: basta con avanzar
+            while (posesion + 1 < posesiones.size() && posesiones.get(posesion + 1).getSecuenciaInicio() <= secuencia) {
+                posesion++;
+            }
+            Integer numeroPosesion = posesiones.isEmpty() ? null : posesiones.get(posesion).getNumero();
+            dto.getGoles().add(new GolMarcadorDTO(secuencia, numeroPosesion, equipo, local, visitante));
+        }
+        dto.setMarcador(new MarcadorDTO(local, visitante));
+        return dto;
+    }
+
+    // Síncrono, dentro de la transacción que cambia la acción (que ya tiene el partido bloqueado)
+    @EventListener
+    @Transactional
+    public void alCambiarAccion(AccionEvento evento) {
+        int antes = codigo(evento.antes());
+        int despues = codigo(evento.despues());
+        if (antes == despues) {
+            return;
+        }
+        int[] goles = new int[EquipoAccion.values().length];
+        if (antes >= 0) {
+            goles[antes & 1]--;
+        }
+        if (despues >= 0) {
+            goles[despues & 1]++;
+        }
+        if (goles[0] != 0 || goles[1] != 0) {
+            partidoRepository.sumarGoles(evento.idPartido(), goles[0], goles[1]);
+        }
+        progresionMarcadorRepository.findParaActualizarByIdPartido(evento.idPartido()).ifPresent(fila -> {
+            int[] progresion = deBytes(fila.getGoles());
+            if (antes >= 0) {
+                progresion = quitar(progresion, antes);
+            }
+            if (despues >= 0) {
+                progresion = poner(progresion, despues);
+            }
+            fila.setGoles(aBytes(progresion));
+        });
+    }
+
+    // Recalcula marcador y progresión desde las acciones de Gol; devuelve la progresión
+    public int[] reconstruir(Integer idPartido) {
+        return transaccionPropia.execute(estado -> {
+            bloqueoPartidos.bloquearHastaFinTransaccion(idPartido);
+            diarioAcciones.volcarPartido(idPartido);
+            List<Accion> acciones = accionRepository.findByIdPartidoAndEventoOrderBySecuenciaAsc(idPartido, Evento.Gol);
+            int[] goles = acciones.stream()
+                    .mapToInt(accion -> codigo(accion.getSecuencia(), accion.getEquipoAccion()))
+                    .filter(codigo -> codigo >= 0)
+                    .toArray();
+            int visitante = (int) Arrays.stream(goles).filter(codigo -> (codigo & 1) == 1).count();
+            partidoRepository.fijarGoles(idPartido, goles.length - visitante, visitante);
+            progresionMarcadorRepository.save(new ProgresionMarcador(idPartido, aBytes(goles)));
+            return goles;
+        });
+    }
+
+    // Partidos registrados antes de existir el marcador derivado: en segundo plano, sin retrasar el arranque
+    @EventListener(ApplicationReadyEvent.class)
+    public void alArrancar() {
+        derivacion.execute(this::derivarPendientes);
+    }
+
+    void derivarPendientes() {
+        List<Integer> pendientes = partidoRepository.findIdsSinMarcador();
+        if (pendientes.isEmpty()) {
+            return;
+        }
+        int derivados = 0;
+        for (Integer idPartido : pendientes) {
+            // Al parar la aplicación: los que quedan se derivan en el siguiente arranque
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            try {
+                reconstruir(idPartido);
+                derivados++;
+            } catch (RuntimeException e) {
+                log.warn("No se pudo derivar el marcador del partido {}", idPartido, e);
+            }
+        }
+        log.info("Marcador derivado para {} de {} partidos", derivados, pendientes.size());
+    }
+
+    // MÉTODOS AUXILIARES
+
+    // Código del gol (secuencia << 1 | lado), o -1 si la acción no es un gol
+    private static int codigo(AccionResponseDTO accion) {
+        if (accion == null || accion.getEvento() != Evento.Gol) {
+            return -1;
+        }
+        return codigo(accion.getSecuencia(), accion.getEquipoAccion());
+    }
+
+    private static int codigo(Integer secuencia, EquipoAccion equipo) {
+        if (secuencia == null || equipo == null) {
+            return -1;
+        }
+        return secuencia << 1 | (equipo == EquipoAccion.LOCAL ? 0 : 1);
+    }
+
+    static int[] poner(int[] goles, int codigo) {
+        int posicion = Arrays.binarySearch(goles, codigo);
+        if (posicion >= 0) {
+            return goles;
+        }
+        posicion = -posicion - 1;
+        int[] resultado = new int[goles.length + 1];
+        System.arraycopy(goles, 0, resultado, 0, posicion);
+        resultado[posicion] = codigo;
+        System.arraycopy(goles, posicion, resultado, posicion + 1, goles.length - posicion);
+        return resultado;
+    }
+
+    static int[] quitar(int[] goles, int codigo) {
+        int posicion = Arrays.binarySearch(goles, codigo);
+        if (posicion < 0) {
+            return goles;
+        }
+        int[] resultado = new int[goles.length - 1];
+        System.arraycopy(goles, 0, resultado, 0, posicion);
+        System.arraycopy(goles, posicion + 1, resultado, posicion, goles.length - posicion - 1);
+        return resultado;
+    }
+
+    private static byte[] aBytes(int[] goles) {
+        ByteBuffer buffer = ByteBuffer.allocate(goles.length * Integer.BYTES);
+        buffer.asIntBuffer().put(goles);
+        return buffer.array();
+    }
+
+    private static int[] deBytes(byte[] bytes) {
+        int[] goles = new int[bytes.length / Integer.BYTES];
+        ByteBuffer.wrap(bytes).asIntBuffer().get(goles);
+        return goles;
+    }
+}
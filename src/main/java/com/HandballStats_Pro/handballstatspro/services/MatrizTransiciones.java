@@ -0,0 +1,165 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.enums.DetalleEvento;
+import com.HandballStats_Pro.handballstatspro.enums.EquipoAccion;
+import com.HandballStats_Pro.handballstatspro.enums.Evento;
+import com.HandballStats_Pro.handballstatspro.enums.OrigenAccion;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Motor de la matriz de transiciones entre acciones consecutivas de un partido.
+ *
+ * Un estado es (origen, evento, detalle del evento), solo con los detalles que admite cada evento,
+ * y una transición va del estado de una acción (y su equipo) al de la siguiente (y el suyo). Los
+ * contadores están en un único array denso [ladoDesde][desde][ladoHasta][hasta], así que dos matrices
+ * se suman celda a celda y la de un equipo es la suma de las de sus partidos vistas desde su lado, como
+ * en EstadisticasPartido. En la base de datos se guardan solo las celdas distintas de cero.
+ */
+public final class MatrizTransiciones {
+
+    private static final OrigenAccion[] ORIGENES = OrigenAccion.values();
+    private static final int LADOS = EquipoAccion.values().length;
+
+    // Pares (evento, detalle) posibles según las reglas de AccionService: cada evento sin detalle y con los suyos
+    private static final Map<Evento, List<DetalleEvento>> DETALLES_POR_EVENTO = new EnumMap<>(Evento.class);
+    static {
+        DETALLES_POR_EVENTO.put(Evento.Gol, List.of());
+        DETALLES_POR_EVENTO.put(Evento.Lanzamiento_Parado, List.of(DetalleEvento.Parada_Portero, DetalleEvento.Bloqueo_Defensor));
+        DETALLES_POR_EVENTO.put(Evento.Lanzamiento_Fuera, List.of(DetalleEvento.Palo, DetalleEvento.Fuera_Directo));
+        DETALLES_POR_EVENTO.put(Evento.Perdida, List.of(DetalleEvento.Pasos, DetalleEvento.Dobles, DetalleEvento.FaltaAtaque,
+                DetalleEvento.Pasivo, DetalleEvento.InvasionArea, DetalleEvento.Robo, DetalleEvento.Pie, DetalleEvento.BalonFuera));
+    }
+
+    private static final Evento[] EVENTO_DEL_PAR;
+    private static final DetalleEvento[] DETALLE_DEL_PAR;
+    // Par de cada [evento][detalle + 1] (0 = sin detalle); un detalle que no es del evento cuenta como sin detalle
+    private static final int[][] PAR;
+    static {
+        List<Evento> eventos = new ArrayList<>();
+        List<DetalleEvento> detalles = new ArrayList<>();
+        PAR = new int[Evento.values().length][DetalleEvento.values().length + 1];
+        for (Evento evento : Evento.values()) {
+            int sinDetalle = eventos.size();
+            eventos.add(evento);
+            detalles.add(null);
+            Arrays.fill(PAR[evento.ordinal()], sinDetalle);
+            for (DetalleEvento detalle : DETALLES_POR_EVENTO.getOrDefault(evento, List.of())) {
+                PAR[evento.ordinal()][detalle.ordinal() + 1] = eventos.size();
+                eventos.add(evento);
+                detalles.add(detalle);
+            }
+        }
+        EVENTO_DEL_PAR = eventos.toArray(Evento[]::new);
+        DETALLE_DEL_PAR = detalles.toArray(DetalleEvento[]::new);
+    }
+
+    static final int ESTADOS = ORIGENES.length * EVENTO_DEL_PAR.length;
+    private static final int POR_LADO_DESDE = ESTADOS * LADOS * ESTADOS;
+    static final int TAMANO = LADOS * POR_LADO_DESDE;
+
+    private final int[] contadores = new int[TAMANO];
+    private int transiciones;
+
+    public static int estado(OrigenAccion origen, Evento evento, DetalleEvento detalle) {
+        int par = PAR[evento.ordinal()][detalle == null ? 0 : detalle.ordinal() + 1];
+        return origen.ordinal() * EVENTO_DEL_PAR.length + par;
+    }
+
+    public static OrigenAccion origen(int estado) {
+        return ORIGENES[estado / EVENTO_DEL_PAR.length];
+    }
+
+    public static Evento evento(int estado) {
+        return EVENTO_DEL_PAR[estado % EVENTO_DEL_PAR.length];
+    }
+
+    public static DetalleEvento detalle(int estado) {
+        return DETALLE_DEL_PAR[estado % EVENTO_DEL_PAR.length];
+    }
+
+    public int getTransiciones() {
+        return transiciones;
+    }
+
+    public void sumar(EquipoAccion ladoDesde, int desde, EquipoAccion ladoHasta, int hasta, int signo) {
+        contadores[indice(ladoDesde.ordinal(), desde, ladoHasta.ordinal(), hasta)] += signo;
+        transiciones += signo;
+    }
+
+    public int veces(EquipoAccion ladoDesde, int desde, EquipoAccion ladoHasta, int hasta) {
+        return contadores[indice(ladoDesde.ordinal(), desde, ladoHasta.ordinal(), hasta)];
+    }
+
+    public void combinar(MatrizTransiciones otra) {
+        for (int i = 0; i < TAMANO; i++) {
+            contadores[i] += otra.contadores[i];
+        }
+        transiciones += otra.transiciones;
+    }
+
+    // Suma otra matriz vista desde "propio": sus transiciones de ese lado quedan en LOCAL y las del otro en VISITANTE
+    public void combinarComo(MatrizTransiciones otra, EquipoAccion propio) {
+        if (propio == EquipoAccion.LOCAL) {
+            combinar(otra);
+            return;
+        }
+        for (int ladoDesde = 0; ladoDesde < LADOS; ladoDesde++) {
+            for (int desde = 0; desde < ESTADOS; desde++) {
+                for (int ladoHasta = 0; ladoHasta < LADOS; ladoHasta++) {
+                    int origen = indice(ladoDesde, desde, ladoHasta, 0);
+                    int destino = indice(LADOS - 1 - ladoDesde, desde, LADOS - 1 - ladoHasta, 0);
+                    for (int hasta = 0; hasta < ESTADOS; hasta++) {
+                        contadores[destino + hasta] += otra.contadores[origen + hasta];
+                    }
+                }
+            }
+        }
+        transiciones += otra.transiciones;
+    }
+
+    // Solo las celdas distintas de cero: TAMANO, transiciones, n y n pares (celda, veces), int big-endian
+    public byte[] aBytes() {
+        int celdas = 0;
+        for (int contador : contadores) {
+            if (contador != 0) {
+                celdas++;
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((3 + 2 * celdas) * Integer.BYTES);
+        buffer.putInt(TAMANO).putInt(transiciones).putInt(celdas);
+        for (int i = 0; i < TAMANO; i++) {
+            if (contadores[i] != 0) {
+                buffer.putInt(i).putInt(contadores[i]);
+            }
+        }
+        return buffer.array();
+    }
+
+    // Devuelve null si el binario se guardó con otra disposición (p. ej. tras añadir valores a un enum)
+    public static MatrizTransiciones deBytes(byte[] bytes) {
+        if (bytes == null || bytes.length < 3 * Integer.BYTES) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (buffer.getInt() != TAMANO) {
+            return null;
+        }
+        MatrizTransiciones matriz = new MatrizTransiciones();
+        matriz.transiciones = buffer.getInt();
+        int celdas = buffer.getInt();
+        for (int i = 0; i < celdas; i++) {
+            matriz.contadores[buffer.getInt()] = buffer.getInt();
+        }
+        return matriz;
+    }
+
+    private static int indice(int ladoDesde, int desde, int ladoHasta, int hasta) {
+        return ladoDesde * POR_LADO_DESDE + (desde * LADOS + ladoHasta) * ESTADOS + hasta;
+    }
+}
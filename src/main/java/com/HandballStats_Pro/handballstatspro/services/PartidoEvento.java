@@ -0,0 +1,9 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+/**
+ * Evento que publica PartidoService cuando cambia un partido con equipos asociados (al crearlo,
+ * editarlo o borrarlo). Lleva los equipos antes y después del cambio (null cuando no hay), para
+ * que los agregados por equipo muevan el partido de uno a otro si han cambiado.
+ */
+public record PartidoEvento(Integer idPartido, Long localAntes, Long visitanteAntes, Long localDespues, Long visitanteDespues) {
+}
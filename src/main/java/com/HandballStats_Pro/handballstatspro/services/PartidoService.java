@@ -8,7 +8,9 @@ import com.HandballStats_Pro.handballstatspro.exceptions.PermissionDeniedExcepti
 import com.HandballStats_Pro.handballstatspro.exceptions.ResourceNotFoundException;
 import com.HandballStats_Pro.handballstatspro.repositories.EquipoRepository;
 import com.HandballStats_Pro.handballstatspro.repositories.PartidoRepository;
+import com.HandballStats_Pro.handballstatspro.repositories.UsuarioClubRepository;
 import com.HandballStats_Pro.handballstatspro.repositories.UsuarioRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -17,8 +19,12 @@ import jakarta.transaction.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class PartidoService {
@@ -26,11 +32,16 @@ public class PartidoService {
     private final PartidoRepository partidoRepository;
     private final UsuarioRepository usuarioRepository;
     private final EquipoRepository equipoRepository;
+    private final UsuarioClubRepository usuarioClubRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public PartidoService(PartidoRepository partidoRepository, UsuarioRepository usuarioRepository, EquipoRepository equipoRepository) {
+    public PartidoService(PartidoRepository partidoRepository, UsuarioRepository usuarioRepository, EquipoRepository equipoRepository,
+                          UsuarioClubRepository usuarioClubRepository, ApplicationEventPublisher eventPublisher) {
         this.partidoRepository = partidoRepository;
         this.usuarioRepository = usuarioRepository;
         this.equipoRepository = equipoRepository;
+        this.usuarioClubRepository = usuarioClubRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -55,19 +66,55 @@ public class PartidoService {
         partido.setCompeticion(partidoDTO.getCompeticion());
         partido.setFechaRegistro(LocalDateTime.now());
         partido.setIdUsuarioRegistro(usuario.getIdUsuario());
+        partido.setGolesLocal(0);
+        partido.setGolesVisitante(0);
 
         Partido nuevoPartido = partidoRepository.save(partido);
+        if (nuevoPartido.getIdEquipoLocalAsociado() != null || nuevoPartido.getIdEquipoVisitanteAsociado() != null) {
+            eventPublisher.publishEvent(new PartidoEvento(nuevoPartido.getIdPartido(), null, null,
+                    nuevoPartido.getIdEquipoLocalAsociado(), nuevoPartido.getIdEquipoVisitanteAsociado()));
+        }
         return mapToResponseDTO(nuevoPartido);
     }
 
     public List<PartidoResponseDTO> listarPartidos() {
+        return listarPartidosAccesibles().stream()
+            .map(this::mapToResponseDTO)
+            .collect(Collectors.toList());
+    }
+
+    // Temporada de cada partido: la de su equipo asociado (local antes que visitante); los de scouting no tienen
+    public Map<Integer, String> temporadasPorPartido(List<Partido> partidos) {
+        List<Long> idsEquipos = partidos.stream()
+                .flatMap(p -> Stream.of(p.getIdEquipoLocalAsociado(), p.getIdEquipoVisitanteAsociado()))
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        Map<Long, String> temporadasEquipos = new HashMap<>();
+        for (Equipo equipo : equipoRepository.findAllById(idsEquipos)) {
+            temporadasEquipos.put(equipo.getIdEquipo(), equipo.getTemporada());
+        }
+
+        Map<Integer, String> temporadas = new HashMap<>();
+        for (Partido partido : partidos) {
+            String temporada = temporadasEquipos.get(partido.getIdEquipoLocalAsociado());
+            if (temporada == null) {
+                temporada = temporadasEquipos.get(partido.getIdEquipoVisitanteAsociado());
+            }
+            if (temporada != null) {
+                temporadas.put(partido.getIdPartido(), temporada);
+            }
+        }
+        return temporadas;
+    }
+
+    // Partidos que el usuario actual puede ver (mismas reglas que puedeAccederPartido, resueltas en bloque)
+    public List<Partido> listarPartidosAccesibles() {
         Usuario usuario = obtenerUsuarioActual();
         String rol = obtenerRolUsuario();
 
         if ("ROLE_Admin".equals(rol)) {
-            return partidoRepository.findAll().stream()
-                .map(this::mapToResponseDTO)
-                .collect(Collectors.toList());
+            return partidoRepository.findAll();
         }
 
         // 1. Obtener los partidos donde el usuario gestiona al menos uno de los equipos
@@ -92,10 +139,7 @@ public class PartidoService {
         java.util.Set<Partido> partidosUnicos = new java.util.LinkedHashSet<>(partidosAsociados);
         partidosUnicos.addAll(partidosDeScouting);
 
-        // 4. Mapear el resultado final a DTOs
-        return new java.util.ArrayList<>(partidosUnicos).stream()
-            .map(this::mapToResponseDTO)
-            .collect(Collectors.toList());
+        return new java.util.ArrayList<>(partidosUnicos);
     }
 
     public PartidoResponseDTO obtenerPartidoPorId(Integer id) {
@@ -125,11 +169,18 @@ public class PartidoService {
         if (dto.getCompeticion() != null) partido.setCompeticion(dto.getCompeticion());
 
         // La lógica para cambiar los equipos asociados puede ser compleja, aquí un ejemplo simple
+        Long localAntes = partido.getIdEquipoLocalAsociado();
+        Long visitanteAntes = partido.getIdEquipoVisitanteAsociado();
         partido.setIdEquipoLocalAsociado(dto.getIdEquipoLocalAsociado());
         partido.setIdEquipoVisitanteAsociado(dto.getIdEquipoVisitanteAsociado());
 
 
         Partido partidoActualizado = partidoRepository.save(partido);
+        if (localAntes != null || visitanteAntes != null
+                || partido.getIdEquipoLocalAsociado() != null || partido.getIdEquipoVisitanteAsociado() != null) {
+            eventPublisher.publishEvent(new PartidoEvento(id, localAntes, visitanteAntes,
+                    partido.getIdEquipoLocalAsociado(), partido.getIdEquipoVisitanteAsociado()));
+        }
         return mapToResponseDTO(partidoActualizado);
     }
 
@@ -142,6 +193,10 @@ public class PartidoService {
             throw new PermissionDeniedException();
         }
         partidoRepository.delete(partido);
+        if (partido.getIdEquipoLocalAsociado() != null || partido.getIdEquipoVisitanteAsociado() != null) {
+            eventPublisher.publishEvent(new PartidoEvento(id, partido.getIdEquipoLocalAsociado(),
+                    partido.getIdEquipoVisitanteAsociado(), null, null));
+        }
     }
 
     // --- MÉTODOS PRIVADOS Y DE AYUDA ---
@@ -164,6 +219,18 @@ public class PartidoService {
         return accesoLocal || accesoVisitante;
     }
 
+    public boolean puedeAccederEquipo(Long idEquipo) {
+        return tienePermisoEquipo(idEquipo, obtenerUsuarioActual().getIdUsuario(), obtenerRolUsuario());
+    }
+
+    // Datos de club: el administrador o un gestor del club
+    public boolean puedeAccederClub(Long idClub) {
+        String rol = obtenerRolUsuario();
+        if ("ROLE_Admin".equals(rol)) return true;
+        return "ROLE_GestorClub".equals(rol)
+            && usuarioClubRepository.existsByUsuario_IdUsuarioAndClub_IdClub(obtenerUsuarioActual().getIdUsuario(), idClub);
+    }
+
     private boolean tienePermisoEquipo(Long idEquipo, Long idUsuario, String rol) {
         if ("ROLE_Admin".equals(rol)) return true; 
 
@@ -197,6 +264,9 @@ public class PartidoService {
         dto.setIdEquipoLocalAsociado(partido.getIdEquipoLocalAsociado());
         dto.setIdEquipoVisitanteAsociado(partido.getIdEquipoVisitanteAsociado());
         dto.setResultado(partido.getResultado());
+        if (partido.getGolesLocal() != null && partido.getGolesVisitante() != null) {
+            dto.setMarcador(new MarcadorDTO(partido.getGolesLocal(), partido.getGolesVisitante()));
+        }
         dto.setFecha(partido.getFecha());
         dto.setCompeticion(partido.getCompeticion());
         dto.setFechaRegistro(partido.getFechaRegistro());
@@ -0,0 +1,340 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.dto.AccionResponseDTO;
+import com.HandballStats_Pro.handballstatspro.dto.EficienciaPosesionesDTO;
+import com.HandballStats_Pro.handballstatspro.dto.PosesionResponseDTO;
+import com.HandballStats_Pro.handballstatspro.entities.Accion;
+import com.HandballStats_Pro.handballstatspro.entities.Partido;
+import com.HandballStats_Pro.handballstatspro.entities.Posesion;
+import com.HandballStats_Pro.handballstatspro.enums.EquipoAccion;
+import com.HandballStats_Pro.handballstatspro.enums.Evento;
+import com.HandballStats_Pro.handballstatspro.enums.TipoAtaque;
+import com.HandballStats_Pro.handballstatspro.exceptions.PermissionDeniedException;
+import com.HandballStats_Pro.handballstatspro.exceptions.ResourceNotFoundException;
+import com.HandballStats_Pro.handballstatspro.repositories.AccionRepository;
+import com.HandballStats_Pro.handballstatspro.repositories.PartidoRepository;
+import com.HandballStats_Pro.handballstatspro.repositories.PosesionRepository;
+import com.HandballStats_Pro.handballstatspro.repositories.PosesionRepository.ResumenPosesiones;
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Reconstrucción en el servidor de las posesiones de cada partido.
+ *
+ * Las posesiones se derivan de la secuencia de acciones, sin fiarse del idPosesion que manda el cliente:
+ * una acción abre posesión nueva si la anterior tenía cambio_posesion o si la registra el otro equipo.
+ * Cada fila guarda los totales de su posesión, así que las métricas por posesión son una agregación
+ * sobre pocas filas. Las tablas se mantienen al día dentro de la misma transacción que cambia la acción:
+ * una acción nueva alarga o abre la última posesión, y una edición o un borrado solo rehacen desde la
+ * posesión anterior a la afectada.
+ *
+ * Con el diario de acciones activo, una acción nueva que no va al final (o que llega sin posesiones
+ * previas) no puede rehacerlas: las anteriores pueden estar aún sin volcar. En ese caso se descartan
+ * y se reconstruyen en la siguiente lectura, que vuelca antes el diario del partido.
+ */
+@Slf4j
+@Service
+public class PosesionService {
+
+    private final PosesionRepository posesionRepository;
+    private final AccionRepository accionRepository;
+    private final PartidoRepository partidoRepository;
+    private final PartidoService partidoService;
+    private final BloqueoPartidos bloqueoPartidos;
+    private final DiarioAcciones diarioAcciones;
+    private final TransactionTemplate transaccionPropia;
+
+    public PosesionService(PosesionRepository posesionRepository, AccionRepository accionRepository,
+                           PartidoRepository partidoRepository, PartidoService partidoService,
+                           BloqueoPartidos bloqueoPartidos, DiarioAcciones diarioAcciones,
+                           PlatformTransactionManager transactionManager) {
+        this.posesionRepository = posesionRepository;
+        this.accionRepository = accionRepository;
+        this.partidoRepository = partidoRepository;
+        this.partidoService = partidoService;
+        this.bloqueoPartidos = bloqueoPartidos;
+        this.diarioAcciones = diarioAcciones;
+        // La reconstrucción al leer va en su propia transacción, empezada después de bloquear el partido
+        this.transaccionPropia = new TransactionTemplate(transactionManager);
+        this.transaccionPropia.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // Síncrono, dentro de la transacción que cambia la acción: si falla, se deshace también el cambio
+    @EventListener
+    @Transactional
+    public void alCambiarAccion(AccionEvento evento) {
+        switch (evento.tipo()) {
+            case CREADA -> anexar(evento.despues());
+            case ACTUALIZADA -> {
+                if (cambiaPosesiones(evento.antes(), evento.despues())) {
+                    rehacerDesde(evento.idPartido(), evento.antes().getSecuencia());
+                }
+            }
+            case ELIMINADA -> rehacerDesde(evento.idPartido(), evento.antes().getSecuencia());
+        }
+    }
+
+    public List<PosesionResponseDTO> listarPosesiones(Integer idPartido) {
+        autorizar(idPartido);
+        return posesiones(idPartido).stream()
+                .map(this::mapToResponseDTO)
+                .toList();
+    }
+
+    // Por equipo: una fila con el total y una por tipo de ataque (contraataque frente a posicional)
+    public List<EficienciaPosesionesDTO> obtenerEficiencia(Integer idPartido) {
+        autorizar(idPartido);
+        asegurarPosesiones(idPartido);
+
+        Map<EquipoAccion, EficienciaPosesionesDTO> totales = new EnumMap<>(EquipoAccion.class);
+        List<EficienciaPosesionesDTO> porTipo = new ArrayList<>();
+        for (ResumenPosesiones resumen : posesionRepository.resumirPorPartido(idPartido)) {
+            porTipo.add(eficiencia(resumen.getEquipo(), resumen.getTipoAtaque(), resumen.getPosesiones(),
+                    resumen.getAcciones(), resumen.getLanzamientos(), resumen.getGoles()));
+            EficienciaPosesionesDTO total = totales.computeIfAbsent(resumen.getEquipo(),
+                    equipo -> eficiencia(equipo, null, 0, 0, 0, 0));
+            acumular(total, resumen);
+        }
+
+        List<EficienciaPosesionesDTO> resultado = new ArrayList<>();
+        for (EquipoAccion equipo : EquipoAccion.values()) {
+            EficienciaPosesionesDTO total = totales.get(equipo);
+            if (total == null) {
+                continue;
+            }
+            resultado.add(total);
+            for (TipoAtaque tipo : TipoAtaque.values()) {
+                porTipo.stream()
+                        .filter(fila -> fila.getEquipo() == equipo && fila.getTipoAtaque() == tipo)
+                        .findFirst()
+                        .ifPresent(resultado::add);
+            }
+        }
+        return resultado;
+    }
+
+    // Rehace todas las posesiones del partido desde sus acciones (recálculo de administración)
+    @Transactional
+    public void reconstruir(Integer idPartido) {
+        bloqueoPartidos.bloquearHastaFinTransaccion(idPartido);
+        diarioAcciones.volcarPartido(idPartido);
+        rehacerDesde(idPartido, 1);
+    }
+
+    // Posesiones del partido en orden (sin comprobar permisos)
+    public List<Posesion> posesiones(Integer idPartido) {
+        List<Posesion> reconstruidas = asegurarPosesiones(idPartido);
+        return reconstruidas != null ? reconstruidas : posesionRepository.findByIdPartidoOrderByNumeroAsc(idPartido);
+    }
+
+    // Posesiones de cada equipo en el partido (sin comprobar permisos)
+    public Map<EquipoAccion, Long> contarPorEquipo(Integer idPartido) {
+        Map<EquipoAccion, Long> posesiones = new EnumMap<>(EquipoAccion.class);
+        List<Posesion> reconstruidas = asegurarPosesiones(idPartido);
+        if (reconstruidas != null) {
+            reconstruidas.forEach(posesion -> posesiones.merge(posesion.getEquipo(), 1L, Long::sum));
+            return posesiones;
+        }
+        for (ResumenPosesiones resumen : posesionRepository.resumirPorPartido(idPartido)) {
+            posesiones.merge(resumen.getEquipo(), resumen.getPosesiones(), Long::sum);
+        }
+        return posesiones;
+    }
+
+    // MANTENIMIENTO INCREMENTAL
+
+    // Acción nueva: lo normal es que vaya detrás de todas y solo toque la última posesión
+    private void anexar(AccionResponseDTO accion) {
+        Integer idPartido = accion.getIdPartido();
+        Posesion ultima = posesionRepository.findFirstByIdPartidoOrderByNumeroDesc(idPartido).orElse(null);
+
+        if (diarioAcciones.activo() && (ultima == null ? accion.getSecuencia() > 1 : accion.getSecuencia() <= ultima.getSecuenciaFin())) {
+            // Las acciones anteriores pueden seguir en el diario: se rehace todo en la siguiente lectura
+            posesionRepository.deleteAll(posesionRepository.findByIdPartidoOrderByNumeroAsc(idPartido));
+            return;
+        }
+        if (ultima == null && accion.getSecuencia() > 1) {
+            // Partido con acciones anteriores a las posesiones: se reconstruye lo que ya había
+            List<Posesion> previas = derivar(idPartido, 1,
+                    accionRepository.findByIdPartidoAndSecuenciaLessThanOrderBySecuenciaAsc(idPartido, accion.getSecuencia()));
+            posesionRepository.saveAll(previas);
+            ultima = previas.isEmpty() ? null : previas.get(previas.size() - 1);
+        } else if (ultima != null && accion.getSecuencia() <= ultima.getSecuenciaFin()) {
+            rehacerDesde(idPartido, accion.getSecuencia());
+            return;
+        }
+
+        if (continua(ultima, accion.getEquipoAccion())) {
+            sumar(ultima, accion.getSecuencia(), accion.getTipoAtaque(), accion.getEvento(), accion.getCambioPosesion());
+        } else {
+            Posesion nueva = nueva(idPartido, ultima == null ? 1 : ultima.getNumero() + 1, accion.getEquipoAccion());
+            sumar(nueva, accion.getSecuencia(), accion.getTipoAtaque(), accion.getEvento(), accion.getCambioPosesion());
+            posesionRepository.save(nueva);
+        }
+    }
+
+    // Rehace las posesiones desde la anterior a la que contiene la secuencia: un cambio de equipo en la
+    // acción puede unirla a la posesión previa, y un cambio_posesion desplaza todas las siguientes
+    private void rehacerDesde(Integer idPartido, Integer secuencia) {
+        int desde = posesionRepository.findFirstByIdPartidoAndSecuenciaInicioLessThanEqualOrderByNumeroDesc(idPartido, secuencia)
+                .map(contiene -> Math.max(1, contiene.getNumero() - 1))
+                .orElse(1);
+        List<Posesion> existentes = posesionRepository.findByIdPartidoAndNumeroGreaterThanEqualOrderByNumeroAsc(idPartido, desde);
+        List<Accion> acciones = existentes.isEmpty()
+                ? accionRepository.findByIdPartidoOrderBySecuenciaAsc(idPartido)
+                : accionRepository.findByIdPartidoAndSecuenciaGreaterThanEqualOrderBySecuenciaAsc(idPartido, existentes.get(0).getSecuenciaInicio());
+        List<Posesion> derivadas = derivar(idPartido, desde, acciones);
+        log.debug("Partido {}: posesiones rehechas desde la {} ({} antes, {} ahora)", idPartido, desde, existentes.size(), derivadas.size());
+
+        // Se reutilizan las filas existentes para no chocar con uk_posesion_partido_numero
+        // (Hibernate ejecuta los INSERT antes que los DELETE al volcar)
+        int comunes = Math.min(existentes.size(), derivadas.size());
+        for (int i = 0; i < comunes; i++) {
+            copiar(derivadas.get(i), existentes.get(i));
+        }
+        posesionRepository.saveAll(derivadas.subList(comunes, derivadas.size()));
+        posesionRepository.deleteAll(existentes.subList(comunes, existentes.size()));
+    }
+
+    // Partidos sin posesiones (anteriores a ellas o descartadas con el diario activo): se reconstruyen al
+    // consultarlos, en una transacción propia que vuelca antes el diario del partido. Devuelve las
+    // reconstruidas, porque la transacción del llamante puede no ver aún las filas nuevas; o null si ya estaban.
+    private List<Posesion> asegurarPosesiones(Integer idPartido) {
+        if (posesionRepository.countByIdPartido(idPartido) > 0
+                || accionRepository.countByIdPartido(idPartido) == 0 && diarioAcciones.colaPendiente(idPartido) == null) {
+            return null;
+        }
+        return transaccionPropia.execute(estado -> {
+            bloqueoPartidos.bloquearHastaFinTransaccion(idPartido);
+            diarioAcciones.volcarPartido(idPartido);
+            if (posesionRepository.countByIdPartido(idPartido) > 0) {
+                return posesionRepository.findByIdPartidoOrderByNumeroAsc(idPartido);
+            }
+            return posesionRepository.saveAll(derivar(idPartido, 1, accionRepository.findByIdPartidoOrderBySecuenciaAsc(idPartido)));
+        });
+    }
+
+    // DERIVACIÓN
+
+    static List<Posesion> derivar(Integer idPartido, int primerNumero, List<Accion> acciones) {
+        List<Posesion> posesiones = new ArrayList<>();
+        Posesion actual = null;
+        for (Accion accion : acciones) {
+            if (!continua(actual, accion.getEquipoAccion())) {
+                actual = nueva(idPartido, primerNumero + posesiones.size(), accion.getEquipoAccion());
+                posesiones.add(actual);
+            }
+            sumar(actual, accion.getSecuencia(), accion.getTipoAtaque(), accion.getEvento(), accion.getCambioPosesion());
+        }
+        return posesiones;
+    }
+
+    // La acción sigue en la posesión abierta si es del mismo equipo
+    private static boolean continua(Posesion posesion, EquipoAccion equipo) {
+        return posesion != null && !posesion.isCerrada() && posesion.getEquipo() == equipo;
+    }
+
+    private static Posesion nueva(Integer idPartido, int numero, EquipoAccion equipo) {
+        Posesion posesion = new Posesion();
+        posesion.setIdPartido(idPartido);
+        posesion.setNumero(numero);
+        posesion.setEquipo(equipo);
+        return posesion;
+    }
+
+    private static void sumar(Posesion posesion, Integer secuencia, TipoAtaque tipoAtaque, Evento evento, Boolean cambioPosesion) {
+        if (posesion.getNumeroAcciones() == 0) {
+            posesion.setSecuenciaInicio(secuencia);
+        }
+        posesion.setSecuenciaFin(secuencia);
+        posesion.setNumeroAcciones(posesion.getNumeroAcciones() + 1);
+        if (evento != Evento.Perdida) {
+            posesion.setLanzamientos(posesion.getLanzamientos() + 1);
+        }
+        if (evento == Evento.Gol) {
+            posesion.setGoles(posesion.getGoles() + 1);
+        }
+        posesion.setTipoAtaque(tipoAtaque);
+        posesion.setResultado(evento);
+        posesion.setCerrada(Boolean.TRUE.equals(cambioPosesion));
+    }
+
+    private static void copiar(Posesion origen, Posesion destino) {
+        destino.setEquipo(origen.getEquipo());
+        destino.setTipoAtaque(origen.getTipoAtaque());
+        destino.setSecuenciaInicio(origen.getSecuenciaInicio());
+        destino.setSecuenciaFin(origen.getSecuenciaFin());
+        destino.setNumeroAcciones(origen.getNumeroAcciones());
+        destino.setLanzamientos(origen.getLanzamientos());
+        destino.setGoles(origen.getGoles());
+        destino.setResultado(origen.getResultado());
+        destino.setCerrada(origen.isCerrada());
+    }
+
+    // Solo estos campos intervienen en las posesiones; editar la zona o los detalles no las toca
+    private static boolean cambiaPosesiones(AccionResponseDTO antes, AccionResponseDTO despues) {
+        return antes.getEquipoAccion() != despues.getEquipoAccion()
+                || antes.getTipoAtaque() != despues.getTipoAtaque()
+                || antes.getEvento() != despues.getEvento()
+                || !Objects.equals(antes.getCambioPosesion(), despues.getCambioPosesion());
+    }
+
+    // MÉTODOS AUXILIARES
+
+    private void autorizar(Integer idPartido) {
+        Partido partido = partidoRepository.findById(idPartido)
+                .orElseThrow(() -> new ResourceNotFoundException("Partido", "id", String.valueOf(idPartido)));
+        if (!partidoService.puedeAccederPartido(partido)) {
+            throw new PermissionDeniedException();
+        }
+    }
+
+    private static EficienciaPosesionesDTO eficiencia(EquipoAccion equipo, TipoAtaque tipoAtaque, long posesiones,
+                                                      long acciones, long lanzamientos, long goles) {
+        EficienciaPosesionesDTO dto = new EficienciaPosesionesDTO();
+        dto.setEquipo(equipo);
+        dto.setTipoAtaque(tipoAtaque);
+        dto.setPosesiones(posesiones);
+        dto.setAcciones(acciones);
+        dto.setLanzamientos(lanzamientos);
+        dto.setGoles(goles);
+        dto.setGolesPorPosesion(posesiones == 0 ? 0 : (double) goles / posesiones);
+        dto.setAccionesPorPosesion(posesiones == 0 ? 0 : (double) acciones / posesiones);
+        return dto;
+    }
+
+    private static void acumular(EficienciaPosesionesDTO total, ResumenPosesiones resumen) {
+        total.setPosesiones(total.getPosesiones() + resumen.getPosesiones());
+        total.setAcciones(total.getAcciones() + resumen.getAcciones());
+        total.setLanzamientos(total.getLanzamientos() + resumen.getLanzamientos());
+        total.setGoles(total.getGoles() + resumen.getGoles());
+        total.setGolesPorPosesion((double) total.getGoles() / total.getPosesiones());
+        total.setAccionesPorPosesion((double) total.getAcciones() / total.getPosesiones());
+    }
+
+    private PosesionResponseDTO mapToResponseDTO(Posesion posesion) {
+        PosesionResponseDTO dto = new PosesionResponseDTO();
+        dto.setNumero(posesion.getNumero());
+        dto.setEquipo(posesion.getEquipo());
+        dto.setTipoAtaque(posesion.getTipoAtaque());
+        dto.setSecuenciaInicio(posesion.getSecuenciaInicio());
+        dto.setSecuenciaFin(posesion.getSecuenciaFin());
+        dto.setNumeroAcciones(posesion.getNumeroAcciones());
+        dto.setLanzamientos(posesion.getLanzamientos());
+        dto.setGoles(posesion.getGoles());
+        dto.setResultado(posesion.getResultado());
+        dto.setCerrada(posesion.isCerrada());
+        return dto;
+    }
+}
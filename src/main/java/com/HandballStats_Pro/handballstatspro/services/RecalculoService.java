@@ -0,0 +1,357 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.dto.RecalculoDTO;
+import com.HandballStats_Pro.handballstatspro.entities.ClubEstadisticaId;
+import com.HandballStats_Pro.handballstatspro.entities.Equipo;
+import com.HandballStats_Pro.handballstatspro.enums.EquipoAccion;
+import com.HandballStats_Pro.handballstatspro.enums.EstadoRecalculo;
+import com.HandballStats_Pro.handballstatspro.exceptions.ApiException;
+import com.HandballStats_Pro.handballstatspro.repositories.EquipoRepository;
+import com.HandballStats_Pro.handballstatspro.repositories.PartidoRepository;
+import com.HandballStats_Pro.handballstatspro.repositories.PartidoRepository.EquiposPartido;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Recálculo completo de las estadísticas derivadas en segundo plano: posesiones, marcador,
+ * transiciones y partido_estadistica de cada partido, y después los acumulados de temporada de equipos y clubes.
+ *
+ * Los partidos se reparten en un ForkJoinPool: cada hoja recalcula los suyos (cada uno en su
+ * transacción, con el partido bloqueado) y suma sus contadores en un parcial por equipo; los parciales
+ * se combinan de dos en dos al volver, así que el resultado no depende del reparto. El ritmo global
+ * está limitado a recalculo.partidos-por-segundo para no quitar conexiones ni bloqueos a la anotación
+ * en directo. Los equipos cambiados mientras dura el trabajo se reconstruyen al final desde sus filas
+ * de partido, que se mantienen al día con los deltas.
+ */
+@Slf4j
+@Service
+public class RecalculoService {
+
+    // Partidos por hoja: por debajo no compensa seguir dividiendo
+    private static final int UMBRAL = 64;
+
+    private final PartidoRepository partidoRepository;
+    private final EquipoRepository equipoRepository;
+    private final PosesionService posesionService;
+    private final MarcadorService marcadorService;
+    private final TransicionesService transicionesService;
+    private final EstadisticasService estadisticasService;
+    private final EstadisticasTemporadaService estadisticasTemporadaService;
+    private final EnfrentamientosService enfrentamientosService;
+    private final ClasificacionService clasificacionService;
+    private final int paralelismo;
+    private final long intervaloNanos;
+    private final ExecutorService coordinador;
+
+    private final AtomicLong siguienteId = new AtomicLong();
+    // Instante (nanoTime) a partir del cual se puede empezar el siguiente partido
+    private final AtomicLong siguienteTurno = new AtomicLong();
+    private Trabajo actual;
+    // Equipos cambiados durante el trabajo en curso (null si no hay ninguno)
+    private Set<Long> equiposCambiados;
+
+    public RecalculoService(PartidoRepository partidoRepository, EquipoRepository equipoRepository,
+                            PosesionService posesionService, MarcadorService marcadorService,
+                            TransicionesService transicionesService,
+                            EstadisticasService estadisticasService,
+                            EstadisticasTemporadaService estadisticasTemporadaService,
+                            EnfrentamientosService enfrentamientosService, ClasificacionService clasificacionService,
+                            @Value("${recalculo.paralelismo:2}") int paralelismo,
+                            @Value("${recalculo.partidos-por-segundo:50}") int partidosPorSegundo) {
+        this.partidoRepository = partidoRepository;
+        this.equipoRepository = equipoRepository;
+        this.posesionService = posesionService;
+        this.marcadorService = marcadorService;
+        this.transicionesService = transicionesService;
+        this.estadisticasService = estadisticasService;
+        this.estadisticasTemporadaService = estadisticasTemporadaService;
+        this.enfrentamientosService = enfrentamientosService;
+        this.clasificacionService = clasificacionService;
+        this.paralelismo = Math.max(1, paralelismo);
+        // 0 o negativo: sin límite de ritmo
+        this.intervaloNanos = partidosPorSegundo > 0 ? TimeUnit.SECONDS.toNanos(1) / partidosPorSegundo : 0;
+        this.coordinador = Executors.newSingleThreadExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "recalculo-estadisticas");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    @PreDestroy
+    public void detener() {
+        Trabajo trabajo;
+        synchronized (this) {
+            trabajo = actual;
+        }
+        if (trabajo != null) {
+            trabajo.cancelado = true;
+        }
+        coordinador.shutdownNow();
+    }
+
+    public synchronized RecalculoDTO iniciar() {
+        if (actual != null && actual.estado == EstadoRecalculo.EN_CURSO) {
+            throw new ApiException(HttpStatus.CONFLICT, "RECALCULATION_IN_PROGRESS",
+                    "Ya hay un recálculo de estadísticas en curso");
+        }
+        Trabajo trabajo = new Trabajo(siguienteId.incrementAndGet());
+        actual = trabajo;
+        equiposCambiados = new HashSet<>();
+        coordinador.execute(() -> ejecutar(trabajo));
+        return trabajo.aDTO();
+    }
+
+    public synchronized RecalculoDTO obtener() {
+        if (actual == null) {
+            throw new ApiException(HttpStatus.NOT_FOUND, "NO_RECALCULATION", "No se ha lanzado ningún recálculo");
+        }
+        return actual.aDTO();
+    }
+
+    // Los partidos ya recalculados quedan así; los acumulados de temporada no se tocan
+    public synchronized RecalculoDTO cancelar() {
+        if (actual == null || actual.estado != EstadoRecalculo.EN_CURSO) {
+            throw new ApiException(HttpStatus.CONFLICT, "NO_RECALCULATION_IN_PROGRESS",
+                    "No hay ningún recálculo de estadísticas en curso");
+        }
+        actual.cancelado = true;
+        return actual.aDTO();
+    }
+
+    // Síncronos, dentro de la transacción del cambio: quedan anotados antes de que se libere la fila del equipo
+
+    @EventListener
+    public void alCambiarAccion(AccionEvento evento) {
+        if (recalculando()) {
+            partidoRepository.findById(evento.idPartido()).ifPresent(partido ->
+                    anotarCambios(partido.getIdEquipoLocalAsociado(), partido.getIdEquipoVisitanteAsociado()));
+        }
+    }
+
+    @EventListener
+    public void alCambiarPartido(PartidoEvento evento) {
+        anotarCambios(evento.localAntes(), evento.visitanteAntes(), evento.localDespues(), evento.visitanteDespues());
+    }
+
+    // MÉTODOS AUXILIARES
+
+    private void ejecutar(Trabajo trabajo) {
+        ForkJoinPool pool = new ForkJoinPool(paralelismo);
+        // Salga como salga (también con un Error), el trabajo termina y se deja de anotar equipos cambiados
+        EstadoRecalculo estado = EstadoRecalculo.FALLIDO;
+        try {
+            List<EquiposPartido> partidos = partidoRepository.findEquiposAsociados();
+            trabajo.partidosTotales = partidos.size();
+            Parcial total = pool.invoke(new Recalculo(trabajo, partidos, 0, partidos.size()));
+            if (trabajo.cancelado) {
+                estado = EstadoRecalculo.CANCELADO;
+                return;
+            }
+            guardarAcumulados(trabajo, total);
+            estado = EstadoRecalculo.COMPLETADO;
+            log.info("Recálculo {} completado: {} partidos ({} con error), {} equipos, {} clubes", trabajo.id,
+                    trabajo.procesados.get(), trabajo.errores.get(), trabajo.equipos, trabajo.clubes);
+        } catch (RuntimeException e) {
+            log.error("Recálculo {} fallido", trabajo.id, e);
+        } finally {
+            pool.shutdown();
+            terminar(trabajo, estado);
+        }
+    }
+
+    // Escribe la fila de cada equipo (a cero si no tiene partidos) y de cada club, y repara lo cambiado mientras tanto
+    private void guardarAcumulados(Trabajo trabajo, Parcial total) {
+        Map<ClubEstadisticaId, Acumulado> clubes = new LinkedHashMap<>();
+        List<Equipo> equipos = equipoRepository.findAll();
+        for (Equipo equipo : equipos) {
+            Acumulado acumulado = total.equipos().getOrDefault(equipo.getIdEquipo(), new Acumulado());
+            estadisticasTemporadaService.guardarEquipo(equipo.getIdEquipo(), acumulado.partidos, acumulado.estadisticas);
+            if (equipo.getClub() != null) {
+                ClubEstadisticaId id = new ClubEstadisticaId(equipo.getClub().getIdClub(), equipo.getTemporada(), equipo.getCategoria());
+                clubes.computeIfAbsent(id, c -> new Acumulado()).combinar(acumulado);
+            }
+        }
+        clubes.forEach((id, acumulado) -> estadisticasTemporadaService.guardarClub(id, acumulado.partidos, acumulado.estadisticas));
+        trabajo.equipos = equipos.size();
+        trabajo.clubes = clubes.size();
+
+        Set<Long> cambiados;
+        synchronized (this) {
+            cambiados = equiposCambiados;
+            equiposCambiados = null;
+        }
+        cambiados.addAll(total.fallidos());
+        Set<ClubEstadisticaId> clubesCambiados = new LinkedHashSet<>();
+        for (Equipo equipo : equipoRepository.findAllById(cambiados)) {
+            estadisticasTemporadaService.reconstruirEquipo(equipo.getIdEquipo());
+            if (equipo.getClub() != null) {
+                clubesCambiados.add(new ClubEstadisticaId(equipo.getClub().getIdClub(), equipo.getTemporada(), equipo.getCategoria()));
+            }
+        }
+        clubesCambiados.forEach(estadisticasTemporadaService::reconstruirClub);
+
+        enfrentamientosService.vaciar();
+        clasificacionService.vaciar();
+    }
+
+    private synchronized void terminar(Trabajo trabajo, EstadoRecalculo estado) {
+        equiposCambiados = null;
+        trabajo.fin = LocalDateTime.now();
+        trabajo.estado = estado;
+    }
+
+    private synchronized boolean recalculando() {
+        return equiposCambiados != null;
+    }
+
+    private synchronized void anotarCambios(Long... idsEquipos) {
+        if (equiposCambiados == null) {
+            return;
+        }
+        for (Long idEquipo : idsEquipos) {
+            if (idEquipo != null) {
+                equiposCambiados.add(idEquipo);
+            }
+        }
+    }
+
+    // Espera el turno del siguiente partido según el ritmo configurado (compartido por todos los hilos)
+    private void esperarTurno() {
+        if (intervaloNanos == 0) {
+            return;
+        }
+        long turno = siguienteTurno.getAndAccumulate(System.nanoTime(),
+                (siguiente, ahora) -> Math.max(siguiente, ahora) + intervaloNanos);
+        long espera = turno - System.nanoTime();
+        if (espera > 0) {
+            LockSupport.parkNanos(espera);
+        }
+    }
+
+    // Una hoja recalcula sus partidos; si no, divide el tramo en dos y combina los parciales
+    private class Recalculo extends RecursiveTask<Parcial> {
+
+        private final Trabajo trabajo;
+        private final List<EquiposPartido> partidos;
+        private final int desde;
+        private final int hasta;
+
+        Recalculo(Trabajo trabajo, List<EquiposPartido> partidos, int desde, int hasta) {
+            this.trabajo = trabajo;
+            this.partidos = partidos;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        protected Parcial compute() {
+            if (hasta - desde <= UMBRAL) {
+                Parcial parcial = new Parcial(new HashMap<>(), new HashSet<>());
+                for (int i = desde; i < hasta && !trabajo.cancelado; i++) {
+                    recalcular(partidos.get(i), parcial);
+                }
+                return parcial;
+            }
+            int mitad = (desde + hasta) >>> 1;
+            Recalculo izquierda = new Recalculo(trabajo, partidos, desde, mitad);
+            izquierda.fork();
+            Parcial derecha = new Recalculo(trabajo, partidos, mitad, hasta).compute();
+            return izquierda.join().combinar(derecha);
+        }
+
+        private void recalcular(EquiposPartido partido, Parcial parcial) {
+            esperarTurno();
+            try {
+                posesionService.reconstruir(partido.getIdPartido());
+                marcadorService.reconstruir(partido.getIdPartido());
+                transicionesService.reconstruir(partido.getIdPartido());
+                EstadisticasPartido estadisticas = estadisticasService.reconstruir(partido.getIdPartido());
+                parcial.sumar(partido.getIdEquipoLocalAsociado(), EquipoAccion.LOCAL, estadisticas);
+                parcial.sumar(partido.getIdEquipoVisitanteAsociado(), EquipoAccion.VISITANTE, estadisticas);
+            } catch (RuntimeException e) {
+                log.warn("Recálculo {}: no se pudo recalcular el partido {}", trabajo.id, partido.getIdPartido(), e);
+                trabajo.errores.incrementAndGet();
+                // Sus equipos se reconstruyen al final desde las filas de partido
+                Optional.ofNullable(partido.getIdEquipoLocalAsociado()).ifPresent(parcial.fallidos()::add);
+                Optional.ofNullable(partido.getIdEquipoVisitanteAsociado()).ifPresent(parcial.fallidos()::add);
+            }
+            trabajo.procesados.incrementAndGet();
+        }
+    }
+
+    // Acumulados por equipo de un tramo de partidos, desde el punto de vista de cada equipo
+    record Parcial(Map<Long, Acumulado> equipos, Set<Long> fallidos) {
+
+        void sumar(Long idEquipo, EquipoAccion lado, EstadisticasPartido estadisticas) {
+            if (idEquipo != null) {
+                Acumulado acumulado = equipos.computeIfAbsent(idEquipo, id -> new Acumulado());
+                acumulado.partidos++;
+                acumulado.estadisticas.combinarComo(estadisticas, lado, 1);
+            }
+        }
+
+        // Asociativa: el orden en que se juntan los tramos no cambia el resultado
+        Parcial combinar(Parcial otro) {
+            otro.equipos.forEach((idEquipo, acumulado) ->
+                    equipos.computeIfAbsent(idEquipo, id -> new Acumulado()).combinar(acumulado));
+            fallidos.addAll(otro.fallidos);
+            return this;
+        }
+    }
+
+    static class Acumulado {
+        int partidos;
+        final EstadisticasPartido estadisticas = new EstadisticasPartido();
+
+        void combinar(Acumulado otro) {
+            partidos += otro.partidos;
+            estadisticas.combinar(otro.estadisticas);
+        }
+    }
+
+    private static class Trabajo {
+        final long id;
+        final LocalDateTime inicio = LocalDateTime.now();
+        final AtomicInteger procesados = new AtomicInteger();
+        final AtomicInteger errores = new AtomicInteger();
+        volatile EstadoRecalculo estado = EstadoRecalculo.EN_CURSO;
+        volatile boolean cancelado;
+        volatile int partidosTotales;
+        volatile int equipos;
+        volatile int clubes;
+        volatile LocalDateTime fin;
+
+        Trabajo(long id) {
+            this.id = id;
+        }
+
+        RecalculoDTO aDTO() {
+            RecalculoDTO dto = new RecalculoDTO();
+            dto.setId(id);
+            dto.setEstado(estado);
+            dto.setPartidosTotales(partidosTotales);
+            dto.setPartidosProcesados(procesados.get());
+            dto.setErrores(errores.get());
+            dto.setEquipos(equipos);
+            dto.setClubes(clubes);
+            dto.setInicio(inicio);
+            dto.setFin(fin);
+            return dto;
+        }
+    }
+}
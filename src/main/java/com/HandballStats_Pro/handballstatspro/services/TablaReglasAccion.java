@@ -0,0 +1,215 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.config.TrazaValidacion;
+import com.HandballStats_Pro.handballstatspro.dto.AccionDTO;
+import com.HandballStats_Pro.handballstatspro.enums.*;
+import com.HandballStats_Pro.handballstatspro.exceptions.ApiException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reglas 1 a 4 del Reglamento Maestro de Validación precompiladas en una tabla de decisión.
+ *
+ * Todos los campos implicados son enums pequeños, así que al arrancar se recorre el espacio
+ * completo de combinaciones (indexado por ordinales, con una casilla extra para null) y se
+ * guarda para cada una el primer error que lanzarían las reglas, en el mismo orden de
+ * evaluación. Validar una acción es un único acceso al array, sin reservar memoria
+ * salvo para la excepción cuando la acción no es válida.
+ */
+@Component
+public class TablaReglasAccion {
+
+    public static final int VALIDA = 0;
+
+    // Errores en el orden en que se evalúan; el código en la tabla es ordinal + 1
+    public enum ErrorRegla {
+        INVALID_7M_DETAIL(1, "Si el origen_accion es '7m', detalle_finalizacion debe ser '7m'"),
+        INVALID_7M_TYPE(1, "Si el origen_accion es '7m', tipo_ataque debe ser 'Posicional'"),
+        INVALID_7M_ORIGIN(1, "Si detalle_finalizacion es '7m', origen_accion debe ser '7m'"),
+        INVALID_COUNTERATTACK_DETAIL(2, "Si tipo_ataque es 'Contraataque', detalle_finalizacion debe ser 'Contragol', '1ª oleada', '2ª oleada' o '3ª oleada'"),
+        INVALID_POSITIONAL_DETAIL(2, "Si tipo_ataque es 'Posicional', detalle_finalizacion no puede ser 'Contragol', '1ª oleada', '2ª oleada' o '3ª oleada'"),
+        EVENT_REQUIRED(3, "El evento es obligatorio"),
+        GOAL_REQUIRED_FIELDS(3, "Para evento 'Gol', detalle_finalizacion y zona_lanzamiento son obligatorios"),
+        GOAL_INVALID_DETAIL(3, "Para evento 'Gol', detalle_evento debe ser nulo"),
+        SHOT_STOPPED_REQUIRED_FIELDS(3, "Para evento 'Lanzamiento_Parado', detalle_finalizacion y zona_lanzamiento son obligatorios"),
+        SHOT_STOPPED_REQUIRED_DETAIL(3, "Para evento 'Lanzamiento_Parado', detalle_evento es obligatorio"),
+        SHOT_STOPPED_INVALID_DETAIL(3, "Para evento 'Lanzamiento_Parado', detalle_evento debe ser 'Parada_Portero' o 'Bloqueo_Defensor'"),
+        SHOT_MISSED_REQUIRED_FIELDS(3, "Para evento 'Lanzamiento_Fuera', detalle_finalizacion y zona_lanzamiento son obligatorios"),
+        SHOT_MISSED_REQUIRED_DETAIL(3, "Para evento 'Lanzamiento_Fuera', detalle_evento es obligatorio"),
+        SHOT_MISSED_INVALID_DETAIL(3, "Para evento 'Lanzamiento_Fuera', detalle_evento debe ser 'Palo' o 'Fuera_Directo'"),
+        TURNOVER_INVALID_FIELDS(3, "Para evento 'Perdida', detalle_finalizacion y zona_lanzamiento deben ser nulos"),
+        TURNOVER_REQUIRED_DETAIL(3, "Para evento 'Perdida', detalle_evento es obligatorio"),
+        TURNOVER_INVALID_DETAIL(3, "Para evento 'Perdida', detalle_evento debe ser uno de los valores válidos para pérdida"),
+        INVALID_POSSESSION_CHANGE(4, "El valor de cambio_posesion no es correcto según las reglas establecidas");
+
+        private final int regla;
+        private final String mensaje;
+
+        ErrorRegla(int regla, String mensaje) {
+            this.regla = regla;
+            this.mensaje = mensaje;
+        }
+
+        public int getRegla() { return regla; }
+        public String getMensaje() { return mensaje; }
+    }
+
+    // Regla 3: qué exige cada evento principal
+    private record RequisitosEvento(boolean esLanzamiento, Set<DetalleEvento> detallesPermitidos,
+                                    ErrorRegla camposFinalizacion, ErrorRegla detalleObligatorio,
+                                    ErrorRegla detalleInvalido) {
+    }
+
+    private static final Set<DetalleFinalizacion> DETALLES_CONTRAATAQUE = EnumSet.of(
+            DetalleFinalizacion.Contragol, DetalleFinalizacion._1a_oleada,
+            DetalleFinalizacion._2a_oleada, DetalleFinalizacion._3a_oleada);
+
+    private static final Map<Evento, RequisitosEvento> REQUISITOS = new EnumMap<>(Map.of(
+            Evento.Gol, new RequisitosEvento(true, EnumSet.noneOf(DetalleEvento.class),
+                    ErrorRegla.GOAL_REQUIRED_FIELDS, null, ErrorRegla.GOAL_INVALID_DETAIL),
+            Evento.Lanzamiento_Parado, new RequisitosEvento(true,
+                    EnumSet.of(DetalleEvento.Parada_Portero, DetalleEvento.Bloqueo_Defensor),
+                    ErrorRegla.SHOT_STOPPED_REQUIRED_FIELDS, ErrorRegla.SHOT_STOPPED_REQUIRED_DETAIL,
+                    ErrorRegla.SHOT_STOPPED_INVALID_DETAIL),
+            Evento.Lanzamiento_Fuera, new RequisitosEvento(true,
+                    EnumSet.of(DetalleEvento.Palo, DetalleEvento.Fuera_Directo),
+                    ErrorRegla.SHOT_MISSED_REQUIRED_FIELDS, ErrorRegla.SHOT_MISSED_REQUIRED_DETAIL,
+                    ErrorRegla.SHOT_MISSED_INVALID_DETAIL),
+            Evento.Perdida, new RequisitosEvento(false,
+                    EnumSet.of(DetalleEvento.Pasos, DetalleEvento.Dobles, DetalleEvento.FaltaAtaque,
+                            DetalleEvento.Pasivo, DetalleEvento.InvasionArea, DetalleEvento.Robo,
+                            DetalleEvento.Pie, DetalleEvento.BalonFuera),
+                    ErrorRegla.TURNOVER_INVALID_FIELDS, ErrorRegla.TURNOVER_REQUIRED_DETAIL,
+                    ErrorRegla.TURNOVER_INVALID_DETAIL)));
+
+    // Regla 4: combinaciones que NO cambian la posesión
+    private static final Map<Evento, Set<DetalleEvento>> SIN_CAMBIO_POSESION = new EnumMap<>(Map.of(
+            Evento.Lanzamiento_Parado, EnumSet.of(DetalleEvento.Parada_Portero, DetalleEvento.Bloqueo_Defensor),
+            Evento.Lanzamiento_Fuera, EnumSet.of(DetalleEvento.Palo)));
+
+    private static final TipoAtaque[] TIPOS = TipoAtaque.values();
+    private static final OrigenAccion[] ORIGENES = OrigenAccion.values();
+    private static final Evento[] EVENTOS = Evento.values();
+    private static final DetalleFinalizacion[] FINALIZACIONES = DetalleFinalizacion.values();
+    private static final ZonaLanzamiento[] ZONAS = ZonaLanzamiento.values();
+    private static final DetalleEvento[] DETALLES = DetalleEvento.values();
+    private static final ErrorRegla[] ERRORES = ErrorRegla.values();
+
+    // Dimensiones de la tabla; cada campo reserva el último índice para null
+    private static final int N_TIPO = TIPOS.length + 1;
+    private static final int N_ORIGEN = ORIGENES.length + 1;
+    private static final int N_EVENTO = EVENTOS.length + 1;
+    private static final int N_FINALIZACION = FINALIZACIONES.length + 1;
+    private static final int N_ZONA = ZONAS.length + 1;
+    private static final int N_DETALLE = DETALLES.length + 1;
+    // cambio_posesion: false, true o no informado (la regla 4 no se aplica)
+    private static final int N_CAMBIO = 3;
+
+    private final byte[] veredictos;
+
+    public TablaReglasAccion() {
+        veredictos = new byte[N_TIPO * N_ORIGEN * N_EVENTO * N_FINALIZACION * N_ZONA * N_DETALLE * N_CAMBIO];
+        for (int t = 0; t < N_TIPO; t++) {
+            TipoAtaque tipo = t < TIPOS.length ? TIPOS[t] : null;
+            for (int o = 0; o < N_ORIGEN; o++) {
+                OrigenAccion origen = o < ORIGENES.length ? ORIGENES[o] : null;
+                for (int e = 0; e < N_EVENTO; e++) {
+                    Evento evento = e < EVENTOS.length ? EVENTOS[e] : null;
+                    for (int f = 0; f < N_FINALIZACION; f++) {
+                        DetalleFinalizacion finalizacion = f < FINALIZACIONES.length ? FINALIZACIONES[f] : null;
+                        for (int z = 0; z < N_ZONA; z++) {
+                            ZonaLanzamiento zona = z < ZONAS.length ? ZONAS[z] : null;
+                            for (int d = 0; d < N_DETALLE; d++) {
+                                DetalleEvento detalle = d < DETALLES.length ? DETALLES[d] : null;
+                                for (int c = 0; c < N_CAMBIO; c++) {
+                                    Boolean cambio = c == 2 ? null : c == 1;
+                                    ErrorRegla error = calcular(tipo, origen, evento, finalizacion, zona, detalle, cambio);
+                                    veredictos[indice(tipo, origen, evento, finalizacion, zona, detalle, cambio)] =
+                                            (byte) (error == null ? VALIDA : error.ordinal() + 1);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    public void validar(AccionDTO accionDTO) {
+        int codigo = evaluar(accionDTO.getTipoAtaque(), accionDTO.getOrigenAccion(), accionDTO.getEvento(),
+                accionDTO.getDetalleFinalizacion(), accionDTO.getZonaLanzamiento(),
+                accionDTO.getDetalleEvento(), accionDTO.getCambioPosesion());
+        if (codigo != VALIDA) {
+            ErrorRegla error = error(codigo);
+            TrazaValidacion.registrar("REGLA " + error.getRegla() + ": " + error.name());
+            throw new ApiException(HttpStatus.BAD_REQUEST, error.name(), error.getMensaje());
+        }
+        TrazaValidacion.registrar("REGLAS 1-4: OK");
+    }
+
+    // Devuelve VALIDA o el código del primer error según el orden de las reglas 1 a 4
+    public int evaluar(TipoAtaque tipo, OrigenAccion origen, Evento evento, DetalleFinalizacion finalizacion,
+                       ZonaLanzamiento zona, DetalleEvento detalle, Boolean cambioPosesion) {
+        return veredictos[indice(tipo, origen, evento, finalizacion, zona, detalle, cambioPosesion)];
+    }
+
+    public static ErrorRegla error(int codigo) {
+        return codigo == VALIDA ? null : ERRORES[codigo - 1];
+    }
+
+    private static int indice(TipoAtaque tipo, OrigenAccion origen, Evento evento, DetalleFinalizacion finalizacion,
+                              ZonaLanzamiento zona, DetalleEvento detalle, Boolean cambioPosesion) {
+        int i = tipo == null ? TIPOS.length : tipo.ordinal();
+        i = i * N_ORIGEN + (origen == null ? ORIGENES.length : origen.ordinal());
+        i = i * N_EVENTO + (evento == null ? EVENTOS.length : evento.ordinal());
+        i = i * N_FINALIZACION + (finalizacion == null ? FINALIZACIONES.length : finalizacion.ordinal());
+        i = i * N_ZONA + (zona == null ? ZONAS.length : zona.ordinal());
+        i = i * N_DETALLE + (detalle == null ? DETALLES.length : detalle.ordinal());
+        return i * N_CAMBIO + (cambioPosesion == null ? 2 : cambioPosesion ? 1 : 0);
+    }
+
+    // Solo se ejecuta al construir la tabla
+    private static ErrorRegla calcular(TipoAtaque tipo, OrigenAccion origen, Evento evento,
+                                       DetalleFinalizacion finalizacion, ZonaLanzamiento zona,
+                                       DetalleEvento detalle, Boolean cambioPosesion) {
+        // Regla 1: el caso especial de 7 metros
+        if (origen == OrigenAccion._7m) {
+            if (finalizacion != DetalleFinalizacion._7m) return ErrorRegla.INVALID_7M_DETAIL;
+            if (tipo != TipoAtaque.Posicional) return ErrorRegla.INVALID_7M_TYPE;
+        }
+        if (finalizacion == DetalleFinalizacion._7m && origen != OrigenAccion._7m) {
+            return ErrorRegla.INVALID_7M_ORIGIN;
+        }
+
+        // Regla 2: tipo de ataque
+        boolean detalleContraataque = DETALLES_CONTRAATAQUE.contains(finalizacion);
+        if (tipo == TipoAtaque.Contraataque && !detalleContraataque) return ErrorRegla.INVALID_COUNTERATTACK_DETAIL;
+        if (tipo == TipoAtaque.Posicional && detalleContraataque) return ErrorRegla.INVALID_POSITIONAL_DETAIL;
+
+        // Regla 3: evento principal
+        if (evento == null) return ErrorRegla.EVENT_REQUIRED;
+        RequisitosEvento requisitos = REQUISITOS.get(evento);
+        boolean camposLanzamiento = requisitos.esLanzamiento()
+                ? finalizacion != null && zona != null
+                : finalizacion == null && zona == null;
+        if (!camposLanzamiento) return requisitos.camposFinalizacion();
+        if (requisitos.detallesPermitidos().isEmpty()) {
+            if (detalle != null) return requisitos.detalleInvalido();
+        } else {
+            if (detalle == null) return requisitos.detalleObligatorio();
+            if (!requisitos.detallesPermitidos().contains(detalle)) return requisitos.detalleInvalido();
+        }
+
+        // Regla 4: cambio de posesión
+        if (cambioPosesion != null) {
+            boolean deberiaCambiar = !SIN_CAMBIO_POSESION.getOrDefault(evento, EnumSet.noneOf(DetalleEvento.class)).contains(detalle);
+            if (cambioPosesion != deberiaCambiar) return ErrorRegla.INVALID_POSSESSION_CHANGE;
+        }
+        return null;
+    }
+}
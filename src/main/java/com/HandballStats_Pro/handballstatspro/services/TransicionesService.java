@@ -0,0 +1,254 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.dto.*;
+import com.HandballStats_Pro.handballstatspro.entities.Accion;
+import com.HandballStats_Pro.handballstatspro.entities.Equipo;
+import com.HandballStats_Pro.handballstatspro.entities.Partido;
+import com.HandballStats_Pro.handballstatspro.entities.TransicionPartido;
+import com.HandballStats_Pro.handballstatspro.enums.EquipoAccion;
+import com.HandballStats_Pro.handballstatspro.exceptions.PermissionDeniedException;
+import com.HandballStats_Pro.handballstatspro.exceptions.ResourceNotFoundException;
+import com.HandballStats_Pro.handballstatspro.repositories.AccionRepository;
+import com.HandballStats_Pro.handballstatspro.repositories.EquipoRepository;
+import com.HandballStats_Pro.handballstatspro.repositories.PartidoRepository;
+import com.HandballStats_Pro.handballstatspro.repositories.TransicionPartidoRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+/**
+ * Análisis de cadenas de acciones: probabilidad de cada estado (origen, evento, detalle) tras otro.
+ *
+ * Cada partido tiene su matriz de transiciones en transicion_partido junto con su última acción. Una
+ * acción nueva va detrás de todas, así que solo añade la transición desde la última; una edición que
+ * cambia el estado o el equipo, o un borrado, rehacen la matriz del partido desde sus acciones, dentro
+ * de la misma transacción. La de un equipo (y su temporada) se suma al leerla con las de sus partidos.
+ *
+ * Con el diario de acciones activo, las anteriores de una acción nueva pueden no estar aún en la base de
+ * datos: si llega fuera de orden, la fila del partido se borra y se reconstruye en la siguiente lectura,
+ * que vuelca antes lo pendiente del partido (las ediciones y borrados ya vuelcan el diario al empezar).
+ */
+@Service
+public class TransicionesService {
+
+    private static final EquipoAccion[] LADOS = EquipoAccion.values();
+
+    private final TransicionPartidoRepository transicionPartidoRepository;
+    private final AccionRepository accionRepository;
+    private final PartidoRepository partidoRepository;
+    private final EquipoRepository equipoRepository;
+    private final PartidoService partidoService;
+    private final BloqueoPartidos bloqueoPartidos;
+    private final DiarioAcciones diarioAcciones;
+    private final TransactionTemplate transaccionPropia;
+
+    public TransicionesService(TransicionPartidoRepository transicionPartidoRepository, AccionRepository accionRepository,
+                               PartidoRepository partidoRepository, EquipoRepository equipoRepository,
+                               PartidoService partidoService, BloqueoPartidos bloqueoPartidos,
+                               DiarioAcciones diarioAcciones, PlatformTransactionManager transactionManager) {
+        this.transicionPartidoRepository = transicionPartidoRepository;
+        this.accionRepository = accionRepository;
+        this.partidoRepository = partidoRepository;
+        this.equipoRepository = equipoRepository;
+        this.partidoService = partidoService;
+        this.bloqueoPartidos = bloqueoPartidos;
+        this.diarioAcciones = diarioAcciones;
+        // Cada reconstrucción en su propia transacción, empezada después de bloquear el partido
+        this.transaccionPropia = new TransactionTemplate(transactionManager);
+        this.transaccionPropia.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // LECTURA
+
+    public TransicionesDTO obtenerPorPartido(Integer idPartido) {
+        Partido partido = partidoRepository.findById(idPartido)
+                .orElseThrow(() -> new ResourceNotFoundException("Partido", "id", String.valueOf(idPartido)));
+        if (!partidoService.puedeAccederPartido(partido)) {
+            throw new PermissionDeniedException();
+        }
+        TransicionesDTO dto = aDTO(materializada(idPartido));
+        dto.setIdPartido(idPartido);
+        dto.setPartidos(1);
+        return dto;
+    }
+
+    // Partidos del equipo (de una temporada), cada uno desde el lado en que jugó
+    public TransicionesDTO obtenerPorEquipo(Long idEquipo) {
+        Equipo equipo = equipoRepository.findById(idEquipo)
+                .orElseThrow(() -> new ResourceNotFoundException("Equipo", "id", String.valueOf(idEquipo)));
+        if (!partidoService.puedeAccederEquipo(idEquipo)) {
+            throw new PermissionDeniedException();
+        }
+        List<Partido> partidos = partidoRepository.findPartidosByEquiposAsociados(List.of(idEquipo));
+        Map<Integer, MatrizTransiciones> porPartido = new HashMap<>();
+        for (TransicionPartido fila : transicionPartidoRepository.findAllById(partidos.stream().map(Partido::getIdPartido).toList())) {
+            MatrizTransiciones matriz = MatrizTransiciones.deBytes(fila.getTransiciones());
+            if (matriz != null) {
+                porPartido.put(fila.getIdPartido(), matriz);
+            }
+        }
+
+        MatrizTransiciones acumulada = new MatrizTransiciones();
+        for (Partido partido : partidos) {
+            MatrizTransiciones matriz = porPartido.get(partido.getIdPartido());
+            if (matriz == null) {
+                matriz = reconstruir(partido.getIdPartido());
+            }
+            EquipoAccion lado = idEquipo.equals(partido.getIdEquipoLocalAsociado()) ? EquipoAccion.LOCAL : EquipoAccion.VISITANTE;
+            acumulada.combinarComo(matriz, lado);
+        }
+        TransicionesDTO dto = aDTO(acumulada);
+        dto.setIdEquipo(idEquipo);
+        dto.setTemporada(equipo.getTemporada());
+        dto.setPartidos(partidos.size());
+        return dto;
+    }
+
+    // Matriz del partido, reconstruida si falta o se guardó con otra disposición (sin comprobar permisos)
+    public MatrizTransiciones materializada(Integer idPartido) {
+        return transicionPartidoRepository.findById(idPartido)
+                .map(fila -> MatrizTransiciones.deBytes(fila.getTransiciones()))
+                .orElseGet(() -> reconstruir(idPartido));
+    }
+
+    // MANTENIMIENTO INCREMENTAL
+
+    // Síncrono, dentro de la transacción que cambia la acción (que ya tiene el partido bloqueado)
+    @EventListener
+    @Transactional
+    public void alCambiarAccion(AccionEvento evento) {
+        Optional<TransicionPartido> existente = transicionPartidoRepository.findParaActualizarByIdPartido(evento.idPartido());
+        AccionResponseDTO despues = evento.despues();
+        if (existente.isEmpty()) {
+            // La primera acción del partido abre su fila; la de un partido anterior se construirá al leerla
+            if (despues != null && despues.getSecuencia() != null && despues.getSecuencia() == 1) {
+                transicionPartidoRepository.save(new TransicionPartido(evento.idPartido(), despues.getSecuencia(),
+                        codigo(despues), new MatrizTransiciones().aBytes()));
+            }
+            return;
+        }
+        TransicionPartido fila = existente.get();
+        MatrizTransiciones matriz = MatrizTransiciones.deBytes(fila.getTransiciones());
+        switch (evento.tipo()) {
+            case CREADA -> {
+                if (matriz == null || despues.getSecuencia() <= fila.getUltimaSecuencia()) {
+                    if (diarioAcciones.activo()) {
+                        // Desde esta transacción no se puede volcar el diario: se rehace al leerla
+                        transicionPartidoRepository.delete(fila);
+                    } else {
+                        rehacer(fila);
+                    }
+                    return;
+                }
+                if (fila.getUltimoEstado() >= 0) {
+                    int ultimo = fila.getUltimoEstado();
+                    matriz.sumar(LADOS[ultimo / MatrizTransiciones.ESTADOS], ultimo % MatrizTransiciones.ESTADOS,
+                            despues.getEquipoAccion(), estado(despues), 1);
+                }
+                fila.setUltimaSecuencia(despues.getSecuencia());
+                fila.setUltimoEstado(codigo(despues));
+                fila.setTransiciones(matriz.aBytes());
+            }
+            case ACTUALIZADA -> {
+                if (matriz == null || codigo(evento.antes()) != codigo(despues)) {
+                    rehacer(fila);
+                }
+            }
+            case ELIMINADA -> rehacer(fila);
+        }
+    }
+
+    // Recalcula la matriz del partido desde sus acciones; devuelve la matriz
+    public MatrizTransiciones reconstruir(Integer idPartido) {
+        return transaccionPropia.execute(estado -> {
+            bloqueoPartidos.bloquearHastaFinTransaccion(idPartido);
+            diarioAcciones.volcarPartido(idPartido);
+            TransicionPartido fila = new TransicionPartido();
+            fila.setIdPartido(idPartido);
+            MatrizTransiciones matriz = rehacer(fila);
+            transicionPartidoRepository.save(fila);
+            return matriz;
+        });
+    }
+
+    // MÉTODOS AUXILIARES
+
+    private MatrizTransiciones rehacer(TransicionPartido fila) {
+        List<Accion> acciones = accionRepository.findByIdPartidoOrderBySecuenciaAsc(fila.getIdPartido());
+        MatrizTransiciones matriz = encadenar(acciones);
+        Accion ultima = acciones.isEmpty() ? null : acciones.get(acciones.size() - 1);
+        fila.setUltimaSecuencia(ultima == null ? 0 : ultima.getSecuencia());
+        fila.setUltimoEstado(ultima == null ? -1
+                : ultima.getEquipoAccion().ordinal() * MatrizTransiciones.ESTADOS + estado(ultima));
+        fila.setTransiciones(matriz.aBytes());
+        return matriz;
+    }
+
+    // Una transición por cada par de acciones consecutivas (en orden de secuencia)
+    static MatrizTransiciones encadenar(List<Accion> acciones) {
+        MatrizTransiciones matriz = new MatrizTransiciones();
+        for (int i = 1; i < acciones.size(); i++) {
+            Accion desde = acciones.get(i - 1);
+            Accion hasta = acciones.get(i);
+            matriz.sumar(desde.getEquipoAccion(), estado(desde), hasta.getEquipoAccion(), estado(hasta), 1);
+        }
+        return matriz;
+    }
+
+    private static int estado(Accion accion) {
+        return MatrizTransiciones.estado(accion.getOrigenAccion(), accion.getEvento(), accion.getDetalleEvento());
+    }
+
+    private static int estado(AccionResponseDTO accion) {
+        return MatrizTransiciones.estado(accion.getOrigenAccion(), accion.getEvento(), accion.getDetalleEvento());
+    }
+
+    // Lado * ESTADOS + estado
+    private static int codigo(AccionResponseDTO accion) {
+        return accion.getEquipoAccion().ordinal() * MatrizTransiciones.ESTADOS + estado(accion);
+    }
+
+    // Solo las filas y transiciones observadas; cada fila normalizada por su total
+    static TransicionesDTO aDTO(MatrizTransiciones matriz) {
+        TransicionesDTO dto = new TransicionesDTO();
+        dto.setTransiciones(matriz.getTransiciones());
+        for (EquipoAccion ladoDesde : LADOS) {
+            for (int desde = 0; desde < MatrizTransiciones.ESTADOS; desde++) {
+                List<TransicionDTO> siguientes = new ArrayList<>();
+                int total = 0;
+                for (EquipoAccion ladoHasta : LADOS) {
+                    for (int hasta = 0; hasta < MatrizTransiciones.ESTADOS; hasta++) {
+                        int veces = matriz.veces(ladoDesde, desde, ladoHasta, hasta);
+                        if (veces > 0) {
+                            siguientes.add(new TransicionDTO(estadoDTO(ladoHasta, hasta), veces, 0));
+                            total += veces;
+                        }
+                    }
+                }
+                if (total == 0) {
+                    continue;
+                }
+                for (TransicionDTO transicion : siguientes) {
+                    transicion.setProbabilidad((double) transicion.getVeces() / total);
+                }
+                siguientes.sort(Comparator.comparingInt(TransicionDTO::getVeces).reversed());
+                FilaTransicionesDTO fila = new FilaTransicionesDTO();
+                fila.setDesde(estadoDTO(ladoDesde, desde));
+                fila.setTotal(total);
+                fila.setSiguientes(siguientes);
+                dto.getFilas().add(fila);
+            }
+        }
+        return dto;
+    }
+
+    private static EstadoAccionDTO estadoDTO(EquipoAccion lado, int estado) {
+        return new EstadoAccionDTO(lado, MatrizTransiciones.origen(estado), MatrizTransiciones.evento(estado),
+                MatrizTransiciones.detalle(estado));
+    }
+}
@@ -0,0 +1,28 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Aplaza un cambio en memoria (cachés, ventanas de claves...) hasta que la transacción
+ * actual confirme, para no publicar estados de transacciones que acaben en rollback.
+ * Fuera de una transacción el cambio se aplica en el momento.
+ */
+final class TrasCommit {
+
+    private TrasCommit() {
+    }
+
+    static void ejecutar(Runnable cambio) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cambio.run();
+                }
+            });
+        } else {
+            cambio.run();
+        }
+    }
+}
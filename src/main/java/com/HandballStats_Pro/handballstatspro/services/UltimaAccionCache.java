@@ -0,0 +1,100 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.entities.Accion;
+import com.HandballStats_Pro.handballstatspro.enums.Evento;
+import com.HandballStats_Pro.handballstatspro.enums.OrigenAccion;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Caché acotada (LRU) con el estado de la última acción de cada partido.
+ * Es lo único que necesita la regla 5, así que un partido en juego se valida
+ * sin consultar la base de datos. Las modificaciones se aplican tras el commit
+ * para no publicar estados de transacciones que acaben en rollback.
+ */
+@Component
+public class UltimaAccionCache {
+
+    // Estado mínimo de la cola del partido que consulta la regla 5
+    public record EstadoCola(Integer idAccion, Integer secuencia, OrigenAccion origenAccion, Evento evento,
+                             boolean cambioPosesion) {
+
+        public static EstadoCola de(Accion accion) {
+            return new EstadoCola(accion.getIdAccion(), accion.getSecuencia(), accion.getOrigenAccion(),
+                    accion.getEvento(), Boolean.TRUE.equals(accion.getCambioPosesion()));
+        }
+
+        // Secuencia que corresponde a la acción que se añada detrás de esta
+        public int siguienteSecuencia() {
+            return secuencia == null ? 1 : secuencia + 1;
+        }
+    }
+
+    // Marca un partido conocido que todavía no tiene acciones (distinto de "no está en caché")
+    public static final EstadoCola SIN_ACCIONES = new EstadoCola(null, null, null, null, false);
+
+    private final Map<Integer, EstadoCola> colas;
+
+    public UltimaAccionCache(@Value("${acciones.cache.partidos-max:512}") int capacidad) {
+        this.colas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, EstadoCola> eldest) {
+                return size() > capacidad;
+            }
+        };
+    }
+
+    // Devuelve null si el partido no está en caché
+    public synchronized EstadoCola obtener(Integer idPartido) {
+        return colas.get(idPartido);
+    }
+
+    // Carga tras un fallo de caché; no pisa un valor registrado mientras tanto por otra transacción
+    public synchronized void cargar(Integer idPartido, EstadoCola estado) {
+        colas.putIfAbsent(idPartido, estado);
+    }
+
+    public void registrarNueva(Accion accion) {
+        EstadoCola estado = EstadoCola.de(accion);
+        TrasCommit.ejecutar(() -> {
+            synchronized (this) {
+                colas.put(accion.getIdPartido(), estado);
+            }
+        });
+    }
+
+    public void registrarActualizada(Accion accion) {
+        EstadoCola estado = EstadoCola.de(accion);
+        TrasCommit.ejecutar(() -> {
+            synchronized (this) {
+                colas.computeIfPresent(accion.getIdPartido(),
+                        (id, actual) -> accion.getIdAccion().equals(actual.idAccion()) ? estado : actual);
+            }
+        });
+    }
+
+    // Una acción del diario ya está en la base de datos: la cola recibe su id si sigue siendo la última
+    public synchronized void registrarVolcada(Accion accion) {
+        colas.computeIfPresent(accion.getIdPartido(),
+                (id, actual) -> Objects.equals(actual.secuencia(), accion.getSecuencia()) ? EstadoCola.de(accion) : actual);
+    }
+
+    public void registrarEliminada(Accion accion) {
+        Integer idAccion = accion.getIdAccion();
+        TrasCommit.ejecutar(() -> {
+            synchronized (this) {
+                // Si era la última, la siguiente consulta recargará la nueva cola desde la base de datos
+                colas.computeIfPresent(accion.getIdPartido(),
+                        (id, actual) -> idAccion.equals(actual.idAccion()) ? null : actual);
+            }
+        });
+    }
+
+    public synchronized void invalidar(Integer idPartido) {
+        colas.remove(idPartido);
+    }
+}
@@ -14,6 +14,7 @@ import com.HandballStats_Pro.handballstatspro.repositories.UsuarioRepository;
 import com.HandballStats_Pro.handballstatspro.repositories.PartidoRepository;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
@@ -26,6 +27,7 @@ import java.time.LocalDateTime;
 import java.util.Base64;
 import java.util.List;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class UsuarioService {
@@ -125,48 +127,42 @@ public class UsuarioService {
 
     @Transactional
     public void eliminarUsuario(Long id) {
-        System.out.println("DEBUG: Iniciando eliminación de usuario con ID: " + id);
+        log.debug("Iniciando eliminación de usuario con ID: {}", id);
         Usuario usuario = null;
         try {
             usuario = usuarioRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Usuario", id));
-            System.out.println("DEBUG: Usuario encontrado: " + usuario.getIdUsuario());
         } catch (ResourceNotFoundException e) {
-            System.err.println("ERROR: No se encontró el usuario con ID: " + id);
+            log.warn("No se encontró el usuario con ID: {}", id);
             return; // Sale del método si el usuario no existe
         }
 
         try {
-            System.out.println("DEBUG: Eliminando relaciones usuario-club...");
             usuarioClubRepository.deleteByUsuario(usuario);
-            System.out.println("DEBUG: Relaciones usuario-club eliminadas.");
+            log.debug("Relaciones usuario-club eliminadas para el usuario {}", id);
         } catch (Exception e) {
-            System.err.println("ERROR al eliminar relaciones usuario-club: " + e.getMessage());
+            log.error("Error al eliminar relaciones usuario-club del usuario {}", id, e);
         }
 
         try {
-            System.out.println("DEBUG: Eliminando relaciones usuario-equipo...");
             usuarioEquipoRepository.deleteByUsuario_IdUsuario(id);
-            System.out.println("DEBUG: Relaciones usuario-equipo eliminadas.");
+            log.debug("Relaciones usuario-equipo eliminadas para el usuario {}", id);
         } catch (Exception e) {
-            System.err.println("ERROR al eliminar relaciones usuario-equipo: " + e.getMessage());
+            log.error("Error al eliminar relaciones usuario-equipo del usuario {}", id, e);
         }
 
         try {
-            System.out.println("DEBUG: Actualizando id_usuario_registro en partidos...");
             partidoRepository.updateIdUsuarioRegistroToZero(id);
-            System.out.println("DEBUG: id_usuario_registro en partidos actualizado.");
+            log.debug("id_usuario_registro en partidos actualizado para el usuario {}", id);
         } catch (Exception e) {
-            System.err.println("ERROR al actualizar id_usuario_registro en partidos: " + e.getMessage());
+            log.error("Error al actualizar id_usuario_registro en partidos del usuario {}", id, e);
         }
 
         try {
-            System.out.println("DEBUG: Eliminando usuario...");
             usuarioRepository.delete(usuario);
-            System.out.println("DEBUG: Usuario eliminado.");
         } catch (Exception e) {
-            System.err.println("ERROR al eliminar usuario: " + e.getMessage());
+            log.error("Error al eliminar el usuario {}", id, e);
         }
-        System.out.println("DEBUG: Finalizada la eliminación de usuario con ID: " + id);
+        log.debug("Finalizada la eliminación de usuario con ID: {}", id);
     }
 }
\ No newline at end of file
@@ -1,10 +1,16 @@
 package com.HandballStats_Pro.handballstatspro.services;
 
 import com.HandballStats_Pro.handballstatspro.dto.AccionDTO;
+import com.HandballStats_Pro.handballstatspro.dto.AccionResponseDTO;
+import com.HandballStats_Pro.handballstatspro.dto.AccionUpdateDTO;
+import com.HandballStats_Pro.handballstatspro.dto.CambiosAccionesDTO;
+import com.HandballStats_Pro.handballstatspro.dto.ResultadoSyncDTO;
 import com.HandballStats_Pro.handballstatspro.entities.Accion;
+import com.HandballStats_Pro.handballstatspro.entities.AccionEliminada;
 import com.HandballStats_Pro.handballstatspro.entities.Partido;
 import com.HandballStats_Pro.handballstatspro.enums.*;
 import com.HandballStats_Pro.handballstatspro.exceptions.ApiException;
+import com.HandballStats_Pro.handballstatspro.repositories.AccionEliminadaRepository;
 import com.HandballStats_Pro.handballstatspro.repositories.AccionRepository;
 import com.HandballStats_Pro.handballstatspro.repositories.PartidoRepository;
 import com.HandballStats_Pro.handballstatspro.repositories.UsuarioRepository;
@@ -14,15 +20,23 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 /**
@@ -54,6 +68,32 @@ public class AccionValidationFlowTest {
     @Mock
     private PartidoService partidoService;
     
+    // Instancia real: la regla 5 consulta primero la caché y solo en fallo el repositorio
+    @Spy
+    private UltimaAccionCache ultimaAccionCache = new UltimaAccionCache(16);
+    
+    @Spy
+    private TablaReglasAccion tablaReglasAccion = new TablaReglasAccion();
+    
+    @Spy
+    private ClavesClienteRecientes clavesClienteRecientes = new ClavesClienteRecientes(16);
+    
+    @Spy
+    private BloqueoPartidos bloqueoPartidos = new BloqueoPartidos(1000);
+    
+    // Diario desactivado: las acciones se guardan directamente en el repositorio
+    @Mock
+    private DiarioAcciones diarioAcciones;
+    
+    @Mock
+    private AccionEliminadaRepository accionEliminadaRepository;
+    
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    
     @InjectMocks
     private AccionService accionService;
     
@@ -68,10 +108,10 @@ public class AccionValidationFlowTest {
         partidoMock.setNombreEquipoLocal("Equipo Local");
         partidoMock.setNombreEquipoVisitante("Equipo Visitante");
         
-        // Configurar mocks básicos
-        when(partidoRepository.findById(anyInt())).thenReturn(Optional.of(partidoMock));
-        when(partidoService.puedeAccederPartido(any())).thenReturn(true);
-        when(accionRepository.save(any(Accion.class))).thenAnswer(invocation -> {
+        // Configurar mocks básicos (lenient: los casos que fallan en validación no llegan a guardar)
+        lenient().when(partidoRepository.findById(anyInt())).thenReturn(Optional.of(partidoMock));
+        lenient().when(partidoService.puedeAccederPartido(any())).thenReturn(true);
+        lenient().when(accionRepository.save(any(Accion.class))).thenAnswer(invocation -> {
             Accion accion = invocation.getArgument(0);
             accion.setIdAccion(1);
             return accion;
@@ -763,7 +803,8 @@ public class AccionValidationFlowTest {
             System.out.println("   📌 Acción 3: Nueva posesión tras gol");
             Accion accionAnterior2 = new Accion();
             accionAnterior2.setCambioPosesion(true);
-            when(accionRepository.findLastActionInMatch(anyInt())).thenReturn(Optional.of(accionAnterior2));
+            // lenient: la acción 2 ya deja la anterior en la caché de última acción
+            lenient().when(accionRepository.findLastActionInMatch(anyInt())).thenReturn(Optional.of(accionAnterior2));
             
             AccionDTO accion3 = crearAccionBase();
             accion3.setOrigenAccion(OrigenAccion.Juego_Continuado);
@@ -860,6 +901,400 @@ public class AccionValidationFlowTest {
         }
     }
     
+    /**
+     * CACHÉ DE LA ÚLTIMA ACCIÓN POR PARTIDO
+     */
+    @Nested
+    @DisplayName("🧠 CACHÉ DE LA ÚLTIMA ACCIÓN")
+    class CacheUltimaAccion {
+        
+        @Test
+        @DisplayName("✅ Tras el primer fallo de caché, la regla 5 no vuelve a consultar la base de datos")
+        void test_regla5_usa_cache() {
+            when(accionRepository.findLastActionInMatch(anyInt())).thenReturn(Optional.empty());
+            
+            AccionDTO parada = crearAccionBase();
+            parada.setEvento(Evento.Lanzamiento_Parado);
+            parada.setDetalleFinalizacion(DetalleFinalizacion.Pivote);
+            parada.setZonaLanzamiento(ZonaLanzamiento.Centro);
+            parada.setDetalleEvento(DetalleEvento.Parada_Portero);
+            parada.setCambioPosesion(false);
+            accionService.crearAccion(parada);
+            
+            // El rebote solo es válido si la caché recuerda que la parada no cambió la posesión
+            AccionDTO rebote = crearAccionBase();
+            rebote.setOrigenAccion(OrigenAccion.Rebote_directo);
+            rebote.setEvento(Evento.Gol);
+            rebote.setDetalleFinalizacion(DetalleFinalizacion.Pivote);
+            rebote.setZonaLanzamiento(ZonaLanzamiento.Centro);
+            rebote.setCambioPosesion(true);
+            assertDoesNotThrow(() -> accionService.crearAccion(rebote));
+            
+            verify(accionRepository, times(1)).findLastActionInMatch(anyInt());
+        }
+    }
+    
+    /**
+     * LOTES DE ACCIONES: la regla 5 se encadena dentro del lote
+     */
+    @Nested
+    @DisplayName("📦 LOTES DE ACCIONES")
+    class LotesDeAcciones {
+        
+        @Test
+        @DisplayName("✅ Lote válido: la regla 5 usa la acción previa del propio lote")
+        void test_lote_encadena_regla5() {
+            when(accionRepository.findLastActionInMatch(anyInt())).thenReturn(Optional.empty());
+            when(accionRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+            
+            AccionDTO parada = crearAccionBase();
+            parada.setEvento(Evento.Lanzamiento_Parado);
+            parada.setDetalleFinalizacion(DetalleFinalizacion.Pivote);
+            parada.setZonaLanzamiento(ZonaLanzamiento.Centro);
+            parada.setDetalleEvento(DetalleEvento.Parada_Portero);
+            parada.setCambioPosesion(false);
+            
+            AccionDTO rebote = crearAccionBase();
+            rebote.setOrigenAccion(OrigenAccion.Rebote_directo);
+            rebote.setEvento(Evento.Gol);
+            rebote.setDetalleFinalizacion(DetalleFinalizacion.Pivote);
+            rebote.setZonaLanzamiento(ZonaLanzamiento.Centro);
+            rebote.setCambioPosesion(true);
+            
+            assertEquals(2, accionService.crearAccionesLote(List.of(parada, rebote)).size());
+            verify(accionRepository, times(1)).findLastActionInMatch(anyInt());
+            verify(partidoService, times(1)).puedeAccederPartido(any());
+        }
+        
+        @Test
+        @DisplayName("❌ Error: rebote en el lote tras una acción que cambia posesión")
+        void test_lote_rebote_tras_cambio_posesion() {
+            when(accionRepository.findLastActionInMatch(anyInt())).thenReturn(Optional.empty());
+            
+            AccionDTO gol = crearAccionBase();
+            gol.setEvento(Evento.Gol);
+            gol.setDetalleFinalizacion(DetalleFinalizacion.Pivote);
+            gol.setZonaLanzamiento(ZonaLanzamiento.Centro);
+            gol.setCambioPosesion(true);
+            
+            AccionDTO rebote = crearAccionBase();
+            rebote.setOrigenAccion(OrigenAccion.Rebote_indirecto);
+            rebote.setEvento(Evento.Gol);
+            rebote.setDetalleFinalizacion(DetalleFinalizacion.Pivote);
+            rebote.setZonaLanzamiento(ZonaLanzamiento.Centro);
+            rebote.setCambioPosesion(true);
+            
+            ApiException exception = assertThrows(ApiException.class,
+                () -> accionService.crearAccionesLote(List.of(gol, rebote)));
+            
+            assertEquals("INVALID_REBOUND_SEQUENCE", exception.getErrorCode());
+            verify(accionRepository, never()).saveAll(anyList());
+        }
+        
+        @Test
+        @DisplayName("✅ El lote continúa la secuencia del partido")
+        void test_lote_continua_secuencia() {
+            Accion ultima = new Accion();
+            ultima.setIdAccion(40);
+            ultima.setIdPartido(1);
+            ultima.setSecuencia(3);
+            ultima.setCambioPosesion(true);
+            when(accionRepository.findLastActionInMatch(anyInt())).thenReturn(Optional.of(ultima));
+            when(accionRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+            
+            AccionDTO gol = crearAccionBase();
+            gol.setEvento(Evento.Gol);
+            gol.setDetalleFinalizacion(DetalleFinalizacion.Pivote);
+            gol.setZonaLanzamiento(ZonaLanzamiento.Centro);
+            gol.setCambioPosesion(true);
+            
+            AccionDTO perdida = crearAccionBase();
+            perdida.setEvento(Evento.Perdida);
+            perdida.setDetalleEvento(DetalleEvento.Pasos);
+            perdida.setCambioPosesion(true);
+            
+            List<AccionResponseDTO> creadas = accionService.crearAccionesLote(List.of(gol, perdida));
+            
+            assertEquals(4, creadas.get(0).getSecuencia());
+            assertEquals(5, creadas.get(1).getSecuencia());
+        }
+        
+        @Test
+        @DisplayName("❌ Error: lote con acciones de partidos distintos")
+        void test_lote_partidos_mezclados() {
+            AccionDTO primera = crearAccionBase();
+            AccionDTO segunda = crearAccionBase();
+            segunda.setIdPartido(2);
+            
+            ApiException exception = assertThrows(ApiException.class,
+                () -> accionService.crearAccionesLote(List.of(primera, segunda)));
+            
+            assertEquals("BATCH_MIXED_MATCHES", exception.getErrorCode());
+        }
+    }
+    
+    /**
+     * SINCRONIZACIÓN OFFLINE CON CLAVES DE IDEMPOTENCIA
+     */
+    @Nested
+    @DisplayName("📶 SINCRONIZACIÓN OFFLINE")
+    class SincronizacionOffline {
+        
+        @Test
+        @DisplayName("✅ Reenviar una acción con la misma clave devuelve la existente sin guardar")
+        void test_reenvio_misma_clave() {
+            Accion existente = new Accion();
+            existente.setIdAccion(7);
+            existente.setIdPartido(1);
+            existente.setClaveCliente("tablet-1:0001");
+            when(accionRepository.findByClaveCliente("tablet-1:0001")).thenReturn(Optional.of(existente));
+            
+            AccionDTO reenvio = crearAccionBase();
+            reenvio.setClaveCliente("tablet-1:0001");
+            
+            assertEquals(7, accionService.crearAccion(reenvio).getIdAccion());
+            verify(accionRepository, never()).save(any(Accion.class));
+        }
+        
+        @Test
+        @DisplayName("✅ La cola del dispositivo se resuelve por acción: duplicada, creada y rechazada")
+        void test_sync_resultados_por_accion() {
+            Accion existente = new Accion();
+            existente.setIdAccion(7);
+            existente.setIdPartido(1);
+            existente.setClaveCliente("k1");
+            existente.setCambioPosesion(false);
+            when(accionRepository.findByClaveClienteIn(any())).thenReturn(List.of(existente));
+            when(accionRepository.findLastActionInMatch(anyInt())).thenReturn(Optional.of(existente));
+            when(accionRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+            
+            AccionDTO duplicada = crearAccionBase();
+            duplicada.setClaveCliente("k1");
+            
+            // Rebote tras una acción sin cambio de posesión: válido
+            AccionDTO rebote = crearAccionBase();
+            rebote.setClaveCliente("k2");
+            rebote.setOrigenAccion(OrigenAccion.Rebote_directo);
+            rebote.setEvento(Evento.Gol);
+            rebote.setDetalleFinalizacion(DetalleFinalizacion.Pivote);
+            rebote.setZonaLanzamiento(ZonaLanzamiento.Centro);
+            rebote.setCambioPosesion(true);
+            
+            // Segundo rebote encadenado tras el gol anterior: inválido
+            AccionDTO otroRebote = crearAccionBase();
+            otroRebote.setClaveCliente("k3");
+            otroRebote.setOrigenAccion(OrigenAccion.Rebote_directo);
+            otroRebote.setEvento(Evento.Gol);
+            otroRebote.setDetalleFinalizacion(DetalleFinalizacion.Pivote);
+            otroRebote.setZonaLanzamiento(ZonaLanzamiento.Centro);
+            otroRebote.setCambioPosesion(true);
+            
+            List<ResultadoSyncDTO> resultados = accionService.sincronizarAcciones(List.of(duplicada, rebote, otroRebote));
+            
+            assertEquals(EstadoSincronizacion.DUPLICADA, resultados.get(0).getEstado());
+            assertEquals(7, resultados.get(0).getAccion().getIdAccion());
+            assertEquals(EstadoSincronizacion.CREADA, resultados.get(1).getEstado());
+            assertEquals(EstadoSincronizacion.RECHAZADA, resultados.get(2).getEstado());
+            assertEquals("INVALID_REBOUND_SEQUENCE", resultados.get(2).getCodigo());
+            verify(accionRepository, times(1)).saveAll(argThat(nuevas -> ((List<?>) nuevas).size() == 1));
+            verify(partidoService, times(1)).puedeAccederPartido(any());
+        }
+        
+        @Test
+        @DisplayName("✅ Una clave guardada por otra petición durante la sincronización queda como resultado de su acción")
+        void test_sync_clave_concurrente() {
+            Accion concurrente = new Accion();
+            concurrente.setIdAccion(9);
+            concurrente.setIdPartido(1);
+            concurrente.setClaveCliente("k1");
+            // La primera búsqueda no la ve; el INSERT choca con el índice único; la repetición ya la encuentra
+            when(accionRepository.findByClaveClienteIn(any())).thenReturn(List.of()).thenReturn(List.of(concurrente));
+            when(accionRepository.findLastActionInMatch(anyInt())).thenReturn(Optional.empty());
+            when(accionRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+            doThrow(new DataIntegrityViolationException("uk_accion_clave_cliente")).doNothing().when(accionRepository).flush();
+            
+            AccionDTO accion = crearAccionBase();
+            accion.setClaveCliente("k1");
+            accion.setEvento(Evento.Gol);
+            accion.setDetalleFinalizacion(DetalleFinalizacion.Pivote);
+            accion.setZonaLanzamiento(ZonaLanzamiento.Centro);
+            accion.setCambioPosesion(true);
+            
+            List<ResultadoSyncDTO> resultados = accionService.sincronizarAcciones(List.of(accion));
+            
+            assertEquals(EstadoSincronizacion.DUPLICADA, resultados.get(0).getEstado());
+            assertEquals(9, resultados.get(0).getAccion().getIdAccion());
+            verify(accionRepository, times(1)).saveAll(anyList());
+        }
+    }
+    
+    /**
+     * EDICIÓN Y BORRADO A MITAD DE SECUENCIA: se revalida solo la ventana afectada
+     */
+    @Nested
+    @DisplayName("✏️ EDICIÓN Y BORRADO DE ACCIONES")
+    class EdicionYBorrado {
+        
+        private Accion parada;
+        private Accion rebote;
+        
+        @BeforeEach
+        void setUpSecuencia() {
+            // Secuencia: 1 parada (no cambia posesión) -> 2 rebote directo
+            parada = new Accion();
+            parada.setIdAccion(10);
+            parada.setIdPartido(1);
+            parada.setIdPosesion(1);
+            parada.setSecuencia(1);
+            parada.setEquipoAccion(EquipoAccion.LOCAL);
+            parada.setTipoAtaque(TipoAtaque.Posicional);
+            parada.setOrigenAccion(OrigenAccion.Juego_Continuado);
+            parada.setEvento(Evento.Lanzamiento_Parado);
+            parada.setDetalleFinalizacion(DetalleFinalizacion.Pivote);
+            parada.setZonaLanzamiento(ZonaLanzamiento.Centro);
+            parada.setDetalleEvento(DetalleEvento.Parada_Portero);
+            parada.setCambioPosesion(false);
+            
+            rebote = new Accion();
+            rebote.setIdAccion(11);
+            rebote.setIdPartido(1);
+            rebote.setSecuencia(2);
+            rebote.setOrigenAccion(OrigenAccion.Rebote_directo);
+            rebote.setEvento(Evento.Gol);
+            rebote.setCambioPosesion(true);
+            
+            lenient().when(accionRepository.findById(10)).thenReturn(Optional.of(parada));
+            lenient().when(accionRepository.findPreviousInSequence(1, 1)).thenReturn(Optional.empty());
+            lenient().when(accionRepository.findNextInSequence(1, 1)).thenReturn(Optional.of(rebote));
+        }
+        
+        @Test
+        @DisplayName("❌ Error: editar la parada como gol rompe el rebote que la sigue")
+        void test_edicion_revalida_sucesora() {
+            AccionUpdateDTO cambio = new AccionUpdateDTO();
+            cambio.setEvento(Evento.Gol);
+            cambio.setDetalleEvento(null);
+            cambio.setCambioPosesion(true);
+            parada.setDetalleEvento(null);
+            
+            ApiException exception = assertThrows(ApiException.class, () -> accionService.actualizarAccion(10, cambio));
+            assertEquals("INVALID_REBOUND_SEQUENCE", exception.getErrorCode());
+            assertTrue(exception.getMessage().contains("secuencia 2"));
+            verify(accionRepository, never()).findLastActionInMatch(anyInt());
+            verify(accionRepository, never()).save(any(Accion.class));
+        }
+        
+        @Test
+        @DisplayName("✅ Editar sin tocar cambio_posesion no consulta la sucesora")
+        void test_edicion_sin_cambio_posesion() {
+            AccionUpdateDTO cambio = new AccionUpdateDTO();
+            cambio.setZonaLanzamiento(ZonaLanzamiento.Izquierda);
+            
+            assertDoesNotThrow(() -> accionService.actualizarAccion(10, cambio));
+            verify(accionRepository, never()).findNextInSequence(anyInt(), anyInt());
+        }
+        
+        @Test
+        @DisplayName("❌ Error: borrar la primera acción deja un rebote al inicio del partido")
+        void test_borrado_revalida_sucesora() {
+            ApiException exception = assertThrows(ApiException.class, () -> accionService.eliminarAccion(10));
+            assertEquals("INVALID_FIRST_ACTION", exception.getErrorCode());
+            verify(accionRepository, never()).delete(any(Accion.class));
+        }
+        
+        @Test
+        @DisplayName("✅ Deshacer la última acción no revalida vecinas")
+        void test_deshacer_ultima() {
+            when(accionRepository.findLastActionInMatch(1)).thenReturn(Optional.of(rebote));
+            
+            assertEquals(11, accionService.deshacerUltimaAccion(1).getIdAccion());
+            verify(accionRepository).delete(rebote);
+            verify(accionRepository, never()).findPreviousInSequence(anyInt(), anyInt());
+            verify(accionRepository, never()).findNextInSequence(anyInt(), anyInt());
+        }
+    }
+    
+    /**
+     * SINCRONIZACIÓN INCREMENTAL: cambios desde una revisión, con marcas de borrado
+     */
+    @Nested
+    @DisplayName("🔄 SINCRONIZACIÓN INCREMENTAL")
+    class SincronizacionIncremental {
+        
+        @Test
+        @DisplayName("✅ Mezcla acciones y borrados por revisión y devuelve el cursor de la página")
+        void test_cambios_paginados_por_revision() {
+            List<Accion> acciones = List.of(accionConRevision(20, 2L), accionConRevision(21, 4L), accionConRevision(22, 5L));
+            when(accionRepository.findByIdPartidoAndRevisionGreaterThanOrderByRevisionAsc(eq(1), eq(1L), any(Limit.class)))
+                    .thenReturn(acciones);
+            when(accionEliminadaRepository.findByIdPartidoAndRevisionGreaterThanOrderByRevisionAsc(eq(1), eq(1L), any(Limit.class)))
+                    .thenReturn(List.of(new AccionEliminada(19, 1, 3L)));
+            
+            CambiosAccionesDTO cambios = accionService.obtenerCambiosPorPartido(1, 1L, 3);
+            
+            assertEquals(List.of(20, 21), cambios.getAcciones().stream().map(AccionResponseDTO::getIdAccion).toList());
+            assertEquals(List.of(19), cambios.getEliminadas());
+            assertEquals(4L, cambios.getRevision());
+            assertTrue(cambios.isHayMas());
+        }
+        
+        @Test
+        @DisplayName("✅ Con el diario activo el cursor no pasa de la primera revisión aún pendiente de volcar")
+        void test_cambios_no_saltan_acciones_del_diario() {
+            when(diarioAcciones.activo()).thenReturn(true);
+            when(diarioAcciones.primeraRevisionPendiente(1)).thenReturn(3L);
+            when(accionRepository.findByIdPartidoAndRevisionGreaterThanOrderByRevisionAsc(eq(1), eq(0L), any(Limit.class)))
+                    .thenReturn(List.of(accionConRevision(20, 2L)));
+            // El borrado de la revisión 4 ya está en la base de datos; la acción de la 3 sigue en el diario
+            when(accionEliminadaRepository.findByIdPartidoAndRevisionGreaterThanOrderByRevisionAsc(eq(1), eq(0L), any(Limit.class)))
+                    .thenReturn(List.of(new AccionEliminada(19, 1, 4L)));
+            
+            CambiosAccionesDTO cambios = accionService.obtenerCambiosPorPartido(1, 0L, 10);
+            
+            assertEquals(List.of(20), cambios.getAcciones().stream().map(AccionResponseDTO::getIdAccion).toList());
+            assertTrue(cambios.getEliminadas().isEmpty());
+            assertEquals(2L, cambios.getRevision());
+            assertTrue(cambios.isHayMas());
+        }
+        
+        private Accion accionConRevision(int idAccion, long revision) {
+            Accion accion = new Accion();
+            accion.setIdAccion(idAccion);
+            accion.setIdPartido(1);
+            accion.setRevision(revision);
+            return accion;
+        }
+    }
+    
+    /**
+     * CANAL WEBSOCKET DEL ANOTADOR
+     */
+    @Nested
+    @DisplayName("📋 Canal WebSocket del anotador")
+    class CanalAnotador {
+        
+        @Test
+        @DisplayName("✅ Con permisos ya comprobados en el handshake se aplican las reglas sin repetir la comprobación")
+        void test_accion_autorizada_sin_comprobar_permisos() {
+            when(accionRepository.findLastActionInMatch(anyInt())).thenReturn(Optional.empty());
+            
+            AccionDTO gol = crearAccionBase();
+            gol.setEvento(Evento.Gol);
+            gol.setDetalleFinalizacion(DetalleFinalizacion.Pivote);
+            gol.setZonaLanzamiento(ZonaLanzamiento.Centro);
+            gol.setCambioPosesion(true);
+            
+            assertEquals(1, accionService.crearAccionAutorizada(gol).getSecuencia());
+            
+            AccionDTO invalida = crearAccionBase();
+            invalida.setEvento(Evento.Gol);
+            invalida.setCambioPosesion(true);
+            ApiException exception = assertThrows(ApiException.class, () -> accionService.crearAccionAutorizada(invalida));
+            assertEquals("GOAL_REQUIRED_FIELDS", exception.getErrorCode());
+            verify(partidoService, never()).puedeAccederPartido(any());
+        }
+    }
+    
     // MÉTODO AUXILIAR PARA CREAR ACCIÓN BASE
     private AccionDTO crearAccionBase() {
         AccionDTO accion = new AccionDTO();
@@ -0,0 +1,213 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.dto.ClasificacionDTO;
+import com.HandballStats_Pro.handballstatspro.dto.PercentilDTO;
+import com.HandballStats_Pro.handballstatspro.dto.PercentilesDTO;
+import com.HandballStats_Pro.handballstatspro.entities.Equipo;
+import com.HandballStats_Pro.handballstatspro.entities.Partido;
+import com.HandballStats_Pro.handballstatspro.enums.*;
+import com.HandballStats_Pro.handballstatspro.exceptions.PermissionDeniedException;
+import com.HandballStats_Pro.handballstatspro.repositories.EquipoRepository;
+import com.HandballStats_Pro.handballstatspro.repositories.PartidoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * CLASIFICACIÓN: ranking por criterio, recolocación al cambiar un partido, percentiles y límites de la caché
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("🏆 CLASIFICACIÓN")
+public class ClasificacionServiceTest {
+
+    private static final Integer ID_PARTIDO = 10;
+
+    @Mock
+    private PartidoRepository partidoRepository;
+
+    @Mock
+    private EquipoRepository equipoRepository;
+
+    @Mock
+    private EstadisticasService estadisticasService;
+
+    @Mock
+    private PosesionService posesionService;
+
+    @Mock
+    private PartidoService partidoService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ClasificacionService clasificacionService;
+
+    @BeforeEach
+    void setUp() {
+        // Una sola competición en memoria
+        clasificacionService = new ClasificacionService(partidoRepository, equipoRepository, estadisticasService,
+                posesionService, partidoService, new BloqueoPartidos(1000), transactionManager, 1);
+        Partido partido = new Partido();
+        partido.setIdPartido(ID_PARTIDO);
+        partido.setCompeticion("Liga Norte");
+        partido.setIdEquipoLocalAsociado(1L);
+        partido.setIdEquipoVisitanteAsociado(2L);
+        when(partidoRepository.findByCompeticion("liga norte")).thenReturn(List.of(partido));
+        List<Equipo> equipos = List.of(equipo(1L, "Local"), equipo(2L, "Visitante"));
+        when(equipoRepository.findAllById(any())).thenAnswer(invocacion -> {
+            List<Long> ids = invocacion.getArgument(0);
+            return equipos.stream().filter(equipo -> ids.contains(equipo.getIdEquipo())).toList();
+        });
+        when(partidoService.puedeAccederEquipo(anyLong())).thenReturn(true);
+        when(posesionService.contarPorEquipo(ID_PARTIDO)).thenReturn(Map.of(EquipoAccion.LOCAL, 10L, EquipoAccion.VISITANTE, 10L));
+
+        // Local 3 goles en 10 posesiones, visitante 1
+        EstadisticasPartido estadisticas = new EstadisticasPartido();
+        goles(estadisticas, EquipoAccion.LOCAL, 3);
+        goles(estadisticas, EquipoAccion.VISITANTE, 1);
+        when(estadisticasService.materializadas(ID_PARTIDO)).thenReturn(estadisticas);
+    }
+
+    @Test
+    @DisplayName("✅ Ordena por el criterio y recoloca los equipos cuando cambian las acciones de su partido")
+    void test_ranking_incremental() {
+        ClasificacionDTO inicial = clasificacionService.obtenerClasificacion(" LIGA NORTE ", null, CriterioClasificacion.GOLES_POR_POSESION);
+        assertEquals(1L, inicial.getEquipos().get(0).getIdEquipo());
+        assertEquals(0.3, inicial.getEquipos().get(0).getGolesPorPosesion(), 1e-9);
+
+        EstadisticasPartido remontada = new EstadisticasPartido();
+        goles(remontada, EquipoAccion.LOCAL, 3);
+        goles(remontada, EquipoAccion.VISITANTE, 5);
+        when(estadisticasService.materializadas(ID_PARTIDO)).thenReturn(remontada);
+        clasificacionService.alCambiarAccion(new AccionEvento(TipoCambioAccion.CREADA, ID_PARTIDO, null, null));
+
+        ClasificacionDTO despues = clasificacionService.obtenerClasificacion("Liga Norte", null, CriterioClasificacion.GOLES_POR_POSESION);
+        assertEquals(2L, despues.getEquipos().get(0).getIdEquipo());
+        assertEquals(5, despues.getEquipos().get(0).getGoles());
+        assertEquals(1, despues.getEquipos().get(0).getPartidos());
+        // La competición se construyó una sola vez
+        verify(partidoRepository, times(1)).findByCompeticion("liga norte");
+    }
+
+    @Test
+    @DisplayName("✅ Percentil del equipo en cada criterio y resumen de la distribución de la competición")
+    void test_percentiles() {
+        when(equipoRepository.findById(1L)).thenReturn(Optional.of(equipo(1L, "Local")));
+
+        PercentilesDTO percentiles = clasificacionService.obtenerPercentiles(1L, "Liga Norte", null);
+        assertEquals(2, percentiles.getEquipos());
+        PercentilDTO golesPorPosesion = percentiles.getCriterios().get(CriterioClasificacion.GOLES_POR_POSESION.ordinal());
+        assertEquals(0.3, golesPorPosesion.getValor(), 1e-9);
+        // Mejora al visitante (0.1): uno por debajo y la mitad de sí mismo, de dos
+        assertEquals(75, golesPorPosesion.getPercentil(), 1e-9);
+        assertEquals(0.1, golesPorPosesion.getMediana(), 1.0 / HistogramaRatios.INTERVALOS);
+        assertEquals(0.3, golesPorPosesion.getP90(), 1.0 / HistogramaRatios.INTERVALOS);
+        // Sin pérdidas ninguno de los dos: empatados
+        assertEquals(50, percentiles.getCriterios().get(CriterioClasificacion.PERDIDAS_POR_POSESION.ordinal()).getPercentil(), 1e-9);
+
+        EstadisticasPartido remontada = new EstadisticasPartido();
+        goles(remontada, EquipoAccion.LOCAL, 3);
+        goles(remontada, EquipoAccion.VISITANTE, 5);
+        when(estadisticasService.materializadas(ID_PARTIDO)).thenReturn(remontada);
+        clasificacionService.alCambiarAccion(new AccionEvento(TipoCambioAccion.CREADA, ID_PARTIDO, null, null));
+
+        // La distribución sigue al ranking: el valor anterior del visitante ya no cuenta
+        PercentilDTO despues = clasificacionService.obtenerPercentiles(1L, "Liga Norte", null).getCriterios()
+                .get(CriterioClasificacion.GOLES_POR_POSESION.ordinal());
+        assertEquals(25, despues.getPercentil(), 1e-9);
+        assertEquals(0.3, despues.getMediana(), 1.0 / HistogramaRatios.INTERVALOS);
+    }
+
+    @Test
+    @DisplayName("✅ Un cambio en un partido mientras se construye la clasificación se aplica al instalarla")
+    void test_cambio_durante_la_construccion() {
+        EstadisticasPartido inicial = new EstadisticasPartido();
+        goles(inicial, EquipoAccion.LOCAL, 3);
+        goles(inicial, EquipoAccion.VISITANTE, 1);
+        EstadisticasPartido remontada = new EstadisticasPartido();
+        goles(remontada, EquipoAccion.LOCAL, 3);
+        goles(remontada, EquipoAccion.VISITANTE, 5);
+        // La construcción lee el partido y, antes de instalarse, se confirma una acción nueva en él
+        AtomicBoolean leido = new AtomicBoolean();
+        when(estadisticasService.materializadas(ID_PARTIDO)).thenAnswer(invocacion -> {
+            if (leido.compareAndSet(false, true)) {
+                clasificacionService.alCambiarAccion(new AccionEvento(TipoCambioAccion.CREADA, ID_PARTIDO, null, null));
+                return inicial;
+            }
+            return remontada;
+        });
+
+        ClasificacionDTO clasificacion = clasificacionService.obtenerClasificacion("Liga Norte", null, CriterioClasificacion.GOLES_POR_POSESION);
+
+        assertEquals(2L, clasificacion.getEquipos().get(0).getIdEquipo());
+        assertEquals(5, clasificacion.getEquipos().get(0).getGoles());
+        verify(estadisticasService, times(2)).materializadas(ID_PARTIDO);
+    }
+
+    @Test
+    @DisplayName("✅ Sin acceso a ningún equipo no se calcula ni se guarda la clasificación, y una vacía tampoco se guarda")
+    void test_sin_acceso_no_construye() {
+        when(partidoService.puedeAccederEquipo(anyLong())).thenReturn(false);
+
+        for (int i = 0; i < 2; i++) {
+            assertThrows(PermissionDeniedException.class, () -> clasificacionService.obtenerClasificacion("Liga Norte", null,
+                    CriterioClasificacion.GOLES_POR_POSESION));
+            assertThrows(PermissionDeniedException.class, () -> clasificacionService.obtenerClasificacion("Liga Inventada", null,
+                    CriterioClasificacion.GOLES_POR_POSESION));
+        }
+
+        verify(estadisticasService, never()).materializadas(anyInt());
+        verify(partidoRepository, times(2)).findByCompeticion("liga norte");
+        verify(partidoRepository, times(2)).findByCompeticion("liga inventada");
+    }
+
+    @Test
+    @DisplayName("✅ Al pasar de la capacidad sale la clasificación menos usada y sus partidos dejan de mantenerse")
+    void test_capacidad_de_la_cache() {
+        Partido copa = new Partido();
+        copa.setIdPartido(20);
+        copa.setCompeticion("Copa");
+        copa.setIdEquipoLocalAsociado(1L);
+        when(partidoRepository.findByCompeticion("copa")).thenReturn(List.of(copa));
+        when(posesionService.contarPorEquipo(20)).thenReturn(Map.of());
+        when(estadisticasService.materializadas(20)).thenReturn(new EstadisticasPartido());
+
+        clasificacionService.obtenerClasificacion("Liga Norte", null, CriterioClasificacion.GOLES_POR_POSESION);
+        clasificacionService.obtenerClasificacion("Copa", null, CriterioClasificacion.GOLES_POR_POSESION);
+        // La liga ya no está en memoria: sus cambios no se recalculan
+        clasificacionService.alCambiarAccion(new AccionEvento(TipoCambioAccion.CREADA, ID_PARTIDO, null, null));
+        verify(estadisticasService, times(1)).materializadas(ID_PARTIDO);
+
+        clasificacionService.obtenerClasificacion("Liga Norte", null, CriterioClasificacion.GOLES_POR_POSESION);
+        verify(partidoRepository, times(2)).findByCompeticion("liga norte");
+    }
+
+    private static void goles(EstadisticasPartido estadisticas, EquipoAccion equipo, int goles) {
+        for (int i = 0; i < goles; i++) {
+            estadisticas.sumar(equipo, TipoAtaque.Posicional, Evento.Gol, DetalleFinalizacion.Pivote, ZonaLanzamiento.Centro, null, 1);
+        }
+    }
+
+    private static Equipo equipo(Long id, String nombre) {
+        Equipo equipo = new Equipo();
+        equipo.setIdEquipo(id);
+        equipo.setNombre(nombre);
+        return equipo;
+    }
+}
@@ -0,0 +1,169 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.entities.Accion;
+import com.HandballStats_Pro.handballstatspro.enums.*;
+import com.HandballStats_Pro.handballstatspro.repositories.AccionRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * DIARIO LOCAL DE ACCIONES: reproducción tras una caída y escritura solo de lo confirmado
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("📝 DIARIO LOCAL DE ACCIONES")
+public class DiarioAccionesTest {
+
+    @TempDir
+    Path directorio;
+
+    @Mock
+    private AccionRepository accionRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Test
+    @DisplayName("✅ Las acciones anotadas sobreviven a una caída, se vuelcan sin duplicar y se publican con su id")
+    void test_reproduce_tras_caida() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+
+        // Primer proceso: anota dos acciones y "cae" sin llegar a volcarlas
+        DiarioAcciones antes = nuevoDiario();
+        antes.start();
+        antes.anotar(List.of(accion(1, "k1"), accion(2, "k2")));
+        assertTrue(Files.exists(directorio.resolve("wal-000001.log")));
+
+        // La primera sí llegó a la base de datos antes de la caída
+        Accion yaGuardada = accion(1, "k1");
+        yaGuardada.setIdAccion(10);
+        when(accionRepository.findByClaveClienteIn(anyCollection())).thenReturn(List.of(yaGuardada));
+        when(accionRepository.saveAll(anyList())).thenAnswer(invocacion -> {
+            List<Accion> nuevas = invocacion.getArgument(0);
+            nuevas.forEach(nueva -> nueva.setIdAccion(11));
+            return nuevas;
+        });
+
+        DiarioAcciones despues = nuevoDiario();
+        despues.start();
+        assertEquals(2, despues.colaPendiente(1).secuencia());
+        assertNotNull(despues.pendientePorClave("k2"));
+
+        despues.volcarPendientes();
+
+        verify(accionRepository).saveAll(argThat(nuevas -> {
+            List<Accion> lista = (List<Accion>) nuevas;
+            return lista.size() == 1 && "k2".equals(lista.get(0).getClaveCliente());
+        }));
+        assertNull(despues.colaPendiente(1));
+        assertFalse(Files.exists(directorio.resolve("wal-000001.log")));
+
+        // La que ya estaba conserva su id y la nueva lleva el asignado al guardarla
+        ArgumentCaptor<AccionesVolcadas> volcadas = ArgumentCaptor.forClass(AccionesVolcadas.class);
+        verify(eventPublisher).publishEvent(volcadas.capture());
+        assertEquals(List.of(10, 11), volcadas.getValue().acciones().stream().map(Accion::getIdAccion).toList());
+    }
+
+    @Test
+    @DisplayName("✅ Las acciones se escriben al confirmar la transacción que las registra y se descartan si se deshace")
+    void test_solo_escribe_lo_confirmado() {
+        DiarioAcciones diario = nuevoDiario();
+        diario.start();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            diario.anotar(List.of(accion(1, "k1")));
+            assertNull(diario.colaPendiente(1));
+            TransactionSynchronizationUtils.triggerAfterCommit();
+            TransactionSynchronizationUtils.triggerAfterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+            assertEquals(1, diario.colaPendiente(1).secuencia());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            diario.anotar(List.of(accion(2, "k2")));
+            TransactionSynchronizationUtils.triggerAfterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals(1, diario.colaPendiente(1).secuencia());
+        assertNull(diario.pendientePorClave("k2"));
+
+        // Tras una caída solo se reproduce la confirmada
+        DiarioAcciones despues = nuevoDiario();
+        despues.start();
+        assertNotNull(despues.pendientePorClave("k1"));
+        assertNull(despues.pendientePorClave("k2"));
+    }
+
+    @Test
+    @DisplayName("✅ Un vaciado explícito llega hasta lo pendiente al llamar y no falla por lo que se anota después")
+    void test_vaciado_hasta_lo_pendiente_al_llamar() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        DiarioAcciones diario = nuevoDiario();
+        diario.start();
+        diario.anotar(List.of(accion(1, "k1")));
+
+        // Mientras se guarda el lote, otro partido anota una acción, y su volcado fallaría
+        Accion otroPartido = accion(1, "k2");
+        otroPartido.setIdPartido(2);
+        when(accionRepository.saveAll(anyList()))
+                .thenAnswer(invocacion -> {
+                    diario.anotar(List.of(otroPartido));
+                    return invocacion.getArgument(0);
+                })
+                .thenThrow(new IllegalStateException("Base de datos caída"));
+
+        diario.volcarPartido(1);
+
+        assertNull(diario.colaPendiente(1));
+        assertNotNull(diario.colaPendiente(2));
+        verify(accionRepository, times(1)).saveAll(anyList());
+    }
+
+    private DiarioAcciones nuevoDiario() {
+        // Intervalo largo: en el test solo se vuelca de forma explícita
+        return new DiarioAcciones(accionRepository, new UltimaAccionCache(16), new ClavesClienteRecientes(16),
+                new ObjectMapper(), transactionManager, eventPublisher, true, directorio.toString(), 1 << 16, 200, 3_600_000L, false);
+    }
+
+    private Accion accion(int secuencia, String clave) {
+        Accion accion = new Accion();
+        accion.setIdPartido(1);
+        accion.setSecuencia(secuencia);
+        accion.setIdPosesion(1);
+        accion.setEquipoAccion(EquipoAccion.LOCAL);
+        accion.setTipoAtaque(TipoAtaque.Posicional);
+        accion.setOrigenAccion(OrigenAccion.Juego_Continuado);
+        accion.setEvento(Evento.Perdida);
+        accion.setDetalleEvento(DetalleEvento.Pasos);
+        accion.setCambioPosesion(true);
+        accion.setClaveCliente(clave);
+        return accion;
+    }
+}
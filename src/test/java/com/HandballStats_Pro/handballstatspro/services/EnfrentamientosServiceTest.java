@@ -0,0 +1,161 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.dto.EnfrentamientoDTO;
+import com.HandballStats_Pro.handballstatspro.entities.Equipo;
+import com.HandballStats_Pro.handballstatspro.entities.Partido;
+import com.HandballStats_Pro.handballstatspro.entities.PartidoEstadistica;
+import com.HandballStats_Pro.handballstatspro.enums.*;
+import com.HandballStats_Pro.handballstatspro.repositories.EquipoRepository;
+import com.HandballStats_Pro.handballstatspro.repositories.PartidoEstadisticaRepository;
+import com.HandballStats_Pro.handballstatspro.repositories.PartidoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * ENFRENTAMIENTOS: historial visto desde cada equipo y caché por pareja
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("🤝 ENFRENTAMIENTOS")
+public class EnfrentamientosServiceTest {
+
+    private static final Long ID_A = 1L;
+    private static final Long ID_B = 2L;
+
+    @Mock
+    private PartidoRepository partidoRepository;
+
+    @Mock
+    private PartidoEstadisticaRepository partidoEstadisticaRepository;
+
+    @Mock
+    private EquipoRepository equipoRepository;
+
+    @Mock
+    private EstadisticasService estadisticasService;
+
+    @Mock
+    private PartidoService partidoService;
+
+    private EnfrentamientosService enfrentamientosService;
+
+    private List<PartidoEstadistica> filas;
+
+    @BeforeEach
+    void setUp() {
+        // A mano por la capacidad de la caché (un int)
+        enfrentamientosService = new EnfrentamientosService(partidoRepository, partidoEstadisticaRepository,
+                equipoRepository, estadisticasService, partidoService, 16);
+        when(equipoRepository.findById(ID_A)).thenReturn(Optional.of(equipo(ID_A, "A")));
+        when(equipoRepository.findById(ID_B)).thenReturn(Optional.of(equipo(ID_B, "B")));
+        when(partidoService.puedeAccederEquipo(ID_A)).thenReturn(true);
+
+        // Partido 10: A local gana 2-1; partido 11: B local gana 1-0
+        EstadisticasPartido primero = new EstadisticasPartido();
+        gol(primero, EquipoAccion.LOCAL);
+        gol(primero, EquipoAccion.LOCAL);
+        gol(primero, EquipoAccion.VISITANTE);
+        EstadisticasPartido segundo = new EstadisticasPartido();
+        gol(segundo, EquipoAccion.LOCAL);
+        when(partidoRepository.findEnfrentamientos(ID_A, ID_B)).thenReturn(List.of(partido(10, ID_A, ID_B), partido(11, ID_B, ID_A)));
+        filas = List.of(
+                new PartidoEstadistica(10, primero.getAcciones(), primero.aBytes()),
+                new PartidoEstadistica(11, segundo.getAcciones(), segundo.aBytes()));
+        when(partidoEstadisticaRepository.findAllById(any())).thenReturn(filas);
+    }
+
+    @Test
+    @DisplayName("✅ Cada partido se suma desde el lado en que jugó el equipo, en cualquier orden de la pareja")
+    void test_historial_desde_cada_equipo() {
+        EnfrentamientoDTO desdeA = enfrentamientosService.obtenerEnfrentamiento(ID_A, ID_B);
+        EnfrentamientoDTO desdeB = enfrentamientosService.obtenerEnfrentamiento(ID_B, ID_A);
+
+        assertEquals(1, desdeA.getVictorias());
+        assertEquals(1, desdeA.getDerrotas());
+        assertEquals(2, desdeA.getEquipo().getTotal().getGoles());
+        assertEquals(2, desdeA.getRival().getTotal().getGoles());
+        assertTrue(desdeA.getPartidos().get(0).isLocal());
+        assertEquals(2, desdeA.getPartidos().get(0).getGolesEquipo());
+        assertFalse(desdeB.getPartidos().get(0).isLocal());
+        assertEquals(1, desdeB.getPartidos().get(0).getGolesEquipo());
+        assertEquals(1, desdeB.getPartidos().get(1).getGolesEquipo());
+        // Una sola consulta para la pareja: la segunda petición sale de la caché
+        verify(partidoRepository, times(1)).findEnfrentamientos(ID_A, ID_B);
+    }
+
+    @Test
+    @DisplayName("✅ Un cambio en las acciones de uno de sus partidos descarta la pareja de la caché")
+    void test_invalidacion_por_accion() {
+        enfrentamientosService.obtenerEnfrentamiento(ID_A, ID_B);
+        enfrentamientosService.alCambiarAccion(new AccionEvento(TipoCambioAccion.CREADA, 99, null, null));
+        enfrentamientosService.obtenerEnfrentamiento(ID_A, ID_B);
+        verify(partidoRepository, times(1)).findEnfrentamientos(ID_A, ID_B);
+
+        enfrentamientosService.alCambiarAccion(new AccionEvento(TipoCambioAccion.CREADA, 11, null, null));
+        enfrentamientosService.obtenerEnfrentamiento(ID_A, ID_B);
+        verify(partidoRepository, times(2)).findEnfrentamientos(ID_A, ID_B);
+    }
+
+    @Test
+    @DisplayName("✅ Un cálculo que coincide con un cambio en uno de sus partidos se devuelve pero no se guarda")
+    void test_invalidacion_durante_el_calculo() {
+        // El cambio se confirma mientras el cálculo lee las estadísticas, con la caché aún vacía
+        when(partidoEstadisticaRepository.findAllById(any()))
+                .thenAnswer(invocacion -> {
+                    enfrentamientosService.alCambiarAccion(new AccionEvento(TipoCambioAccion.CREADA, 10, null, null));
+                    return filas;
+                })
+                .thenReturn(filas);
+
+        assertEquals(1, enfrentamientosService.obtenerEnfrentamiento(ID_A, ID_B).getVictorias());
+        enfrentamientosService.obtenerEnfrentamiento(ID_A, ID_B);
+        enfrentamientosService.obtenerEnfrentamiento(ID_A, ID_B);
+
+        // La segunda petición recalcula y la tercera ya sale de la caché
+        verify(partidoRepository, times(2)).findEnfrentamientos(ID_A, ID_B);
+    }
+
+    @Test
+    void test_cambio_ajeno_durante_el_calculo() {
+        // Un partido que no es de la pareja no impide guardar el cálculo
+        when(partidoEstadisticaRepository.findAllById(any()))
+                .thenAnswer(invocacion -> {
+                    enfrentamientosService.alCambiarAccion(new AccionEvento(TipoCambioAccion.CREADA, 99, null, null));
+                    return filas;
+                });
+
+        enfrentamientosService.obtenerEnfrentamiento(ID_A, ID_B);
+        enfrentamientosService.obtenerEnfrentamiento(ID_B, ID_A);
+
+        verify(partidoRepository, times(1)).findEnfrentamientos(ID_A, ID_B);
+    }
+
+    private static void gol(EstadisticasPartido estadisticas, EquipoAccion equipo) {
+        estadisticas.sumar(equipo, TipoAtaque.Posicional, Evento.Gol, DetalleFinalizacion.Pivote, ZonaLanzamiento.Centro, null, 1);
+    }
+
+    private static Partido partido(Integer id, Long local, Long visitante) {
+        Partido partido = new Partido();
+        partido.setIdPartido(id);
+        partido.setIdEquipoLocalAsociado(local);
+        partido.setIdEquipoVisitanteAsociado(visitante);
+        return partido;
+    }
+
+    private static Equipo equipo(Long id, String nombre) {
+        Equipo equipo = new Equipo();
+        equipo.setIdEquipo(id);
+        equipo.setNombre(nombre);
+        return equipo;
+    }
+}
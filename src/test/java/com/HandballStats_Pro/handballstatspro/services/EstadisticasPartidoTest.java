@@ -0,0 +1,118 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.dto.EstadisticasEquipoDTO;
+import com.HandballStats_Pro.handballstatspro.enums.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * MOTOR DE ESTADÍSTICAS: contadores por ordinal, resta y combinación
+ */
+@DisplayName("📊 MOTOR DE ESTADÍSTICAS")
+public class EstadisticasPartidoTest {
+
+    @Test
+    @DisplayName("✅ Reparte cada acción por zona, finalización, tipo de ataque y detalle")
+    void test_contadores_por_dimension() {
+        EstadisticasPartido estadisticas = new EstadisticasPartido();
+        estadisticas.sumar(EquipoAccion.LOCAL, TipoAtaque.Posicional, Evento.Gol, DetalleFinalizacion._7m,
+                ZonaLanzamiento.Centro, null, 1);
+        estadisticas.sumar(EquipoAccion.LOCAL, TipoAtaque.Posicional, Evento.Lanzamiento_Parado, DetalleFinalizacion._7m,
+                ZonaLanzamiento.Izquierda, DetalleEvento.Parada_Portero, 1);
+        estadisticas.sumar(EquipoAccion.LOCAL, TipoAtaque.Contraataque, Evento.Gol, DetalleFinalizacion._1a_oleada,
+                ZonaLanzamiento.Derecha, null, 1);
+        estadisticas.sumar(EquipoAccion.VISITANTE, TipoAtaque.Posicional, Evento.Perdida, null, null, DetalleEvento.Pasos, 1);
+
+        EstadisticasEquipoDTO local = estadisticas.equipoDTO(EquipoAccion.LOCAL);
+        assertEquals(3, local.getTotal().getLanzamientos());
+        assertEquals(2, local.getTotal().getGoles());
+        assertEquals(2, local.getSieteMetros().getLanzamientos());
+        assertEquals(0.5, local.getSieteMetros().getEficiencia());
+        assertEquals(1, local.getPorZona().get(ZonaLanzamiento.Izquierda).getParadas());
+        assertEquals(1, local.getPorFinalizacion().get(DetalleFinalizacion._1a_oleada).getGoles());
+        assertEquals(1, local.getPorTipoAtaque().get(TipoAtaque.Contraataque).getGoles());
+        assertEquals(1, local.getPorDetalleEvento().get(DetalleEvento.Parada_Portero));
+
+        EstadisticasEquipoDTO visitante = estadisticas.equipoDTO(EquipoAccion.VISITANTE);
+        assertEquals(0, visitante.getTotal().getLanzamientos());
+        assertEquals(1, visitante.getTotal().getPerdidas());
+        assertEquals(1, visitante.getPorDetalleEvento().get(DetalleEvento.Pasos));
+        assertEquals(4, estadisticas.getAcciones());
+    }
+
+    @Test
+    @DisplayName("✅ Restar una acción deshace su suma y combinar acumula otro motor")
+    void test_restar_y_combinar() {
+        EstadisticasPartido estadisticas = new EstadisticasPartido();
+        estadisticas.sumar(EquipoAccion.VISITANTE, TipoAtaque.Posicional, Evento.Gol, DetalleFinalizacion.Pivote,
+                ZonaLanzamiento.Centro, null, 1);
+        EstadisticasPartido otro = new EstadisticasPartido();
+        otro.combinar(estadisticas);
+        otro.combinar(estadisticas);
+        estadisticas.sumar(EquipoAccion.VISITANTE, TipoAtaque.Posicional, Evento.Gol, DetalleFinalizacion.Pivote,
+                ZonaLanzamiento.Centro, null, -1);
+
+        assertEquals(0, estadisticas.goles(EquipoAccion.VISITANTE));
+        assertEquals(0, estadisticas.getAcciones());
+        assertEquals(2, otro.goles(EquipoAccion.VISITANTE));
+        assertEquals(2, otro.equipoDTO(EquipoAccion.VISITANTE).getPorFinalizacion().get(DetalleFinalizacion.Pivote).getGoles());
+    }
+
+    @Test
+    @DisplayName("✅ Los contadores se guardan en binario y se recuperan tal cual")
+    void test_binario_ida_y_vuelta() {
+        EstadisticasPartido estadisticas = new EstadisticasPartido();
+        estadisticas.sumar(EquipoAccion.LOCAL, TipoAtaque.Contraataque, Evento.Gol, DetalleFinalizacion.Contragol,
+                ZonaLanzamiento.Centro, null, 1);
+
+        EstadisticasPartido recuperadas = EstadisticasPartido.deBytes(estadisticas.getAcciones(), estadisticas.aBytes());
+
+        assertNotNull(recuperadas);
+        assertEquals(1, recuperadas.getAcciones());
+        assertEquals(estadisticas.equipoDTO(EquipoAccion.LOCAL), recuperadas.equipoDTO(EquipoAccion.LOCAL));
+        assertNull(EstadisticasPartido.deBytes(1, new byte[8]));
+    }
+
+    @Test
+    @DisplayName("✅ Combinar desde el visitante pone sus contadores como propios y los del local como rivales")
+    void test_combinar_desde_visitante() {
+        EstadisticasPartido partido = new EstadisticasPartido();
+        partido.sumar(EquipoAccion.VISITANTE, TipoAtaque.Posicional, Evento.Gol, DetalleFinalizacion.Pivote,
+                ZonaLanzamiento.Centro, null, 1);
+        partido.sumar(EquipoAccion.LOCAL, TipoAtaque.Posicional, Evento.Perdida, null, null, DetalleEvento.Pasos, 1);
+
+        EstadisticasPartido temporada = new EstadisticasPartido();
+        temporada.combinarComo(partido, EquipoAccion.VISITANTE, 1);
+        temporada.combinarComo(partido, EquipoAccion.VISITANTE, 1);
+        temporada.combinarComo(partido, EquipoAccion.VISITANTE, -1);
+
+        assertEquals(1, temporada.goles(EquipoAccion.LOCAL));
+        assertEquals(1, temporada.equipoDTO(EquipoAccion.VISITANTE).getTotal().getPerdidas());
+        assertEquals(2, temporada.getAcciones());
+    }
+
+    @Test
+    @DisplayName("✅ El cubo de lanzamientos se corta por finalización y tipo de ataque y reparte por zona y resultado")
+    void test_corte_cubo_lanzamientos() {
+        EstadisticasPartido estadisticas = new EstadisticasPartido();
+        estadisticas.sumar(EquipoAccion.LOCAL, TipoAtaque.Posicional, Evento.Gol, DetalleFinalizacion.Extremos,
+                ZonaLanzamiento.Izquierda, null, 1);
+        estadisticas.sumar(EquipoAccion.LOCAL, TipoAtaque.Posicional, Evento.Lanzamiento_Fuera, DetalleFinalizacion.Extremos,
+                ZonaLanzamiento.Izquierda, DetalleEvento.Palo, 1);
+        estadisticas.sumar(EquipoAccion.LOCAL, TipoAtaque.Contraataque, Evento.Lanzamiento_Parado, DetalleFinalizacion.Extremos,
+                ZonaLanzamiento.Izquierda, DetalleEvento.Bloqueo_Defensor, 1);
+        estadisticas.sumar(EquipoAccion.LOCAL, TipoAtaque.Posicional, Evento.Perdida, null, null, DetalleEvento.Pasos, 1);
+
+        int[][] todo = estadisticas.corteLanzamientos(EquipoAccion.LOCAL, null, null);
+        int[][] posicional = estadisticas.corteLanzamientos(EquipoAccion.LOCAL, DetalleFinalizacion.Extremos, TipoAtaque.Posicional);
+        int izquierda = ZonaLanzamiento.Izquierda.ordinal();
+
+        assertEquals(1, todo[izquierda][ResultadoLanzamiento.Bloqueo_Defensor.ordinal()]);
+        assertEquals(1, posicional[izquierda][ResultadoLanzamiento.Gol.ordinal()]);
+        assertEquals(1, posicional[izquierda][ResultadoLanzamiento.Palo.ordinal()]);
+        assertEquals(0, posicional[izquierda][ResultadoLanzamiento.Bloqueo_Defensor.ordinal()]);
+        assertEquals(0, estadisticas.corteLanzamientos(EquipoAccion.VISITANTE, null, null)[izquierda][ResultadoLanzamiento.Gol.ordinal()]);
+    }
+}
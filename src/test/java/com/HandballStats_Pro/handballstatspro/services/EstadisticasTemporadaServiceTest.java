@@ -0,0 +1,124 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.entities.EquipoEstadistica;
+import com.HandballStats_Pro.handballstatspro.entities.Partido;
+import com.HandballStats_Pro.handballstatspro.entities.PartidoEstadistica;
+import com.HandballStats_Pro.handballstatspro.enums.*;
+import com.HandballStats_Pro.handballstatspro.repositories.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * ACUMULADOS DE TEMPORADA: reconstrucción sin perder los deltas concurrentes
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("📈 ACUMULADOS DE TEMPORADA")
+public class EstadisticasTemporadaServiceTest {
+
+    private static final Long ID_EQUIPO = 10L;
+
+    @Mock
+    private EquipoEstadisticaRepository equipoEstadisticaRepository;
+
+    @Mock
+    private ClubEstadisticaRepository clubEstadisticaRepository;
+
+    @Mock
+    private PartidoEstadisticaRepository partidoEstadisticaRepository;
+
+    @Mock
+    private PartidoRepository partidoRepository;
+
+    @Mock
+    private EquipoRepository equipoRepository;
+
+    @Mock
+    private EstadisticasService estadisticasService;
+
+    @Mock
+    private PartidoService partidoService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private EstadisticasTemporadaService estadisticasTemporadaService;
+
+    @Test
+    @DisplayName("✅ La fila del equipo se crea y se bloquea antes de releer sus partidos, y se actualiza en lugar de reemplazarla")
+    void test_reconstruir_equipo_bloquea_antes_de_leer() {
+        // El partido 2 se asocia al equipo entre el cálculo previo y la transacción de la reconstrucción
+        Partido primero = partido(1, ID_EQUIPO, 20L);
+        Partido segundo = partido(2, 30L, ID_EQUIPO);
+        when(partidoRepository.findPartidosByEquiposAsociados(List.of(ID_EQUIPO)))
+                .thenReturn(List.of(primero), List.of(primero, segundo));
+        EstadisticasPartido golLocal = gol(EquipoAccion.LOCAL);
+        when(partidoEstadisticaRepository.findAllById(List.of(1)))
+                .thenReturn(List.of(new PartidoEstadistica(1, golLocal.getAcciones(), golLocal.aBytes())));
+        when(partidoEstadisticaRepository.findById(1))
+                .thenReturn(Optional.of(new PartidoEstadistica(1, golLocal.getAcciones(), golLocal.aBytes())));
+        when(partidoEstadisticaRepository.findById(2)).thenReturn(Optional.empty());
+        when(estadisticasService.calcular(2)).thenReturn(gol(EquipoAccion.VISITANTE));
+        EquipoEstadistica bloqueada = new EquipoEstadistica(ID_EQUIPO, 0, 0, new byte[0]);
+        when(equipoEstadisticaRepository.findParaActualizarByIdEquipo(ID_EQUIPO)).thenReturn(Optional.of(bloqueada));
+
+        EquipoEstadistica fila = estadisticasTemporadaService.reconstruirEquipo(ID_EQUIPO);
+
+        InOrder orden = inOrder(equipoEstadisticaRepository, partidoRepository);
+        orden.verify(partidoRepository).findPartidosByEquiposAsociados(List.of(ID_EQUIPO));
+        orden.verify(equipoEstadisticaRepository).crearSiFalta(ID_EQUIPO);
+        orden.verify(equipoEstadisticaRepository).findParaActualizarByIdEquipo(ID_EQUIPO);
+        orden.verify(partidoRepository).findPartidosByEquiposAsociados(List.of(ID_EQUIPO));
+        verify(equipoEstadisticaRepository, never()).save(any());
+
+        // Los dos goles son del equipo: de local en el primero y de visitante en el segundo
+        assertSame(bloqueada, fila);
+        assertEquals(2, fila.getPartidos());
+        assertEquals(2, EstadisticasPartido.deBytes(fila.getAcciones(), fila.getContadores()).goles(EquipoAccion.LOCAL));
+    }
+
+    @Test
+    @DisplayName("✅ Un partido sin fila materializada que cambia de equipo descarta sus acumulados en lugar de calcularlo")
+    void test_cambio_de_equipo_sin_fila_descarta() {
+        // Parte de sus acciones puede seguir en el diario, que no se vuelca desde esta transacción
+        when(partidoEstadisticaRepository.findById(1)).thenReturn(Optional.empty());
+        EquipoEstadistica antes = new EquipoEstadistica(ID_EQUIPO, 1, 0, new byte[0]);
+        EquipoEstadistica despues = new EquipoEstadistica(40L, 1, 0, new byte[0]);
+        when(equipoEstadisticaRepository.findParaActualizarByIdEquipo(ID_EQUIPO)).thenReturn(Optional.of(antes));
+        when(equipoEstadisticaRepository.findParaActualizarByIdEquipo(40L)).thenReturn(Optional.of(despues));
+
+        estadisticasTemporadaService.alCambiarPartido(new PartidoEvento(1, ID_EQUIPO, 20L, 40L, 20L));
+
+        verify(equipoEstadisticaRepository).delete(antes);
+        verify(equipoEstadisticaRepository).delete(despues);
+        verify(equipoEstadisticaRepository, never()).findParaActualizarByIdEquipo(20L);
+        verifyNoInteractions(estadisticasService);
+    }
+
+    private static EstadisticasPartido gol(EquipoAccion equipo) {
+        EstadisticasPartido estadisticas = new EstadisticasPartido();
+        estadisticas.sumar(equipo, TipoAtaque.Posicional, Evento.Gol, DetalleFinalizacion.Pivote, ZonaLanzamiento.Centro, null, 1);
+        return estadisticas;
+    }
+
+    private static Partido partido(int id, Long local, Long visitante) {
+        Partido partido = new Partido();
+        partido.setIdPartido(id);
+        partido.setIdEquipoLocalAsociado(local);
+        partido.setIdEquipoVisitanteAsociado(visitante);
+        return partido;
+    }
+}
@@ -0,0 +1,152 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.entities.Partido;
+import com.HandballStats_Pro.handballstatspro.enums.FormatoExportacion;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * EXPORTACIÓN: filtros por temporada y competición y datos del partido en cada fila
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("📤 EXPORTACIÓN DE ACCIONES")
+public class ExportacionServiceTest {
+
+    @Mock
+    private PartidoService partidoService;
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private Connection conexion;
+
+    @Mock
+    private PreparedStatement sentencia;
+
+    @Mock
+    private ResultSet filas;
+
+    // Como el de la aplicación: fechas ISO en lugar de arrays
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private ExportacionService exportacionService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        exportacionService = new ExportacionService(partidoService, dataSource, objectMapper, 0);
+        when(dataSource.getConnection()).thenReturn(conexion);
+        when(conexion.prepareStatement(anyString())).thenReturn(sentencia);
+        when(sentencia.executeQuery()).thenReturn(filas);
+
+        // Liga 2024-25, Copa 2024-25 y Liga 2023-24
+        when(partidoService.listarPartidosAccesibles()).thenReturn(List.of(
+                partido(1, "Liga", LocalDate.of(2024, 10, 5)),
+                partido(2, "Copa", LocalDate.of(2024, 11, 9)),
+                partido(3, "Liga", LocalDate.of(2023, 10, 7))));
+        when(partidoService.temporadasPorPartido(anyList())).thenReturn(Map.of(1, "2024-25", 2, "2024-25", 3, "2023-24"));
+
+        when(filas.getInt("id_posesion")).thenReturn(1);
+        when(filas.getString("equipo_accion")).thenReturn("LOCAL");
+        when(filas.getString("tipo_ataque")).thenReturn("Posicional");
+        when(filas.getString("origen_accion")).thenReturn("Juego_Continuado");
+        when(filas.getString("evento")).thenReturn("Gol");
+        when(filas.getBoolean("cambio_posesion")).thenReturn(true);
+    }
+
+    @Test
+    @DisplayName("✅ NDJSON: solo las acciones de los partidos de la temporada y competición pedidas, con los datos del partido")
+    void test_ndjson_filtra_por_temporada_y_competicion() throws Exception {
+        when(filas.next()).thenReturn(true, true, false);
+        when(filas.getInt("id_partido")).thenReturn(1);
+        when(filas.getInt("id_accion")).thenReturn(100, 101);
+        when(filas.getObject("secuencia", Integer.class)).thenReturn(1, 2);
+
+        List<String> lineas = exportar("2024-25", "liga", FormatoExportacion.NDJSON);
+
+        // Un solo partido en la consulta: la Copa es de otra competición y la Liga 2023-24 de otra temporada
+        ArgumentCaptor<String> consulta = ArgumentCaptor.forClass(String.class);
+        verify(conexion).prepareStatement(consulta.capture());
+        assertTrue(consulta.getValue().contains("IN (?)"));
+        verify(sentencia).setObject(1, 1);
+
+        assertEquals(2, lineas.size());
+        JsonNode primera = objectMapper.readTree(lineas.get(0));
+        assertEquals(1, primera.get("idPartido").asInt());
+        assertEquals("2024-10-05", primera.get("fecha").asText());
+        assertEquals("Liga", primera.get("competicion").asText());
+        assertEquals("2024-25", primera.get("temporada").asText());
+        assertEquals("Local1", primera.get("nombreEquipoLocal").asText());
+        assertEquals("Visitante1", primera.get("nombreEquipoVisitante").asText());
+        assertEquals(100, primera.get("idAccion").asInt());
+        assertEquals("Gol", primera.get("evento").asText());
+        assertEquals(101, objectMapper.readTree(lineas.get(1)).get("idAccion").asInt());
+        assertEquals(2, objectMapper.readTree(lineas.get(1)).get("secuencia").asInt());
+    }
+
+    @Test
+    @DisplayName("✅ CSV: cabecera y una fila por acción con las columnas de su partido")
+    void test_csv_con_columnas_del_partido() throws Exception {
+        when(filas.next()).thenReturn(true, true, false);
+        when(filas.getInt("id_partido")).thenReturn(1, 3);
+        when(filas.getInt("id_accion")).thenReturn(100, 300);
+        when(filas.getObject("secuencia", Integer.class)).thenReturn(1, 1);
+
+        List<String> lineas = exportar(null, "Liga", FormatoExportacion.CSV);
+
+        verify(sentencia).setObject(1, 1);
+        verify(sentencia).setObject(2, 3);
+        verify(sentencia, never()).setObject(anyInt(), eq(2));
+
+        assertEquals(3, lineas.size());
+        assertTrue(lineas.get(0).startsWith("idPartido,fecha,competicion,temporada,nombreEquipoLocal,nombreEquipoVisitante,idAccion,"));
+        assertEquals(List.of("3", "2023-10-07", "Liga", "2023-24", "Local3", "Visitante3", "300"),
+                List.of(lineas.get(2).split(",")).subList(0, 7));
+        assertTrue(lineas.get(1).startsWith("1,2024-10-05,Liga,2024-25,Local1,Visitante1,100,"));
+    }
+
+    private List<String> exportar(String temporada, String competicion, FormatoExportacion formato) throws Exception {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        exportacionService.exportar(temporada, competicion, formato).writeTo(salida);
+        return salida.toString(StandardCharsets.UTF_8).lines().filter(linea -> !linea.isBlank()).toList();
+    }
+
+    private static Partido partido(int id, String competicion, LocalDate fecha) {
+        Partido partido = new Partido();
+        partido.setIdPartido(id);
+        partido.setCompeticion(competicion);
+        partido.setFecha(fecha);
+        partido.setNombreEquipoLocal("Local" + id);
+        partido.setNombreEquipoVisitante("Visitante" + id);
+        partido.setIdEquipoLocalAsociado(10L * id);
+        return partido;
+    }
+}
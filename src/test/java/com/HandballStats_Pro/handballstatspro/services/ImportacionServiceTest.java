@@ -0,0 +1,99 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.dto.AccionDTO;
+import com.HandballStats_Pro.handballstatspro.dto.InformeImportacionDTO;
+import com.HandballStats_Pro.handballstatspro.dto.PartidoResponseDTO;
+import com.HandballStats_Pro.handballstatspro.entities.Accion;
+import com.HandballStats_Pro.handballstatspro.enums.FormatoImportacion;
+import com.HandballStats_Pro.handballstatspro.enums.OrigenAccion;
+import com.HandballStats_Pro.handballstatspro.exceptions.ApiException;
+import com.HandballStats_Pro.handballstatspro.services.UltimaAccionCache.EstadoCola;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * IMPORTACIÓN MASIVA: una pasada, bloques transaccionales e informe por fila
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("📥 IMPORTACIÓN MASIVA")
+public class ImportacionServiceTest {
+
+    private static final String CABECERA = "clavePartido,nombreEquipoLocal,nombreEquipoVisitante,fecha,idPosesion,equipoAccion,"
+            + "tipoAtaque,origenAccion,evento,detalleFinalizacion,zonaLanzamiento,detalleEvento,cambioPosesion\n";
+
+    @Mock
+    private AccionService accionService;
+
+    @Mock
+    private PartidoService partidoService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    @DisplayName("✅ Las filas con error se saltan y el resto se guarda en bloques")
+    void test_importa_csv_con_errores_por_fila() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        PartidoResponseDTO partido = new PartidoResponseDTO();
+        partido.setIdPartido(7);
+        when(partidoService.crearPartido(any())).thenReturn(partido);
+        when(accionService.validarParaImportacion(any(), any())).thenAnswer(invocation -> {
+            AccionDTO accionDTO = invocation.getArgument(0);
+            EstadoCola anterior = invocation.getArgument(1);
+            if (accionDTO.getOrigenAccion() == OrigenAccion.Rebote_directo) {
+                throw new ApiException(HttpStatus.BAD_REQUEST, "INVALID_REBOUND_SEQUENCE", "Rebote tras cambio de posesión");
+            }
+            Accion accion = new Accion();
+            accion.setIdPartido(accionDTO.getIdPartido());
+            accion.setOrigenAccion(accionDTO.getOrigenAccion());
+            accion.setCambioPosesion(accionDTO.getCambioPosesion());
+            accion.setSecuencia(anterior.siguienteSecuencia());
+            return accion;
+        });
+
+        String csv = CABECERA
+                + "p1,Local,Visitante,2024-03-02,1,LOCAL,Posicional,Juego_Continuado,Gol,Pivote,Centro,,true\n"
+                + "p1,Local,Visitante,2024-03-02,2,VISITANTE,Posicional,Juego_Continuado,Invento,Pivote,Centro,,true\n"
+                + "p1,Local,Visitante,2024-03-02,2,VISITANTE,Posicional,Rebote_directo,Gol,Pivote,Centro,,true\n"
+                + "p1,Local,Visitante,2024-03-02,2,VISITANTE,Posicional,Juego_Continuado,Gol,Pivote,Centro,,true\n"
+                + "p1,Local,Visitante,2024-03-02,3,LOCAL,Posicional,Juego_Continuado,Gol,Pivote,Centro,,true\n"
+                + ",Local,Visitante,2024-03-02,3,LOCAL,Posicional,Juego_Continuado,Gol,Pivote,Centro,,true\n";
+
+        InformeImportacionDTO informe = nuevoServicio(2).importar(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), FormatoImportacion.CSV);
+
+        assertEquals(6, informe.getFilasLeidas());
+        assertEquals(1, informe.getPartidosCreados());
+        assertEquals(3, informe.getAccionesCreadas());
+        assertEquals(3, informe.getFilasConError());
+        assertEquals(List.of("INVALID_ROW", "INVALID_REBOUND_SEQUENCE", "MATCH_KEY_REQUIRED"),
+                informe.getErrores().stream().map(error -> error.getCodigo()).toList());
+        assertEquals(List.of(2L, 3L, 6L), informe.getErrores().stream().map(error -> error.getFila()).toList());
+
+        // Bloques de 2: uno lleno durante la lectura y el resto al terminar
+        verify(accionService, times(2)).guardarImportadas(anyList());
+        verify(partidoService, times(1)).crearPartido(any());
+    }
+
+    private ImportacionService nuevoServicio(int tamanoBloque) {
+        return new ImportacionService(accionService, partidoService, new ObjectMapper(),
+                Validation.buildDefaultValidatorFactory().getValidator(), transactionManager, tamanoBloque, 100);
+    }
+}
@@ -0,0 +1,186 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.dto.AccionResponseDTO;
+import com.HandballStats_Pro.handballstatspro.dto.GrupoAnalisisDTO;
+import com.HandballStats_Pro.handballstatspro.dto.ResultadoAnalisisDTO;
+import com.HandballStats_Pro.handballstatspro.entities.Accion;
+import com.HandballStats_Pro.handballstatspro.enums.*;
+import com.HandballStats_Pro.handballstatspro.exceptions.ApiException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * ÍNDICE DE ANÁLISIS: carga, mantenimiento con los eventos y cambios durante la carga
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+@DisplayName("🧮 ÍNDICE DE ANÁLISIS")
+public class IndiceAccionesTest {
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private Connection conexion;
+
+    @Mock
+    private Statement sentencia;
+
+    @Mock
+    private ResultSet filas;
+
+    private IndiceAcciones indice;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        indice = new IndiceAcciones(dataSource, 0);
+        when(dataSource.getConnection()).thenReturn(conexion);
+        when(conexion.createStatement()).thenReturn(sentencia);
+        when(sentencia.executeQuery(anyString())).thenReturn(filas);
+    }
+
+    @Test
+    @DisplayName("✅ Carga las acciones de la base de datos y responde filtros y agrupaciones sin volver a ella")
+    void test_carga_y_consulta() throws Exception {
+        assertEquals("ANALYSIS_INDEX_LOADING", assertThrows(ApiException.class,
+                () -> indice.consultar(List.of(1), Map.of(), List.of(), Map.of())).getErrorCode());
+        filas(new Object[][]{
+                {1, 1, "LOCAL", "Posicional", "Juego_Continuado", "Gol", "Pivote", "Centro", null},
+                {2, 1, "VISITANTE", "Contraataque", "Juego_Continuado", "Perdida", null, null, "Pasos"},
+                {3, 2, "LOCAL", "Posicional", "Juego_Continuado", "Gol", "Pivote", "Centro", null}});
+
+        indice.cargar();
+
+        ResultadoAnalisisDTO partido = indice.consultar(List.of(1), Map.of(), List.of(DimensionAccion.EQUIPO), Map.of());
+        assertEquals(2, partido.getAcciones());
+        assertEquals(Map.of("LOCAL", 1, "VISITANTE", 1), porValor(partido, DimensionAccion.EQUIPO));
+
+        ResultadoAnalisisDTO goles = indice.consultar(List.of(1, 2),
+                Map.of(DimensionAccion.EVENTO, Set.of(Evento.Gol.ordinal())), List.of(), Map.of());
+        assertEquals(2, goles.getAcciones());
+        // Filtrar no toca los bitmaps del índice
+        assertEquals(1, contar(Evento.Gol));
+        assertEquals(2, indice.consultar(List.of(1), Map.of(), List.of(), Map.of()).getAcciones());
+        // Una sola conexión: la de la carga
+        verify(dataSource).getConnection();
+    }
+
+    @Test
+    @DisplayName("✅ Altas, ediciones y borrados confirmados se aplican al índice uno a uno")
+    void test_mantenimiento_incremental() throws Exception {
+        filas(new Object[][]{});
+        indice.cargar();
+
+        AccionResponseDTO gol = respuesta(5, Evento.Gol);
+        indice.alCambiarAccion(AccionEvento.creada(gol));
+        assertEquals(1, contar(Evento.Gol));
+
+        AccionResponseDTO perdida = respuesta(5, Evento.Perdida);
+        indice.alCambiarAccion(AccionEvento.actualizada(gol, perdida));
+        assertEquals(0, contar(Evento.Gol));
+        assertEquals(1, contar(Evento.Perdida));
+
+        indice.alCambiarAccion(AccionEvento.eliminada(perdida));
+        assertEquals(0, indice.consultar(List.of(1), Map.of(), List.of(), Map.of()).getAcciones());
+    }
+
+    @Test
+    @DisplayName("✅ Con el diario activo, el alta sin id se salta y la acción entra con su volcado")
+    void test_alta_del_diario_entra_al_volcarse() throws Exception {
+        filas(new Object[][]{});
+        indice.cargar();
+
+        indice.alCambiarAccion(AccionEvento.creada(respuesta(null, Evento.Gol)));
+        assertEquals(0, contar(Evento.Gol));
+
+        Accion volcada = new Accion();
+        volcada.setIdAccion(7);
+        volcada.setIdPartido(1);
+        volcada.setEquipoAccion(EquipoAccion.LOCAL);
+        volcada.setEvento(Evento.Gol);
+        indice.alVolcarAcciones(new AccionesVolcadas(List.of(volcada)));
+        assertEquals(1, contar(Evento.Gol));
+    }
+
+    @Test
+    @DisplayName("✅ Los cambios confirmados durante la carga ganan a las filas que la carga lee después")
+    void test_cambios_durante_la_carga() throws Exception {
+        AccionResponseDTO golUno = respuesta(1, Evento.Gol);
+        AccionResponseDTO golDos = respuesta(2, Evento.Gol);
+        // Antes de leer la primera fila se borra la acción 1 y la 2 pasa a pérdida: la carga las lee ya antiguas
+        filas(new Object[][]{
+                {1, 1, "LOCAL", "Posicional", "Juego_Continuado", "Gol", null, null, null},
+                {2, 1, "LOCAL", "Posicional", "Juego_Continuado", "Gol", null, null, null}},
+                () -> {
+                    indice.alCambiarAccion(AccionEvento.eliminada(golUno));
+                    indice.alCambiarAccion(AccionEvento.actualizada(golDos, respuesta(2, Evento.Perdida)));
+                });
+
+        indice.cargar();
+
+        assertEquals(1, indice.consultar(List.of(1), Map.of(), List.of(), Map.of()).getAcciones());
+        assertEquals(0, contar(Evento.Gol));
+        assertEquals(1, contar(Evento.Perdida));
+    }
+
+    private int contar(Evento evento) {
+        return indice.consultar(List.of(1), Map.of(DimensionAccion.EVENTO, Set.of(evento.ordinal())), List.of(), Map.of())
+                .getAcciones();
+    }
+
+    private static Map<String, Integer> porValor(ResultadoAnalisisDTO resultado, DimensionAccion dimension) {
+        return resultado.getGrupos().stream()
+                .collect(Collectors.toMap(grupo -> grupo.getValores().get(dimension), GrupoAnalisisDTO::getAcciones));
+    }
+
+    private void filas(Object[][] contenido) throws Exception {
+        filas(contenido, () -> { });
+    }
+
+    // Columnas como en la consulta del índice: id_accion, id_partido y los siete enums por nombre
+    private void filas(Object[][] contenido, Runnable alEmpezar) throws Exception {
+        AtomicInteger actual = new AtomicInteger(-1);
+        when(filas.next()).thenAnswer(invocacion -> {
+            if (actual.get() < 0) {
+                alEmpezar.run();
+            }
+            return actual.incrementAndGet() < contenido.length;
+        });
+        when(filas.getInt(anyInt())).thenAnswer(invocacion ->
+                (Integer) contenido[actual.get()][(int) invocacion.getArgument(0) - 1]);
+        when(filas.getString(anyInt())).thenAnswer(invocacion ->
+                (String) contenido[actual.get()][(int) invocacion.getArgument(0) - 1]);
+    }
+
+    private static AccionResponseDTO respuesta(Integer idAccion, Evento evento) {
+        AccionResponseDTO dto = new AccionResponseDTO();
+        dto.setIdAccion(idAccion);
+        dto.setIdPartido(1);
+        dto.setEquipoAccion(EquipoAccion.LOCAL);
+        dto.setTipoAtaque(TipoAtaque.Posicional);
+        dto.setOrigenAccion(OrigenAccion.Juego_Continuado);
+        dto.setEvento(evento);
+        return dto;
+    }
+}
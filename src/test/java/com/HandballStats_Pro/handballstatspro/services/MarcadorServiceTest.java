@@ -0,0 +1,177 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.dto.AccionResponseDTO;
+import com.HandballStats_Pro.handballstatspro.dto.ProgresionMarcadorDTO;
+import com.HandballStats_Pro.handballstatspro.entities.Accion;
+import com.HandballStats_Pro.handballstatspro.entities.Partido;
+import com.HandballStats_Pro.handballstatspro.entities.Posesion;
+import com.HandballStats_Pro.handballstatspro.entities.ProgresionMarcador;
+import com.HandballStats_Pro.handballstatspro.enums.EquipoAccion;
+import com.HandballStats_Pro.handballstatspro.enums.Evento;
+import com.HandballStats_Pro.handballstatspro.enums.TipoCambioAccion;
+import com.HandballStats_Pro.handballstatspro.repositories.AccionRepository;
+import com.HandballStats_Pro.handballstatspro.repositories.PartidoRepository;
+import com.HandballStats_Pro.handballstatspro.repositories.ProgresionMarcadorRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * MARCADOR: mantenimiento incremental, progresión gol a gol y reconstrucción desde las acciones
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("🥅 MARCADOR DERIVADO")
+public class MarcadorServiceTest {
+
+    private static final Integer ID_PARTIDO = 1;
+
+    @Mock
+    private PartidoRepository partidoRepository;
+
+    @Mock
+    private ProgresionMarcadorRepository progresionMarcadorRepository;
+
+    @Mock
+    private AccionRepository accionRepository;
+
+    @Mock
+    private PosesionService posesionService;
+
+    @Mock
+    private PartidoService partidoService;
+
+    @Mock
+    private BloqueoPartidos bloqueoPartidos;
+
+    @Mock
+    private DiarioAcciones diarioAcciones;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private MarcadorService marcadorService;
+
+    @Test
+    @DisplayName("✅ Un gol nuevo suma al marcador y entra en su sitio de la progresión; cambiarlo de equipo lo traslada")
+    void test_mantenimiento_incremental() {
+        // Progresión guardada: visitante en la secuencia 2 y local en la 8
+        ProgresionMarcador fila = new ProgresionMarcador(ID_PARTIDO, bytes(2 << 1 | 1, 8 << 1));
+        when(progresionMarcadorRepository.findParaActualizarByIdPartido(ID_PARTIDO)).thenReturn(Optional.of(fila));
+
+        AccionResponseDTO gol = accion(5, EquipoAccion.LOCAL, Evento.Gol);
+        marcadorService.alCambiarAccion(new AccionEvento(TipoCambioAccion.CREADA, ID_PARTIDO, null, gol));
+        verify(partidoRepository).sumarGoles(ID_PARTIDO, 1, 0);
+        assertArrayEquals(bytes(2 << 1 | 1, 5 << 1, 8 << 1), fila.getGoles());
+
+        AccionResponseDTO delVisitante = accion(5, EquipoAccion.VISITANTE, Evento.Gol);
+        marcadorService.alCambiarAccion(new AccionEvento(TipoCambioAccion.ACTUALIZADA, ID_PARTIDO, gol, delVisitante));
+        verify(partidoRepository).sumarGoles(ID_PARTIDO, -1, 1);
+        assertArrayEquals(bytes(2 << 1 | 1, 5 << 1 | 1, 8 << 1), fila.getGoles());
+
+        // Una acción que no es gol no toca nada
+        marcadorService.alCambiarAccion(new AccionEvento(TipoCambioAccion.CREADA, ID_PARTIDO, null,
+                accion(9, EquipoAccion.LOCAL, Evento.Lanzamiento_Parado)));
+        verify(partidoRepository, times(2)).sumarGoles(anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    @DisplayName("✅ La progresión da el marcador tras cada gol y la posesión en que se marcó")
+    void test_progresion() {
+        when(partidoRepository.findById(ID_PARTIDO)).thenReturn(Optional.of(new Partido()));
+        when(partidoService.puedeAccederPartido(any())).thenReturn(true);
+        when(progresionMarcadorRepository.findById(ID_PARTIDO))
+                .thenReturn(Optional.of(new ProgresionMarcador(ID_PARTIDO, bytes(2 << 1 | 1, 5 << 1, 8 << 1))));
+        when(posesionService.posesiones(ID_PARTIDO)).thenReturn(List.of(posesion(1, 1), posesion(2, 4), posesion(3, 7)));
+
+        ProgresionMarcadorDTO progresion = marcadorService.obtenerProgresion(ID_PARTIDO);
+
+        assertEquals(2, progresion.getMarcador().getGolesLocal());
+        assertEquals(1, progresion.getMarcador().getGolesVisitante());
+        assertEquals(3, progresion.getGoles().size());
+        assertEquals(EquipoAccion.VISITANTE, progresion.getGoles().get(0).getEquipo());
+        assertEquals(1, progresion.getGoles().get(0).getNumeroPosesion());
+        assertEquals(2, progresion.getGoles().get(1).getNumeroPosesion());
+        assertEquals(1, progresion.getGoles().get(1).getGolesLocal());
+        assertEquals(3, progresion.getGoles().get(2).getNumeroPosesion());
+        assertEquals(2, progresion.getGoles().get(2).getGolesLocal());
+    }
+
+    @Test
+    @DisplayName("✅ La reconstrucción vuelca el diario del partido antes de leer sus goles y fija el marcador")
+    void test_reconstruir_vuelca_el_diario() {
+        when(accionRepository.findByIdPartidoAndEventoOrderBySecuenciaAsc(ID_PARTIDO, Evento.Gol))
+                .thenReturn(List.of(gol(2, EquipoAccion.VISITANTE), gol(5, EquipoAccion.LOCAL), gol(8, EquipoAccion.LOCAL)));
+
+        assertArrayEquals(new int[]{2 << 1 | 1, 5 << 1, 8 << 1}, marcadorService.reconstruir(ID_PARTIDO));
+
+        InOrder orden = inOrder(bloqueoPartidos, diarioAcciones, accionRepository, partidoRepository);
+        orden.verify(bloqueoPartidos).bloquearHastaFinTransaccion(ID_PARTIDO);
+        orden.verify(diarioAcciones).volcarPartido(ID_PARTIDO);
+        orden.verify(accionRepository).findByIdPartidoAndEventoOrderBySecuenciaAsc(ID_PARTIDO, Evento.Gol);
+        orden.verify(partidoRepository).fijarGoles(ID_PARTIDO, 2, 1);
+    }
+
+    @Test
+    @DisplayName("✅ Los partidos sin marcador se derivan al arrancar en su propio hilo")
+    void test_derivacion_en_segundo_plano() {
+        AtomicReference<String> hilo = new AtomicReference<>();
+        when(partidoRepository.findIdsSinMarcador()).thenAnswer(invocacion -> {
+            hilo.set(Thread.currentThread().getName());
+            return List.of(ID_PARTIDO);
+        });
+        when(accionRepository.findByIdPartidoAndEventoOrderBySecuenciaAsc(ID_PARTIDO, Evento.Gol))
+                .thenReturn(List.of(gol(3, EquipoAccion.LOCAL)));
+
+        marcadorService.alArrancar();
+
+        verify(partidoRepository, timeout(2000)).fijarGoles(ID_PARTIDO, 1, 0);
+        assertEquals("derivacion-marcador", hilo.get());
+        marcadorService.detener();
+    }
+
+    private static Accion gol(int secuencia, EquipoAccion equipo) {
+        Accion accion = new Accion();
+        accion.setIdPartido(ID_PARTIDO);
+        accion.setSecuencia(secuencia);
+        accion.setEquipoAccion(equipo);
+        accion.setEvento(Evento.Gol);
+        return accion;
+    }
+
+    private static AccionResponseDTO accion(int secuencia, EquipoAccion equipo, Evento evento) {
+        AccionResponseDTO accion = new AccionResponseDTO();
+        accion.setIdPartido(ID_PARTIDO);
+        accion.setSecuencia(secuencia);
+        accion.setEquipoAccion(equipo);
+        accion.setEvento(evento);
+        return accion;
+    }
+
+    private static Posesion posesion(int numero, int secuenciaInicio) {
+        Posesion posesion = new Posesion();
+        posesion.setNumero(numero);
+        posesion.setSecuenciaInicio(secuenciaInicio);
+        return posesion;
+    }
+
+    private static byte[] bytes(int... goles) {
+        ByteBuffer buffer = ByteBuffer.allocate(goles.length * Integer.BYTES);
+        buffer.asIntBuffer().put(goles);
+        return buffer.array();
+    }
+}
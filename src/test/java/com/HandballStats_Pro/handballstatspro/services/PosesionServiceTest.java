@@ -0,0 +1,180 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.dto.AccionResponseDTO;
+import com.HandballStats_Pro.handballstatspro.entities.Accion;
+import com.HandballStats_Pro.handballstatspro.entities.Posesion;
+import com.HandballStats_Pro.handballstatspro.enums.EquipoAccion;
+import com.HandballStats_Pro.handballstatspro.enums.Evento;
+import com.HandballStats_Pro.handballstatspro.enums.OrigenAccion;
+import com.HandballStats_Pro.handballstatspro.enums.TipoAtaque;
+import com.HandballStats_Pro.handballstatspro.repositories.AccionRepository;
+import com.HandballStats_Pro.handballstatspro.repositories.PartidoRepository;
+import com.HandballStats_Pro.handballstatspro.repositories.PosesionRepository;
+import com.HandballStats_Pro.handballstatspro.services.UltimaAccionCache.EstadoCola;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * POSESIONES: derivación desde la secuencia de acciones y mantenimiento incremental
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("🔄 POSESIONES")
+public class PosesionServiceTest {
+
+    private static final Integer ID_PARTIDO = 1;
+
+    @Mock
+    private PosesionRepository posesionRepository;
+
+    @Mock
+    private AccionRepository accionRepository;
+
+    @Mock
+    private PartidoRepository partidoRepository;
+
+    @Mock
+    private PartidoService partidoService;
+
+    @Mock
+    private BloqueoPartidos bloqueoPartidos;
+
+    @Mock
+    private DiarioAcciones diarioAcciones;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private PosesionService posesionService;
+
+    @Test
+    @DisplayName("✅ Rebotes en la misma posesión y cambio de equipo al cambiar la posesión")
+    void test_derivar_posesiones() {
+        List<Posesion> posesiones = PosesionService.derivar(ID_PARTIDO, 1, List.of(
+                accion(1, EquipoAccion.LOCAL, OrigenAccion.Juego_Continuado, Evento.Lanzamiento_Parado, false),
+                accion(2, EquipoAccion.LOCAL, OrigenAccion.Rebote_directo, Evento.Gol, true),
+                accion(3, EquipoAccion.VISITANTE, OrigenAccion.Juego_Continuado, Evento.Perdida, true),
+                accion(4, EquipoAccion.LOCAL, OrigenAccion.Juego_Continuado, Evento.Lanzamiento_Fuera, false)));
+
+        assertEquals(3, posesiones.size());
+        Posesion primera = posesiones.get(0);
+        assertEquals(EquipoAccion.LOCAL, primera.getEquipo());
+        assertEquals(2, primera.getNumeroAcciones());
+        assertEquals(2, primera.getLanzamientos());
+        assertEquals(1, primera.getGoles());
+        assertEquals(Evento.Gol, primera.getResultado());
+        assertTrue(primera.isCerrada());
+        assertEquals(0, posesiones.get(1).getLanzamientos());
+        assertEquals(3, posesiones.get(2).getNumero());
+        assertFalse(posesiones.get(2).isCerrada());
+    }
+
+    @Test
+    @DisplayName("✅ Una acción nueva alarga la posesión abierta sin releer acciones")
+    void test_accion_nueva_alarga_posesion_abierta() {
+        Posesion abierta = PosesionService.derivar(ID_PARTIDO, 1, List.of(
+                accion(1, EquipoAccion.LOCAL, OrigenAccion.Juego_Continuado, Evento.Lanzamiento_Parado, false))).get(0);
+        when(posesionRepository.findFirstByIdPartidoOrderByNumeroDesc(ID_PARTIDO)).thenReturn(Optional.of(abierta));
+
+        posesionService.alCambiarAccion(AccionEvento.creada(
+                respuesta(2, EquipoAccion.LOCAL, OrigenAccion.Rebote_directo, Evento.Gol, true)));
+
+        assertEquals(2, abierta.getNumeroAcciones());
+        assertEquals(2, abierta.getSecuenciaFin());
+        assertTrue(abierta.isCerrada());
+        verify(posesionRepository, never()).save(any());
+        verifyNoInteractions(accionRepository);
+    }
+
+    @Test
+    @DisplayName("✅ Tras una posesión cerrada, la acción nueva abre la siguiente")
+    void test_accion_nueva_abre_posesion() {
+        Posesion cerrada = PosesionService.derivar(ID_PARTIDO, 1, List.of(
+                accion(1, EquipoAccion.LOCAL, OrigenAccion.Juego_Continuado, Evento.Gol, true))).get(0);
+        when(posesionRepository.findFirstByIdPartidoOrderByNumeroDesc(ID_PARTIDO)).thenReturn(Optional.of(cerrada));
+
+        posesionService.alCambiarAccion(AccionEvento.creada(
+                respuesta(2, EquipoAccion.VISITANTE, OrigenAccion.Juego_Continuado, Evento.Perdida, true)));
+
+        verify(posesionRepository).save(argThat(posesion -> posesion.getNumero() == 2
+                && posesion.getEquipo() == EquipoAccion.VISITANTE && posesion.getSecuenciaInicio() == 2));
+    }
+
+    @Test
+    @DisplayName("✅ Con el diario activo, una acción fuera de orden descarta las posesiones en lugar de rehacerlas")
+    void test_accion_fuera_de_orden_con_diario_descarta_posesiones() {
+        List<Posesion> existentes = PosesionService.derivar(ID_PARTIDO, 1, List.of(
+                accion(1, EquipoAccion.LOCAL, OrigenAccion.Juego_Continuado, Evento.Gol, true),
+                accion(3, EquipoAccion.VISITANTE, OrigenAccion.Juego_Continuado, Evento.Perdida, true)));
+        when(diarioAcciones.activo()).thenReturn(true);
+        when(posesionRepository.findFirstByIdPartidoOrderByNumeroDesc(ID_PARTIDO)).thenReturn(Optional.of(existentes.get(1)));
+        when(posesionRepository.findByIdPartidoOrderByNumeroAsc(ID_PARTIDO)).thenReturn(existentes);
+
+        posesionService.alCambiarAccion(AccionEvento.creada(
+                respuesta(2, EquipoAccion.LOCAL, OrigenAccion.Juego_Continuado, Evento.Lanzamiento_Fuera, true)));
+
+        // Las acciones 1 y 3 pueden no estar aún en la base de datos: no se leen desde aquí
+        verify(posesionRepository).deleteAll(existentes);
+        verifyNoInteractions(accionRepository);
+        verify(diarioAcciones, never()).volcarPartido(any());
+    }
+
+    @Test
+    @DisplayName("✅ Al leer un partido sin posesiones se vuelca su diario antes de leer las acciones")
+    void test_reconstruccion_al_leer_vuelca_el_diario() {
+        when(posesionRepository.countByIdPartido(ID_PARTIDO)).thenReturn(0L);
+        when(accionRepository.countByIdPartido(ID_PARTIDO)).thenReturn(0L);
+        when(diarioAcciones.colaPendiente(ID_PARTIDO)).thenReturn(new EstadoCola(null, 2, OrigenAccion.Juego_Continuado, Evento.Gol, true));
+        List<Accion> acciones = List.of(
+                accion(1, EquipoAccion.LOCAL, OrigenAccion.Juego_Continuado, Evento.Gol, true),
+                accion(2, EquipoAccion.VISITANTE, OrigenAccion.Juego_Continuado, Evento.Gol, true));
+        when(accionRepository.findByIdPartidoOrderBySecuenciaAsc(ID_PARTIDO)).thenReturn(acciones);
+        when(posesionRepository.saveAll(anyList())).thenAnswer(invocacion -> invocacion.getArgument(0));
+
+        List<Posesion> posesiones = posesionService.posesiones(ID_PARTIDO);
+
+        assertEquals(2, posesiones.size());
+        InOrder orden = inOrder(bloqueoPartidos, diarioAcciones, accionRepository);
+        orden.verify(bloqueoPartidos).bloquearHastaFinTransaccion(ID_PARTIDO);
+        orden.verify(diarioAcciones).volcarPartido(ID_PARTIDO);
+        orden.verify(accionRepository).findByIdPartidoOrderBySecuenciaAsc(ID_PARTIDO);
+        verify(posesionRepository, never()).findByIdPartidoOrderByNumeroAsc(anyInt());
+    }
+
+    private static Accion accion(int secuencia, EquipoAccion equipo, OrigenAccion origen, Evento evento, boolean cambioPosesion) {
+        Accion accion = new Accion();
+        accion.setIdPartido(ID_PARTIDO);
+        accion.setSecuencia(secuencia);
+        accion.setEquipoAccion(equipo);
+        accion.setTipoAtaque(TipoAtaque.Posicional);
+        accion.setOrigenAccion(origen);
+        accion.setEvento(evento);
+        accion.setCambioPosesion(cambioPosesion);
+        return accion;
+    }
+
+    private static AccionResponseDTO respuesta(int secuencia, EquipoAccion equipo, OrigenAccion origen, Evento evento, boolean cambioPosesion) {
+        AccionResponseDTO dto = new AccionResponseDTO();
+        dto.setIdPartido(ID_PARTIDO);
+        dto.setSecuencia(secuencia);
+        dto.setEquipoAccion(equipo);
+        dto.setTipoAtaque(TipoAtaque.Posicional);
+        dto.setOrigenAccion(origen);
+        dto.setEvento(evento);
+        dto.setCambioPosesion(cambioPosesion);
+        return dto;
+    }
+}
@@ -0,0 +1,217 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.dto.RecalculoDTO;
+import com.HandballStats_Pro.handballstatspro.entities.Equipo;
+import com.HandballStats_Pro.handballstatspro.enums.*;
+import com.HandballStats_Pro.handballstatspro.exceptions.ApiException;
+import com.HandballStats_Pro.handballstatspro.repositories.EquipoRepository;
+import com.HandballStats_Pro.handballstatspro.repositories.PartidoRepository;
+import com.HandballStats_Pro.handballstatspro.repositories.PartidoRepository.EquiposPartido;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * RECÁLCULO: reparto en paralelo de los partidos, combinación de los parciales por equipo, ritmo y cancelación
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("🔁 RECÁLCULO DE ESTADÍSTICAS")
+public class RecalculoServiceTest {
+
+    @Mock
+    private PartidoRepository partidoRepository;
+
+    @Mock
+    private EquipoRepository equipoRepository;
+
+    @Mock
+    private PosesionService posesionService;
+
+    @Mock
+    private MarcadorService marcadorService;
+
+    @Mock
+    private TransicionesService transicionesService;
+
+    @Mock
+    private EstadisticasService estadisticasService;
+
+    @Mock
+    private EstadisticasTemporadaService estadisticasTemporadaService;
+
+    @Mock
+    private EnfrentamientosService enfrentamientosService;
+
+    @Mock
+    private ClasificacionService clasificacionService;
+
+    private RecalculoService recalculoService;
+
+    @BeforeEach
+    void setUp() {
+        recalculoService = servicio(0);
+    }
+
+    @Test
+    @DisplayName("✅ Los parciales de todas las hojas suman lo mismo que un recorrido secuencial")
+    void test_recalculo_completo() throws InterruptedException {
+        // 200 partidos (varias hojas): el equipo 1 de local y el 2 de visitante, con un gol local en cada uno
+        List<EquiposPartido> partidos = new ArrayList<>();
+        for (int i = 1; i <= 200; i++) {
+            partidos.add(partido(i, 1L, 2L));
+        }
+        when(partidoRepository.findEquiposAsociados()).thenReturn(partidos);
+        when(estadisticasService.reconstruir(anyInt())).thenAnswer(invocacion -> {
+            EstadisticasPartido estadisticas = new EstadisticasPartido();
+            estadisticas.sumar(EquipoAccion.LOCAL, TipoAtaque.Posicional, Evento.Gol, DetalleFinalizacion.Pivote,
+                    ZonaLanzamiento.Centro, null, 1);
+            return estadisticas;
+        });
+        when(equipoRepository.findAll()).thenReturn(List.of(equipo(1L), equipo(2L), equipo(3L)));
+
+        recalculoService.iniciar();
+        RecalculoDTO resultado = esperarFin();
+
+        assertEquals(EstadoRecalculo.COMPLETADO, resultado.getEstado());
+        assertEquals(200, resultado.getPartidosProcesados());
+        assertEquals(0, resultado.getErrores());
+        ArgumentCaptor<EstadisticasPartido> local = ArgumentCaptor.forClass(EstadisticasPartido.class);
+        ArgumentCaptor<EstadisticasPartido> visitante = ArgumentCaptor.forClass(EstadisticasPartido.class);
+        ArgumentCaptor<EstadisticasPartido> sinPartidos = ArgumentCaptor.forClass(EstadisticasPartido.class);
+        verify(estadisticasTemporadaService).guardarEquipo(eq(1L), eq(200), local.capture());
+        verify(estadisticasTemporadaService).guardarEquipo(eq(2L), eq(200), visitante.capture());
+        verify(estadisticasTemporadaService).guardarEquipo(eq(3L), eq(0), sinPartidos.capture());
+        // Cada equipo desde su punto de vista: los goles del 1 son los recibidos por el 2
+        assertEquals(200, local.getValue().goles(EquipoAccion.LOCAL));
+        assertEquals(0, visitante.getValue().goles(EquipoAccion.LOCAL));
+        assertEquals(200, visitante.getValue().goles(EquipoAccion.VISITANTE));
+        assertEquals(0, sinPartidos.getValue().getAcciones());
+    }
+
+    @Test
+    @DisplayName("✅ Los partidos empiezan al ritmo configurado, repartido entre todos los hilos")
+    void test_ritmo_limitado() throws InterruptedException {
+        // 20 partidos por segundo: el quinto no empieza antes de 200 ms
+        recalculoService = servicio(20);
+        when(partidoRepository.findEquiposAsociados()).thenReturn(List.of(
+                partido(1, null, null), partido(2, null, null), partido(3, null, null),
+                partido(4, null, null), partido(5, null, null)));
+        AtomicLong ultimoInicio = new AtomicLong();
+        doAnswer(invocacion -> {
+            ultimoInicio.accumulateAndGet(System.nanoTime(), Math::max);
+            return null;
+        }).when(posesionService).reconstruir(anyInt());
+
+        long inicio = System.nanoTime();
+        recalculoService.iniciar();
+
+        assertEquals(EstadoRecalculo.COMPLETADO, esperarFin().getEstado());
+        assertTrue(ultimoInicio.get() - inicio >= TimeUnit.MILLISECONDS.toNanos(190),
+                "Los partidos empezaron antes de su turno");
+        verify(posesionService, times(5)).reconstruir(anyInt());
+    }
+
+    @Test
+    @DisplayName("✅ Al cancelar se dejan de recalcular partidos, no se tocan los acumulados y se puede volver a lanzar")
+    void test_cancelar_recalculo() throws InterruptedException {
+        // 100 partidos a 20 por segundo: cinco segundos si nadie lo para
+        recalculoService = servicio(20);
+        List<EquiposPartido> partidos = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            partidos.add(partido(i, 1L, 2L));
+        }
+        when(partidoRepository.findEquiposAsociados()).thenReturn(partidos);
+        when(estadisticasService.reconstruir(anyInt())).thenReturn(new EstadisticasPartido());
+
+        recalculoService.iniciar();
+        while (recalculoService.obtener().getPartidosProcesados() == 0) {
+            Thread.sleep(5);
+        }
+        assertEquals(EstadoRecalculo.EN_CURSO, recalculoService.cancelar().getEstado());
+        RecalculoDTO resultado = esperarFin();
+
+        assertEquals(EstadoRecalculo.CANCELADO, resultado.getEstado());
+        assertTrue(resultado.getPartidosProcesados() < 100);
+        assertNotNull(resultado.getFin());
+        verify(estadisticasTemporadaService, never()).guardarEquipo(anyLong(), anyInt(), any());
+        // Ya no se anotan equipos cambiados
+        recalculoService.alCambiarAccion(new AccionEvento(TipoCambioAccion.CREADA, 1, null, null));
+        verify(partidoRepository, never()).findById(anyInt());
+        assertNotEquals(resultado.getId(), recalculoService.iniciar().getId());
+        recalculoService.cancelar();
+        esperarFin();
+    }
+
+    @Test
+    @DisplayName("✅ Un Error al guardar los acumulados deja el recálculo como fallido")
+    void test_error_deja_fallido() throws InterruptedException {
+        when(partidoRepository.findEquiposAsociados()).thenReturn(List.of());
+        when(equipoRepository.findAll()).thenThrow(new StackOverflowError());
+
+        recalculoService.iniciar();
+
+        assertEquals(EstadoRecalculo.FALLIDO, esperarFin().getEstado());
+    }
+
+    @Test
+    @DisplayName("❌ No se puede cancelar sin un recálculo en curso")
+    void test_cancelar_sin_recalculo() {
+        ApiException error = assertThrows(ApiException.class, recalculoService::cancelar);
+        assertEquals("NO_RECALCULATION_IN_PROGRESS", error.getErrorCode());
+    }
+
+    private RecalculoService servicio(int partidosPorSegundo) {
+        return new RecalculoService(partidoRepository, equipoRepository, posesionService, marcadorService,
+                transicionesService, estadisticasService, estadisticasTemporadaService, enfrentamientosService,
+                clasificacionService, 4, partidosPorSegundo);
+    }
+
+    private RecalculoDTO esperarFin() throws InterruptedException {
+        for (int intento = 0; intento < 500; intento++) {
+            RecalculoDTO estado = recalculoService.obtener();
+            if (estado.getEstado() != EstadoRecalculo.EN_CURSO) {
+                return estado;
+            }
+            Thread.sleep(10);
+        }
+        return fail("El recálculo no terminó");
+    }
+
+    private static EquiposPartido partido(Integer id, Long local, Long visitante) {
+        return new EquiposPartido() {
+            @Override
+            public Integer getIdPartido() {
+                return id;
+            }
+
+            @Override
+            public Long getIdEquipoLocalAsociado() {
+                return local;
+            }
+
+            @Override
+            public Long getIdEquipoVisitanteAsociado() {
+                return visitante;
+            }
+        };
+    }
+
+    private static Equipo equipo(Long id) {
+        Equipo equipo = new Equipo();
+        equipo.setIdEquipo(id);
+        return equipo;
+    }
+}
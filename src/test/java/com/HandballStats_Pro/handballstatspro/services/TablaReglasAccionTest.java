@@ -0,0 +1,170 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.dto.AccionDTO;
+import com.HandballStats_Pro.handballstatspro.enums.*;
+import com.HandballStats_Pro.handballstatspro.exceptions.ApiException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * EQUIVALENCIA ENTRE LA TABLA DE DECISIÓN Y LAS REGLAS 1-4 ORIGINALES
+ *
+ * Recorre todas las combinaciones de enums (incluido null en cada campo)
+ * y compara el código de error de la tabla con el de la implementación con
+ * if/switch que tenía AccionService, reproducida aquí como oráculo.
+ */
+@DisplayName("🧮 TABLA DE DECISIÓN DE REGLAS 1-4")
+public class TablaReglasAccionTest {
+
+    private final TablaReglasAccion tabla = new TablaReglasAccion();
+
+    @Test
+    @DisplayName("✅ La tabla coincide con las reglas originales en todas las combinaciones")
+    void test_equivalencia_exhaustiva() {
+        List<TipoAtaque> tipos = conNull(TipoAtaque.values());
+        List<OrigenAccion> origenes = conNull(OrigenAccion.values());
+        List<Evento> eventos = conNull(Evento.values());
+        List<DetalleFinalizacion> finalizaciones = conNull(DetalleFinalizacion.values());
+        List<ZonaLanzamiento> zonas = conNull(ZonaLanzamiento.values());
+        List<DetalleEvento> detalles = conNull(DetalleEvento.values());
+
+        int combinaciones = 0;
+        for (TipoAtaque tipo : tipos) {
+            for (OrigenAccion origen : origenes) {
+                for (Evento evento : eventos) {
+                    for (DetalleFinalizacion finalizacion : finalizaciones) {
+                        for (ZonaLanzamiento zona : zonas) {
+                            for (DetalleEvento detalle : detalles) {
+                                for (boolean cambio : new boolean[] {false, true}) {
+                                    String esperado = reglasOriginales(tipo, origen, evento, finalizacion, zona, detalle, cambio);
+                                    TablaReglasAccion.ErrorRegla error = TablaReglasAccion.error(
+                                            tabla.evaluar(tipo, origen, evento, finalizacion, zona, detalle, cambio));
+                                    String obtenido = error == null ? null : error.name();
+                                    assertEquals(esperado, obtenido, () -> String.join(", ", String.valueOf(tipo),
+                                            String.valueOf(origen), String.valueOf(evento), String.valueOf(finalizacion),
+                                            String.valueOf(zona), String.valueOf(detalle), String.valueOf(cambio)));
+                                    combinaciones++;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        assertEquals(3 * 5 * 5 * 10 * 4 * 13 * 2, combinaciones);
+    }
+
+    @Test
+    @DisplayName("✅ Sin cambio_posesion informado la regla 4 no se aplica")
+    void test_cambio_posesion_no_informado() {
+        int codigo = tabla.evaluar(TipoAtaque.Posicional, OrigenAccion.Juego_Continuado, Evento.Gol,
+                DetalleFinalizacion.Pivote, ZonaLanzamiento.Centro, null, null);
+        assertEquals(TablaReglasAccion.VALIDA, codigo);
+    }
+
+    @Test
+    @DisplayName("❌ Error: validar() lanza ApiException con el código de la tabla")
+    void test_validar_lanza_codigo() {
+        AccionDTO accion = new AccionDTO();
+        accion.setTipoAtaque(TipoAtaque.Posicional);
+        accion.setOrigenAccion(OrigenAccion.Juego_Continuado);
+        accion.setEvento(Evento.Perdida);
+        accion.setDetalleEvento(DetalleEvento.Palo);
+        accion.setCambioPosesion(true);
+
+        ApiException exception = assertThrows(ApiException.class, () -> tabla.validar(accion));
+        assertEquals("TURNOVER_INVALID_DETAIL", exception.getErrorCode());
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+    }
+
+    private static <T> List<T> conNull(T[] valores) {
+        List<T> lista = new ArrayList<>(Arrays.asList(valores));
+        lista.add(null);
+        return lista;
+    }
+
+    // Oráculo: reglas 1-4 tal y como estaban escritas en AccionService (sin trazas)
+    private static String reglasOriginales(TipoAtaque tipo, OrigenAccion origen, Evento evento,
+                                           DetalleFinalizacion finalizacion, ZonaLanzamiento zona,
+                                           DetalleEvento detalle, boolean cambioPosesion) {
+        // Regla 1
+        if (origen == OrigenAccion._7m) {
+            if (finalizacion != DetalleFinalizacion._7m) return "INVALID_7M_DETAIL";
+            if (tipo != TipoAtaque.Posicional) return "INVALID_7M_TYPE";
+        }
+        if (finalizacion == DetalleFinalizacion._7m) {
+            if (origen != OrigenAccion._7m) return "INVALID_7M_ORIGIN";
+        }
+
+        // Regla 2
+        if (tipo == TipoAtaque.Contraataque) {
+            if (finalizacion != DetalleFinalizacion.Contragol &&
+                finalizacion != DetalleFinalizacion._1a_oleada &&
+                finalizacion != DetalleFinalizacion._2a_oleada &&
+                finalizacion != DetalleFinalizacion._3a_oleada) {
+                return "INVALID_COUNTERATTACK_DETAIL";
+            }
+        }
+        if (tipo == TipoAtaque.Posicional) {
+            if (finalizacion == DetalleFinalizacion.Contragol ||
+                finalizacion == DetalleFinalizacion._1a_oleada ||
+                finalizacion == DetalleFinalizacion._2a_oleada ||
+                finalizacion == DetalleFinalizacion._3a_oleada) {
+                return "INVALID_POSITIONAL_DETAIL";
+            }
+        }
+
+        // Regla 3 (con evento nulo el switch original lanzaba NullPointerException)
+        if (evento == null) return "EVENT_REQUIRED";
+        switch (evento) {
+            case Gol:
+                if (finalizacion == null || zona == null) return "GOAL_REQUIRED_FIELDS";
+                if (detalle != null) return "GOAL_INVALID_DETAIL";
+                break;
+            case Lanzamiento_Parado:
+                if (finalizacion == null || zona == null) return "SHOT_STOPPED_REQUIRED_FIELDS";
+                if (detalle == null) return "SHOT_STOPPED_REQUIRED_DETAIL";
+                if (detalle != DetalleEvento.Parada_Portero && detalle != DetalleEvento.Bloqueo_Defensor) {
+                    return "SHOT_STOPPED_INVALID_DETAIL";
+                }
+                break;
+            case Lanzamiento_Fuera:
+                if (finalizacion == null || zona == null) return "SHOT_MISSED_REQUIRED_FIELDS";
+                if (detalle == null) return "SHOT_MISSED_REQUIRED_DETAIL";
+                if (detalle != DetalleEvento.Palo && detalle != DetalleEvento.Fuera_Directo) {
+                    return "SHOT_MISSED_INVALID_DETAIL";
+                }
+                break;
+            case Perdida:
+                if (finalizacion != null || zona != null) return "TURNOVER_INVALID_FIELDS";
+                if (detalle == null) return "TURNOVER_REQUIRED_DETAIL";
+                if (detalle != DetalleEvento.Pasos && detalle != DetalleEvento.Dobles &&
+                    detalle != DetalleEvento.FaltaAtaque && detalle != DetalleEvento.Pasivo &&
+                    detalle != DetalleEvento.InvasionArea && detalle != DetalleEvento.Robo &&
+                    detalle != DetalleEvento.Pie && detalle != DetalleEvento.BalonFuera) {
+                    return "TURNOVER_INVALID_DETAIL";
+                }
+                break;
+        }
+
+        // Regla 4
+        boolean deberiaCambiarPosesion = true;
+        if (evento == Evento.Lanzamiento_Parado &&
+            (detalle == DetalleEvento.Parada_Portero || detalle == DetalleEvento.Bloqueo_Defensor)) {
+            deberiaCambiarPosesion = false;
+        }
+        if (evento == Evento.Lanzamiento_Fuera && detalle == DetalleEvento.Palo) {
+            deberiaCambiarPosesion = false;
+        }
+        if (cambioPosesion != deberiaCambiarPosesion) return "INVALID_POSSESSION_CHANGE";
+
+        return null;
+    }
+}
@@ -0,0 +1,174 @@
+package com.HandballStats_Pro.handballstatspro.services;
+
+import com.HandballStats_Pro.handballstatspro.dto.AccionResponseDTO;
+import com.HandballStats_Pro.handballstatspro.dto.FilaTransicionesDTO;
+import com.HandballStats_Pro.handballstatspro.dto.TransicionesDTO;
+import com.HandballStats_Pro.handballstatspro.entities.Accion;
+import com.HandballStats_Pro.handballstatspro.entities.TransicionPartido;
+import com.HandballStats_Pro.handballstatspro.enums.*;
+import com.HandballStats_Pro.handballstatspro.repositories.AccionRepository;
+import com.HandballStats_Pro.handballstatspro.repositories.EquipoRepository;
+import com.HandballStats_Pro.handballstatspro.repositories.PartidoRepository;
+import com.HandballStats_Pro.handballstatspro.repositories.TransicionPartidoRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * TRANSICIONES: matriz de acciones consecutivas, su mantenimiento y su normalización
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("🔗 TRANSICIONES ENTRE ACCIONES")
+public class TransicionesServiceTest {
+
+    private static final Integer ID_PARTIDO = 1;
+
+    @Mock
+    private TransicionPartidoRepository transicionPartidoRepository;
+
+    @Mock
+    private AccionRepository accionRepository;
+
+    @Mock
+    private PartidoRepository partidoRepository;
+
+    @Mock
+    private EquipoRepository equipoRepository;
+
+    @Mock
+    private PartidoService partidoService;
+
+    @Mock
+    private BloqueoPartidos bloqueoPartidos;
+
+    @Mock
+    private DiarioAcciones diarioAcciones;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private TransicionesService transicionesService;
+
+    @Test
+    @DisplayName("✅ Cada fila se normaliza con lo que siguió a ese estado")
+    void test_probabilidades() {
+        // Parada del portero local seguida una vez de gol local de rebote y otra de gol visitante
+        MatrizTransiciones matriz = TransicionesService.encadenar(List.of(
+                accion(1, EquipoAccion.LOCAL, OrigenAccion.Juego_Continuado, Evento.Lanzamiento_Parado, DetalleEvento.Parada_Portero),
+                accion(2, EquipoAccion.LOCAL, OrigenAccion.Rebote_directo, Evento.Gol, null),
+                accion(3, EquipoAccion.LOCAL, OrigenAccion.Juego_Continuado, Evento.Lanzamiento_Parado, DetalleEvento.Parada_Portero),
+                accion(4, EquipoAccion.VISITANTE, OrigenAccion.Juego_Continuado, Evento.Gol, null)));
+
+        TransicionesDTO dto = TransicionesService.aDTO(matriz);
+
+        assertEquals(3, dto.getTransiciones());
+        FilaTransicionesDTO parada = dto.getFilas().stream()
+                .filter(fila -> fila.getDesde().getDetalleEvento() == DetalleEvento.Parada_Portero)
+                .findFirst().orElseThrow();
+        assertEquals(EquipoAccion.LOCAL, parada.getDesde().getEquipo());
+        assertEquals(2, parada.getTotal());
+        assertEquals(2, parada.getSiguientes().size());
+        assertEquals(0.5, parada.getSiguientes().get(0).getProbabilidad());
+        assertEquals(1.0, dto.getFilas().stream()
+                .filter(fila -> fila.getDesde().getOrigenAccion() == OrigenAccion.Rebote_directo)
+                .findFirst().orElseThrow().getSiguientes().get(0).getProbabilidad());
+    }
+
+    @Test
+    @DisplayName("✅ Vista desde el visitante, sus transiciones pasan a LOCAL; el binario conserva la matriz")
+    void test_combinar_como_visitante() {
+        int parada = MatrizTransiciones.estado(OrigenAccion.Juego_Continuado, Evento.Lanzamiento_Parado, DetalleEvento.Parada_Portero);
+        int gol = MatrizTransiciones.estado(OrigenAccion.Rebote_directo, Evento.Gol, null);
+        MatrizTransiciones partido = new MatrizTransiciones();
+        partido.sumar(EquipoAccion.VISITANTE, parada, EquipoAccion.LOCAL, gol, 1);
+
+        MatrizTransiciones equipo = new MatrizTransiciones();
+        equipo.combinarComo(MatrizTransiciones.deBytes(partido.aBytes()), EquipoAccion.VISITANTE);
+
+        assertEquals(1, equipo.veces(EquipoAccion.LOCAL, parada, EquipoAccion.VISITANTE, gol));
+        assertEquals(0, equipo.veces(EquipoAccion.VISITANTE, parada, EquipoAccion.LOCAL, gol));
+        assertEquals(1, equipo.getTransiciones());
+    }
+
+    @Test
+    @DisplayName("✅ Una acción nueva solo añade la transición desde la última del partido")
+    void test_anexar_accion() {
+        int perdida = MatrizTransiciones.estado(OrigenAccion.Juego_Continuado, Evento.Perdida, DetalleEvento.Robo);
+        TransicionPartido fila = new TransicionPartido(ID_PARTIDO, 7,
+                EquipoAccion.LOCAL.ordinal() * MatrizTransiciones.ESTADOS + perdida, new MatrizTransiciones().aBytes());
+        when(transicionPartidoRepository.findParaActualizarByIdPartido(ID_PARTIDO)).thenReturn(Optional.of(fila));
+
+        AccionResponseDTO contraataque = respuesta(8, EquipoAccion.VISITANTE, OrigenAccion.Juego_Continuado, Evento.Gol);
+        transicionesService.alCambiarAccion(AccionEvento.creada(contraataque));
+
+        MatrizTransiciones matriz = MatrizTransiciones.deBytes(fila.getTransiciones());
+        int gol = MatrizTransiciones.estado(OrigenAccion.Juego_Continuado, Evento.Gol, null);
+        assertEquals(1, matriz.veces(EquipoAccion.LOCAL, perdida, EquipoAccion.VISITANTE, gol));
+        assertEquals(8, fila.getUltimaSecuencia());
+        assertEquals(EquipoAccion.VISITANTE.ordinal() * MatrizTransiciones.ESTADOS + gol, fila.getUltimoEstado());
+    }
+
+    @Test
+    @DisplayName("✅ Con el diario activo, una acción fuera de orden borra la fila en lugar de rehacerla")
+    void test_fuera_de_orden_con_diario_borra_la_fila() {
+        TransicionPartido fila = new TransicionPartido(ID_PARTIDO, 7, 0, new MatrizTransiciones().aBytes());
+        when(transicionPartidoRepository.findParaActualizarByIdPartido(ID_PARTIDO)).thenReturn(Optional.of(fila));
+        when(diarioAcciones.activo()).thenReturn(true);
+
+        transicionesService.alCambiarAccion(AccionEvento.creada(
+                respuesta(5, EquipoAccion.LOCAL, OrigenAccion.Juego_Continuado, Evento.Gol)));
+
+        verify(transicionPartidoRepository).delete(fila);
+        verifyNoInteractions(accionRepository);
+    }
+
+    @Test
+    @DisplayName("✅ La reconstrucción vuelca el diario del partido antes de leer sus acciones")
+    void test_reconstruir_vuelca_el_diario() {
+        when(accionRepository.findByIdPartidoOrderBySecuenciaAsc(ID_PARTIDO)).thenReturn(List.of(
+                accion(1, EquipoAccion.LOCAL, OrigenAccion.Juego_Continuado, Evento.Perdida, DetalleEvento.Robo),
+                accion(2, EquipoAccion.VISITANTE, OrigenAccion.Juego_Continuado, Evento.Gol, null)));
+
+        MatrizTransiciones matriz = transicionesService.reconstruir(ID_PARTIDO);
+
+        assertEquals(1, matriz.getTransiciones());
+        InOrder orden = inOrder(bloqueoPartidos, diarioAcciones, accionRepository, transicionPartidoRepository);
+        orden.verify(bloqueoPartidos).bloquearHastaFinTransaccion(ID_PARTIDO);
+        orden.verify(diarioAcciones).volcarPartido(ID_PARTIDO);
+        orden.verify(accionRepository).findByIdPartidoOrderBySecuenciaAsc(ID_PARTIDO);
+        orden.verify(transicionPartidoRepository).save(any());
+    }
+
+    private static AccionResponseDTO respuesta(int secuencia, EquipoAccion equipo, OrigenAccion origen, Evento evento) {
+        AccionResponseDTO accion = new AccionResponseDTO();
+        accion.setIdPartido(ID_PARTIDO);
+        accion.setSecuencia(secuencia);
+        accion.setEquipoAccion(equipo);
+        accion.setOrigenAccion(origen);
+        accion.setEvento(evento);
+        return accion;
+    }
+
+    private static Accion accion(int secuencia, EquipoAccion equipo, OrigenAccion origen, Evento evento, DetalleEvento detalle) {
+        Accion accion = new Accion();
+        accion.setSecuencia(secuencia);
+        accion.setEquipoAccion(equipo);
+        accion.setOrigenAccion(origen);
+        accion.setEvento(evento);
+        accion.setDetalleEvento(detalle);
+        return accion;
+    }
+}